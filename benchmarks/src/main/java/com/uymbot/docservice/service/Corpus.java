@@ -0,0 +1,51 @@
+package com.uymbot.docservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic corpora built from the sentence banks under
+ * {@code corpus/}. Paragraph lengths vary so that the paragraph, sentence and
+ * hard-split paths of {@link TextChunkingService} are all exercised.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    static String generate(String language, int targetChars, long seed) {
+        List<String> sentences = load(language);
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(targetChars + 512);
+
+        while (sb.length() < targetChars) {
+            // Mostly normal paragraphs, occasionally a very long one (> one chunk)
+            int sentenceCount = random.nextInt(20) == 0 ? 60 + random.nextInt(40) : 2 + random.nextInt(7);
+            for (int i = 0; i < sentenceCount; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(sentences.get(random.nextInt(sentences.size())));
+            }
+            sb.append("\n\n");
+        }
+        sb.setLength(targetChars);
+        return sb.toString();
+    }
+
+    private static List<String> load(String language) {
+        String resource = "/corpus/" + language + ".txt";
+        try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown corpus language: " + language);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .filter(l -> !l.isBlank())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
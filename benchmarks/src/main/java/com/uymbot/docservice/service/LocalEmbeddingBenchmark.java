@@ -0,0 +1,39 @@
+package com.uymbot.docservice.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocalEmbeddingProvider#embed(CharSequence, int)} for a search query
+ * and for a full 1000-token chunk (~4000 characters), Turkish and English.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalEmbeddingBenchmark {
+
+    @Param({"tr", "en"})
+    public String language;
+
+    @Param({"64", "4000"})
+    public int size;
+
+    @Param({"384", "1536"})
+    public int dims;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.generate(language, size, 42L);
+    }
+
+    @Benchmark
+    public float[] embed() {
+        return LocalEmbeddingProvider.embed(text, dims);
+    }
+}
@@ -0,0 +1,57 @@
+package com.uymbot.docservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link NearDuplicateIndex} adds to ingesting one chunk before any
+ * ChromaDB call: the MinHash signature of a full 1000-token chunk (~4000
+ * characters), Turkish and English, and the band lookup in an index holding
+ * {@code indexed} unrelated chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearDuplicateBenchmark {
+
+    @Param({"tr", "en"})
+    public String language;
+
+    @Param({"100000"})
+    public int indexed;
+
+    private String text;
+    private int[] bands;
+    private NearDuplicateIndex index;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.generate(language, 4000, 42L);
+        bands = NearDuplicateIndex.bands(NearDuplicateIndex.shingles(text));
+        index = new NearDuplicateIndex(null, null, null, "skip", 0.9, 200, indexed, false,
+                new SimpleMeterRegistry());
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < indexed; i++) {
+            int[] keys = new int[bands.length];
+            for (int b = 0; b < keys.length; b++) keys[b] = random.nextInt();
+            index.add("chunk-" + i, new NearDuplicateIndex.Signature(null, keys));
+        }
+    }
+
+    @Benchmark
+    public int[] signature() {
+        return NearDuplicateIndex.bands(NearDuplicateIndex.shingles(text));
+    }
+
+    @Benchmark
+    public List<String> lookup() {
+        return index.candidates(bands);
+    }
+}
@@ -0,0 +1,69 @@
+package com.uymbot.docservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.DocumentResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chroma {@code Map}-typed JSON to {@link DocumentResponse} mapping for
+ * {@code /get} pages ({@link DocumentService#toResponseList(Map)}) and
+ * {@code /query} results ({@link DocumentService#toQueryResponseList(Map)}).
+ * Inputs go through Jackson first so the collection types match production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+    @Param({"5", "50", "1000"})
+    public int rows;
+
+    private Map<?, ?> getResult;
+    private Map<?, ?> queryResult;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String chunk = Corpus.generate("tr", 4000, rows);
+
+        List<String> ids = new ArrayList<>(rows);
+        List<String> documents = new ArrayList<>(rows);
+        List<Map<String, Object>> metadatas = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            ids.add(String.format("00000000-0000-4000-8000-%012d", i));
+            documents.add(chunk);
+            Map<String, Object> meta = new HashMap<>();
+            meta.put("_title", "Belge " + i);
+            meta.put("source", "web");
+            meta.put("author", "admin");
+            meta.put("chunkIndex", i % 8);
+            meta.put("totalChunks", 8);
+            metadatas.add(meta);
+        }
+
+        Map<String, Object> get = Map.of("ids", ids, "documents", documents, "metadatas", metadatas);
+        Map<String, Object> query = Map.of(
+                "ids", List.of(ids), "documents", List.of(documents), "metadatas", List.of(metadatas));
+        getResult = objectMapper.readValue(objectMapper.writeValueAsBytes(get), Map.class);
+        queryResult = objectMapper.readValue(objectMapper.writeValueAsBytes(query), Map.class);
+    }
+
+    @Benchmark
+    public List<DocumentResponse> mapGetPage() {
+        return DocumentService.toResponseList(getResult);
+    }
+
+    @Benchmark
+    public List<DocumentResponse> mapQueryResult() {
+        return DocumentService.toQueryResponseList(queryResult);
+    }
+}
@@ -0,0 +1,43 @@
+package com.uymbot.docservice.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TextChunkingService#split(String)} over Turkish and English corpora
+ * from a single-chunk note up to a 1 MB export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextChunkingBenchmark {
+
+    @Param({"tr", "en"})
+    public String language;
+
+    @Param({"2048", "65536", "1048576"})
+    public int size;
+
+    private TextChunkingService service;
+    private String text;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        service = new TextChunkingService();
+        Field chunkSize = TextChunkingService.class.getDeclaredField("chunkSizeTokens");
+        chunkSize.setAccessible(true);
+        chunkSize.setInt(service, 1000);
+        text = Corpus.generate(language, size, 42L);
+    }
+
+    @Benchmark
+    public List<String> split() {
+        return service.split(text);
+    }
+}
@@ -0,0 +1,75 @@
+package com.uymbot.docservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding vectors on the wire, the way the service handles them today:
+ * {@code float[]} boxed through {@link ChromaDbService#toList(float[])} into a
+ * Chroma {@code /add} body, and an OpenAI embeddings response decoded into a
+ * {@code Map} and unboxed by {@link OpenAiEmbeddingProvider#toVectors(Map, int)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorSerializationBenchmark {
+
+    @Param({"384", "1536", "3072"})
+    public int dims;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private float[] vector;
+    private byte[] openAiResponse;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(7L);
+        vector = new float[dims];
+        List<Double> values = new ArrayList<>(dims);
+        for (int i = 0; i < dims; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+            values.add((double) vector[i]);
+        }
+
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("object", "embedding");
+        item.put("index", 0);
+        item.put("embedding", values);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("object", "list");
+        response.put("data", List.of(item));
+        response.put("model", "text-embedding-3-small");
+        response.put("usage", Map.of("prompt_tokens", 250, "total_tokens", 250));
+        openAiResponse = objectMapper.writeValueAsBytes(response);
+    }
+
+    /** Same body shape as {@code ChromaDbService.add}. */
+    @Benchmark
+    public byte[] encodeChromaAdd() throws Exception {
+        Map<String, Object> body = new HashMap<>();
+        body.put("ids", List.of("0b6f5c1e-3f43-4a0e-9d55-1f1f4c2b7a10"));
+        body.put("documents", List.of("Belge yönetim sistemi tek bir yerden izlenir."));
+        body.put("metadatas", List.of(Map.of("_title", "Rehber", "chunkIndex", 0, "totalChunks", 1)));
+        body.put("embeddings", List.of(ChromaDbService.toList(vector)));
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    /** Same decode path as {@code OpenAiEmbeddingProvider.embed}. */
+    @Benchmark
+    public float[] decodeOpenAiResponse() throws Exception {
+        Map<?, ?> response = objectMapper.readValue(openAiResponse, Map.class);
+        return OpenAiEmbeddingProvider.toVectors(response, 1).get(0);
+    }
+}
@@ -0,0 +1,326 @@
+package com.uymbot.docservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * In-memory stand-in for the subset of the ChromaDB v1 HTTP API used by the
+ * service: collections (create, list, look up, modify metadata, delete),
+ * {@code add/upsert/update/get/delete/count/query} and the heartbeat. Like
+ * ChromaDB, a collection only accepts embeddings of the dimension it first
+ * received. Queries are a brute-force cosine scan, so their cost grows with
+ * the collection like an exact search would.
+ */
+final class ChromaStub extends StubServer {
+
+    private static final String PREFIX = "/api/v1/collections";
+
+    private final Map<String, Collection> byId = new HashMap<>();
+    private final Map<String, Collection> byName = new HashMap<>();
+
+    ChromaStub(int port, LatencyModel latency, double errorRate) {
+        super("chroma", port, latency, errorRate);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+
+        if (path.equals("/api/v1/heartbeat")) {
+            send(exchange, 200, Map.of("nanosecond heartbeat", System.nanoTime()));
+            return;
+        }
+        if (!path.startsWith(PREFIX)) {
+            throw new NotFound("No route for " + path);
+        }
+
+        String[] parts = path.substring(PREFIX.length()).split("/");
+        // "" | "", "<id-or-name>" | "", "<id>", "<op>"
+        if (parts.length <= 1) {
+            send(exchange, 200, method.equals("GET") ? listCollections() : createCollection(readJson(exchange)));
+        } else if (parts.length == 2) {
+            if (method.equals("DELETE")) {
+                deleteCollection(parts[1]);
+                send(exchange, 200, Map.of());
+            } else if (method.equals("PUT")) {
+                collectionById(parts[1]).modify(readJson(exchange));
+                send(exchange, 200, Map.of());
+            } else {
+                send(exchange, 200, collectionByName(parts[1]).describe());
+            }
+        } else {
+            Collection collection = collectionById(parts[1]);
+            switch (parts[2]) {
+                case "add", "upsert", "update" -> {
+                    collection.write(readJson(exchange), parts[2]);
+                    send(exchange, 201, true);
+                }
+                case "get" -> send(exchange, 200, collection.get(readJson(exchange)));
+                case "delete" -> send(exchange, 200, collection.delete(readJson(exchange)));
+                case "count" -> send(exchange, 200, collection.count());
+                case "query" -> send(exchange, 200, collection.query(readJson(exchange)));
+                default -> throw new NotFound("Unknown collection operation " + parts[2]);
+            }
+        }
+    }
+
+    private synchronized Map<String, Object> createCollection(Map<?, ?> body) {
+        String name = (String) body.get("name");
+        Collection collection = byName.get(name);
+        if (collection == null) {
+            collection = new Collection(UUID.randomUUID().toString(), name, body.get("metadata"));
+            byName.put(name, collection);
+            byId.put(collection.id, collection);
+        }
+        return collection.describe();
+    }
+
+    private synchronized List<Map<String, Object>> listCollections() {
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (Collection collection : byName.values()) collections.add(collection.describe());
+        return collections;
+    }
+
+    private synchronized void deleteCollection(String name) {
+        Collection removed = byName.remove(name);
+        if (removed == null) throw new NotFound("Collection " + name + " does not exist");
+        byId.remove(removed.id);
+    }
+
+    private synchronized Collection collectionByName(String name) {
+        Collection collection = byName.get(name);
+        if (collection == null) throw new NotFound("Collection " + name + " does not exist");
+        return collection;
+    }
+
+    private synchronized Collection collectionById(String id) {
+        Collection collection = byId.get(id);
+        if (collection == null) throw new NotFound("Collection " + id + " does not exist");
+        return collection;
+    }
+
+    // ------------------------------------------------------------------ collection
+
+    private record Row(String id, String document, Map<?, ?> metadata, float[] embedding) {
+    }
+
+    private static final class Collection {
+
+        private final String id;
+        private final String name;
+        private volatile Object metadata;
+        private final LinkedHashMap<String, Row> rows = new LinkedHashMap<>();
+        private int dimension;
+
+        Collection(String id, String name, Object metadata) {
+            this.id = id;
+            this.name = name;
+            this.metadata = metadata;
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> out = new HashMap<>();
+            out.put("id", id);
+            out.put("name", name);
+            out.put("metadata", metadata);
+            return out;
+        }
+
+        /** {@code PUT /collections/{id}}: replaces the metadata if {@code new_metadata} is given. */
+        void modify(Map<?, ?> body) {
+            if (body.get("new_metadata") != null) metadata = body.get("new_metadata");
+        }
+
+        synchronized void write(Map<?, ?> body, String op) {
+            List<?> ids = (List<?>) body.get("ids");
+            List<?> documents = (List<?>) body.get("documents");
+            List<?> metadatas = (List<?>) body.get("metadatas");
+            List<?> embeddings = (List<?>) body.get("embeddings");
+            if (embeddings != null) {
+                for (Object embedding : embeddings) checkDimension(((List<?>) embedding).size());
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                String rowId = (String) ids.get(i);
+                Row existing = rows.get(rowId);
+                if (op.equals("update") && existing == null) continue;
+                if (op.equals("add") && existing != null) continue;
+                rows.put(rowId, new Row(rowId,
+                        documents != null ? (String) documents.get(i) : existing != null ? existing.document : null,
+                        metadatas != null ? (Map<?, ?>) metadatas.get(i) : existing != null ? existing.metadata : null,
+                        embeddings != null ? toArray((List<?>) embeddings.get(i)) : existing != null ? existing.embedding : null));
+            }
+        }
+
+        synchronized Map<String, Object> get(Map<?, ?> body) {
+            List<?> ids = (List<?>) body.get("ids");
+            Map<?, ?> where = (Map<?, ?>) body.get("where");
+            int offset = body.get("offset") instanceof Number n ? n.intValue() : 0;
+            int limit = body.get("limit") instanceof Number n ? n.intValue() : Integer.MAX_VALUE;
+
+            List<Row> selected = new ArrayList<>();
+            if (ids != null) {
+                for (Object rowId : ids) {
+                    Row row = rows.get(rowId);
+                    if (row != null && matches(row, where)) selected.add(row);
+                }
+            } else {
+                for (Row row : rows.values()) {
+                    if (matches(row, where)) selected.add(row);
+                }
+            }
+            int from = Math.min(offset, selected.size());
+            int to = (int) Math.min((long) from + limit, selected.size());
+            return columns(selected.subList(from, to), include(body), null);
+        }
+
+        synchronized List<String> delete(Map<?, ?> body) {
+            List<?> ids = (List<?>) body.get("ids");
+            Map<?, ?> where = (Map<?, ?>) body.get("where");
+            List<String> deleted = new ArrayList<>();
+            Iterator<Row> it = rows.values().iterator();
+            while (it.hasNext()) {
+                Row row = it.next();
+                if ((ids == null || ids.contains(row.id)) && matches(row, where)) {
+                    deleted.add(row.id);
+                    it.remove();
+                }
+            }
+            return deleted;
+        }
+
+        synchronized int count() {
+            return rows.size();
+        }
+
+        private void checkDimension(int size) {
+            if (dimension == 0) dimension = size;
+            if (size != dimension) {
+                throw new IllegalArgumentException("Embedding dimension " + size
+                        + " does not match collection dimensionality " + dimension);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Map<String, Object> query(Map<?, ?> body) {
+            List<?> queries = (List<?>) body.get("query_embeddings");
+            int n = ((Number) body.get("n_results")).intValue();
+            Map<?, ?> where = (Map<?, ?>) body.get("where");
+            Set<String> include = include(body);
+
+            Map<String, Object> out = new HashMap<>();
+            for (String key : List.of("ids", "documents", "metadatas", "embeddings", "distances")) {
+                out.put(key, key.equals("ids") || include.contains(key) ? new ArrayList<>() : null);
+            }
+            for (Object q : queries) {
+                if (!rows.isEmpty()) checkDimension(((List<?>) q).size());
+                float[] query = toArray((List<?>) q);
+                List<Row> candidates = new ArrayList<>();
+                for (Row row : rows.values()) {
+                    if (row.embedding != null && matches(row, where)) candidates.add(row);
+                }
+                double[] distance = new double[candidates.size()];
+                Integer[] order = new Integer[candidates.size()];
+                for (int i = 0; i < candidates.size(); i++) {
+                    distance[i] = cosineDistance(query, candidates.get(i).embedding);
+                    order[i] = i;
+                }
+                Arrays.sort(order, Comparator.comparingDouble(i -> distance[i]));
+
+                List<Row> top = new ArrayList<>();
+                List<Double> distances = new ArrayList<>();
+                for (int i = 0; i < Math.min(n, order.length); i++) {
+                    top.add(candidates.get(order[i]));
+                    distances.add(distance[order[i]]);
+                }
+                Map<String, Object> row = columns(top, include, distances);
+                for (Map.Entry<String, Object> e : out.entrySet()) {
+                    if (e.getValue() != null) ((List<Object>) e.getValue()).add(row.get(e.getKey()));
+                }
+            }
+            return out;
+        }
+
+        private static Set<String> include(Map<?, ?> body) {
+            Object include = body.get("include");
+            Set<String> out = new HashSet<>();
+            if (include instanceof List<?> list) {
+                list.forEach(v -> out.add(String.valueOf(v)));
+            } else {
+                out.addAll(List.of("documents", "metadatas"));
+            }
+            return out;
+        }
+
+        private static Map<String, Object> columns(List<Row> rows, Set<String> include, List<Double> distances) {
+            Map<String, Object> out = new HashMap<>();
+            out.put("ids", rows.stream().map(Row::id).toList());
+            out.put("documents", include.contains("documents")
+                    ? rows.stream().map(Row::document).toList() : null);
+            out.put("metadatas", include.contains("metadatas")
+                    ? rows.stream().map(r -> (Object) r.metadata).toList() : null);
+            out.put("embeddings", include.contains("embeddings")
+                    ? rows.stream().map(r -> toList(r.embedding)).toList() : null);
+            out.put("distances", include.contains("distances") ? distances : null);
+            return out;
+        }
+
+        /** Supports {@code {k: v}}, {@code {k: {"$eq"|"$ne"|"$in": ...}}} and {@code $and}. */
+        private static boolean matches(Row row, Map<?, ?> where) {
+            if (where == null || where.isEmpty()) return true;
+            for (Map.Entry<?, ?> clause : where.entrySet()) {
+                String key = String.valueOf(clause.getKey());
+                if (key.equals("$and")) {
+                    for (Object sub : (List<?>) clause.getValue()) {
+                        if (!matches(row, (Map<?, ?>) sub)) return false;
+                    }
+                    continue;
+                }
+                if (key.equals("$or")) {
+                    boolean any = false;
+                    for (Object sub : (List<?>) clause.getValue()) {
+                        any |= matches(row, (Map<?, ?>) sub);
+                    }
+                    if (!any) return false;
+                    continue;
+                }
+                Object actual = row.metadata == null ? null : row.metadata.get(key);
+                Object expected = clause.getValue();
+                if (expected instanceof Map<?, ?> op) {
+                    if (op.containsKey("$eq") && !Objects.equals(actual, op.get("$eq"))) return false;
+                    if (op.containsKey("$ne") && Objects.equals(actual, op.get("$ne"))) return false;
+                    if (op.containsKey("$in") && !((List<?>) op.get("$in")).contains(actual)) return false;
+                } else if (!Objects.equals(actual, expected)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static double cosineDistance(float[] a, float[] b) {
+            double dot = 0, na = 0, nb = 0;
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                dot += a[i] * b[i];
+                na += a[i] * a[i];
+                nb += b[i] * b[i];
+            }
+            return na == 0 || nb == 0 ? 1.0 : 1.0 - dot / Math.sqrt(na * nb);
+        }
+
+        private static float[] toArray(List<?> values) {
+            float[] out = new float[values.size()];
+            for (int i = 0; i < out.length; i++) out[i] = ((Number) values.get(i)).floatValue();
+            return out;
+        }
+
+        private static List<Float> toList(float[] values) {
+            if (values == null) return null;
+            List<Float> out = new ArrayList<>(values.length);
+            for (float v : values) out.add(v);
+            return out;
+        }
+    }
+}
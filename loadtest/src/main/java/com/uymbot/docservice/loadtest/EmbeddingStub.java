@@ -0,0 +1,82 @@
+package com.uymbot.docservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Stand-in for the OpenAI {@code POST /v1/embeddings} endpoint. Vectors are
+ * deterministic per input text (seeded by its hash) and unit length; the
+ * {@code dimensions} request parameter is honoured. Injected errors are
+ * {@code 429} responses with a {@code Retry-After} header, the failure mode
+ * the real API produces under load.
+ */
+final class EmbeddingStub extends StubServer {
+
+    private final int defaultDimensions;
+
+    EmbeddingStub(int port, LatencyModel latency, double errorRate, int defaultDimensions) {
+        super("embedding", port, latency, errorRate);
+        this.defaultDimensions = defaultDimensions;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/v1/embeddings")) {
+            throw new NotFound("No route for " + exchange.getRequestURI().getPath());
+        }
+        Map<?, ?> body = readJson(exchange);
+        Object input = body.get("input");
+        List<?> inputs = input instanceof List<?> list ? list : List.of(String.valueOf(input));
+        int dims = body.get("dimensions") instanceof Number n ? n.intValue() : defaultDimensions;
+
+        List<Map<String, Object>> data = new ArrayList<>(inputs.size());
+        int tokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            String text = String.valueOf(inputs.get(i));
+            tokens += Math.max(1, text.length() / 4);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("object", "embedding");
+            item.put("index", i);
+            item.put("embedding", vector(text, dims));
+            data.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("object", "list");
+        response.put("data", data);
+        response.put("model", body.get("model"));
+        response.put("usage", Map.of("prompt_tokens", tokens, "total_tokens", tokens));
+        exchange.getResponseHeaders().set("x-ratelimit-limit-requests", "5000");
+        exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "4999");
+        send(exchange, 200, response);
+    }
+
+    @Override
+    protected void injectError(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "0");
+        exchange.getResponseHeaders().set("x-ratelimit-reset-requests", "1s");
+        send(exchange, 429, Map.of("error", Map.of(
+                "message", "Rate limit reached (injected)", "type", "requests", "code", "rate_limit_exceeded")));
+    }
+
+    private static List<Double> vector(String text, int dims) {
+        SplittableRandom random = new SplittableRandom(text.hashCode());
+        double[] v = new double[dims];
+        double norm = 0;
+        for (int i = 0; i < dims; i++) {
+            v[i] = random.nextDouble() * 2 - 1;
+            norm += v[i] * v[i];
+        }
+        norm = Math.sqrt(norm);
+        List<Double> out = new ArrayList<>(dims);
+        for (double d : v) out.add((double) (float) (d / norm));
+        return out;
+    }
+}
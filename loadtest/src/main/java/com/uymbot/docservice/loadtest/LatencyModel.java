@@ -0,0 +1,73 @@
+package com.uymbot.docservice.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Artificial response latency of a stub server, parsed from a compact spec
+ * (all values in milliseconds):
+ * <ul>
+ *   <li>{@code none}</li>
+ *   <li>{@code fixed:20}</li>
+ *   <li>{@code uniform:5:50}</li>
+ *   <li>{@code lognormal:20:0.6} — median 20 ms, sigma 0.6 (long right tail)</li>
+ * </ul>
+ */
+final class LatencyModel {
+
+    private enum Kind { NONE, FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+    private final String spec;
+
+    private LatencyModel(Kind kind, double a, double b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    static LatencyModel parse(String spec) {
+        if (spec == null || spec.isBlank() || spec.equals("none") || spec.equals("0")) {
+            return new LatencyModel(Kind.NONE, 0, 0, "none");
+        }
+        String[] parts = spec.split(":");
+        try {
+            Kind kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            return switch (kind) {
+                case NONE -> new LatencyModel(Kind.NONE, 0, 0, "none");
+                case FIXED -> new LatencyModel(kind, Double.parseDouble(parts[1]), 0, spec);
+                case UNIFORM, LOGNORMAL -> new LatencyModel(kind,
+                        Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), spec);
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid latency spec '" + spec
+                    + "', expected none | fixed:<ms> | uniform:<min>:<max> | lognormal:<median>:<sigma>", e);
+        }
+    }
+
+    /** Draws one latency sample in milliseconds. */
+    double sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (kind) {
+            case NONE -> 0;
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case LOGNORMAL -> a * Math.exp(b * random.nextGaussian());
+        };
+    }
+
+    void pause() throws InterruptedException {
+        double millis = sampleMillis();
+        if (millis <= 0) return;
+        long whole = (long) millis;
+        Thread.sleep(whole, (int) ((millis - whole) * 1_000_000));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,156 @@
+package com.uymbot.docservice.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator. Each workload gets its own pacing thread that
+ * issues requests on a fixed schedule regardless of how fast earlier ones
+ * complete; latency is measured from the <em>intended</em> send time so a
+ * stalled service shows up in the percentiles instead of silently lowering
+ * the offered load (no coordinated omission).
+ */
+final class LoadRunner {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final List<Workload> workloads;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int maxInFlight;
+    private final HttpClient client;
+    private final ExecutorService callbacks;
+
+    LoadRunner(List<Workload> workloads, Duration warmup, Duration duration, int maxInFlight) {
+        this.workloads = workloads;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.maxInFlight = maxInFlight;
+        this.callbacks = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(callbacks)
+                .build();
+    }
+
+    List<Result> run() throws InterruptedException {
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Result> results = new ArrayList<>();
+        List<Thread> pacers = new ArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        for (Workload workload : workloads) {
+            if (workload.ratePerSecond() <= 0) continue;
+            Result result = new Result(workload);
+            results.add(result);
+            Thread pacer = new Thread(() -> pace(workload, result, inFlight, start, measureFrom, end),
+                    "pacer-" + workload.name());
+            pacer.start();
+            pacers.add(pacer);
+        }
+        for (Thread pacer : pacers) pacer.join();
+
+        // let the tail of in-flight requests finish before reporting
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        callbacks.shutdownNow();
+        return results;
+    }
+
+    private void pace(Workload workload, Result result, AtomicInteger inFlight,
+                      long start, long measureFrom, long end) {
+        SplittableRandom random = new SplittableRandom(workload.name().hashCode());
+        long intervalNanos = (long) (1_000_000_000L / workload.ratePerSecond());
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) return;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            boolean measured = intended >= measureFrom;
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) result.dropped.incrementAndGet();
+                continue;
+            }
+            HttpRequest request = workload.factory().next(random);
+            inFlight.incrementAndGet();
+            if (measured) result.sent.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (!measured) return;
+                        long micros = Math.min(HIGHEST_TRACKABLE_MICROS,
+                                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                        if (error == null && response.statusCode() < 400) {
+                            result.latency.recordValue(micros);
+                        } else {
+                            result.errors.incrementAndGet();
+                        }
+                    });
+        }
+    }
+
+    void report(List<Result> results, PrintStream out) {
+        double seconds = duration.toMillis() / 1000.0;
+        out.printf("%n%-8s %8s %8s %8s %7s %7s %10s %9s %9s %9s %9s %9s%n",
+                "workload", "rate/s", "sent", "ok", "errors", "dropped", "ok/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Result r : results) {
+            Histogram h = r.latency;
+            out.printf("%-8s %8.1f %8d %8d %7d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    r.workload.name(), r.workload.ratePerSecond(), r.sent.get(), h.getTotalCount(),
+                    r.errors.get(), r.dropped.get(), h.getTotalCount() / seconds,
+                    ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)),
+                    ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+        }
+    }
+
+    /** Writes one HdrHistogram percentile distribution per workload (plottable with HistogramPlotter). */
+    void writeHistograms(List<Result> results, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Result r : results) {
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(directory.resolve(r.workload.name() + ".hgrm")))) {
+                r.latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    static final class Result {
+        final Workload workload;
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+
+        Result(Workload workload) {
+            this.workload = workload;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.uymbot.docservice.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command line entry point.
+ *
+ * <pre>
+ * java -jar loadtest.jar stubs [options]      start the stand-ins and wait
+ * java -jar loadtest.jar run   [options]      drive load against --target
+ * </pre>
+ *
+ * {@code run --with-stubs} starts the stand-ins in the same process first.
+ * The service itself is started separately and pointed at the stubs through
+ * the environment variables printed on startup.
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] argv) throws Exception {
+        if (argv.length == 0 || argv[0].equals("--help")) {
+            usage();
+            return;
+        }
+        Map<String, String> args = parse(argv);
+        switch (argv[0]) {
+            case "stubs" -> {
+                List<StubServer> stubs = startStubs(args);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> stubs.forEach(StubServer::close)));
+                new CountDownLatch(1).await();
+            }
+            case "run" -> {
+                List<StubServer> stubs = args.containsKey("with-stubs") ? startStubs(args) : List.of();
+                try {
+                    runLoad(args);
+                } finally {
+                    for (StubServer stub : stubs) {
+                        System.out.printf("%-9s requests=%d injectedErrors=%d%n",
+                                stub.describe().split(" ")[0], stub.requests(), stub.injectedErrors());
+                        stub.close();
+                    }
+                }
+            }
+            default -> usage();
+        }
+    }
+
+    private static List<StubServer> startStubs(Map<String, String> args) throws Exception {
+        ChromaStub chroma = new ChromaStub(
+                intArg(args, "chroma-port", 18000),
+                LatencyModel.parse(args.getOrDefault("chroma-latency", "lognormal:5:0.5")),
+                doubleArg(args, "chroma-error-rate", 0));
+        EmbeddingStub embedding = new EmbeddingStub(
+                intArg(args, "embedding-port", 18001),
+                LatencyModel.parse(args.getOrDefault("embedding-latency", "lognormal:120:0.4")),
+                doubleArg(args, "embedding-error-rate", 0),
+                intArg(args, "dims", 1536));
+        RagStub rag = new RagStub(
+                intArg(args, "rag-port", 18002),
+                LatencyModel.parse(args.getOrDefault("rag-latency", "lognormal:15:0.3")),
+                doubleArg(args, "rag-error-rate", 0),
+                intArg(args, "rag-chunks", 20),
+                intArg(args, "rag-chunk-chars", 1500));
+
+        List<StubServer> stubs = List.of(chroma, embedding, rag);
+        for (StubServer stub : stubs) {
+            stub.start();
+            System.out.println("started " + stub.describe());
+        }
+        System.out.println();
+        System.out.println("Point the service at the stubs with:");
+        System.out.println("  CHROMADB_HOST=" + chroma.baseUrl());
+        System.out.println("  OPENAI_EMBEDDING_URL=" + embedding.baseUrl() + "/v1/embeddings");
+        System.out.println("  OPENAI_API_KEY=stub");
+        System.out.println("  RAG_SERVICE_BASE_URL=" + rag.baseUrl());
+        System.out.println();
+        return stubs;
+    }
+
+    private static void runLoad(Map<String, String> args) throws Exception {
+        String target = args.getOrDefault("target", "http://localhost:8080");
+        List<Workload> workloads = new ArrayList<>();
+        workloads.add(Workload.create(target, doubleArg(args, "create-rate", 5), intArg(args, "doc-chars", 6000)));
+        workloads.add(Workload.search(target, doubleArg(args, "search-rate", 50), intArg(args, "n-results", 5)));
+        workloads.add(Workload.ragImport(target, doubleArg(args, "import-rate", 0)));
+
+        Duration warmup = Duration.ofSeconds(intArg(args, "warmup", 10));
+        Duration duration = Duration.ofSeconds(intArg(args, "duration", 60));
+        LoadRunner runner = new LoadRunner(workloads, warmup, duration, intArg(args, "max-in-flight", 2048));
+
+        System.out.printf("target=%s warmup=%ds duration=%ds%n", target, warmup.toSeconds(), duration.toSeconds());
+        List<LoadRunner.Result> results = runner.run();
+        runner.report(results, System.out);
+        if (args.containsKey("histogram-dir")) {
+            runner.writeHistograms(results, Path.of(args.get("histogram-dir")));
+        }
+    }
+
+    private static Map<String, String> parse(String[] argv) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 1; i < argv.length; i++) {
+            if (!argv[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + argv[i]);
+            }
+            String key = argv[i].substring(2);
+            boolean hasValue = i + 1 < argv.length && !argv[i + 1].startsWith("--");
+            out.put(key, hasValue ? argv[++i] : "true");
+        }
+        return out;
+    }
+
+    private static int intArg(Map<String, String> args, String key, int defaultValue) {
+        return args.containsKey(key) ? Integer.parseInt(args.get(key)) : defaultValue;
+    }
+
+    private static double doubleArg(Map<String, String> args, String key, double defaultValue) {
+        return args.containsKey(key) ? Double.parseDouble(args.get(key)) : defaultValue;
+    }
+
+    private static void usage() {
+        System.out.println("""
+                usage: java -jar loadtest.jar <stubs|run> [options]
+
+                stub options
+                  --chroma-port 18000      --chroma-latency lognormal:5:0.5      --chroma-error-rate 0
+                  --embedding-port 18001   --embedding-latency lognormal:120:0.4 --embedding-error-rate 0
+                  --rag-port 18002         --rag-latency lognormal:15:0.3        --rag-error-rate 0
+                  --dims 1536              --rag-chunks 20                       --rag-chunk-chars 1500
+                  latency specs: none | fixed:<ms> | uniform:<min>:<max> | lognormal:<median>:<sigma>
+
+                run options
+                  --target http://localhost:8080   --with-stubs
+                  --create-rate 5   --search-rate 50   --import-rate 0   (requests per second)
+                  --warmup 10       --duration 60      (seconds)
+                  --doc-chars 6000  --n-results 5      --max-in-flight 2048
+                  --histogram-dir <dir>                write <workload>.hgrm percentile files
+                """);
+    }
+}
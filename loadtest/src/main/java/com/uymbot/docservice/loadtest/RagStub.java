@@ -0,0 +1,65 @@
+package com.uymbot.docservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Stand-in for the RAG Chunking/Parser service. Any document id exists and
+ * has {@code chunkCount} generated chunks of roughly {@code chunkChars}
+ * characters each.
+ */
+final class RagStub extends StubServer {
+
+    private static final String PREFIX = "/api/documents/";
+
+    private final int chunkCount;
+    private final int chunkChars;
+
+    RagStub(int port, LatencyModel latency, double errorRate, int chunkCount, int chunkChars) {
+        super("rag", port, latency, errorRate);
+        this.chunkCount = chunkCount;
+        this.chunkChars = chunkChars;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.startsWith(PREFIX)) {
+            throw new NotFound("No route for " + path);
+        }
+        String[] parts = path.substring(PREFIX.length()).split("/");
+        String documentId = parts[0];
+
+        if (parts.length == 1) {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("id", documentId);
+            meta.put("filename", documentId + ".pdf");
+            meta.put("format", "pdf");
+            meta.put("status", "COMPLETED");
+            meta.put("chunkCount", chunkCount);
+            send(exchange, 200, meta);
+        } else if (parts.length == 2 && parts[1].equals("chunks")) {
+            SplittableRandom random = new SplittableRandom(documentId.hashCode());
+            List<Map<String, Object>> chunks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                String text = TextGenerator.paragraphs(random, chunkChars);
+                Map<String, Object> chunk = new LinkedHashMap<>();
+                chunk.put("chunkId", documentId + "-" + i);
+                chunk.put("documentId", documentId);
+                chunk.put("text", text);
+                chunk.put("chunkType", "paragraph");
+                chunk.put("charCount", text.length());
+                chunks.add(chunk);
+            }
+            send(exchange, 200, chunks);
+        } else {
+            throw new NotFound("No route for " + path);
+        }
+    }
+}
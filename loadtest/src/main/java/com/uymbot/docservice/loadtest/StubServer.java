@@ -0,0 +1,139 @@
+package com.uymbot.docservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for the in-process HTTP stand-ins. Every request is delayed by
+ * the configured {@link LatencyModel} and then, with probability
+ * {@code errorRate}, answered by {@link #injectError(HttpExchange)} instead of
+ * the real handler.
+ */
+abstract class StubServer implements AutoCloseable {
+
+    protected static final ObjectMapper JSON = new ObjectMapper();
+
+    static {
+        // headers and body are written separately; without TCP_NODELAY every
+        // keep-alive response picks up a ~40 ms delayed-ACK stall
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final String name;
+    private final int port;
+    private final LatencyModel latency;
+    private final double errorRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    protected StubServer(String name, int port, LatencyModel latency, double errorRate) {
+        this.name = name;
+        this.port = port;
+        this.latency = latency;
+        this.errorRate = errorRate;
+    }
+
+    void start() throws IOException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, name + "-stub-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    String describe() {
+        return String.format("%-9s %s  latency=%s errorRate=%.3f", name, baseUrl(), latency, errorRate);
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void dispatch(HttpExchange exchange) {
+        requests.incrementAndGet();
+        try (exchange) {
+            latency.pause();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                injectError(exchange);
+                return;
+            }
+            handle(exchange);
+        } catch (NotFound e) {
+            sendQuietly(exchange, 404, Map.of("error", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            sendQuietly(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    /** Default injected failure: a plain 500. */
+    protected void injectError(HttpExchange exchange) throws IOException {
+        send(exchange, 500, Map.of("error", "injected failure"));
+    }
+
+    protected static Map<?, ?> readJson(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        return body.length == 0 ? Map.of() : JSON.readValue(body, Map.class);
+    }
+
+    protected static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendQuietly(HttpExchange exchange, int status, Object body) {
+        try {
+            send(exchange, status, body);
+        } catch (IOException ignored) {
+            // client went away
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) server.stop(0);
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /** Thrown by handlers for unknown routes or resources. */
+    static final class NotFound extends RuntimeException {
+        NotFound(String message) {
+            super(message);
+        }
+    }
+}
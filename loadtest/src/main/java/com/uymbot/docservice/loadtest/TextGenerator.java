@@ -0,0 +1,46 @@
+package com.uymbot.docservice.loadtest;
+
+import java.util.SplittableRandom;
+
+/** Random Turkish/English office prose for request bodies. */
+final class TextGenerator {
+
+    private static final String[] WORDS = {
+            "belge", "sözleşme", "fatura", "müşteri", "teslimat", "rapor", "onay", "bütçe", "personel",
+            "güvenlik", "arşiv", "tedarikçi", "sipariş", "eğitim", "sunucu", "bakım", "toplantı", "izin",
+            "document", "contract", "invoice", "customer", "delivery", "report", "approval", "budget",
+            "employee", "security", "archive", "supplier", "order", "training", "server", "maintenance",
+            "meeting", "policy", "refund", "inventory", "deadline", "review", "release", "search",
+            "ve", "ile", "için", "the", "and", "for", "with", "after", "before", "within", "every"
+    };
+
+    private TextGenerator() {
+    }
+
+    static String sentence(SplittableRandom random, int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.append('.').toString();
+    }
+
+    static String paragraphs(SplittableRandom random, int chars) {
+        StringBuilder sb = new StringBuilder(chars + 128);
+        while (sb.length() < chars) {
+            int sentences = 2 + random.nextInt(6);
+            for (int i = 0; i < sentences && sb.length() < chars; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(sentence(random, 6 + random.nextInt(14)));
+            }
+            sb.append("\n\n");
+        }
+        return sb.toString().strip();
+    }
+
+    static String query(SplittableRandom random) {
+        return sentence(random, 2 + random.nextInt(5));
+    }
+}
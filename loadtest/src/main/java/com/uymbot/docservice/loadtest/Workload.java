@@ -0,0 +1,54 @@
+package com.uymbot.docservice.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/** One request type driven against the service at a fixed arrival rate. */
+record Workload(String name, double ratePerSecond, RequestFactory factory) {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    @FunctionalInterface
+    interface RequestFactory {
+        HttpRequest next(SplittableRandom random);
+    }
+
+    static Workload create(String target, double rate, int docChars) {
+        return new Workload("create", rate, random -> post(target + "/documents", Map.of(
+                "title", TextGenerator.sentence(random, 4),
+                "content", TextGenerator.paragraphs(random, docChars),
+                "metadata", Map.of("source", "loadtest"))));
+    }
+
+    static Workload search(String target, double rate, int nResults) {
+        return new Workload("search", rate, random -> post(target + "/documents/search", Map.of(
+                "query", TextGenerator.query(random),
+                "nResults", nResults)));
+    }
+
+    static Workload ragImport(String target, double rate) {
+        return new Workload("import", rate, random -> post(
+                target + "/documents/import/rag/" + new UUID(random.nextLong(), random.nextLong()),
+                Map.of("metadata", Map.of("source", "loadtest"))));
+    }
+
+    private static HttpRequest post(String url, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+#!/usr/bin/env bash
+# Startup time and resident memory of the service builds, side by side,
+# each started against the load-test stubs on this machine.
+#
+#   mvn -B -Pnative -DskipTests package            # jar with AOT classes (jar, jar-aot)
+#   mvn -B -Pnative -DskipTests native:compile     # target/docservice   (native; needs GraalVM)
+#   docker build --target jvm    -t docservice:jvm .     # image-jvm
+#   docker build --target native -t docservice:native .  # image-native
+#   mvn -B -f loadtest/pom.xml package
+#   loadtest/startup-compare.sh [runs] [variant...]
+#
+# Variants whose artifact is missing are skipped. Per run it reports
+#   started_s   Spring's "Started DocserviceApplication in X seconds"
+#   ready_ms    from launch until /actuator/health/readiness is UP (includes the warm-up)
+#   rss_mb      resident memory once ready
+#   rss_load_mb resident memory after $SEARCHES searches
+# Images run with --network host and --memory $MEMORY so the JVM sizes its heap as in production.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-3}
+shift || true
+VARIANTS=${*:-jar jar-aot native image-jvm image-native}
+SEARCHES=${SEARCHES:-200}
+MEMORY=${MEMORY:-1g}
+JAR=target/docservice-1.0.0-exec.jar
+PORT=8080
+export CHROMADB_HOST=http://localhost:18000
+export OPENAI_EMBEDDING_URL=http://localhost:18001/v1/embeddings
+export OPENAI_API_KEY=stub
+export RAG_SERVICE_BASE_URL=http://localhost:18002
+LOG=$(mktemp)
+
+java -jar loadtest/target/loadtest.jar stubs --embedding-latency fixed:5 --chroma-latency fixed:1 >/dev/null 2>&1 &
+STUBS=$!
+PID=""
+CID=""
+cleanup() {
+    stop
+    kill "$STUBS" 2>/dev/null || true
+    rm -f "$LOG"
+}
+trap cleanup EXIT
+sleep 2
+
+available() {
+    case $1 in
+        jar|jar-aot) [[ -f $JAR ]] ;;
+        native) [[ -x target/docservice ]] ;;
+        image-jvm) command -v docker >/dev/null && docker image inspect docservice:jvm >/dev/null 2>&1 ;;
+        image-native) command -v docker >/dev/null && docker image inspect docservice:native >/dev/null 2>&1 ;;
+        *) echo "unknown variant $1" >&2; return 1 ;;
+    esac
+}
+
+launch() {
+    local env=(-e CHROMADB_HOST -e OPENAI_EMBEDDING_URL -e OPENAI_API_KEY -e RAG_SERVICE_BASE_URL)
+    case $1 in
+        jar) java -jar "$JAR" >"$LOG" 2>&1 & PID=$! ;;
+        jar-aot) java -Dspring.aot.enabled=true -jar "$JAR" >"$LOG" 2>&1 & PID=$! ;;
+        native) target/docservice >"$LOG" 2>&1 & PID=$! ;;
+        image-jvm) CID=$(docker run -d --network host --memory "$MEMORY" "${env[@]}" docservice:jvm) ;;
+        image-native) CID=$(docker run -d --network host --memory "$MEMORY" "${env[@]}" docservice:native) ;;
+    esac
+}
+
+# resident set size in MB of the service's processes
+rss_mb() {
+    local pids=$PID kb=0
+    [[ -n $CID ]] && pids=$(docker top "$CID" -eo pid | tail -n +2)
+    for p in $pids; do
+        kb=$((kb + $(awk '/^VmRSS/ {print $2}' "/proc/$p/status")))
+    done
+    echo $((kb / 1024))
+}
+
+started_s() {
+    local log
+    if [[ -n $CID ]]; then log=$(docker logs "$CID" 2>&1); else log=$(cat "$LOG"); fi
+    grep -oE 'Started DocserviceApplication in [0-9.]+' <<<"$log" | awk '{print $4}'
+}
+
+stop() {
+    if [[ -n $PID ]]; then kill "$PID" 2>/dev/null && wait "$PID" 2>/dev/null || true; fi
+    if [[ -n $CID ]]; then docker rm -f "$CID" >/dev/null; fi
+    PID=""
+    CID=""
+}
+
+# a few documents so searches return results
+launch jar-aot 2>/dev/null || launch jar
+until curl -sf localhost:$PORT/actuator/health/readiness >/dev/null; do sleep 0.2; done
+for i in $(seq 1 50); do
+    curl -sf -XPOST localhost:$PORT/documents -H 'Content-Type: application/json' \
+        -d "{\"title\":\"Doc $i\",\"content\":\"Document $i about topic $((i % 7)) with a few words.\"}" >/dev/null
+done
+stop
+
+printf '%-13s %4s %10s %9s %7s %12s\n' variant run started_s ready_ms rss_mb rss_load_mb
+for variant in $VARIANTS; do
+    if ! available "$variant"; then
+        echo "$variant: not built, skipped" >&2
+        continue
+    fi
+    for run in $(seq 1 "$RUNS"); do
+        t0=$(date +%s%N)
+        launch "$variant"
+        until curl -sf localhost:$PORT/actuator/health/readiness >/dev/null; do
+            if (( ($(date +%s%N) - t0) / 1000000 > 120000 )); then echo "$variant did not become ready" >&2; exit 1; fi
+            sleep 0.02
+        done
+        ready_ms=$((($(date +%s%N) - t0) / 1000000))
+        rss=$(rss_mb)
+        for i in $(seq 1 "$SEARCHES"); do
+            curl -sf -XPOST localhost:$PORT/documents/search -H 'Content-Type: application/json' \
+                -d "{\"query\":\"topic $((i % 7)) words $i\",\"nResults\":5}" >/dev/null
+        done
+        printf '%-13s %4s %10s %9s %7s %12s\n' "$variant" "$run" "$(started_s)" "$ready_ms" "$rss" "$(rss_mb)"
+        stop
+        sleep 1
+    done
+done
@@ -1,23 +1,91 @@
 package com.uymbot.docservice.config;
 
+import com.uymbot.docservice.observability.jfr.ChromaRequestEventFactory;
+import com.uymbot.docservice.resilience.BulkheadRequestFactory;
+import com.uymbot.docservice.resilience.Bulkheads;
+import com.uymbot.docservice.sharding.ShardRing;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class AppConfig {
 
     @Value("${chromadb.host}")
     private String chromaHost;
 
+    @Value("${chromadb.collection-name}")
+    private String collectionName;
+
+    @Value("${chromadb.sharding.shards:}")
+    private String shards;
+
+    @Value("${chromadb.sharding.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${http.client.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${http.client.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${http.client.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.socket-timeout:60s}")
+    private Duration socketTimeout;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .setSocketTimeout((int) socketTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .build())
+                .build();
+    }
+
+    /**
+     * HttpClient's built-in retries (which also replay 429/503 responses) are
+     * disabled; retry policy lives in the services that know what is safe to retry.
+     * Calls made for a request hold one of its lane's connections, see {@link Bulkheads}.
+     */
+    @Bean
+    public RestTemplate restTemplate(PoolingHttpClientConnectionManager httpConnectionManager, Bulkheads bulkheads) {
+        return new RestTemplate(new BulkheadRequestFactory(new ChromaRequestEventFactory(
+                new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                        .setConnectionManager(httpConnectionManager)
+                        .disableAutomaticRetries()
+                        .build())), bulkheads));
+    }
+
+    /** Leased / available / pending / max gauges for the shared connection pool. */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder httpConnectionPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(httpConnectionManager, "default");
     }
 
     @Bean
     public String chromaHost() {
         return chromaHost;
     }
+
+    /** Shards from {@code chromadb.sharding.shards}; a single shard on {@code chromadb.host} when unset. */
+    @Bean
+    public ShardRing shardRing() {
+        return new ShardRing(ShardRing.parse(shards, chromaHost, collectionName), virtualNodes);
+    }
 }
@@ -2,10 +2,14 @@ package com.uymbot.docservice.config;
 
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @Configuration
+@ImportRuntimeHints(OpenApiConfig.SwaggerUiHints.class)
 public class OpenApiConfig {
 
     @Bean
@@ -16,4 +20,16 @@ public class OpenApiConfig {
                         .description("CRUD operations for documents stored in a ChromaDB vector database.")
                         .version("1.0.0"));
     }
+
+    /**
+     * springdoc registers hints for its own model classes but not for the
+     * Swagger UI webjar, whose files a native image must embed to serve
+     * {@code /swagger-ui.html}.
+     */
+    static class SwaggerUiHints implements RuntimeHintsRegistrar {
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.resources().registerPattern("META-INF/resources/webjars/swagger-ui/**");
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package com.uymbot.docservice.config;
+
+import com.uymbot.docservice.resilience.BulkheadInterceptor;
+import com.uymbot.docservice.resilience.Lane;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final BulkheadInterceptor bulkheadInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(bulkheadInterceptor)
+                .addPathPatterns("/documents/**", "/shards/**", "/migrations/**")
+                .excludePathPatterns("/documents/health");
+    }
+
+    /**
+     * Applied by Spring Boot to the task executor that runs streaming
+     * responses, so their outbound calls stay in the request's {@link Lane}.
+     */
+    @Bean
+    public TaskDecorator laneTaskDecorator() {
+        return Lane::propagate;
+    }
+}
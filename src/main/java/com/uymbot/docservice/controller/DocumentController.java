@@ -1,11 +1,25 @@
 package com.uymbot.docservice.controller;
 
+import com.uymbot.docservice.dto.BatchDeleteRequest;
+import com.uymbot.docservice.dto.BatchDeleteResponse;
+import com.uymbot.docservice.dto.BatchGetRequest;
+import com.uymbot.docservice.dto.BatchGetResponse;
+import com.uymbot.docservice.dto.BatchSearchRequest;
+import com.uymbot.docservice.dto.BatchSearchResponse;
 import com.uymbot.docservice.dto.DocumentRequest;
 import com.uymbot.docservice.dto.DocumentResponse;
 import com.uymbot.docservice.dto.DocumentUpdateRequest;
+import com.uymbot.docservice.dto.DocumentUploadResponse;
 import com.uymbot.docservice.dto.RagImportRequest;
 import com.uymbot.docservice.dto.SearchRequest;
+import com.uymbot.docservice.dto.SnapshotRestoreResponse;
+import com.uymbot.docservice.exception.InvalidUploadException;
+import com.uymbot.docservice.resilience.BulkheadLane;
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.service.DocumentExportService;
 import com.uymbot.docservice.service.DocumentService;
+import com.uymbot.docservice.service.SnapshotService;
+import com.uymbot.docservice.snapshot.VectorEncoding;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,12 +29,26 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/documents")
@@ -30,9 +58,12 @@ import java.util.Map;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final DocumentExportService documentExportService;
+    private final SnapshotService snapshotService;
 
     // ------------------------------------------------------------------ CREATE
     @PostMapping
+    @BulkheadLane(Lane.INGEST)
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Create a new document",
                description = "Splits the content into optimal embedding chunks, embeds each chunk, "
@@ -43,6 +74,30 @@ public class DocumentController {
         return documentService.create(req);
     }
 
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @BulkheadLane(Lane.INGEST)
+    @ResponseStatus(HttpStatus.CREATED)
+    @Operation(summary = "Upload a text file as a document",
+               description = "Chunks, embeds and stores the file as it is read, in batches, without loading it "
+                       + "into memory. The text charset is taken from the file part's Content-Type (default UTF-8). "
+                       + "Returns counts instead of the chunks.")
+    @ApiResponse(responseCode = "201", description = "Document chunks created")
+    @ApiResponse(responseCode = "400", description = "Missing, empty or text-less file")
+    @ApiResponse(responseCode = "413", description = "File larger than the configured upload limit")
+    public DocumentUploadResponse upload(
+            @Parameter(description = "Plain text file")
+            @RequestPart("file") MultipartFile file,
+            @Parameter(description = "Document title; defaults to the file name")
+            @RequestParam(required = false) String title,
+            @Parameter(description = "Metadata stored with every chunk, as a JSON part")
+            @RequestPart(value = "metadata", required = false) Map<String, Object> metadata) throws IOException {
+        if (file.isEmpty()) throw new InvalidUploadException("File is empty");
+        String documentTitle = title != null && !title.isBlank() ? title
+                : file.getOriginalFilename() != null && !file.getOriginalFilename().isBlank()
+                        ? file.getOriginalFilename() : "Uploaded document";
+        return documentService.upload(documentTitle, metadata, file.getResource(), charset(file));
+    }
+
     // -------------------------------------------------------------------- LIST
     @GetMapping
     @Operation(summary = "List all documents")
@@ -53,6 +108,67 @@ public class DocumentController {
         return documentService.listAll(limit, offset);
     }
 
+    // ------------------------------------------------------------------ EXPORT
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @BulkheadLane(Lane.INGEST)
+    @Operation(summary = "Export the whole collection as NDJSON",
+               description = "Streams every chunk as one JSON object per line while paging through ChromaDB. "
+                       + "Only the requested fields are written; embeddings are fetched only when requested.")
+    @ApiResponse(responseCode = "200", description = "NDJSON stream of chunks")
+    @ApiResponse(responseCode = "400", description = "Unknown field or invalid page size")
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "Fields to write: id, title, content, metadata, embedding")
+            @RequestParam(defaultValue = "id,title,content,metadata")
+            List<@Pattern(regexp = "id|title|content|metadata|embedding", message = "unknown field") String> fields,
+            @Parameter(description = "Chunks fetched per ChromaDB call")
+            @RequestParam(defaultValue = "500") @Min(1) @Max(5000) int pageSize) {
+        Set<String> projection = new HashSet<>(fields);
+        StreamingResponseBody body = out -> documentExportService.export(out, projection, pageSize);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // ---------------------------------------------------------------- SNAPSHOT
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @BulkheadLane(Lane.INGEST)
+    @Operation(summary = "Download a binary snapshot of the collection",
+               description = "Streams ids, documents, metadata and embeddings in a compact block format "
+                       + "(deflated text columns, float32 or float16 vector blocks, CRC per block). "
+                       + "Restore it with POST /documents/snapshot/restore without re-embedding.")
+    @ApiResponse(responseCode = "200", description = "Snapshot stream")
+    @ApiResponse(responseCode = "400", description = "Invalid encoding or page size")
+    public ResponseEntity<StreamingResponseBody> snapshot(
+            @Parameter(description = "Vector encoding: float32 (lossless) or float16 (half the size)")
+            @RequestParam(defaultValue = "float32") @Pattern(regexp = "float32|float16", message = "unknown encoding") String encoding,
+            @Parameter(description = "Chunks fetched per ChromaDB call; one snapshot block per page")
+            @RequestParam(defaultValue = "1000") @Min(1) @Max(5000) int pageSize) {
+        VectorEncoding vectorEncoding = VectorEncoding.valueOf(encoding.toUpperCase(Locale.ROOT));
+        StreamingResponseBody body = out -> snapshotService.snapshot(out, vectorEncoding, pageSize);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("documents.snap").build().toString())
+                .body(body);
+    }
+
+    @PostMapping(value = "/snapshot/restore", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @BulkheadLane(Lane.INGEST)
+    @Operation(summary = "Restore a binary snapshot",
+               description = "Upserts every chunk of the uploaded snapshot, embeddings included, into the given "
+                       + "collection (created if missing; default: this service's collection). "
+                       + "Does not call the embedding API.")
+    @ApiResponse(responseCode = "200", description = "Snapshot restored")
+    @ApiResponse(responseCode = "400", description = "Truncated or corrupted snapshot, or invalid parameters")
+    public SnapshotRestoreResponse restore(
+            @Parameter(description = "Target collection name; defaults to this service's collection")
+            @RequestParam(required = false)
+            @Pattern(regexp = "[a-zA-Z0-9][a-zA-Z0-9._-]{1,61}[a-zA-Z0-9]", message = "invalid collection name") String collection,
+            @Parameter(description = "Chunks per ChromaDB upsert call")
+            @RequestParam(defaultValue = "1000") @Min(1) @Max(5000) int batchSize,
+            InputStream body) throws IOException {
+        return snapshotService.restore(body, collection, batchSize);
+    }
+
     // -------------------------------------------------------------------- GET
     @GetMapping("/{id}")
     @Operation(summary = "Get a document by ID")
@@ -82,8 +198,30 @@ public class DocumentController {
         documentService.delete(id);
     }
 
+    // ------------------------------------------------------------------- BATCH
+    @PostMapping("/batch-get")
+    @Operation(summary = "Get several documents by ID",
+               description = "Fetches up to 1000 chunks with a single ChromaDB call. "
+                       + "Ids that do not exist are listed in notFound.")
+    @ApiResponse(responseCode = "200", description = "Documents found and ids not found")
+    @ApiResponse(responseCode = "400", description = "Validation error")
+    public BatchGetResponse batchGet(@Valid @RequestBody BatchGetRequest req) {
+        return documentService.batchGet(req.getIds());
+    }
+
+    @PostMapping("/batch-delete")
+    @Operation(summary = "Delete several documents by ID list or metadata filter",
+               description = "Deletes the selected chunks with a single ChromaDB delete call. "
+                       + "Ids that do not exist are listed in notFound.")
+    @ApiResponse(responseCode = "200", description = "Deleted ids and ids not found")
+    @ApiResponse(responseCode = "400", description = "Validation error")
+    public BatchDeleteResponse batchDelete(@Valid @RequestBody BatchDeleteRequest req) {
+        return documentService.batchDelete(req);
+    }
+
     // ------------------------------------------------------------------ SEARCH
     @PostMapping("/search")
+    @BulkheadLane(Lane.SEARCH)
     @Operation(summary = "Semantic similarity search",
                description = "Embeds the query text and returns the most similar documents.")
     @ApiResponse(responseCode = "200", description = "Search results")
@@ -91,8 +229,21 @@ public class DocumentController {
         return documentService.search(req.getQuery(), req.getNResults());
     }
 
+    @PostMapping("/search/batch")
+    @BulkheadLane(Lane.SEARCH)
+    @Operation(summary = "Multi-query semantic search",
+               description = "Embeds up to 32 queries with a single embeddings request and runs them as one "
+                       + "ChromaDB query. Returns the results of each query and, with merge, one ranking "
+                       + "fused by reciprocal rank and de-duplicated by id.")
+    @ApiResponse(responseCode = "200", description = "Results per query and optional merged ranking")
+    @ApiResponse(responseCode = "400", description = "Validation error")
+    public BatchSearchResponse searchBatch(@Valid @RequestBody BatchSearchRequest req) {
+        return documentService.searchBatch(req.getQueries(), req.getNResults(), req.isMerge());
+    }
+
     // ------------------------------------------------------------ IMPORT FROM RAG
     @PostMapping("/import/rag/{ragDocumentId}")
+    @BulkheadLane(Lane.INGEST)
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Import a document from the RAG Chunking/Parser service",
                description = "Fetches document metadata and chunks from the RAG service, "
@@ -113,4 +264,16 @@ public class DocumentController {
     public Map<String, String> health() {
         return Map.of("status", "ok");
     }
+
+    private static Charset charset(MultipartFile file) {
+        try {
+            if (file.getContentType() != null) {
+                Charset charset = MediaType.parseMediaType(file.getContentType()).getCharset();
+                if (charset != null) return charset;
+            }
+        } catch (InvalidMediaTypeException e) {
+            // not a usable Content-Type, fall through to UTF-8
+        }
+        return StandardCharsets.UTF_8;
+    }
 }
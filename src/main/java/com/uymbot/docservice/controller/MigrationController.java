@@ -0,0 +1,72 @@
+package com.uymbot.docservice.controller;
+
+import com.uymbot.docservice.dto.EmbeddingMigrationRequest;
+import com.uymbot.docservice.dto.MigrationStatus;
+import com.uymbot.docservice.migration.EmbeddingMigrationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/migrations/embedding")
+@RequiredArgsConstructor
+@Tag(name = "Migrations", description = "Background re-embedding of the collection with another model or dimension")
+public class MigrationController {
+
+    private final EmbeddingMigrationService migrationService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Start re-embedding the collection into a new collection",
+               description = "Writes are mirrored into the target from now on; a throttled background job copies "
+                       + "the existing chunks, then the service switches to the target atomically.")
+    @ApiResponse(responseCode = "202", description = "Migration started")
+    @ApiResponse(responseCode = "409", description = "A migration is already running or the target is in use")
+    public MigrationStatus start(@Valid @RequestBody EmbeddingMigrationRequest req) {
+        return migrationService.start(req);
+    }
+
+    @GetMapping
+    @Operation(summary = "Progress of the migration")
+    public MigrationStatus status() {
+        return migrationService.status();
+    }
+
+    @PostMapping("/pause")
+    @Operation(summary = "Pause the background copy; writes are still mirrored")
+    @ApiResponse(responseCode = "409", description = "No migration is running")
+    public MigrationStatus pause() {
+        return migrationService.pause();
+    }
+
+    @PostMapping("/resume")
+    @Operation(summary = "Continue a paused migration or retry a failed one from its last position")
+    @ApiResponse(responseCode = "409", description = "No migration is paused or failed")
+    public MigrationStatus resume() {
+        return migrationService.resume();
+    }
+
+    @PostMapping("/switch")
+    @Operation(summary = "Switch to the target of a migration started with switchWhenDone=false")
+    @ApiResponse(responseCode = "409", description = "No migration is ready to switch")
+    public MigrationStatus switchNow() {
+        return migrationService.switchNow();
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Abort the migration and drop the target collections")
+    @ApiResponse(responseCode = "409", description = "No migration to abort")
+    public MigrationStatus abort() {
+        return migrationService.abort();
+    }
+}
@@ -0,0 +1,53 @@
+package com.uymbot.docservice.controller;
+
+import com.uymbot.docservice.dto.ShardRebalanceResponse;
+import com.uymbot.docservice.dto.ShardStatus;
+import com.uymbot.docservice.resilience.BulkheadLane;
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.service.ShardRebalanceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/shards")
+@RequiredArgsConstructor
+@Validated
+@Tag(name = "Shards", description = "Shard layout and rebalancing of the ChromaDB collection")
+public class ShardController {
+
+    private final ShardRebalanceService shardRebalanceService;
+
+    @GetMapping
+    @Operation(summary = "List shards with their chunk counts")
+    @ApiResponse(responseCode = "200", description = "Shards in configuration order")
+    public List<ShardStatus> shards() {
+        return shardRebalanceService.status();
+    }
+
+    @PostMapping("/rebalance")
+    @BulkheadLane(Lane.INGEST)
+    @Operation(summary = "Move chunks to the shards the hash ring assigns them to",
+               description = "Run after adding a shard. Copies every misplaced chunk with its embedding to its "
+                       + "home shard, then deletes it from the old one. Idempotent; dryRun only counts.")
+    @ApiResponse(responseCode = "200", description = "Chunks scanned and moved")
+    public ShardRebalanceResponse rebalance(
+            @Parameter(description = "Only count the chunks that would move")
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @Parameter(description = "Chunks read per page and moved per upsert")
+            @RequestParam(defaultValue = "500") @Min(1) @Max(5000) int batchSize) {
+        return shardRebalanceService.rebalance(dryRun, batchSize);
+    }
+}
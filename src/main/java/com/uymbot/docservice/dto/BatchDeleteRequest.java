@@ -0,0 +1,38 @@
+package com.uymbot.docservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request body for deleting several documents at once; give either ids or where")
+public class BatchDeleteRequest {
+
+    @Size(max = 10000, message = "At most 10000 ids per request")
+    @Schema(description = "Chunk ids to delete", example = "[\"3f1c...\", \"9a2b...\"]")
+    private List<String> ids;
+
+    @Schema(description = "ChromaDB metadata filter selecting the chunks to delete",
+            example = "{\"ragDocumentId\": \"2b7e7c1a-5c1e-4d0f-9a51-0d3c2f1b8e44\"}")
+    private Map<String, Object> where;
+
+    @JsonIgnore
+    @Schema(hidden = true)
+    @AssertTrue(message = "Exactly one of ids or where must be given")
+    public boolean isSelectorValid() {
+        boolean hasIds = ids != null && !ids.isEmpty();
+        boolean hasWhere = where != null && !where.isEmpty();
+        return hasIds != hasWhere;
+    }
+}
@@ -0,0 +1,23 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a bulk delete")
+public class BatchDeleteResponse {
+
+    @Schema(description = "Ids that were deleted")
+    private List<String> deleted;
+
+    @Schema(description = "Requested ids that did not exist (always empty for where-based deletes)")
+    private List<String> notFound;
+}
@@ -0,0 +1,24 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request body for fetching several documents at once")
+public class BatchGetRequest {
+
+    @NotEmpty(message = "ids must not be empty")
+    @Size(max = 1000, message = "At most 1000 ids per request")
+    @Schema(description = "Chunk ids to fetch", example = "[\"3f1c...\", \"9a2b...\"]")
+    private List<String> ids;
+}
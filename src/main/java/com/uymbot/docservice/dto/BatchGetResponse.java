@@ -0,0 +1,23 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a multi-get")
+public class BatchGetResponse {
+
+    @Schema(description = "Documents found, in request order")
+    private List<DocumentResponse> documents;
+
+    @Schema(description = "Requested ids that do not exist")
+    private List<String> notFound;
+}
@@ -0,0 +1,44 @@
+package com.uymbot.docservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Several semantic search queries answered together")
+public class BatchSearchRequest {
+
+    @NotEmpty(message = "queries must not be empty")
+    @Size(max = 32, message = "At most 32 queries per request")
+    @Schema(description = "Natural language search queries, e.g. reformulations of one question",
+            example = "[\"programming language\", \"python tutorial\"]")
+    private List<@NotBlank(message = "Query must not be blank") String> queries;
+
+    // Lombok's getNResults() would otherwise make the JSON property "nresults"
+    @JsonProperty("nResults")
+    @JsonAlias("nresults")
+    @Min(1) @Max(50)
+    @Builder.Default
+    @Schema(description = "Maximum number of results per query and in the merged ranking",
+            defaultValue = "5", minimum = "1", maximum = "50")
+    private int nResults = 5;
+
+    @Builder.Default
+    @Schema(description = "Also return one ranking of all queries' results, fused by reciprocal rank "
+            + "and de-duplicated by id", defaultValue = "false")
+    private boolean merge = false;
+}
@@ -0,0 +1,25 @@
+package com.uymbot.docservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a multi-query search")
+public class BatchSearchResponse {
+
+    @Schema(description = "Results of each query, in request order, nearest first")
+    private List<List<DocumentResponse>> results;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Results of all queries fused into one ranking, best first; only when merge is set")
+    private List<RankedDocument> merged;
+}
@@ -1,11 +1,14 @@
 package com.uymbot.docservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -26,4 +29,13 @@ public class DocumentResponse {
 
     @Schema(description = "Key-value metadata")
     private Map<String, Object> metadata;
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    @Schema(description = "Chunks added by an update whose content was split; each carries partOf = this id")
+    private List<DocumentResponse> parts;
+
+    /** SHA-256 of {@link #content} as stored in ChromaDB; internal, not serialised. */
+    @JsonIgnore
+    @Schema(hidden = true)
+    private String contentHash;
 }
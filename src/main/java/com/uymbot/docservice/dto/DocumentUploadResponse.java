@@ -0,0 +1,38 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a file upload")
+public class DocumentUploadResponse {
+
+    @Schema(description = "Document id; chunk ids are <documentId>:<chunkIndex>")
+    private String documentId;
+
+    private String title;
+
+    @Schema(description = "Chunks the file was split into")
+    private int chunks;
+
+    @Schema(description = "Chunks stored, near-duplicates stored with another chunk's embedding included")
+    private int stored;
+
+    @Schema(description = "Near-duplicate chunks left out (dedup mode skip)")
+    private int skipped;
+
+    @Schema(description = "Near-duplicate chunks stored with another chunk's embedding (dedup mode link)")
+    private int linked;
+
+    @Schema(description = "Size of the uploaded file in bytes")
+    private long bytes;
+
+    @Schema(description = "Processing time in milliseconds")
+    private long tookMs;
+}
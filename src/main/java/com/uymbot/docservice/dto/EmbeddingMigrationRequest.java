@@ -0,0 +1,46 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Re-embeds the collection into a new collection and switches to it")
+public class EmbeddingMigrationRequest {
+
+    @NotBlank(message = "Target collection must not be blank")
+    @Pattern(regexp = "[a-zA-Z0-9][a-zA-Z0-9._-]{1,61}[a-zA-Z0-9]",
+             message = "Target must be a valid ChromaDB collection name")
+    @Schema(description = "New collection; with sharding every shard gets <shard collection>-<target>",
+            example = "documents-512")
+    private String target;
+
+    @Schema(description = "Embedding model; defaults to the one in use", example = "text-embedding-3-small")
+    private String model;
+
+    @Min(0) @Max(4096)
+    @Schema(description = "Output dimensions for text-embedding-3-* models; 0 = model default", example = "512")
+    private int dimensions;
+
+    @Min(1) @Max(10000)
+    @Schema(description = "Chunks re-embedded per second; defaults to docservice.migration.rate")
+    private Integer rate;
+
+    @Min(1) @Max(5000)
+    @Schema(description = "Chunks read per page; defaults to docservice.migration.page-size")
+    private Integer pageSize;
+
+    @Builder.Default
+    @Schema(description = "Switch to the new collection as soon as it is complete; otherwise wait for "
+            + "POST /migrations/embedding/switch", defaultValue = "true")
+    private boolean switchWhenDone = true;
+}
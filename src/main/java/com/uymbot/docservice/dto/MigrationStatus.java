@@ -0,0 +1,73 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Progress of the re-embedding migration")
+public class MigrationStatus {
+
+    @Schema(description = "IDLE, RUNNING, PAUSED, READY (complete, waiting for the switch), SWITCHED, FAILED or ABORTED")
+    private String state;
+
+    @Schema(description = "COPY (first pass), VERIFY (second pass from the start), SWEEP (removing deleted chunks) "
+            + "or SWITCH")
+    private String phase;
+
+    @Schema(description = "Collection being filled")
+    private String target;
+
+    @Schema(description = "Embedding spec in use by the service")
+    private String sourceSpec;
+
+    @Schema(description = "Embedding spec of the target")
+    private String targetSpec;
+
+    @Schema(description = "Shard being scanned")
+    private int shard;
+
+    @Schema(description = "Scan offset within the shard")
+    private int offset;
+
+    @Schema(description = "Chunks examined")
+    private long scanned;
+
+    @Schema(description = "Chunks re-embedded and written to the target")
+    private long copied;
+
+    @Schema(description = "Chunks already up to date in the target")
+    private long unchanged;
+
+    @Schema(description = "Chunks removed from the target because they were deleted from the source")
+    private long removed;
+
+    @Schema(description = "Chunks without content that could not be embedded")
+    private long skipped;
+
+    @Schema(description = "Chunks written by the service and mirrored into the target")
+    private long mirrored;
+
+    @Schema(description = "Mirrored writes that failed and will be copied again")
+    private long mirrorFailures;
+
+    @Schema(description = "Chunks waiting to be copied again")
+    private int dirty;
+
+    @Schema(description = "Chunks re-embedded per second, at most")
+    private double rate;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    @Schema(description = "Why the migration failed")
+    private String error;
+}
@@ -0,0 +1,35 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Document in a merged multi-query ranking")
+public class RankedDocument {
+
+    @Schema(description = "Unique document ID (UUID)")
+    private String id;
+
+    @Schema(description = "Title of the document")
+    private String title;
+
+    @Schema(description = "Text content of the document")
+    private String content;
+
+    @Schema(description = "Key-value metadata")
+    private Map<String, Object> metadata;
+
+    @Schema(description = "Reciprocal rank fusion score: sum of 1 / (60 + rank) over the queries that found it")
+    private double score;
+
+    @Schema(description = "Number of queries whose results contain the document")
+    private int matches;
+}
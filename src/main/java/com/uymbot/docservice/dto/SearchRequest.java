@@ -1,5 +1,7 @@
 package com.uymbot.docservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -20,6 +22,9 @@ public class SearchRequest {
     @Schema(description = "Natural language search query", example = "programming language")
     private String query;
 
+    // Lombok's getNResults() would otherwise make the JSON property "nresults"
+    @JsonProperty("nResults")
+    @JsonAlias("nresults")
     @Min(1) @Max(50)
     @Schema(description = "Maximum number of results to return", defaultValue = "5", minimum = "1", maximum = "50")
     private int nResults = 5;
@@ -0,0 +1,32 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of moving chunks to the shards the hash ring assigns them to")
+public class ShardRebalanceResponse {
+
+    @Schema(description = "True if chunks were only counted, not moved")
+    private boolean dryRun;
+
+    @Schema(description = "Chunks examined")
+    private long scanned;
+
+    @Schema(description = "Chunks moved (or, in a dry run, that would be moved)")
+    private long moved;
+
+    @Schema(description = "Moved chunks per 'source -> target' shard pair")
+    private Map<String, Long> moves;
+
+    @Schema(description = "Wall-clock duration in milliseconds")
+    private long tookMs;
+}
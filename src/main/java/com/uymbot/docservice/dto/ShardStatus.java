@@ -0,0 +1,27 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "One shard of the collection")
+public class ShardStatus {
+
+    @Schema(description = "Position in chromadb.sharding.shards")
+    private int index;
+
+    @Schema(description = "ChromaDB node base URL")
+    private String host;
+
+    @Schema(description = "Collection name on that node")
+    private String collection;
+
+    @Schema(description = "Chunks stored on the shard")
+    private int count;
+}
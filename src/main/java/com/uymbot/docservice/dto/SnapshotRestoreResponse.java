@@ -0,0 +1,38 @@
+package com.uymbot.docservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of restoring a binary snapshot")
+public class SnapshotRestoreResponse {
+
+    @Schema(description = "Collection the chunks were written to")
+    private String collection;
+
+    @Schema(description = "Collection the snapshot was taken from")
+    private String sourceCollection;
+
+    @Schema(description = "When the snapshot was taken")
+    private Instant snapshotCreatedAt;
+
+    @Schema(description = "Vector encoding of the snapshot (float32 or float16)")
+    private String encoding;
+
+    @Schema(description = "Chunks written")
+    private long restored;
+
+    @Schema(description = "ChromaDB upsert calls made")
+    private int batches;
+
+    @Schema(description = "Wall-clock duration of the restore in milliseconds")
+    private long tookMs;
+}
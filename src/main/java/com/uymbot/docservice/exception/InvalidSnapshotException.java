@@ -0,0 +1,13 @@
+package com.uymbot.docservice.exception;
+
+/** An uploaded snapshot is truncated, corrupted or not a snapshot at all; mapped to {@code 400}. */
+public class InvalidSnapshotException extends RuntimeException {
+
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+
+    public InvalidSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
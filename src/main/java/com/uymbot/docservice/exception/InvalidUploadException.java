@@ -0,0 +1,9 @@
+package com.uymbot.docservice.exception;
+
+/** An uploaded file is empty or contains no text to store; mapped to {@code 400}. */
+public class InvalidUploadException extends RuntimeException {
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.uymbot.docservice.exception;
+
+/** A migration request does not fit the current migration state, e.g. one is already running; mapped to {@code 409}. */
+public class MigrationConflictException extends RuntimeException {
+
+    public MigrationConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.uymbot.docservice.exception;
+
+import java.time.Duration;
+
+/**
+ * A dependency is temporarily unable to serve the request; mapped to
+ * {@code 503} with a {@code Retry-After} header.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public ServiceUnavailableException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,609 @@
+package com.uymbot.docservice.migration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.EmbeddingMigrationRequest;
+import com.uymbot.docservice.dto.MigrationStatus;
+import com.uymbot.docservice.exception.MigrationConflictException;
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.CollectionScanner.Cursor;
+import com.uymbot.docservice.service.EmbeddingService;
+import com.uymbot.docservice.service.EmbeddingSpec;
+import com.uymbot.docservice.service.ShadowCollection;
+import com.uymbot.docservice.sharding.Shard;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-embeds the collection into a new collection in the background and
+ * switches the service over to it, e.g. to move to reduced-dimension
+ * {@code text-embedding-3-*} vectors.
+ * <p>
+ * From the start, {@link ChromaDbService} mirrors every write into the target
+ * (see {@link ShadowCollection}), so the service keeps serving from and
+ * writing to the old collection throughout. The job then runs:
+ * </p>
+ * <ol>
+ *   <li>{@code COPY}: scans every shard and re-embeds each chunk that is not
+ *       in the target with the same content and metadata yet, throttled to
+ *       {@code rate} chunks per second at {@link Priority#BULK};</li>
+ *   <li>{@code VERIFY}: a second scan from the start, which only re-embeds
+ *       chunks whose mirrored write was lost, e.g. in a restart;</li>
+ *   <li>{@code SWEEP}: removes chunks from the target that are gone from the
+ *       source;</li>
+ *   <li>{@code SWITCH}: with writes drained, copies the last dirty chunks and
+ *       atomically switches collection and embedding spec.</li>
+ * </ol>
+ * <p>
+ * The scan position is checkpointed in the target collection's metadata.
+ * After a restart the service resumes mirroring as soon as it resolves the
+ * collection and the job resumes a {@code COPY} from its checkpoint; any
+ * later phase restarts at {@code VERIFY}, because chunks whose mirrored write
+ * failed before the restart are only known in memory.
+ * </p>
+ */
+@Slf4j
+@Service
+@RegisterReflectionForBinding(EmbeddingMigrationService.Checkpoint.class)   // JSON in collection metadata
+public class EmbeddingMigrationService {
+
+    enum State { IDLE, RUNNING, PAUSED, READY, SWITCHED, FAILED, ABORTED }
+
+    enum Phase { COPY, VERIFY, SWEEP, SWITCH }
+
+    private static final List<String> INCLUDE = List.of("documents", "metadatas");
+    private static final int MAX_RECONCILE_ROUNDS = 5;
+    private static final int MAX_RESCANS = 3;
+
+    private final ChromaDbService chromaDbService;
+    private final CollectionScanner scanner;
+    private final EmbeddingService embeddingService;
+    private final ObjectMapper objectMapper;
+    private final boolean autoResume;
+    private final double defaultRate;
+    private final int defaultPageSize;
+    private final long checkpointIntervalNanos;
+    private final Duration drainTimeout;
+
+    private final Object monitor = new Object();
+    private volatile State state = State.IDLE;
+    private volatile Phase phase;
+    private volatile String target;
+    private volatile EmbeddingSpec spec;
+    private volatile double rate;
+    private volatile int pageSize;
+    private volatile boolean switchWhenDone;
+    private volatile int shardIndex;
+    private volatile Cursor cursor = Cursor.START;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile int vectorSize;
+    private Thread worker;
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /** Only touched by the worker thread. */
+    private long nextSlot;
+    private long lastCheckpoint;
+
+    public EmbeddingMigrationService(ChromaDbService chromaDbService,
+                                     CollectionScanner scanner,
+                                     EmbeddingService embeddingService,
+                                     ObjectMapper objectMapper,
+                                     @Value("${docservice.migration.auto-resume:true}") boolean autoResume,
+                                     @Value("${docservice.migration.rate:20}") double defaultRate,
+                                     @Value("${docservice.migration.page-size:100}") int defaultPageSize,
+                                     @Value("${docservice.migration.checkpoint-interval:10s}") Duration checkpointInterval,
+                                     @Value("${docservice.migration.drain-timeout:30s}") Duration drainTimeout,
+                                     MeterRegistry registry) {
+        this.chromaDbService = chromaDbService;
+        this.scanner = scanner;
+        this.embeddingService = embeddingService;
+        this.objectMapper = objectMapper;
+        this.autoResume = autoResume;
+        this.defaultRate = defaultRate;
+        this.defaultPageSize = defaultPageSize;
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.drainTimeout = drainTimeout;
+
+        Map<String, AtomicLong> results = Map.of("copied", copied, "unchanged", unchanged,
+                "removed", removed, "skipped", skipped);
+        results.forEach((result, count) -> FunctionCounter.builder("docservice.migration.chunks", count,
+                        AtomicLong::doubleValue)
+                .description("Chunks handled by the re-embedding migration")
+                .tag("result", result)
+                .register(registry));
+        Gauge.builder("docservice.migration.state", this, m -> m.state.ordinal())
+                .description("Migration state: 0 idle, 1 running, 2 paused, 3 ready, 4 switched, 5 failed, 6 aborted")
+                .register(registry);
+        Gauge.builder("docservice.migration.dirty", this, m -> {
+                    ShadowCollection shadow = chromaDbService.shadow();
+                    return shadow == null ? 0 : shadow.dirtyCount();
+                })
+                .description("Chunks waiting to be copied to the migration target again")
+                .register(registry);
+    }
+
+    /** Starts mirroring writes into {@code request.target} and the background copy. */
+    public MigrationStatus start(EmbeddingMigrationRequest request) {
+        synchronized (monitor) {
+            if (state == State.RUNNING || state == State.PAUSED || state == State.READY) {
+                throw new MigrationConflictException("A migration into '" + target + "' is " + state);
+            }
+            String model = request.getModel() == null || request.getModel().isBlank()
+                    ? embeddingService.spec().model() : request.getModel();
+            EmbeddingSpec targetSpec = new EmbeddingSpec(model, request.getDimensions());
+            if (targetSpec.equals(embeddingService.spec())) {
+                throw new MigrationConflictException("The collection already uses " + targetSpec);
+            }
+            chromaDbService.startShadow(request.getTarget(), targetSpec);
+
+            target = request.getTarget();
+            spec = targetSpec;
+            rate = request.getRate() != null ? request.getRate() : defaultRate;
+            pageSize = request.getPageSize() != null ? request.getPageSize() : defaultPageSize;
+            switchWhenDone = request.isSwitchWhenDone();
+            List.of(scanned, copied, unchanged, removed, skipped).forEach(c -> c.set(0));
+            startedAt = Instant.now();
+            finishedAt = null;
+            error = null;
+            vectorSize = 0;
+            startPhase(Phase.COPY);
+            state = State.RUNNING;
+            launch();
+            log.info("Migration into '{}' ({}) started at {} chunk(s)/s", target, spec, rate);
+            return status();
+        }
+    }
+
+    public MigrationStatus pause() {
+        synchronized (monitor) {
+            if (state != State.RUNNING) throw new MigrationConflictException("No migration is running");
+            state = State.PAUSED;
+            return status();
+        }
+    }
+
+    /** Continues a paused migration, or retries a failed one from its last position. */
+    public MigrationStatus resume() {
+        synchronized (monitor) {
+            if (state != State.PAUSED && !(state == State.FAILED && chromaDbService.shadow() != null)) {
+                throw new MigrationConflictException("No migration is paused or failed");
+            }
+            state = State.RUNNING;
+            error = null;
+            if (worker == null || !worker.isAlive()) launch();
+            monitor.notifyAll();
+            return status();
+        }
+    }
+
+    /** Switches to a migration that finished copying and was started without {@code switchWhenDone}. */
+    public MigrationStatus switchNow() {
+        synchronized (monitor) {
+            if (state != State.READY) throw new MigrationConflictException("No migration is ready to switch");
+            switchWhenDone = true;
+            state = State.RUNNING;
+            launch();
+            return status();
+        }
+    }
+
+    /** Stops the job and mirroring and drops the target collections. */
+    public MigrationStatus abort() {
+        Thread stopped;
+        synchronized (monitor) {
+            if (chromaDbService.shadow() == null) throw new MigrationConflictException("No migration to abort");
+            state = State.ABORTED;
+            stopped = worker;
+            monitor.notifyAll();
+        }
+        join(stopped);
+        chromaDbService.stopShadow(true);
+        finishedAt = Instant.now();
+        log.info("Migration into '{}' aborted", target);
+        return status();
+    }
+
+    public MigrationStatus status() {
+        ShadowCollection shadow = chromaDbService.shadow();
+        return MigrationStatus.builder()
+                .state(state.name())
+                .phase(phase == null ? null : phase.name())
+                .target(target)
+                .sourceSpec(embeddingService.spec().toString())
+                .targetSpec(spec == null ? null : spec.toString())
+                .shard(shardIndex)
+                .offset(cursor.offset())
+                .scanned(scanned.get())
+                .copied(copied.get())
+                .unchanged(unchanged.get())
+                .removed(removed.get())
+                .skipped(skipped.get())
+                .mirrored(shadow == null ? 0 : shadow.mirrored())
+                .mirrorFailures(shadow == null ? 0 : shadow.mirrorFailures())
+                .dirty(shadow == null ? 0 : shadow.dirtyCount())
+                .rate(rate)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+
+    /** Picks up a migration that was running when the service stopped. */
+    @EventListener(ApplicationReadyEvent.class)
+    void resumeAfterRestart() {
+        ShadowCollection shadow;
+        Checkpoint checkpoint;
+        try {
+            chromaDbService.resolveCollections();
+            shadow = chromaDbService.shadow();
+            if (shadow == null) return;
+            checkpoint = readCheckpoint();
+        } catch (RuntimeException e) {
+            log.warn("Could not check for an interrupted migration: {}", e.getMessage());
+            return;
+        }
+        synchronized (monitor) {
+            if (state != State.IDLE) return;
+            target = shadow.name();
+            spec = shadow.spec();
+            rate = checkpoint != null ? checkpoint.rate() : defaultRate;
+            pageSize = checkpoint != null ? checkpoint.pageSize() : defaultPageSize;
+            switchWhenDone = checkpoint == null || checkpoint.switchWhenDone();
+            startedAt = checkpoint != null ? Instant.parse(checkpoint.startedAt()) : Instant.now();
+            if (checkpoint != null && Phase.COPY.name().equals(checkpoint.phase())) {
+                phase = Phase.COPY;
+                shardIndex = checkpoint.shard();
+                cursor = new Cursor(checkpoint.offset(), checkpoint.lastId());
+                scanned.set(checkpoint.scanned());
+                copied.set(checkpoint.copied());
+                unchanged.set(checkpoint.unchanged());
+            } else {
+                startPhase(checkpoint == null ? Phase.COPY : Phase.VERIFY);
+            }
+            state = autoResume ? State.RUNNING : State.PAUSED;
+            if (autoResume) launch();
+            log.info("Migration into '{}' ({}) found at {} shard {} offset {}, {}", target, spec, phase,
+                    shardIndex, cursor.offset(), autoResume ? "resuming" : "paused until resumed");
+        }
+    }
+
+    // ------------------------------------------------------------------ job
+    private void launch() {
+        worker = new Thread(Lane.INGEST.wrap(this::run), "embedding-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void run() {
+        try {
+            ShadowCollection shadow = chromaDbService.shadow();
+            if (shadow == null) throw new IllegalStateException("Mirroring into '" + target + "' is not active");
+            if (phase == Phase.COPY) {
+                pass(shadow);
+                startPhase(Phase.VERIFY);
+            }
+            if (phase == Phase.VERIFY) {
+                pass(shadow);
+                startPhase(Phase.SWEEP);
+            }
+            if (phase == Phase.SWEEP) {
+                sweep(shadow);
+                reconcile(shadow);
+                startPhase(Phase.SWITCH);
+            }
+            if (!switchWhenDone) {
+                synchronized (monitor) {
+                    if (state == State.RUNNING) state = State.READY;
+                }
+                log.info("Migration into '{}' complete, mirroring until POST /migrations/embedding/switch", target);
+                return;
+            }
+            awaitRunnable();
+            if (reconcile(shadow) > 0) {
+                throw new IllegalStateException(shadow.dirtyCount() + " chunk(s) could not be copied");
+            }
+            chromaDbService.switchToShadow(drainTimeout, vectorSize, () -> reconcile(shadow));
+            finishedAt = Instant.now();
+            synchronized (monitor) {
+                state = State.SWITCHED;
+            }
+            log.info("Migration into '{}' finished: {} copied, {} unchanged, {} removed, {} skipped in {} s",
+                    target, copied, unchanged, removed, skipped,
+                    Duration.between(startedAt, finishedAt).toSeconds());
+        } catch (Stopped e) {
+            if (state != State.ABORTED) saveCheckpoint(true);
+        } catch (Exception e) {
+            if (state == State.ABORTED) return;
+            log.error("Migration into '{}' failed in {}", target, phase, e);
+            error = e.getMessage();
+            finishedAt = Instant.now();
+            synchronized (monitor) {
+                if (state != State.ABORTED) state = State.FAILED;
+            }
+            saveCheckpoint(true);
+        }
+    }
+
+    /** Scans every shard from the current position and brings the target's copy of each chunk up to date. */
+    private void pass(ShadowCollection shadow) throws IOException {
+        List<Shard> shards = chromaDbService.shards();
+        int rescans = 0;
+        while (shardIndex < shards.size()) {
+            Shard shard = shards.get(shardIndex);
+            long[] readTime = {shadow.now()};
+            try {
+                scanner.scan(shard, INCLUDE, pageSize, cursor, (page, from, next) -> {
+                    awaitRunnable();
+                    syncPage(shadow, shard, page, from, readTime[0]);
+                    chromaDbService.releaseShadowStamps(readTime[0]);
+                    readTime[0] = shadow.now();
+                    cursor = next;
+                    saveCheckpoint(false);
+                });
+            } catch (CollectionScanner.CursorLostException e) {
+                // chunks around the position were deleted; up-to-date chunks are skipped cheaply on the rescan
+                if (++rescans > MAX_RESCANS) throw e;
+                log.warn("Migration lost its position on shard {}, rescanning it: {}", shard, e.getMessage());
+                cursor = Cursor.START;
+                continue;
+            }
+            shardIndex++;
+            cursor = Cursor.START;
+            rescans = 0;
+            saveCheckpoint(true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void syncPage(ShadowCollection shadow, Shard shard, Map<?, ?> page, int from, long readTime) {
+        List<String> pageIds = (List<String>) page.get("ids");
+        List<String> ids = pageIds.subList(from, pageIds.size());
+        Map<?, ?> existing = chromaDbService.getShadow(shard, ids, INCLUDE);
+        Map<Object, Integer> existingRows = new HashMap<>();
+        List<?> existingIds = (List<?>) existing.get("ids");
+        if (existingIds != null) {
+            for (int i = 0; i < existingIds.size(); i++) existingRows.put(existingIds.get(i), i);
+        }
+
+        Rows copy = new Rows();
+        for (int i = from; i < pageIds.size(); i++) {
+            scanned.incrementAndGet();
+            String id = pageIds.get(i);
+            String document = (String) CollectionScanner.row(page, "documents", i);
+            Map<String, Object> metadata = (Map<String, Object>) CollectionScanner.row(page, "metadatas", i);
+            Integer row = existingRows.get(id);
+            if (row != null && Objects.equals(document, CollectionScanner.row(existing, "documents", row))
+                    && Objects.equals(metadata, CollectionScanner.row(existing, "metadatas", row))) {
+                unchanged.incrementAndGet();
+                continue;
+            }
+            if (document == null || document.isBlank()) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            pace();
+            copy.add(id, document, metadata, embed(document));
+        }
+        if (!copy.ids.isEmpty()) {
+            copied.addAndGet(chromaDbService.copyToShadow(shard, readTime, copy.ids, copy.documents,
+                    copy.metadatas, copy.embeddings));
+        }
+    }
+
+    /** Removes chunks from the target that no longer exist in the source. */
+    private void sweep(ShadowCollection shadow) throws IOException {
+        List<Shard> shards = chromaDbService.shards();
+        while (shardIndex < shards.size()) {
+            Shard shard = shards.get(shardIndex);
+            scanner.scan((limit, offset, include) -> chromaDbService.listShadow(shard, limit, offset, include),
+                    List.of(), pageSize, Cursor.START, (page, from, next) -> {
+                        awaitRunnable();
+                        List<?> pageIds = (List<?>) page.get("ids");
+                        List<String> ids = new ArrayList<>();
+                        for (int i = from; i < pageIds.size(); i++) ids.add((String) pageIds.get(i));
+                        long readTime = shadow.now();
+                        Set<Object> present = new HashSet<>(
+                                (List<?>) chromaDbService.getConsistent(shard, ids, List.of()).get("ids"));
+                        List<String> gone = ids.stream().filter(id -> !present.contains(id)).toList();
+                        if (!gone.isEmpty()) removed.addAndGet(chromaDbService.deleteFromShadow(shard, readTime, gone));
+                    });
+            shardIndex++;
+            saveCheckpoint(true);
+        }
+    }
+
+    /**
+     * Copies the dirty chunks again from wherever they are in the source, and
+     * deletes those that are gone from the target.
+     *
+     * @return chunks still dirty afterwards
+     */
+    @SuppressWarnings("unchecked")
+    private int reconcile(ShadowCollection shadow) {
+        for (int round = 0; round < MAX_RECONCILE_ROUNDS && shadow.dirtyCount() > 0; round++) {
+            List<String> dirty = shadow.takeDirty();
+            try {
+                long readTime = shadow.now();
+                Set<String> remaining = new LinkedHashSet<>(dirty);
+                for (Shard shard : chromaDbService.shards()) {
+                    if (remaining.isEmpty()) break;
+                    Map<?, ?> found = chromaDbService.getConsistent(shard, List.copyOf(remaining), INCLUDE);
+                    List<String> foundIds = (List<String>) found.get("ids");
+                    if (foundIds == null || foundIds.isEmpty()) continue;
+                    Rows copy = new Rows();
+                    for (int i = 0; i < foundIds.size(); i++) {
+                        String document = (String) CollectionScanner.row(found, "documents", i);
+                        remaining.remove(foundIds.get(i));
+                        if (document == null || document.isBlank()) continue;
+                        copy.add(foundIds.get(i), document,
+                                (Map<String, Object>) CollectionScanner.row(found, "metadatas", i), embed(document));
+                    }
+                    if (!copy.ids.isEmpty()) {
+                        chromaDbService.copyToShadow(shard, readTime, copy.ids, copy.documents,
+                                copy.metadatas, copy.embeddings);
+                    }
+                }
+                if (!remaining.isEmpty()) {
+                    for (Shard shard : chromaDbService.shards()) {
+                        chromaDbService.deleteFromShadow(shard, readTime, List.copyOf(remaining));
+                    }
+                    removed.addAndGet(remaining.size());
+                }
+            } catch (RuntimeException e) {
+                shadow.markDirty(dirty);
+                throw e;
+            }
+        }
+        return shadow.dirtyCount();
+    }
+
+    private float[] embed(String document) {
+        float[] embedding = embeddingService.embed(document, Priority.BULK, spec);
+        vectorSize = embedding.length;
+        return embedding;
+    }
+
+    /** Spaces re-embeddings {@code 1 / rate} seconds apart. */
+    private void pace() {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long now = System.nanoTime();
+        long wait = nextSlot - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Stopped();
+            }
+        }
+        nextSlot = Math.max(nextSlot, now) + interval;
+    }
+
+    /** Blocks while paused; ends the job once it was aborted or the service is stopping. */
+    private void awaitRunnable() {
+        if (state == State.PAUSED) {
+            saveCheckpoint(true);
+            synchronized (monitor) {
+                while (state == State.PAUSED) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new Stopped();
+                    }
+                }
+            }
+        }
+        if (state != State.RUNNING || Thread.currentThread().isInterrupted()) throw new Stopped();
+    }
+
+    private void startPhase(Phase next) {
+        phase = next;
+        shardIndex = 0;
+        cursor = Cursor.START;
+        saveCheckpoint(true);
+    }
+
+    // ------------------------------------------------------------------ checkpoint
+    private void saveCheckpoint(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastCheckpoint < checkpointIntervalNanos) return;
+        lastCheckpoint = now;
+        try {
+            Checkpoint checkpoint = new Checkpoint(phase.name(), shardIndex, cursor.offset(), cursor.lastId(),
+                    rate, pageSize, switchWhenDone, scanned.get(), copied.get(), unchanged.get(),
+                    startedAt.toString());
+            chromaDbService.saveShadowCheckpoint(objectMapper.writeValueAsString(checkpoint));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not save the migration checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private Checkpoint readCheckpoint() {
+        String json = chromaDbService.shadowCheckpoint();
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, Checkpoint.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring unreadable migration checkpoint: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Thread running;
+        synchronized (monitor) {
+            running = worker;
+        }
+        join(running);
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null || thread == Thread.currentThread()) return;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Position and settings stored in the target collection's metadata. */
+    record Checkpoint(String phase, int shard, int offset, String lastId, double rate, int pageSize,
+                      boolean switchWhenDone, long scanned, long copied, long unchanged, String startedAt) {
+    }
+
+    /** Ends the job without marking it failed. */
+    private static final class Stopped extends RuntimeException {
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Rows {
+        final List<String> ids = new ArrayList<>();
+        final List<String> documents = new ArrayList<>();
+        final List<Map<String, Object>> metadatas = new ArrayList<>();
+        final List<float[]> embeddings = new ArrayList<>();
+
+        void add(String id, String document, Map<String, Object> metadata, float[] embedding) {
+            ids.add(id);
+            documents.add(document);
+            metadatas.add(metadata);
+            embeddings.add(embedding);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.uymbot.docservice.observability;
+
+import com.uymbot.docservice.resilience.ChromaCallGuard;
+import com.uymbot.docservice.resilience.CircuitBreaker;
+import com.uymbot.docservice.resilience.ReplicaRouter;
+import com.uymbot.docservice.service.ChromaDbService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Reports ChromaDB reachability under {@code /actuator/health}.
+ * <p>
+ * The heartbeat result is cached for {@code chromadb.health.cache-ttl} so that
+ * frequent container health probes do not turn into a steady stream of
+ * requests against ChromaDB. The circuit breaker state is reported live,
+ * per host when the collection is sharded over several nodes, and so is
+ * the health and load of each read replica.
+ * </p>
+ */
+@Component("chroma")
+public class ChromaHealthIndicator implements HealthIndicator {
+
+    private final ChromaDbService chromaDbService;
+    private final ChromaCallGuard guard;
+    private final ReplicaRouter replicas;
+    private final Duration cacheTtl;
+
+    private volatile Health cached;
+    private volatile long cachedAtNanos;
+
+    public ChromaHealthIndicator(ChromaDbService chromaDbService, ChromaCallGuard guard,
+                                 ReplicaRouter replicas,
+                                 @Value("${chromadb.health.cache-ttl:10s}") Duration cacheTtl) {
+        this.chromaDbService = chromaDbService;
+        this.guard = guard;
+        this.replicas = replicas;
+        this.cacheTtl = cacheTtl;
+    }
+
+    @Override
+    public Health health() {
+        Health heartbeat = heartbeat();
+        Health.Builder health = Health.status(heartbeat.getStatus())
+                .withDetails(heartbeat.getDetails())
+                .withDetail("circuit", guard.state().name());
+        Map<String, CircuitBreaker.State> circuits = guard.states();
+        if (circuits.size() > 1) health.withDetail("circuits", circuits);
+        Map<String, Map<String, Object>> replicaStatus = replicas.status();
+        if (!replicaStatus.isEmpty()) health.withDetail("replicas", replicaStatus);
+        return health.build();
+    }
+
+    private Health heartbeat() {
+        Health current = cached;
+        if (current != null && System.nanoTime() - cachedAtNanos < cacheTtl.toNanos()) {
+            return current;
+        }
+        synchronized (this) {
+            if (cached != null && System.nanoTime() - cachedAtNanos < cacheTtl.toNanos()) {
+                return cached;
+            }
+            cached = check();
+            cachedAtNanos = System.nanoTime();
+            return cached;
+        }
+    }
+
+    private Health check() {
+        long start = System.nanoTime();
+        try {
+            chromaDbService.heartbeat();
+            return Health.up()
+                    .withDetail("latencyMs", Duration.ofNanos(System.nanoTime() - start).toMillis())
+                    .withDetail("checkedAt", Instant.now().toString())
+                    .build();
+        } catch (Exception e) {
+            return Health.down(e)
+                    .withDetail("checkedAt", Instant.now().toString())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.uymbot.docservice.observability;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+
+/**
+ * Per-request accumulator of stage durations, bound to the request thread by
+ * {@link ServerTimingFilter} and carried over to the pools that call
+ * downstream on its behalf with {@link #propagate(Supplier)}. Outside a
+ * request {@link #record(Stage, long)} is a no-op. Calls that run in
+ * parallel, e.g. one per shard, each add their own duration.
+ */
+public final class RequestTimings {
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+    private static final Stage[] STAGES = Stage.values();
+
+    private final long startNanos = System.nanoTime();
+    private final long[] nanos = new long[STAGES.length];
+    private final int[] calls = new int[STAGES.length];
+
+    static RequestTimings begin() {
+        RequestTimings timings = new RequestTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    public static void record(Stage stage, long elapsedNanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) timings.add(stage, elapsedNanos);
+    }
+
+    /** Runs {@code task} recording into the calling thread's timings, for handing work to another thread. */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        RequestTimings timings = CURRENT.get();
+        if (timings == null) return task;
+        return () -> {
+            RequestTimings previous = CURRENT.get();
+            CURRENT.set(timings);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) CURRENT.remove();
+                else CURRENT.set(previous);
+            }
+        };
+    }
+
+    private synchronized void add(Stage stage, long elapsedNanos) {
+        nanos[stage.ordinal()] += elapsedNanos;
+        calls[stage.ordinal()]++;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Renders the {@code Server-Timing} header value: one metric per stage that
+     * ran, {@code app} for time not attributed to any stage, and {@code total}.
+     */
+    synchronized String toServerTiming() {
+        long total = elapsedNanos();
+        long attributed = 0;
+        StringJoiner header = new StringJoiner(", ");
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            if (calls[i] == 0) continue;
+            attributed += nanos[i];
+            header.add(String.format(Locale.ROOT, "%s;dur=%.1f;desc=\"%d call%s\"",
+                    stage.tag(), millis(nanos[i]), calls[i], calls[i] == 1 ? "" : "s"));
+        }
+        header.add(String.format(Locale.ROOT, "app;dur=%.1f", millis(Math.max(0, total - attributed))));
+        header.add(String.format(Locale.ROOT, "total;dur=%.1f", millis(total)));
+        return header.toString();
+    }
+
+    /** {@code key=value} pairs for the structured slow-request log line. */
+    synchronized String toLogFields() {
+        StringJoiner fields = new StringJoiner(" ");
+        fields.add(String.format(Locale.ROOT, "totalMs=%.1f", millis(elapsedNanos())));
+        for (Stage stage : STAGES) {
+            int i = stage.ordinal();
+            if (calls[i] == 0) continue;
+            fields.add(String.format(Locale.ROOT, "%sMs=%.1f %sCalls=%d",
+                    stage.tag(), millis(nanos[i]), stage.tag(), calls[i]));
+        }
+        return fields.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
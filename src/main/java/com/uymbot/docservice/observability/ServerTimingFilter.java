@@ -0,0 +1,110 @@
+package com.uymbot.docservice.observability;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+
+/**
+ * Adds a {@code Server-Timing} header with the per-stage breakdown collected
+ * by {@link StageMetrics} during the request, and optionally logs a
+ * structured {@code slow_request} line when the request exceeds
+ * {@code docservice.timing.slow-request-threshold}.
+ * <p>
+ * The header is written just before the response body starts, i.e. after the
+ * service call has finished but before the response is committed.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    @Value("${docservice.timing.server-timing-header:true}")
+    private boolean headerEnabled;
+
+    /** Zero disables slow-request logging. */
+    @Value("${docservice.timing.slow-request-threshold:0ms}")
+    private Duration slowRequestThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.begin();
+        TimingResponse wrapped = new TimingResponse(response, timings);
+        try {
+            chain.doFilter(request, wrapped);
+        } finally {
+            wrapped.writeHeader();
+            RequestTimings.end();
+            logIfSlow(request, response, timings);
+        }
+    }
+
+    private void logIfSlow(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        if (slowRequestThreshold.isZero() || timings.elapsedNanos() < slowRequestThreshold.toNanos()) {
+            return;
+        }
+        log.warn("slow_request method={} path={} status={} {}",
+                request.getMethod(), request.getRequestURI(), response.getStatus(), timings.toLogFields());
+    }
+
+    /** Sets the header the first time the body (or an error) is about to be written. */
+    private final class TimingResponse extends HttpServletResponseWrapper {
+
+        private final RequestTimings timings;
+        private boolean written;
+
+        TimingResponse(HttpServletResponse response, RequestTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        void writeHeader() {
+            if (written || !headerEnabled || isCommitted()) return;
+            written = true;
+            setHeader(HEADER, timings.toServerTiming());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+    }
+}
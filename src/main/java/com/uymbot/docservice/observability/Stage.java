@@ -0,0 +1,22 @@
+package com.uymbot.docservice.observability;
+
+/**
+ * Request processing stages that are timed individually.
+ */
+public enum Stage {
+    CHUNK("chunk"),
+    EMBED("embed"),
+    CHROMA("chroma"),
+    RAG("rag"),
+    MAP("map");
+
+    private final String tag;
+
+    Stage(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,99 @@
+package com.uymbot.docservice.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer timers for every processing stage plus ingest volume counters.
+ * <p>
+ * Timers are published as {@code docservice.stage} tagged with
+ * {@code stage} (chunk / embed / chroma / rag) and {@code op}, with a
+ * percentile histogram so latency distributions can be aggregated in Prometheus.
+ * Every measurement is also added to the current {@link RequestTimings}, which
+ * feeds the {@code Server-Timing} response header.
+ * </p>
+ */
+@Component
+public class StageMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter ingestedChunks;
+    private final Counter ingestedBytes;
+
+    public StageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.ingestedChunks = Counter.builder("docservice.ingest.chunks")
+                .description("Chunks embedded and stored")
+                .register(registry);
+        this.ingestedBytes = Counter.builder("docservice.ingest.bytes")
+                .description("UTF-8 bytes of document content ingested")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public <T> T time(Stage stage, String op, Supplier<T> body) {
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            timer(stage, op).record(elapsed, TimeUnit.NANOSECONDS);
+            RequestTimings.record(stage, elapsed);
+        }
+    }
+
+    public void time(Stage stage, String op, Runnable body) {
+        time(stage, op, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public void recordIngest(int chunks, String content) {
+        ingestedChunks.increment(chunks);
+        ingestedBytes.increment(utf8Length(content));
+    }
+
+    /** As {@link #recordIngest(int, String)} for content of a known encoded size, e.g. an uploaded file. */
+    public void recordIngest(int chunks, long bytes) {
+        ingestedChunks.increment(chunks);
+        ingestedBytes.increment(bytes);
+    }
+
+    private Timer timer(Stage stage, String op) {
+        return timers.computeIfAbsent(stage.tag() + ':' + op, k -> Timer.builder("docservice.stage")
+                .description("Latency of a single request processing stage")
+                .tag("stage", stage.tag())
+                .tag("op", op)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /** UTF-8 encoded length without materialising the byte array. */
+    public static long utf8Length(CharSequence s) {
+        if (s == null) return 0;
+        long bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
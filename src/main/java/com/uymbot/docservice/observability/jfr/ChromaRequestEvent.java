@@ -0,0 +1,34 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One HTTP request to the ChromaDB API. */
+@Name("com.uymbot.docservice.ChromaRequest")
+@Label("Chroma Request")
+@Category({"DocService", "Downstream"})
+@Description("A single ChromaDB HTTP API request")
+public class ChromaRequestEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Host")
+    public String host;
+
+    @Label("Request Payload")
+    @DataAmount
+    public long payloadBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    @Description("Content-Length of the response, -1 if not declared")
+    public long responseBytes;
+
+    @Label("Status")
+    @Description("HTTP status code, 0 if no response was received")
+    public int status;
+}
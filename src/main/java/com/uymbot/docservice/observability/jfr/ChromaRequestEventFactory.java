@@ -0,0 +1,109 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.EventType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * Request factory decorator that emits a {@link ChromaRequestEvent} for every
+ * ChromaDB call (recognised by the {@code /api/v1/} path prefix). The request
+ * body is counted as it streams, so nothing is buffered; while the event is
+ * disabled requests go straight to the delegate.
+ */
+public class ChromaRequestEventFactory implements ClientHttpRequestFactory {
+
+    private static final String CHROMA_PATH_PREFIX = "/api/v1/";
+    private static final EventType EVENT_TYPE = EventType.getEventType(ChromaRequestEvent.class);
+
+    private final ClientHttpRequestFactory delegate;
+
+    public ChromaRequestEventFactory(ClientHttpRequestFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request = delegate.createRequest(uri, httpMethod);
+        String path = uri.getPath();
+        if (!EVENT_TYPE.isEnabled() || path == null || !path.startsWith(CHROMA_PATH_PREFIX)) {
+            return request;
+        }
+        return new RecordingRequest(request, operation(path));
+    }
+
+    /** {@code /api/v1/collections/{id}/query} → {@code query}; {@code /api/v1/collections} → {@code collections}. */
+    static String operation(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static final class RecordingRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest delegate;
+        private final ChromaRequestEvent event = new ChromaRequestEvent();
+        private long payloadBytes;
+
+        RecordingRequest(ClientHttpRequest delegate, String operation) {
+            this.delegate = delegate;
+            this.event.operation = operation;
+            this.event.begin();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return new FilterOutputStream(delegate.getBody()) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    payloadBytes++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    payloadBytes += len;
+                }
+            };
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            ClientHttpResponse response = null;
+            try {
+                response = delegate.execute();
+                return response;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.host = getURI().getAuthority();
+                    event.payloadBytes = payloadBytes;
+                    event.status = response == null ? 0 : response.getStatusCode().value();
+                    event.responseBytes = response == null ? -1 : response.getHeaders().getContentLength();
+                    event.commit();
+                }
+            }
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One {@code TextChunkingService.split} call. */
+@Name("com.uymbot.docservice.ChunkSplit")
+@Label("Chunk Split")
+@Category({"DocService", "Ingest"})
+@Description("Text split into embedding-sized chunks")
+public class ChunkSplitEvent extends jdk.jfr.Event {
+
+    @Label("Input Characters")
+    public int inputChars;
+
+    @Label("Max Chunk Characters")
+    public int maxChars;
+
+    @Label("Chunks")
+    public int chunkCount;
+}
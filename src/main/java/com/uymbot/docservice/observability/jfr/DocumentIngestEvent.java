@@ -0,0 +1,28 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One document split, embedded and stored by {@code DocumentService.create}. */
+@Name("com.uymbot.docservice.DocumentIngest")
+@Label("Document Ingest")
+@Category({"DocService", "Ingest"})
+@Description("A document split into chunks, embedded and stored in ChromaDB")
+public class DocumentIngestEvent extends jdk.jfr.Event {
+
+    @Label("Content Characters")
+    public int contentChars;
+
+    @Label("Content Size")
+    @DataAmount
+    public long contentBytes;
+
+    @Label("Chunks")
+    public int chunkCount;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,33 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One request to the embeddings API. */
+@Name("com.uymbot.docservice.EmbeddingCall")
+@Label("Embedding Call")
+@Category({"DocService", "Downstream"})
+@Description("A single embeddings API request")
+public class EmbeddingCallEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Input Characters")
+    public int inputChars;
+
+    @Label("Tokens")
+    @Description("total_tokens reported by the provider, -1 if unknown")
+    public int tokens;
+
+    @Label("Dimensions")
+    public int dimensions;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,26 @@
+package com.uymbot.docservice.observability.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** One semantic search served by {@code DocumentService.search}. */
+@Name("com.uymbot.docservice.SearchQuery")
+@Label("Search Query")
+@Category({"DocService", "Search"})
+@Description("A semantic search from query text to mapped results")
+public class SearchQueryEvent extends jdk.jfr.Event {
+
+    @Label("Query Characters")
+    public int queryChars;
+
+    @Label("Requested Results")
+    public int requestedResults;
+
+    @Label("Returned Results")
+    public int resultCount;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,172 @@
+package com.uymbot.docservice.resilience;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request slots and downstream connections of one {@link Lane}.
+ * <p>
+ * At most {@code maxConcurrent} requests run at a time; up to
+ * {@code maxQueued} more wait, each for at most {@code maxWait}. A request arriving at a full queue, or still waiting after
+ * {@code maxWait}, is shed with a {@link ServiceUnavailableException}
+ * ({@code 503}, {@code Retry-After} of {@code maxWait}) instead of tying up
+ * a server thread. Waiting requests do hold a server thread, so the sum of
+ * {@code maxConcurrent + maxQueued} over all lanes should stay below the
+ * server's thread pool.
+ * </p>
+ * <p>
+ * Independently, at most {@code connections} outbound HTTP calls of the
+ * lane are in flight ({@code 0} = no limit); a call waits up to
+ * {@code connectionWait} for one of them. Budgets below the shared pool's
+ * per-route limit keep connections free for the other lanes.
+ * </p>
+ * <p>
+ * Every successful {@link #acquire()} must be followed by exactly one
+ * {@link #release()}, likewise for {@link #acquireConnection()}.
+ * </p>
+ */
+public class Bulkhead {
+
+    private final Lane lane;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxConnections;
+    private final Duration connectionWait;
+    private final Semaphore connections;
+
+    private final Timer waits;
+    private final Counter queueFull;
+    private final Counter timedOut;
+    private final Counter connectionsExhausted;
+
+    public Bulkhead(Lane lane, int maxConcurrent, int maxQueued, Duration maxWait,
+                    int maxConnections, Duration connectionWait, MeterRegistry registry) {
+        this.lane = lane;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.maxConnections = Math.max(0, maxConnections);
+        this.connectionWait = connectionWait;
+        this.connections = this.maxConnections == 0 ? null : new Semaphore(this.maxConnections, true);
+
+        String tag = lane.tag();
+        Gauge.builder("docservice.bulkhead.active", this, Bulkhead::active)
+                .description("Requests running in the lane")
+                .tag("lane", tag)
+                .register(registry);
+        Gauge.builder("docservice.bulkhead.queued", queued, AtomicInteger::get)
+                .description("Requests waiting for a slot in the lane")
+                .tag("lane", tag)
+                .register(registry);
+        Gauge.builder("docservice.bulkhead.connections", this, Bulkhead::activeConnections)
+                .description("Outbound HTTP calls of the lane in flight")
+                .tag("lane", tag)
+                .register(registry);
+        this.waits = Timer.builder("docservice.bulkhead.wait")
+                .description("Time requests waited for a slot in the lane")
+                .tag("lane", tag)
+                .register(registry);
+        this.queueFull = rejected(registry, tag, "queue-full");
+        this.timedOut = rejected(registry, tag, "timeout");
+        this.connectionsExhausted = rejected(registry, tag, "connections");
+    }
+
+    private static Counter rejected(MeterRegistry registry, String lane, String reason) {
+        return Counter.builder("docservice.bulkhead.rejected")
+                .description("Requests and outbound calls shed by the lane's bulkhead")
+                .tag("lane", lane)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public Lane lane() {
+        return lane;
+    }
+
+    /**
+     * Takes a request slot, waiting up to {@code maxWait} behind at most
+     * {@code maxQueued} other requests.
+     *
+     * @throws ServiceUnavailableException if the queue is full or the wait timed out
+     */
+    public void acquire() {
+        if (permits.tryAcquire()) {
+            waits.record(0, TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            queueFull.increment();
+            throw unavailable(maxConcurrent + " requests running and " + maxQueued + " waiting");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                timedOut.increment();
+                throw unavailable("no slot free within " + maxWait.toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for a " + lane.tag() + " slot",
+                    retryAfter(), e);
+        } finally {
+            queued.decrementAndGet();
+            waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Takes one of the lane's outbound connections, waiting up to {@code connectionWait}.
+     *
+     * @throws ServiceUnavailableException if none became free in time
+     */
+    public void acquireConnection() {
+        if (connections == null) return;
+        try {
+            if (connections.tryAcquire(connectionWait.toNanos(), TimeUnit.NANOSECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for a " + lane.tag() + " connection",
+                    retryAfter(), e);
+        }
+        connectionsExhausted.increment();
+        throw unavailable("all " + maxConnections + " connections busy for " + connectionWait.toMillis() + " ms");
+    }
+
+    public void releaseConnection() {
+        if (connections != null) connections.release();
+    }
+
+    int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    int activeConnections() {
+        return connections == null ? 0 : maxConnections - connections.availablePermits();
+    }
+
+    private ServiceUnavailableException unavailable(String reason) {
+        return new ServiceUnavailableException("Too many " + lane.tag() + " requests: " + reason, retryAfter());
+    }
+
+    /** A shed request is retried about when one that queued would have given up. */
+    private Duration retryAfter() {
+        return maxWait;
+    }
+}
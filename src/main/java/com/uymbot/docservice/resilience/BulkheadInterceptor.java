@@ -0,0 +1,63 @@
+package com.uymbot.docservice.resilience;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Runs each controller call in its {@link Lane}: takes a slot of the lane's
+ * {@link Bulkhead} before the handler (shedding the request with a
+ * {@code 503} when there is none) and binds the lane to the request thread so
+ * that outbound calls draw on the lane's connections. The lane comes from
+ * {@link BulkheadLane} on the handler method, {@link Lane#CRUD} without it.
+ * <p>
+ * A streaming response keeps its slot until the stream is complete.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ACQUIRED = BulkheadInterceptor.class.getName() + ".bulkhead";
+
+    private final Bulkheads bulkheads;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method)) return true;
+        BulkheadLane annotation = method.getMethodAnnotation(BulkheadLane.class);
+        Lane lane = annotation == null ? Lane.CRUD : annotation.value();
+        Lane.set(lane);
+        // the async dispatch that completes a streaming response already holds the slot
+        if (request.getAttribute(ACQUIRED) != null) return true;
+        Bulkhead bulkhead = bulkheads.get(lane);
+        if (bulkhead == null) return true;
+        try {
+            bulkhead.acquire();
+        } catch (RuntimeException e) {
+            Lane.set(null);
+            throw e;
+        }
+        request.setAttribute(ACQUIRED, bulkhead);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        Lane.set(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Lane.set(null);
+        if (request.getAttribute(ACQUIRED) instanceof Bulkhead bulkhead) {
+            request.removeAttribute(ACQUIRED);
+            bulkhead.release();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.uymbot.docservice.resilience;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lane a controller method runs in; methods without it run in {@link Lane#CRUD}.
+ * See {@link BulkheadInterceptor}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface BulkheadLane {
+
+    Lane value();
+}
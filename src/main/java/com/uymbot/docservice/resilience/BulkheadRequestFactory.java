@@ -0,0 +1,124 @@
+package com.uymbot.docservice.resilience;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * Request factory decorator that holds one of the calling {@link Lane}'s
+ * connections ({@link Bulkhead#acquireConnection()}) from sending a request
+ * until its response is closed. Calls from threads without a lane go
+ * straight to the delegate.
+ */
+public class BulkheadRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final Bulkheads bulkheads;
+
+    public BulkheadRequestFactory(ClientHttpRequestFactory delegate, Bulkheads bulkheads) {
+        this.delegate = delegate;
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request = delegate.createRequest(uri, httpMethod);
+        Lane lane = Lane.current();
+        Bulkhead bulkhead = lane == null ? null : bulkheads.get(lane);
+        return bulkhead == null ? request : new BudgetedRequest(request, bulkhead);
+    }
+
+    private static final class BudgetedRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest delegate;
+        private final Bulkhead bulkhead;
+
+        BudgetedRequest(ClientHttpRequest delegate, Bulkhead bulkhead) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            bulkhead.acquireConnection();
+            try {
+                return new BudgetedResponse(delegate.execute(), bulkhead);
+            } catch (IOException | RuntimeException | Error e) {
+                bulkhead.releaseConnection();
+                throw e;
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return delegate.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+
+    private static final class BudgetedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Bulkhead bulkhead;
+        private boolean closed;
+
+        BudgetedResponse(ClientHttpResponse delegate, Bulkhead bulkhead) {
+            this.delegate = delegate;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    bulkhead.releaseConnection();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.uymbot.docservice.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The {@link Bulkhead} of every {@link Lane}, from {@code docservice.bulkhead.*}.
+ * Disabled, there are none and requests and outbound calls are not limited.
+ */
+@Component
+public class Bulkheads {
+
+    private final Map<Lane, Bulkhead> bulkheads = new EnumMap<>(Lane.class);
+
+    public Bulkheads(@Value("${docservice.bulkhead.enabled:true}") boolean enabled,
+                     @Value("${docservice.bulkhead.search.max-concurrent:64}") int searchConcurrent,
+                     @Value("${docservice.bulkhead.search.max-queued:32}") int searchQueued,
+                     @Value("${docservice.bulkhead.search.max-wait:2s}") Duration searchWait,
+                     @Value("${docservice.bulkhead.search.connections:0}") int searchConnections,
+                     @Value("${docservice.bulkhead.crud.max-concurrent:32}") int crudConcurrent,
+                     @Value("${docservice.bulkhead.crud.max-queued:32}") int crudQueued,
+                     @Value("${docservice.bulkhead.crud.max-wait:5s}") Duration crudWait,
+                     @Value("${docservice.bulkhead.crud.connections:16}") int crudConnections,
+                     @Value("${docservice.bulkhead.ingest.max-concurrent:8}") int ingestConcurrent,
+                     @Value("${docservice.bulkhead.ingest.max-queued:16}") int ingestQueued,
+                     @Value("${docservice.bulkhead.ingest.max-wait:30s}") Duration ingestWait,
+                     @Value("${docservice.bulkhead.ingest.connections:16}") int ingestConnections,
+                     @Value("${docservice.bulkhead.connection-wait:5s}") Duration connectionWait,
+                     MeterRegistry registry) {
+        if (!enabled) return;
+        bulkheads.put(Lane.SEARCH, new Bulkhead(Lane.SEARCH, searchConcurrent, searchQueued, searchWait,
+                searchConnections, connectionWait, registry));
+        bulkheads.put(Lane.CRUD, new Bulkhead(Lane.CRUD, crudConcurrent, crudQueued, crudWait,
+                crudConnections, connectionWait, registry));
+        bulkheads.put(Lane.INGEST, new Bulkhead(Lane.INGEST, ingestConcurrent, ingestQueued, ingestWait,
+                ingestConnections, connectionWait, registry));
+    }
+
+    /** @return the lane's bulkhead, or {@code null} when bulkheads are disabled */
+    public Bulkhead get(Lane lane) {
+        return bulkheads.get(lane);
+    }
+}
@@ -0,0 +1,273 @@
+package com.uymbot.docservice.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Failure isolation for ChromaDB calls.
+ * <p>
+ * All calls to a host pass through that host's {@link CircuitBreaker}; while
+ * it is open they fail fast instead of tying up request threads on an
+ * unhealthy ChromaDB node. With sharding every shard host has its own
+ * breaker, so one failing node does not cut off the others.
+ * Idempotent reads additionally run on a bounded pool with a deadline
+ * ({@code chromadb.read-timeout}) and optional hedging
+ * ({@code chromadb.hedging.*}), and their last good answer is remembered:
+ * when a read is rejected or fails, that answer is served instead
+ * (degraded, possibly stale) and only if there is none does the caller get
+ * a {@code 503} with {@code Retry-After}. When the host has read replicas
+ * ({@code chromadb.replicas.*}) the {@link ReplicaRouter} picks the one
+ * each read attempt goes to; writes always go to the host itself.
+ * </p>
+ * <p>
+ * Only I/O errors, timeouts and 5xx responses count as failures; 4xx
+ * responses are the caller's problem, not ChromaDB's health. A read the
+ * full read pool ({@code chromadb.read-pool-size}) turns away is answered
+ * the same degraded way but does not count either: a busy instance says
+ * nothing about ChromaDB, and an open breaker would fail its writes too.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ChromaCallGuard {
+
+    private final String primaryHost;
+    private final String hedgeHost;
+    private final Duration readTimeout;
+    private final Function<String, CircuitBreaker> breakerFactory;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final HedgingExecutor hedging;
+    private final ReplicaRouter replicas;
+    private final ExecutorService readPool;
+    private final Cache<FallbackKey, Object> lastGood;
+    private final MeterRegistry registry;
+    private final Map<String, Counter> fallbacks = new ConcurrentHashMap<>();
+
+    public ChromaCallGuard(@Qualifier("chromaHost") String chromaHost,
+                           @Value("${chromadb.read-timeout:5s}") Duration readTimeout,
+                           @Value("${chromadb.read-pool-size:64}") int readPoolSize,
+                           @Value("${chromadb.hedging.enabled:false}") boolean hedgingEnabled,
+                           @Value("${chromadb.hedging.host:}") String hedgeHost,
+                           @Value("${chromadb.hedging.percentile:0.95}") double hedgePercentile,
+                           @Value("${chromadb.hedging.min-delay:10ms}") Duration hedgeMinDelay,
+                           @Value("${chromadb.hedging.initial-delay:100ms}") Duration hedgeInitialDelay,
+                           @Value("${chromadb.hedging.max-ratio:0.1}") double hedgeMaxRatio,
+                           @Value("${chromadb.circuit-breaker.window-size:50}") int windowSize,
+                           @Value("${chromadb.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                           @Value("${chromadb.circuit-breaker.failure-rate-threshold:0.5}") double failureRate,
+                           @Value("${chromadb.circuit-breaker.open-duration:10s}") Duration openDuration,
+                           @Value("${chromadb.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                           @Value("${chromadb.circuit-breaker.fallback-cache-size:1000}") long fallbackSize,
+                           @Value("${chromadb.circuit-breaker.fallback-ttl:10m}") Duration fallbackTtl,
+                           ReplicaRouter replicas,
+                           MeterRegistry registry) {
+        this.primaryHost = chromaHost;
+        this.hedgeHost = hedgeHost == null || hedgeHost.isBlank() ? chromaHost : hedgeHost;
+        this.readTimeout = readTimeout;
+        this.replicas = replicas;
+        this.registry = registry;
+        // the primary keeps the plain "chroma" name so existing dashboards stay valid
+        this.breakerFactory = host -> new CircuitBreaker(host.equals(chromaHost) ? "chroma" : "chroma:" + host,
+                windowSize, minimumCalls, failureRate, openDuration, halfOpenCalls, registry);
+        breaker(chromaHost);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, readPoolSize, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "chroma-read-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.readPool = ExecutorServiceMetrics.monitor(registry, pool, "chroma-read");
+        this.hedging = new HedgingExecutor(readPool, hedgingEnabled, hedgePercentile,
+                hedgeMinDelay, hedgeInitialDelay, hedgeMaxRatio, registry);
+        this.lastGood = Caffeine.newBuilder()
+                .maximumSize(fallbackSize)
+                .expireAfterWrite(fallbackTtl)
+                .build();
+    }
+
+    /**
+     * Runs an idempotent read against the primary host. {@code call} receives
+     * the base URL of the host to use; hedge attempts may get a different one.
+     *
+     * @param fallbackKey identifies the request for degraded answers; must
+     *                    implement {@code equals}/{@code hashCode}. {@code null}
+     *                    disables remembering and serving degraded answers,
+     *                    e.g. for large export pages.
+     */
+    public <T> T read(String op, Object fallbackKey, Function<String, T> call) {
+        return read(op, primaryHost, fallbackKey, call);
+    }
+
+    /**
+     * Runs an idempotent read against {@code host}, or against one of its
+     * replicas. Without replicas, hedges of reads against the primary go to
+     * {@code chromadb.hedging.host} and hedges of reads against any other
+     * host go to the same host; with replicas every attempt goes to the
+     * least loaded one.
+     */
+    public <T> T read(String op, String host, Object fallbackKey, Function<String, T> call) {
+        CircuitBreaker breaker = breaker(host);
+        String hedge = host.equals(primaryHost) ? hedgeHost : host;
+        FallbackKey key = fallbackKey == null ? null : new FallbackKey(op, fallbackKey);
+        if (!breaker.tryAcquire()) {
+            return fallback(op, breaker, key, null);
+        }
+        try {
+            T result = replicas.hasReplicas(host)
+                    ? hedging.execute(op, attempt -> replicas.read(host, call), readTimeout)
+                    : hedging.execute(op, attempt -> attempt == 0 ? call.apply(host) : hedge(host, hedge, call), readTimeout);
+            breaker.onSuccess();
+            if (result != null && key != null) lastGood.put(key, result);
+            return result;
+        } catch (RejectedExecutionException e) {
+            breaker.release();
+            return fallback(op, breaker, key, e);
+        } catch (TimeoutException | ResourceAccessException | HttpServerErrorException e) {
+            breaker.onFailure();
+            return fallback(op, breaker, key, e);
+        } catch (RuntimeException e) {
+            breaker.onSuccess();
+            throw e;
+        }
+    }
+
+    /** A hedge host that cannot serve the read at all sends the hedge to {@code host} instead. */
+    private <T> T hedge(String host, String hedge, Function<String, T> call) {
+        if (hedge.equals(host)) return call.apply(host);
+        try {
+            return call.apply(hedge);
+        } catch (ReplicaRouter.ReplicaUnavailableException e) {
+            log.debug("Hedge host {} cannot serve the read, hedging to {}: {}", hedge, host, e.getMessage());
+            return call.apply(host);
+        }
+    }
+
+    /**
+     * Runs a read that must see every acknowledged write against {@code host}
+     * itself: no replicas, no hedges and no degraded answers, on the caller's
+     * thread. Used by jobs that copy the collection while it is written to.
+     */
+    public <T> T readConsistent(String op, String host, Supplier<T> call) {
+        return write(op, host, call);
+    }
+
+    /** Runs a write against the primary host through its circuit breaker, on the caller's thread. */
+    public <T> T write(String op, Supplier<T> call) {
+        return write(op, primaryHost, call);
+    }
+
+    /** Runs a write against {@code host} through that host's circuit breaker, on the caller's thread. */
+    public <T> T write(String op, String host, Supplier<T> call) {
+        CircuitBreaker breaker = breaker(host);
+        if (!breaker.tryAcquire()) {
+            throw unavailable(op, breaker, null);
+        }
+        try {
+            T result = call.get();
+            breaker.onSuccess();
+            return result;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onSuccess();
+            throw e;
+        }
+    }
+
+    public void write(String op, Runnable call) {
+        write(op, primaryHost, call);
+    }
+
+    public void write(String op, String host, Runnable call) {
+        write(op, host, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /** Drops a remembered answer that a write has made wrong. */
+    public void forget(String op, Object fallbackKey) {
+        lastGood.invalidate(new FallbackKey(op, fallbackKey));
+    }
+
+    /** Drops every remembered answer, e.g. after the collection was switched. */
+    public void forgetAll() {
+        lastGood.invalidateAll();
+    }
+
+    /** State of the primary host's breaker. */
+    public CircuitBreaker.State state() {
+        return breaker(primaryHost).state();
+    }
+
+    /** State of every host's breaker, by host. */
+    public Map<String, CircuitBreaker.State> states() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        breakers.forEach((host, breaker) -> states.put(host, breaker.state()));
+        return states;
+    }
+
+    private CircuitBreaker breaker(String host) {
+        return breakers.computeIfAbsent(host, breakerFactory);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T fallback(String op, CircuitBreaker breaker, FallbackKey key, Exception cause) {
+        Object cached = key == null ? null : lastGood.getIfPresent(key);
+        if (cached != null) {
+            fallbacks.computeIfAbsent(op, o -> Counter.builder("docservice.chroma.fallback")
+                    .description("ChromaDB reads answered from the last good result")
+                    .tag("op", o)
+                    .register(registry)).increment();
+            log.debug("Serving last good '{}' result ({})", op, cause == null ? "circuit open" : cause.toString());
+            return (T) cached;
+        }
+        throw unavailable(op, breaker, cause);
+    }
+
+    private ServiceUnavailableException unavailable(String op, CircuitBreaker breaker, Exception cause) {
+        Duration retryAfter = breaker.remainingOpen();
+        if (retryAfter.isZero()) retryAfter = Duration.ofSeconds(1);
+        String reason = cause == null ? "circuit open"
+                : cause instanceof TimeoutException ? "timed out after " + readTimeout.toMillis() + " ms"
+                : cause instanceof RejectedExecutionException ? "read pool exhausted"
+                : cause.getMessage();
+        return new ServiceUnavailableException("ChromaDB " + op + " unavailable: " + reason, retryAfter, cause);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        readPool.shutdownNow();
+    }
+
+    private record FallbackKey(String op, Object key) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.uymbot.docservice.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * The outcomes of the last {@code windowSize} calls are kept in a ring. Once
+ * at least {@code minimumCalls} have been recorded and the failure rate
+ * reaches {@code failureRateThreshold}, the breaker opens and
+ * {@link #tryAcquire()} rejects every call for {@code openDuration}. After
+ * that it lets {@code halfOpenCalls} probe calls through: if they all
+ * succeed the breaker closes, a single failure opens it again.
+ * </p>
+ * <p>
+ * Every successful {@link #tryAcquire()} must be followed by exactly one
+ * {@link #onSuccess()} or {@link #onFailure()}.
+ * </p>
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final boolean[] failures;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failureCount;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenCalls, MeterRegistry registry) {
+        this.name = name;
+        this.failures = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+
+        Gauge.builder("docservice.circuit.state", this, b -> b.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("name", name)
+                .register(registry);
+        this.rejected = Counter.builder("docservice.circuit.rejected")
+                .description("Calls rejected without being attempted because the circuit was open")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    /** @return {@code true} if the call may proceed */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejected.increment();
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenCalls) {
+                rejected.increment();
+                return false;
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && failureCount >= failureRateThreshold * recorded) {
+            transition(State.OPEN);
+        }
+    }
+
+    /** Gives back a permit whose call was never attempted, e.g. because no thread was free to run it. */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesIssued > 0) probesIssued--;
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /** Time until an open breaker admits probe calls; zero otherwise. */
+    public synchronized Duration remainingOpen() {
+        if (state != State.OPEN) return Duration.ZERO;
+        return Duration.ofNanos(Math.max(0, openNanos - (System.nanoTime() - openedAt)));
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failures.length) {
+            if (failures[next]) failureCount--;
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) failureCount++;
+        next = (next + 1) % failures.length;
+    }
+
+    private void transition(State target) {
+        if (state == target) return;
+        log.warn("Circuit breaker '{}' {} -> {}", name, state, target);
+        state = target;
+        switch (target) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            case CLOSED -> {
+                recorded = 0;
+                next = 0;
+                failureCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.uymbot.docservice.resilience;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side scheduler for the embeddings API.
+ * <p>
+ * Two token buckets track the provider's requests-per-minute and
+ * tokens-per-minute budgets. Callers block in {@link #acquire(Priority, int)}
+ * until both have room; {@link Priority#INTERACTIVE} callers always go before
+ * waiting {@link Priority#BULK} callers. The buckets are corrected from the
+ * provider's {@code x-ratelimit-*} response headers, and a {@code 429}
+ * pauses all callers until {@code Retry-After} (or the reported reset) has
+ * passed, so the service settles at the provider's sustainable rate instead
+ * of bursting into rate-limit errors.
+ * </p>
+ */
+@Slf4j
+@Component
+public class EmbeddingRateLimiter {
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private final double requestsPerNano;
+    private final double tokensPerNano;
+    private final Duration maxWait;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private int interactiveWaiting;
+
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Counter rateLimited;
+
+    public EmbeddingRateLimiter(@Value("${openai.rate-limit.requests-per-minute:3000}") int requestsPerMinute,
+                                @Value("${openai.rate-limit.tokens-per-minute:1000000}") int tokensPerMinute,
+                                @Value("${openai.rate-limit.max-wait:60s}") Duration maxWait,
+                                @Value("${openai.rate-limit.initial-backoff:500ms}") Duration initialBackoff,
+                                @Value("${openai.rate-limit.max-backoff:30s}") Duration maxBackoff,
+                                MeterRegistry registry) {
+        this.requestCapacity = requestsPerMinute;
+        this.tokenCapacity = tokensPerMinute;
+        this.requestsPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokensPerNano = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxWait = maxWait;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.availableRequests = requestCapacity;
+        this.availableTokens = tokenCapacity;
+        this.lastRefillNanos = System.nanoTime();
+
+        for (Priority priority : Priority.values()) {
+            waitTimers.put(priority, Timer.builder("docservice.embedding.throttle")
+                    .description("Time spent waiting for embedding rate-limit budget")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry));
+        }
+        this.rateLimited = Counter.builder("docservice.embedding.rate-limited")
+                .description("429 responses received from the embeddings API")
+                .register(registry);
+        Gauge.builder("docservice.embedding.budget.requests", this, l -> l.snapshot(true))
+                .description("Locally tracked remaining request budget")
+                .register(registry);
+        Gauge.builder("docservice.embedding.budget.tokens", this, l -> l.snapshot(false))
+                .description("Locally tracked remaining token budget")
+                .register(registry);
+    }
+
+    /**
+     * Blocks until one request carrying {@code tokens} tokens fits in both
+     * budgets. {@code tokens} is the caller's estimate (characters divided by
+     * {@code openai.rate-limit.chars-per-token}); an estimate below the real
+     * count lets bursts of Turkish text overshoot the budget until the next
+     * response headers correct it.
+     *
+     * @throws ServiceUnavailableException if no budget frees up within
+     *         {@code openai.rate-limit.max-wait}
+     */
+    public void acquire(Priority priority, int tokens) {
+        long start = System.nanoTime();
+        long deadline = start + maxWait.toNanos();
+        double cost = Math.min(Math.max(tokens, 1), tokenCapacity);
+
+        lock.lock();
+        try {
+            if (priority == Priority.INTERACTIVE) interactiveWaiting++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    long waitNanos;
+                    if (priority == Priority.BULK && interactiveWaiting > 0) {
+                        waitNanos = TimeUnit.MILLISECONDS.toNanos(50);
+                    } else {
+                        waitNanos = nanosUntilAvailable(cost, now);
+                        if (waitNanos <= 0) {
+                            availableRequests -= 1;
+                            availableTokens -= cost;
+                            return;
+                        }
+                    }
+                    if (now + waitNanos > deadline) {
+                        throw new ServiceUnavailableException(
+                                "Embedding provider rate limit budget exhausted",
+                                Duration.ofNanos(Math.max(waitNanos, 0)));
+                    }
+                    changed.awaitNanos(waitNanos);
+                }
+            } finally {
+                if (priority == Priority.INTERACTIVE) {
+                    interactiveWaiting--;
+                    changed.signalAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embedding rate limit budget", e);
+        } finally {
+            lock.unlock();
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Aligns the local buckets with the provider's view after a successful call. */
+    public void onSuccess(HttpHeaders headers) {
+        if (headers == null) return;
+        Double remainingRequests = parseDouble(headers.getFirst("x-ratelimit-remaining-requests"));
+        Double remainingTokens = parseDouble(headers.getFirst("x-ratelimit-remaining-tokens"));
+        if (remainingRequests == null && remainingTokens == null) return;
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            if (remainingRequests != null) {
+                availableRequests = Math.min(availableRequests, remainingRequests);
+                if (remainingRequests <= 0) {
+                    pauseFor(parseResetDuration(headers.getFirst("x-ratelimit-reset-requests")), now);
+                }
+            }
+            if (remainingTokens != null) {
+                availableTokens = Math.min(availableTokens, remainingTokens);
+                if (remainingTokens <= 0) {
+                    pauseFor(parseResetDuration(headers.getFirst("x-ratelimit-reset-tokens")), now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a {@code 429} and pauses every caller until the provider says
+     * it is safe to retry.
+     *
+     * @return how long callers are paused
+     */
+    public Duration onRateLimited(HttpHeaders headers, int attempt) {
+        rateLimited.increment();
+        Duration pause = retryAfter(headers);
+        if (pause == null) pause = backoff(attempt);
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            availableRequests = Math.min(availableRequests, 0);
+            pauseFor(pause, now);
+        } finally {
+            lock.unlock();
+        }
+        log.warn("Embedding API rate limited (attempt {}), pausing for {} ms", attempt + 1, pause.toMillis());
+        return pause;
+    }
+
+    /** Exponential backoff with full jitter. */
+    public Duration backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    // ----------------------------------------------------------------- internals
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) return;
+        availableRequests = Math.min(requestCapacity, availableRequests + elapsed * requestsPerNano);
+        availableTokens = Math.min(tokenCapacity, availableTokens + elapsed * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private long nanosUntilAvailable(double tokens, long now) {
+        long wait = Math.max(0, pausedUntilNanos - now);
+        if (availableRequests < 1) {
+            wait = Math.max(wait, (long) Math.ceil((1 - availableRequests) / requestsPerNano));
+        }
+        if (availableTokens < tokens) {
+            wait = Math.max(wait, (long) Math.ceil((tokens - availableTokens) / tokensPerNano));
+        }
+        return wait;
+    }
+
+    private void pauseFor(Duration pause, long now) {
+        if (pause == null || pause.isZero() || pause.isNegative()) return;
+        pausedUntilNanos = Math.max(pausedUntilNanos, now + pause.toNanos());
+        changed.signalAll();
+    }
+
+    private double snapshot(boolean requests) {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return requests ? availableRequests : availableTokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** {@code retry-after-ms}, then {@code Retry-After} (seconds or HTTP date), then the reset headers. */
+    static Duration retryAfter(HttpHeaders headers) {
+        if (headers == null) return null;
+        Double millis = parseDouble(headers.getFirst("retry-after-ms"));
+        if (millis != null) return Duration.ofMillis(millis.longValue());
+
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            Double seconds = parseDouble(retryAfter);
+            if (seconds != null) return Duration.ofMillis((long) (seconds * 1000));
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Duration.between(ZonedDateTime.now(at.getZone()), at);
+            } catch (RuntimeException ignored) {
+                // fall through to the reset headers
+            }
+        }
+        Duration requestsReset = parseResetDuration(headers.getFirst("x-ratelimit-reset-requests"));
+        Duration tokensReset = parseResetDuration(headers.getFirst("x-ratelimit-reset-tokens"));
+        if (requestsReset == null) return tokensReset;
+        if (tokensReset == null) return requestsReset;
+        return requestsReset.compareTo(tokensReset) >= 0 ? requestsReset : tokensReset;
+    }
+
+    /** Parses OpenAI reset values such as {@code 20ms}, {@code 1s} or {@code 6m0s}. */
+    public static Duration parseResetDuration(String value) {
+        if (value == null || value.isBlank()) return null;
+        Matcher m = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (m.find()) {
+            matched = true;
+            double amount = Double.parseDouble(m.group(1));
+            millis += switch (m.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
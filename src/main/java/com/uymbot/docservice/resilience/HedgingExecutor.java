@@ -0,0 +1,194 @@
+package com.uymbot.docservice.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Runs idempotent calls with a deadline and, optionally, a hedge.
+ * <p>
+ * The first attempt starts immediately. If it has not answered after the
+ * operation's recent latency percentile (e.g. p95), a second attempt is
+ * started and whichever succeeds first wins. To keep hedging from doubling
+ * load when the downstream is merely slow across the board, at most
+ * {@code maxHedgeRatio} of calls may be hedged. The attempt index is passed
+ * to the call so the hedge can be routed to a different host.
+ * </p>
+ */
+public class HedgingExecutor {
+
+    private static final int SAMPLES = 256;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final Executor executor;
+    private final boolean hedgingEnabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final double maxHedgeRatio;
+    private final MeterRegistry registry;
+
+    private final Map<String, OpState> ops = new ConcurrentHashMap<>();
+
+    public HedgingExecutor(Executor executor, boolean hedgingEnabled, double percentile,
+                           Duration minDelay, Duration initialDelay, double maxHedgeRatio,
+                           MeterRegistry registry) {
+        this.executor = executor;
+        this.hedgingEnabled = hedgingEnabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.registry = registry;
+    }
+
+    /**
+     * Executes {@code call} and returns the first successful answer.
+     *
+     * @throws TimeoutException if no attempt succeeded within {@code timeout}
+     * @throws RejectedExecutionException if the executor has no capacity left
+     */
+    public <T> T execute(String op, IntFunction<T> call, Duration timeout) throws TimeoutException {
+        OpState state = ops.computeIfAbsent(op, OpState::new);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Race<T> race = new Race<>(call, state);
+
+        race.start(0);
+        try {
+            if (hedgingEnabled) {
+                state.refillHedgeBudget();
+                long delay = Math.min(state.delayNanos, deadline - System.nanoTime());
+                try {
+                    return race.result.get(Math.max(delay, 0), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException slow) {
+                    if (state.takeHedgeToken()) {
+                        try {
+                            race.start(1);
+                            state.hedged.increment();
+                        } catch (RejectedExecutionException ignored) {
+                            // no spare capacity for a hedge, keep waiting for the first attempt
+                        }
+                    }
+                }
+            }
+            return race.result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + op, e);
+        } finally {
+            race.result.cancel(false);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        if (cause instanceof Error err) throw err;
+        return new IllegalStateException(cause);
+    }
+
+    /** First success wins; the race fails only once every started attempt has failed. */
+    private final class Race<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean won = new AtomicBoolean();
+        final IntFunction<T> call;
+        final OpState state;
+
+        Race(IntFunction<T> call, OpState state) {
+            this.call = call;
+            this.state = state;
+        }
+
+        void start(int attempt) {
+            pending.incrementAndGet();
+            try {
+                executor.execute(Lane.propagate(() -> run(attempt)));
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private void run(int attempt) {
+            if (result.isDone()) {
+                pending.decrementAndGet();
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                T value = call.apply(attempt);
+                state.record(System.nanoTime() - start);
+                // the win is counted before the caller can see the result
+                if (won.compareAndSet(false, true)) {
+                    if (attempt > 0) state.hedgeWins.increment();
+                    result.complete(value);
+                }
+                pending.decrementAndGet();
+            } catch (Throwable t) {
+                if (pending.decrementAndGet() == 0) result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /** Recent latency samples and hedge budget of one operation. */
+    private final class OpState {
+        final long[] samples = new long[SAMPLES];
+        int recorded;
+        int next;
+        volatile long delayNanos = initialDelayNanos;
+        double hedgeTokens;
+        final Counter hedged;
+        final Counter hedgeWins;
+
+        OpState(String op) {
+            this.hedged = Counter.builder("docservice.hedge.requests")
+                    .description("Hedge attempts started because the first attempt was slow")
+                    .tag("op", op)
+                    .register(registry);
+            this.hedgeWins = Counter.builder("docservice.hedge.wins")
+                    .description("Hedge attempts that answered before the first attempt")
+                    .tag("op", op)
+                    .register(registry);
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SAMPLES;
+            if (recorded < SAMPLES) recorded++;
+            if (next % RECOMPUTE_EVERY == 0 && recorded >= RECOMPUTE_EVERY) {
+                long[] sorted = Arrays.copyOf(samples, recorded);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(recorded - 1, Math.ceil(percentile * recorded) - 1);
+                delayNanos = Math.max(minDelayNanos, sorted[Math.max(index, 0)]);
+            }
+        }
+
+        /** Every call earns {@code maxHedgeRatio} of a hedge, so at most that share of calls hedge. */
+        synchronized void refillHedgeBudget() {
+            hedgeTokens = Math.min(hedgeTokens + maxHedgeRatio, 10);
+        }
+
+        synchronized boolean takeHedgeToken() {
+            if (hedgeTokens >= 1) {
+                hedgeTokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.uymbot.docservice.resilience;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Execution lane of a request, each with its own {@link Bulkhead}: searches,
+ * single-document CRUD and bulk ingestion (imports, uploads, restores) do not
+ * compete for the same request slots or downstream connections.
+ * <p>
+ * The lane of the current request is bound to the request thread by
+ * {@link BulkheadInterceptor} and carried over to the pools that make
+ * downstream calls on its behalf with {@link #propagate(Runnable)}.
+ * Background jobs that write in bulk run in {@link #INGEST}; other threads
+ * have no lane and are not limited.
+ * </p>
+ */
+public enum Lane {
+    SEARCH,
+    CRUD,
+    INGEST;
+
+    private static final ThreadLocal<Lane> CURRENT = new ThreadLocal<>();
+
+    /** Lane of the calling thread, or {@code null}. */
+    public static Lane current() {
+        return CURRENT.get();
+    }
+
+    static void set(Lane lane) {
+        if (lane == null) CURRENT.remove();
+        else CURRENT.set(lane);
+    }
+
+    /** Lower-case name used in metric tags and configuration keys. */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Runs {@code task} in this lane, wherever it is executed. */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            Lane previous = CURRENT.get();
+            set(this);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /** Runs {@code task} in the lane of the calling thread, for handing work to another thread. */
+    public static Runnable propagate(Runnable task) {
+        Lane lane = CURRENT.get();
+        return lane == null ? task : lane.wrap(task);
+    }
+
+    /** As {@link #propagate(Runnable)} for a task with a result. */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        Lane lane = CURRENT.get();
+        if (lane == null) return task;
+        return () -> {
+            Lane previous = CURRENT.get();
+            set(lane);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package com.uymbot.docservice.resilience;
+
+/**
+ * Scheduling priority of a downstream call. Interactive calls (search) are
+ * served before bulk calls (ingestion) whenever both are waiting for budget.
+ */
+public enum Priority {
+    INTERACTIVE,
+    BULK
+}
@@ -0,0 +1,293 @@
+package com.uymbot.docservice.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Spreads ChromaDB reads over read replicas.
+ * <p>
+ * {@code chromadb.replicas} lists replica base URLs, each optionally
+ * prefixed with the primary it replicates ({@code <primary>=<replica>});
+ * unprefixed entries replicate {@code chromadb.host}. Writes always go to
+ * the primary. Each read goes to the healthy replica with the fewest
+ * requests in flight (ties broken at random), which keeps slow replicas
+ * from accumulating a queue. A hedged read therefore lands on a different
+ * replica than the attempt it races, because that one is still busy.
+ * </p>
+ * <p>
+ * Every {@code probe-interval} each replica's heartbeat is checked.
+ * {@code unhealthy-threshold} consecutive failures, from probes or from
+ * reads (I/O errors, 5xx), take a replica out of rotation, and one good
+ * probe brings it back. When no replica of a primary is healthy, reads fall
+ * back to the primary, and so does a read the chosen replica cannot serve
+ * at all ({@link ReplicaUnavailableException}). Replicas are expected to be
+ * eventually consistent copies, so a read may briefly miss a chunk that was
+ * just written.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ReplicaRouter {
+
+    private final Map<String, List<Member>> replicas;
+    private final boolean includePrimary;
+    private final int unhealthyThreshold;
+    private final Predicate<String> heartbeat;
+    private final ScheduledExecutorService prober;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public ReplicaRouter(@Qualifier("chromaHost") String chromaHost,
+                         @Value("${chromadb.replicas.hosts:}") String spec,
+                         @Value("${chromadb.replicas.include-primary:false}") boolean includePrimary,
+                         @Value("${chromadb.replicas.probe-interval:5s}") Duration probeInterval,
+                         @Value("${chromadb.replicas.probe-timeout:1s}") Duration probeTimeout,
+                         @Value("${chromadb.replicas.unhealthy-threshold:2}") int unhealthyThreshold,
+                         MeterRegistry registry) {
+        this(parse(spec, chromaHost), includePrimary, unhealthyThreshold, heartbeatProbe(probeTimeout), registry);
+        if (!replicas.isEmpty()) {
+            prober.scheduleWithFixedDelay(this::probe, probeInterval.toMillis(), probeInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+            log.info("Reads routed to ChromaDB replicas: {}", replicas.keySet().stream()
+                    .map(p -> p + " -> " + replicas.get(p).stream().filter(m -> !m.primary).map(m -> m.host).toList())
+                    .toList());
+        }
+    }
+
+    /**
+     * @param replicas  replica hosts by primary host
+     * @param heartbeat returns {@code true} if the host answers its heartbeat
+     */
+    public ReplicaRouter(Map<String, List<String>> replicas, boolean includePrimary, int unhealthyThreshold,
+                         Predicate<String> heartbeat, MeterRegistry registry) {
+        this.includePrimary = includePrimary;
+        this.unhealthyThreshold = Math.max(1, unhealthyThreshold);
+        this.heartbeat = heartbeat;
+        this.registry = registry;
+        this.replicas = new LinkedHashMap<>();
+        replicas.forEach((primary, hosts) -> {
+            List<Member> members = new ArrayList<>();
+            for (String host : hosts) members.add(new Member(primary, host, false));
+            members.add(new Member(primary, primary, true));
+            this.replicas.put(primary, List.copyOf(members));
+        });
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chroma-replica-probe");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean hasReplicas(String primary) {
+        return replicas.containsKey(primary);
+    }
+
+    /**
+     * Runs a read on the least loaded healthy replica of {@code primary}
+     * (or on {@code primary} itself if it has none). {@code call} receives
+     * the base URL of the chosen host.
+     */
+    public <T> T read(String primary, Function<String, T> call) {
+        List<Member> members = replicas.get(primary);
+        if (members == null) return call.apply(primary);
+
+        Member member = choose(members);
+        try {
+            return read(member, call);
+        } catch (ReplicaUnavailableException e) {
+            if (member.primary) throw e;
+            log.debug("ChromaDB replica {} cannot serve the read, falling back to {}: {}",
+                    member.host, primary, e.getMessage());
+            Member home = members.get(members.size() - 1);
+            home.fallbacks.increment();
+            return read(home, call);
+        }
+    }
+
+    private <T> T read(Member member, Function<String, T> call) {
+        member.reads.increment();
+        member.inFlight.incrementAndGet();
+        try {
+            T result = call.apply(member.host);
+            member.onSuccess();
+            return result;
+        } catch (ResourceAccessException | HttpServerErrorException | ReplicaUnavailableException e) {
+            member.onFailure();
+            throw e;
+        } finally {
+            member.inFlight.decrementAndGet();
+        }
+    }
+
+    /** Health and load of every replica, by host. */
+    public Map<String, Map<String, Object>> status() {
+        Map<String, Map<String, Object>> status = new LinkedHashMap<>();
+        for (List<Member> members : replicas.values()) {
+            for (Member m : members) {
+                if (m.primary) continue;
+                Map<String, Object> member = new LinkedHashMap<>();
+                member.put("primary", m.primaryHost);
+                member.put("healthy", m.healthy);
+                member.put("inFlight", m.inFlight.get());
+                status.put(m.host, member);
+            }
+        }
+        return status;
+    }
+
+    /** One round of heartbeat checks; runs every {@code probe-interval}. */
+    public void probe() {
+        for (List<Member> members : replicas.values()) {
+            for (Member m : members) {
+                if (m.primary) continue;
+                boolean up;
+                try {
+                    up = heartbeat.test(m.host);
+                } catch (RuntimeException e) {
+                    up = false;
+                }
+                if (up) m.onProbeSuccess();
+                else m.onFailure();
+            }
+        }
+    }
+
+    private Member choose(List<Member> members) {
+        Member best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        int ties = 0;
+        for (Member m : members) {
+            if (!m.healthy || (m.primary && !includePrimary)) continue;
+            int load = m.inFlight.get();
+            if (load < bestLoad) {
+                best = m;
+                bestLoad = load;
+                ties = 1;
+            } else if (load == bestLoad && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                best = m;   // reservoir sampling: every tied member is equally likely
+            }
+        }
+        if (best != null) return best;
+        Member primary = members.get(members.size() - 1);
+        primary.fallbacks.increment();
+        return primary;
+    }
+
+    private static Predicate<String> heartbeatProbe(Duration timeout) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout((int) timeout.toMillis());
+        factory.setReadTimeout((int) timeout.toMillis());
+        RestTemplate probe = new RestTemplate(factory);
+        return host -> probe.getForObject(host + "/api/v1/heartbeat", Map.class) != null;
+    }
+
+    /** {@code a,b} replicate {@code chromaHost}; {@code p=a} replicates {@code p}. */
+    static Map<String, List<String>> parse(String spec, String chromaHost) {
+        Map<String, List<String>> replicas = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) return replicas;
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            int eq = trimmed.indexOf('=');
+            String primary = eq < 0 ? chromaHost : trimmed.substring(0, eq).trim();
+            String replica = eq < 0 ? trimmed : trimmed.substring(eq + 1).trim();
+            replicas.computeIfAbsent(primary, p -> new ArrayList<>()).add(replica);
+        }
+        return replicas;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prober.shutdownNow();
+    }
+
+    /**
+     * Thrown by a read when the chosen replica cannot serve it at all, e.g.
+     * because the collection has not been replicated there. The replica is
+     * charged a failure and the read is retried on the primary.
+     */
+    public static class ReplicaUnavailableException extends IllegalStateException {
+        public ReplicaUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final class Member {
+        final String primaryHost;
+        final String host;
+        final boolean primary;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final Counter reads;
+        final Counter fallbacks;
+        volatile boolean healthy = true;
+
+        Member(String primaryHost, String host, boolean primary) {
+            this.primaryHost = primaryHost;
+            this.host = host;
+            this.primary = primary;
+            Gauge.builder("docservice.replica.in-flight", inFlight, AtomicInteger::get)
+                    .description("Reads in flight per ChromaDB host")
+                    .tag("host", host)
+                    .register(registry);
+            this.reads = Counter.builder("docservice.replica.reads")
+                    .description("Reads routed per ChromaDB host")
+                    .tag("host", host)
+                    .register(registry);
+            this.fallbacks = Counter.builder("docservice.replica.primary-fallback")
+                    .description("Reads sent to the primary because no replica was healthy")
+                    .tag("primary", primaryHost)
+                    .register(registry);
+            if (!primary) {
+                Gauge.builder("docservice.replica.healthy", this, m -> m.healthy ? 1 : 0)
+                        .description("1 if the replica is in rotation")
+                        .tag("host", host)
+                        .register(registry);
+            }
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+        }
+
+        void onProbeSuccess() {
+            consecutiveFailures.set(0);
+            if (!healthy) {
+                healthy = true;
+                log.info("ChromaDB replica {} back in rotation", host);
+            }
+        }
+
+        void onFailure() {
+            if (primary) return;   // the primary is guarded by its circuit breaker
+            if (consecutiveFailures.incrementAndGet() >= unhealthyThreshold && healthy) {
+                healthy = false;
+                log.warn("ChromaDB replica {} taken out of rotation after {} consecutive failures",
+                        host, consecutiveFailures.get());
+            }
+        }
+    }
+}
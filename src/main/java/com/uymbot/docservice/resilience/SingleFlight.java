@@ -0,0 +1,129 @@
+package com.uymbot.docservice.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-flight request coalescing ("single flight").
+ * <p>
+ * The first caller for a key runs the supplier on its own thread; callers
+ * that arrive with the same key while it is still running wait for that
+ * call and receive the same result (or the same exception). Nothing is kept
+ * once the call completes, so this only absorbs concurrent duplicates and
+ * never serves stale data.
+ * </p>
+ * <p>
+ * Each flight name publishes {@code docservice.coalescing.calls{flight,role}}
+ * (role {@code leader} / {@code follower}) and a
+ * {@code docservice.coalescing.ratio{flight}} gauge: the share of calls that
+ * were served by another caller's downstream request.
+ * </p>
+ */
+@Component
+public class SingleFlight {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry registry,
+                        @Value("${docservice.coalescing.enabled:true}") boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+        Gauge.builder("docservice.coalescing.in-flight", inFlight, Map::size)
+                .description("Distinct downstream calls currently shared by concurrent callers")
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code call} unless an identical call ({@code flight} + {@code key})
+     * is already in flight, in which case its outcome is shared.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String flight, Object key, Supplier<T> call) {
+        if (!enabled) return call.get();
+
+        Stats s = stats(flight);
+        Key k = new Key(flight, key);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(k, mine);
+        if (existing != null) {
+            s.followers.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+
+        s.leaders.increment();
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(k, mine);
+        }
+    }
+
+    /** Trims and collapses runs of whitespace so trivially different inputs share a key. */
+    public static String normalize(String text) {
+        return text == null ? "" : WHITESPACE.matcher(text.strip()).replaceAll(" ");
+    }
+
+    private Stats stats(String flight) {
+        return stats.computeIfAbsent(flight, f -> new Stats(f, registry));
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException re) return re;
+        if (cause instanceof Error err) throw err;
+        return new IllegalStateException(cause);
+    }
+
+    private record Key(String flight, Object key) {
+    }
+
+    private static final class Stats {
+        final Counter leaders;
+        final Counter followers;
+
+        Stats(String flight, MeterRegistry registry) {
+            this.leaders = Counter.builder("docservice.coalescing.calls")
+                    .description("Calls that went downstream (leader) or shared an in-flight call (follower)")
+                    .tag("flight", flight)
+                    .tag("role", "leader")
+                    .register(registry);
+            this.followers = Counter.builder("docservice.coalescing.calls")
+                    .description("Calls that went downstream (leader) or shared an in-flight call (follower)")
+                    .tag("flight", flight)
+                    .tag("role", "follower")
+                    .register(registry);
+            Gauge.builder("docservice.coalescing.ratio", this, Stats::ratio)
+                    .description("Share of calls served by another caller's in-flight request")
+                    .tag("flight", flight)
+                    .register(registry);
+        }
+
+        double ratio() {
+            double total = leaders.count() + followers.count();
+            return total == 0 ? 0 : followers.count() / total;
+        }
+    }
+}
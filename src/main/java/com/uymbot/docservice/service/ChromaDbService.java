@@ -1,150 +1,1074 @@
 package com.uymbot.docservice.service;
 
-import com.uymbot.docservice.dto.DocumentResponse;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.uymbot.docservice.exception.MigrationConflictException;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
+import com.uymbot.docservice.resilience.ChromaCallGuard;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.resilience.ReplicaRouter;
+import com.uymbot.docservice.sharding.ScatterGather;
+import com.uymbot.docservice.sharding.Shard;
+import com.uymbot.docservice.sharding.ShardRing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Thin wrapper around the ChromaDB HTTP API (v1).
  * Handles collection initialisation and all CRUD / query operations.
+ * <p>
+ * Reads ({@code get}, {@code list}, {@code count}, {@code query}) and writes
+ * go through {@link ChromaCallGuard} for deadlines, hedging, circuit breaking
+ * and degraded answers.
+ * </p>
+ * <p>
+ * The corpus may be split over several collections / nodes
+ * ({@code chromadb.sharding.shards}). Chunks are placed by {@link ShardRing}
+ * on the shard owning their parent document id; id-based calls go to that
+ * shard only, searches query every shard in parallel and merge the nearest
+ * chunks by distance. Chunks that are not on their home shard yet (after a
+ * shard was added and before the rebalance moved them) are found by asking
+ * the other shards on a miss, and their location is remembered so updates
+ * and deletes reach them.
+ * </p>
+ * <p>
+ * While a re-embedding migration runs, every write is also mirrored into the
+ * migration's target collections ({@link ShadowCollection}) with embeddings
+ * of the target spec. Writes hold the read side of a lock whose write side
+ * is taken to switch the service over to the target. The switch is recorded
+ * as an alias in the metadata of the configured collections, so a restarted
+ * service resolves the same collections and embedding spec.
+ * </p>
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ChromaDbService {
 
+    private static final int MISPLACED_CACHE_SIZE = 100_000;
+
+    /** Collection metadata: name of the collection a migration switched this one to. */
+    static final String ALIAS_KEY = "docservice:alias";
+    /** Collection metadata: name of the collection a running migration copies this one into. */
+    static final String MIGRATION_KEY = "docservice:migration";
+    static final String MODEL_KEY = "docservice:model";
+    static final String DIMENSIONS_KEY = "docservice:dimensions";
+    static final String CHECKPOINT_KEY = "docservice:checkpoint";
+    static final String MODIFIED_KEY = "docservice:modified";
+
     private final RestTemplate restTemplate;
+    private final StageMetrics stageMetrics;
+    private final ChromaCallGuard guard;
+    private final ShardRing ring;
     private final EmbeddingService embeddingService;
+    private final String collectionName;
+    private final ExecutorService scatterPool;
+    private final ScatterGather scatter;
 
-    @Qualifier("chromaHost")
-    @org.springframework.beans.factory.annotation.Autowired
-    private String chromaHost;
+    private final Map<Shard, String> collectionIds = new ConcurrentHashMap<>();
+    /** Names of the collections shards were switched to by a migration. */
+    private final Map<Shard, String> liveNames = new ConcurrentHashMap<>();
+    /** Ids of this service's collections on hosts reads were sent to other than the shard's own. */
+    private final Map<HostCollection, String> readCollectionIds = new ConcurrentHashMap<>();
+    /** Ids of other collections written to by snapshot restores, by name. */
+    private final Map<String, String> otherCollectionIds = new ConcurrentHashMap<>();
+    /** Chunks found on a shard other than their home shard. */
+    private final Cache<String, Shard> misplaced = Caffeine.newBuilder().maximumSize(MISPLACED_CACHE_SIZE).build();
 
-    @Value("${chromadb.collection-name}")
-    private String collectionName;
+    /** Writes hold the read lock; switching to a migration's target takes the write lock. */
+    private final ReentrantReadWriteLock switchLock = new ReentrantReadWriteLock();
+    /** See {@link #writeGeneration()}. */
+    private final AtomicLong writeGeneration = new AtomicLong();
+    private final Object shadowLock = new Object();
+    private volatile ShadowCollection shadow;
+    /**
+     * Vector length of the collection after a switch. Writes embedded with
+     * the previous spec just before the switch have another length and are
+     * embedded again; {@code 0} = unknown, no check.
+     */
+    private volatile int vectorSize;
 
-    private volatile String collectionId;
+    public ChromaDbService(RestTemplate restTemplate,
+                           StageMetrics stageMetrics,
+                           ChromaCallGuard guard,
+                           ShardRing ring,
+                           EmbeddingService embeddingService,
+                           @Value("${chromadb.collection-name}") String collectionName,
+                           @Value("${chromadb.sharding.shard-timeout:2s}") Duration shardTimeout,
+                           @Value("${chromadb.sharding.scatter-pool-size:64}") int scatterPoolSize,
+                           MeterRegistry registry) {
+        this.restTemplate = restTemplate;
+        this.stageMetrics = stageMetrics;
+        this.guard = guard;
+        this.ring = ring;
+        this.embeddingService = embeddingService;
+        this.collectionName = collectionName;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(0, scatterPoolSize, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "chroma-scatter-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.scatterPool = ExecutorServiceMetrics.monitor(registry, pool, "chroma-scatter");
+        this.scatter = new ScatterGather(scatterPool, shardTimeout, registry);
+        if (ring.isSharded()) {
+            log.info("ChromaDB sharded over {} collection(s): {}", ring.shards().size(), ring.shards());
+        }
+    }
 
     // ------------------------------------------------------------------ init
-    private String getCollectionId() {
-        if (collectionId == null) {
-            synchronized (this) {
-                if (collectionId == null) {
-                    collectionId = initCollection();
-                }
+    private String collectionId(Shard shard) {
+        return collectionIds.computeIfAbsent(shard, this::resolveCollection);
+    }
+
+    /** Resolves every shard's collection now instead of on first use. */
+    public void resolveCollections() {
+        ring.shards().forEach(this::collectionId);
+    }
+
+    /**
+     * Finds or creates {@code shard}'s collection. A new collection records
+     * the embedding spec it is created with, and an existing one's spec is
+     * adopted, so the vectors always come from the provider that filled it.
+     * After a migration switched it ({@value #ALIAS_KEY}) the target
+     * collection is used and its embedding spec adopted; while a migration
+     * runs ({@value #MIGRATION_KEY}) writes are mirrored into its target from
+     * now on.
+     */
+    private String resolveCollection(Shard shard) {
+        Map<?, ?> collection = findCollection(shard.host(), shard.collection());
+        if (collection == null) {
+            EmbeddingSpec spec = embeddingService.spec();
+            return initCollection(shard.host(), shard.collection(),
+                    Map.of(MODEL_KEY, spec.model(), DIMENSIONS_KEY, spec.dimensions()));
+        }
+
+        Map<?, ?> metadata = metadata(collection);
+        String id = (String) collection.get("id");
+        if (metadata.get(ALIAS_KEY) instanceof String alias) {
+            Map<?, ?> target = findCollection(shard.host(), alias);
+            if (target == null) {
+                throw new IllegalStateException("ChromaDB collection '" + shard.collection() + "' on "
+                        + shard.host() + " was migrated to '" + alias + "', which does not exist");
             }
+            specOf(target).ifPresent(embeddingService::use);
+            liveNames.put(shard, alias);
+            id = (String) target.get("id");
+            log.info("ChromaDB collection '{}' on {} was migrated to '{}', id={}",
+                    shard.collection(), shard.host(), alias, id);
+        } else {
+            specOf(collection).ifPresent(embeddingService::use);
+            log.info("ChromaDB collection '{}' on {} ready, id={}", shard.collection(), shard.host(), id);
         }
-        return collectionId;
+        if (metadata.get(MIGRATION_KEY) instanceof String target) resumeShadow(target);
+        return id;
     }
 
-    private String initCollection() {
+    private String initCollection(String host, String name) {
+        return initCollection(host, name, Map.of());
+    }
+
+    private String initCollection(String host, String name, Map<String, Object> metadata) {
+        Map<String, Object> collectionMetadata = new HashMap<>(metadata);
+        collectionMetadata.put("hnsw:space", "cosine");
         Map<String, Object> body = new HashMap<>();
-        body.put("name", collectionName);
+        body.put("name", name);
         body.put("get_or_create", true);
-        body.put("metadata", Map.of("hnsw:space", "cosine"));
+        body.put("metadata", collectionMetadata);
 
-        Map<?, ?> response = restTemplate.postForObject(
-                chromaHost + "/api/v1/collections", body, Map.class);
+        Map<?, ?> response = stageMetrics.time(Stage.CHROMA, "collection", () -> guard.write("collection", host,
+                () -> restTemplate.postForObject(host + "/api/v1/collections", body, Map.class)));
         String id = (String) Objects.requireNonNull(response).get("id");
-        log.info("ChromaDB collection '{}' ready, id={}", collectionName, id);
+        log.info("ChromaDB collection '{}' on {} ready, id={}", name, host, id);
         return id;
     }
 
+    /** The collection named {@code name} on {@code host} with its metadata, or {@code null}. */
+    private Map<?, ?> findCollection(String host, String name) {
+        List<?> collections = stageMetrics.time(Stage.CHROMA, "collection", () -> guard.readConsistent(
+                "collection", host, () -> restTemplate.getForObject(host + "/api/v1/collections", List.class)));
+        if (collections == null) return null;
+        for (Object c : collections) {
+            if (c instanceof Map<?, ?> collection && name.equals(collection.get("name"))) return collection;
+        }
+        return null;
+    }
+
+    /**
+     * Replaces a collection's metadata. ChromaDB does not allow changing the
+     * index settings afterwards, so {@code hnsw:*} keys are left out.
+     */
+    private void modifyMetadata(String host, String id, Map<?, ?> metadata) {
+        Map<String, Object> next = new HashMap<>();
+        metadata.forEach((key, value) -> {
+            if (value != null && !key.toString().startsWith("hnsw:")) next.put(key.toString(), value);
+        });
+        next.put(MODIFIED_KEY, Instant.now().toString());
+        stageMetrics.time(Stage.CHROMA, "collection", () -> guard.write("collection", host,
+                () -> restTemplate.put(host + "/api/v1/collections/" + id, Map.of("new_metadata", next))));
+    }
+
+    private static Map<?, ?> metadata(Map<?, ?> collection) {
+        return collection.get("metadata") instanceof Map<?, ?> metadata ? metadata : Map.of();
+    }
+
+    private static Optional<EmbeddingSpec> specOf(Map<?, ?> collection) {
+        Map<?, ?> metadata = metadata(collection);
+        if (!(metadata.get(MODEL_KEY) instanceof String model)) return Optional.empty();
+        int dimensions = metadata.get(DIMENSIONS_KEY) instanceof Number n ? n.intValue() : 0;
+        return Optional.of(new EmbeddingSpec(model, dimensions));
+    }
+
+    /**
+     * Id of {@code shard}'s collection on {@code host}, a replica or hedge
+     * host of the shard's node. Replicas are read-only to this service, so
+     * the collection is looked up by name there instead of being created; a
+     * host where that fails or finds nothing is reported as unavailable, and
+     * the read goes to the shard's own host instead.
+     */
+    private String collectionId(String host, Shard shard) {
+        if (host.equals(shard.host())) return collectionId(shard);
+        collectionId(shard);   // follows a migration alias
+        String name = liveNames.getOrDefault(shard, shard.collection());
+        return readCollectionIds.computeIfAbsent(new HostCollection(host, name), hc -> {
+            Map<?, ?> collection;
+            try {
+                collection = findCollection(hc.host(), hc.collection());
+            } catch (RuntimeException e) {
+                throw new ReplicaRouter.ReplicaUnavailableException(
+                        "collection '" + hc.collection() + "' on " + hc.host() + " could not be looked up", e);
+            }
+            if (collection == null || !(collection.get("id") instanceof String id)) {
+                throw new ReplicaRouter.ReplicaUnavailableException(
+                        "collection '" + hc.collection() + "' not found on " + hc.host(), null);
+            }
+            log.info("ChromaDB collection '{}' on read host {} has id={}", hc.collection(), hc.host(), id);
+            return id;
+        });
+    }
+
     // ------------------------------------------------------------------ add
     public void add(String id, String content, Map<String, Object> metadata, float[] embedding) {
-        Map<String, Object> body = new HashMap<>();
-        body.put("ids", List.of(id));
-        body.put("documents", List.of(content));
-        body.put("metadatas", List.of(metadata));
-        body.put("embeddings", List.of(toList(embedding)));
+        Shard shard = ring.route(id);
+        writing(() -> {
+            Map<String, Object> body = new HashMap<>();
+            body.put("ids", List.of(id));
+            body.put("documents", List.of(content));
+            body.put("metadatas", List.of(metadata));
+            body.put("embeddings", List.of(toList(current(content, embedding))));
 
-        restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/add",
-                body, Void.class);
+            String url = collectionUrl(shard) + "/add";
+            stageMetrics.time(Stage.CHROMA, "add", () -> guard.write("add", shard.host(),
+                    () -> restTemplate.postForObject(url, body, Void.class)));
+            mirror(shard, "upsert", List.of(id), List.of(content), List.of(metadata));
+        });
     }
 
-    // ------------------------------------------------------------------ get by id
-    public Optional<Map<?, ?>> getById(String id) {
-        Map<String, Object> body = new HashMap<>();
-        body.put("ids", List.of(id));
-        body.put("include", List.of("documents", "metadatas"));
+    /**
+     * Adds or replaces several chunks with one {@code /upsert} per shard. Into
+     * this service's collection chunks are placed on their home shards; any
+     * other collection is created (cosine space) on the first shard's node if
+     * it does not exist.
+     */
+    public void upsertAll(String collection, List<String> ids, List<String> documents,
+                          List<Map<String, Object>> metadatas, List<float[]> embeddings) {
+        if (ids.isEmpty()) return;
+        if (collection.equals(collectionName)) {
+            Map<Shard, List<Integer>> byShard = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                byShard.computeIfAbsent(ring.route(ids.get(i)), s -> new ArrayList<>()).add(i);
+            }
+            byShard.forEach((shard, rows) -> upsert(shard, pick(ids, rows), pick(documents, rows),
+                    pick(metadatas, rows), pick(embeddings, rows)));
+            return;
+        }
+
+        String host = ring.shards().get(0).host();
+        String id = otherCollectionIds.computeIfAbsent(collection, name -> initCollection(host, name));
+        String url = host + "/api/v1/collections/" + id + "/upsert";
+        Map<String, Object> body = upsertBody(ids, documents, metadatas, embeddings);
+        stageMetrics.time(Stage.CHROMA, "upsert", () -> guard.write("upsert", host,
+                () -> restTemplate.postForObject(url, body, Void.class)));
+    }
+
+    /** {@code /upsert} into one shard of this service's collection. */
+    public void upsert(Shard shard, List<String> ids, List<String> documents,
+                       List<Map<String, Object>> metadatas, List<float[]> embeddings) {
+        if (ids.isEmpty()) return;
+        writing(() -> {
+            List<float[]> vectors = new ArrayList<>(embeddings.size());
+            for (int i = 0; i < embeddings.size(); i++) vectors.add(current(documents.get(i), embeddings.get(i)));
+            Map<String, Object> body = upsertBody(ids, documents, metadatas, vectors);
+            String url = collectionUrl(shard) + "/upsert";
+            stageMetrics.time(Stage.CHROMA, "upsert", () -> guard.write("upsert", shard.host(),
+                    () -> restTemplate.postForObject(url, body, Void.class)));
+            mirror(shard, "upsert", ids, documents, metadatas);
+        });
+        for (String id : ids) {
+            guard.forget("get", new ShardKey(shard.index(), id));
+            if (shard.equals(ring.route(id))) misplaced.invalidate(id);
+        }
+    }
+
+    public String collectionName() {
+        return collectionName;
+    }
+
+    public List<Shard> shards() {
+        return ring.shards();
+    }
 
-        Map<?, ?> result = restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/get",
-                body, Map.class);
+    /** Shard a chunk belongs on according to the ring. */
+    public Shard home(String id) {
+        return ring.route(id);
+    }
 
-        List<?> ids = (List<?>) Objects.requireNonNull(result).get("ids");
+    // ------------------------------------------------------------------ get by id
+    public Optional<Map<?, ?>> getById(String id) {
+        Map<?, ?> result = get(List.of(id), List.of("documents", "metadatas"), "get", true);
+        List<?> ids = (List<?>) result.get("ids");
         if (ids == null || ids.isEmpty()) return Optional.empty();
         return Optional.of(result);
     }
 
-    // ------------------------------------------------------------------ list
-    public Map<?, ?> list(int limit, int offset) {
+    /** One {@code /get} per shard for several ids; ids that do not exist are simply absent from the result. */
+    public Map<?, ?> getByIds(Collection<String> ids) {
+        return get(List.copyOf(ids), List.of("documents", "metadatas"), "get", true);
+    }
+
+    /**
+     * Ids of the chunks matching {@code ids} and/or the metadata filter
+     * {@code where}, without documents or metadata.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findIds(Collection<String> ids, Map<String, Object> where) {
+        Map<?, ?> result;
+        if (ids != null) {
+            result = get(List.copyOf(ids), where, List.of(), "ids", true);
+        } else {
+            Map<String, Object> body = new HashMap<>();
+            body.put("where", where);
+            body.put("include", List.of());
+            result = ScatterGather.concat(scatter.callAll("ids", ring.shards(),
+                    shard -> fetch(shard, "ids", body, new ShardKey(shard.index(), body))).values());
+        }
+        List<String> found = (List<String>) Objects.requireNonNull(result).get("ids");
+        return found == null ? List.of() : found;
+    }
+
+    private Map<?, ?> get(List<String> ids, List<String> include, String op, boolean remember) {
+        return get(ids, null, include, op, remember);
+    }
+
+    /**
+     * Looks the ids up on the shards they are expected on, then, if sharded,
+     * asks every shard for the ones that were missing.
+     */
+    private Map<?, ?> get(List<String> ids, Map<String, Object> where, List<String> include,
+                          String op, boolean remember) {
+        Map<Shard, List<String>> byShard = new LinkedHashMap<>();
+        for (String id : ids) byShard.computeIfAbsent(locate(id), s -> new ArrayList<>()).add(id);
+
+        Map<Shard, Map<?, ?>> answers = scatter.callAll(op, byShard.keySet(), shard -> {
+            List<String> shardIds = byShard.get(shard);
+            Object key = null;
+            if (remember) {
+                // a single id is its own key so that update / delete can forget it
+                Object idKey = shardIds.size() == 1 ? shardIds.get(0) : shardIds;
+                key = new ShardKey(shard.index(), where == null ? idKey : List.of(idKey, where));
+            }
+            return fetch(shard, op, getBody(shardIds, where, include), key);
+        });
+        Map<String, Object> merged = ScatterGather.concat(answers.values());
+        if (!ring.isSharded()) return merged;
+
+        Set<Object> found = new HashSet<>(ids(merged));
+        List<String> missing = ids.stream().filter(id -> !found.contains(id)).distinct().toList();
+        if (missing.isEmpty()) return merged;
+
+        // not on the expected shard: written before a shard was added and not rebalanced yet
+        Map<String, Object> body = getBody(missing, where, include);
+        Map<Shard, Map<?, ?>> strays = scatter.call(op, ring.shards(), shard -> fetch(shard, op, body, null));
+        List<Map<?, ?>> parts = new ArrayList<>();
+        parts.add(merged);
+        strays.forEach((shard, answer) -> {
+            List<?> strayIds = ids(answer);
+            if (strayIds.isEmpty()) return;
+            for (Object id : strayIds) {
+                if (!shard.equals(ring.route((String) id))) misplaced.put((String) id, shard);
+            }
+            parts.add(answer);
+        });
+        return parts.size() == 1 ? merged : ScatterGather.concat(parts);
+    }
+
+    private static Map<String, Object> getBody(List<String> ids, Map<String, Object> where, List<String> include) {
         Map<String, Object> body = new HashMap<>();
-        body.put("include", List.of("documents", "metadatas"));
+        body.put("ids", ids);
+        if (where != null) body.put("where", where);
+        body.put("include", include);
+        return body;
+    }
+
+    private static Map<String, Object> listBody(int limit, int offset, List<String> include) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("include", include);
         body.put("limit", limit);
         body.put("offset", offset);
+        return body;
+    }
 
-        return restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/get",
-                body, Map.class);
+    private Map<?, ?> fetch(Shard shard, String op, Map<String, Object> body, Object fallbackKey) {
+        return stageMetrics.time(Stage.CHROMA, op, () -> guard.read(op, shard.host(), fallbackKey,
+                host -> restTemplate.postForObject(readUrl(host, shard) + "/get", body, Map.class)));
+    }
+
+    // ------------------------------------------------------------------ list
+    public Map<?, ?> list(int limit, int offset) {
+        return list(limit, offset, List.of("documents", "metadatas"), true);
+    }
+
+    /**
+     * One page of the collection in ChromaDB's storage order (shard after
+     * shard when sharded) with the given {@code include} fields. Used by the
+     * export; pages are not remembered for degraded answers.
+     */
+    public Map<?, ?> list(int limit, int offset, List<String> include) {
+        return list(limit, offset, include, false);
+    }
+
+    /** One page of a single shard, not remembered for degraded answers. */
+    public Map<?, ?> list(Shard shard, int limit, int offset, List<String> include) {
+        return listShard(shard, limit, offset, include, false);
+    }
+
+    private Map<?, ?> list(int limit, int offset, List<String> include, boolean remember) {
+        if (!ring.isSharded()) {
+            return listShard(ring.shards().get(0), limit, offset, include, remember);
+        }
+        // global offsets run through the shards in order: skip whole shards by their counts
+        Map<Shard, Integer> counts = scatter.callAll("count", ring.shards(), this::count);
+        List<Map<?, ?>> pages = new ArrayList<>();
+        int skip = offset;
+        int remaining = limit;
+        for (Shard shard : ring.shards()) {
+            int count = counts.get(shard);
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            Map<?, ?> page = listShard(shard, remaining, skip, include, remember);
+            for (Object id : ids(page)) {
+                if (!shard.equals(ring.route((String) id))) misplaced.put((String) id, shard);
+            }
+            pages.add(page);
+            remaining -= ids(page).size();
+            skip = 0;
+            if (remaining <= 0) break;
+        }
+        return ScatterGather.concat(pages);
+    }
+
+    private Map<?, ?> listShard(Shard shard, int limit, int offset, List<String> include, boolean remember) {
+        Map<String, Object> body = listBody(limit, offset, include);
+        Object key = remember ? new ShardKey(shard.index(), List.of(limit, offset)) : null;
+        return stageMetrics.time(Stage.CHROMA, "list", () -> guard.read("list", shard.host(), key,
+                host -> restTemplate.postForObject(readUrl(host, shard) + "/get", body, Map.class)));
     }
 
     // ------------------------------------------------------------------ update
     public void update(String id, String content, Map<String, Object> metadata, float[] embedding) {
-        Map<String, Object> body = new HashMap<>();
-        body.put("ids", List.of(id));
-        body.put("documents", List.of(content));
-        body.put("metadatas", List.of(metadata));
-        body.put("embeddings", List.of(toList(embedding)));
+        Shard shard = locate(id);
+        writing(() -> {
+            Map<String, Object> body = new HashMap<>();
+            body.put("ids", List.of(id));
+            body.put("documents", List.of(content));
+            body.put("metadatas", List.of(metadata));
+            body.put("embeddings", List.of(toList(current(content, embedding))));
 
-        restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/update",
-                body, Void.class);
+            String url = collectionUrl(shard) + "/update";
+            stageMetrics.time(Stage.CHROMA, "update", () -> guard.write("update", shard.host(),
+                    () -> restTemplate.postForObject(url, body, Void.class)));
+            mirror(shard, "update", List.of(id), List.of(content), List.of(metadata));
+        });
+        guard.forget("get", new ShardKey(shard.index(), id));
+    }
+
+    /** Replaces only the metadata; ChromaDB keeps the stored document and embedding. */
+    public void updateMetadata(String id, Map<String, Object> metadata) {
+        Shard shard = locate(id);
+        writing(() -> {
+            Map<String, Object> body = new HashMap<>();
+            body.put("ids", List.of(id));
+            body.put("metadatas", List.of(metadata));
+
+            String url = collectionUrl(shard) + "/update";
+            stageMetrics.time(Stage.CHROMA, "update", () -> guard.write("update", shard.host(),
+                    () -> restTemplate.postForObject(url, body, Void.class)));
+            mirror(shard, "update", List.of(id), null, List.of(metadata));
+        });
+        guard.forget("get", new ShardKey(shard.index(), id));
     }
 
     // ------------------------------------------------------------------ delete
     public void delete(String id) {
-        Map<String, Object> body = Map.of("ids", List.of(id));
-        restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/delete",
-                body, Void.class);
+        delete(locate(id), List.of(id));
+    }
+
+    /** Deletes several chunks with one {@code /delete} per shard. */
+    public void deleteAll(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        Map<Shard, List<String>> byShard = new LinkedHashMap<>();
+        for (String id : ids) byShard.computeIfAbsent(locate(id), s -> new ArrayList<>()).add(id);
+        byShard.forEach(this::delete);
+    }
+
+    /** Deletes chunks from one shard. */
+    public void delete(Shard shard, Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        List<String> idList = List.copyOf(ids);
+        writing(() -> {
+            Map<String, Object> body = Map.of("ids", idList);
+            String url = collectionUrl(shard) + "/delete";
+            stageMetrics.time(Stage.CHROMA, "delete", () -> guard.write("delete", shard.host(),
+                    () -> restTemplate.postForObject(url, body, Void.class)));
+            mirror(shard, "delete", idList, null, null);
+        });
+        for (String id : ids) {
+            guard.forget("get", new ShardKey(shard.index(), id));
+            if (shard.equals(misplaced.getIfPresent(id))) misplaced.invalidate(id);
+        }
+    }
+
+    /**
+     * Counter advanced after every write to this service's collection through
+     * this instance and when a migration switches collections. Results read
+     * while it kept its value reflect all of those writes; writes by other
+     * instances are not counted.
+     */
+    public long writeGeneration() {
+        return writeGeneration.get();
     }
 
     // ------------------------------------------------------------------ count
+    /**
+     * Chunks in the collection, summed over every shard. A shard that does not
+     * answer fails the count instead of being left out of it: a short total
+     * would silently cap {@code nResults}.
+     */
     public int count() {
-        Integer c = restTemplate.getForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/count",
-                Integer.class);
+        if (!ring.isSharded()) return count(ring.shards().get(0));
+        return scatter.callAll("count", ring.shards(), this::count).values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public int count(Shard shard) {
+        Integer c = stageMetrics.time(Stage.CHROMA, "count", () -> guard.read("count", shard.host(),
+                new ShardKey(shard.index(), ""),
+                host -> restTemplate.getForObject(readUrl(host, shard) + "/count", Integer.class)));
         return c == null ? 0 : c;
     }
 
     // ------------------------------------------------------------------ query
     public Map<?, ?> query(float[] queryEmbedding, int nResults) {
+        return queryAll(List.of(queryEmbedding), nResults).get(0);
+    }
+
+    /**
+     * Runs several query embeddings as one {@code /query} call per shard.
+     *
+     * @return one answer per embedding, in order, each in ChromaDB's nested
+     *         single-query shape ({@code ids[0]}, {@code documents[0]}, ...)
+     */
+    public List<Map<?, ?>> queryAll(List<float[]> queryEmbeddings, int nResults) {
         Map<String, Object> body = new HashMap<>();
-        body.put("query_embeddings", List.of(toList(queryEmbedding)));
+        body.put("query_embeddings", queryEmbeddings.stream().map(ChromaDbService::toList).toList());
         body.put("n_results", nResults);
-        body.put("include", List.of("documents", "metadatas"));
+        body.put("include", List.of("documents", "metadatas", "distances"));
+
+        QueryKey queryKey = new QueryKey(queryEmbeddings.toArray(float[][]::new), nResults);
+        Map<Shard, Map<?, ?>> answers = scatter.call("query", ring.shards(), shard -> {
+            return stageMetrics.time(Stage.CHROMA, "query", () -> guard.read("query", shard.host(),
+                    new ShardKey(shard.index(), queryKey),
+                    host -> restTemplate.postForObject(readUrl(host, shard) + "/query", body, Map.class)));
+        });
+        List<Map<?, ?>> results = new ArrayList<>(queryEmbeddings.size());
+        for (int q = 0; q < queryEmbeddings.size(); q++) {
+            int row = q;
+            List<Map<?, ?>> perShard = answers.values().stream().<Map<?, ?>>map(a -> queryRow(a, row)).toList();
+            results.add(perShard.size() == 1 ? perShard.get(0) : ScatterGather.mergeQueries(perShard, nResults));
+        }
+        return results;
+    }
+
+    /** Row {@code q} of a multi-query answer, in the nested single-query shape. */
+    private static Map<?, ?> queryRow(Map<?, ?> answer, int q) {
+        if (q == 0 && answer.get("ids") instanceof List<?> ids && ids.size() <= 1) return answer;
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> column : answer.entrySet()) {
+            if (column.getValue() instanceof List<?> rows) {
+                row.put((String) column.getKey(), q < rows.size() ? Collections.singletonList(rows.get(q)) : List.of());
+            }
+        }
+        return row;
+    }
+
+    // ------------------------------------------------------------------ heartbeat
+    /** Heartbeat of the first shard's node, or of every distinct node by host when sharded. */
+    public Map<?, ?> heartbeat() {
+        List<String> hosts = ring.shards().stream().map(Shard::host).distinct().toList();
+        if (hosts.size() == 1) return heartbeat(hosts.get(0));
+        Map<String, Object> beats = new LinkedHashMap<>();
+        for (String host : hosts) beats.put(host, heartbeat(host));
+        return beats;
+    }
 
-        return restTemplate.postForObject(
-                chromaHost + "/api/v1/collections/" + getCollectionId() + "/query",
-                body, Map.class);
+    private Map<?, ?> heartbeat(String host) {
+        return stageMetrics.time(Stage.CHROMA, "heartbeat", () -> restTemplate.getForObject(
+                host + "/api/v1/heartbeat", Map.class));
+    }
+
+    // ------------------------------------------------------------------ migration
+    /** The running migration's target, or {@code null}. */
+    public ShadowCollection shadow() {
+        return shadow;
+    }
+
+    /**
+     * Creates (or reopens) the target collections of a migration into
+     * {@code target} and mirrors every write into them from now on. The
+     * migration is also marked in the metadata of the source collections, so
+     * a restarted service keeps mirroring.
+     *
+     * @param target collection name; on a sharded collection every shard gets
+     *               {@code <shard collection>-<target>} on its own node
+     */
+    public synchronized ShadowCollection startShadow(String target, EmbeddingSpec spec) {
+        if (shadow != null) {
+            throw new MigrationConflictException("A migration into '" + shadow.name() + "' is already running");
+        }
+        resolveCollections();
+        Map<Integer, Shard> targets = new HashMap<>();
+        Map<Integer, String> targetIds = new HashMap<>();
+        for (Shard shard : ring.shards()) {
+            Shard t = targetShard(shard, target);
+            if (t.collection().equals(shard.collection()) || t.collection().equals(liveNames.get(shard))) {
+                throw new MigrationConflictException("'" + target + "' is the collection in use");
+            }
+            Map<?, ?> existing = findCollection(t.host(), t.collection());
+            if (existing != null && !specOf(existing).equals(Optional.of(spec))) {
+                throw new MigrationConflictException("Collection '" + t.collection() + "' on " + t.host()
+                        + " already exists and was not created by a migration to " + spec);
+            }
+            targets.put(shard.index(), t);
+            targetIds.put(shard.index(), existing != null ? (String) existing.get("id")
+                    : initCollection(t.host(), t.collection(), Map.of(MODEL_KEY, spec.model(),
+                            DIMENSIONS_KEY, spec.dimensions())));
+        }
+        ShadowCollection started = new ShadowCollection(target, spec, targets, targetIds);
+        synchronized (shadowLock) {
+            shadow = started;
+        }
+        try {
+            for (Shard shard : ring.shards()) {
+                updateSourceMetadata(shard, metadata -> metadata.put(MIGRATION_KEY, target));
+            }
+        } catch (RuntimeException e) {
+            stopShadow(false);
+            throw e;
+        }
+        log.info("Mirroring writes into migration target '{}' ({})", target, spec);
+        return started;
+    }
+
+    /** Mirrors into a migration found in a source collection's metadata while resolving it. */
+    private void resumeShadow(String target) {
+        if (shadow != null) return;
+        Map<Integer, Shard> targets = new HashMap<>();
+        Map<Integer, String> targetIds = new HashMap<>();
+        Optional<EmbeddingSpec> spec = Optional.empty();
+        for (Shard shard : ring.shards()) {
+            Shard t = targetShard(shard, target);
+            Map<?, ?> collection = findCollection(t.host(), t.collection());
+            if (collection == null || specOf(collection).isEmpty()) {
+                log.error("Migration target '{}' on {} is missing; writes are not mirrored, abort the migration",
+                        t.collection(), t.host());
+                return;
+            }
+            spec = specOf(collection);
+            targets.put(shard.index(), t);
+            targetIds.put(shard.index(), (String) collection.get("id"));
+        }
+        synchronized (shadowLock) {
+            if (shadow != null) return;
+            shadow = new ShadowCollection(target, spec.orElseThrow(), targets, targetIds);
+        }
+        log.info("Resumed mirroring writes into migration target '{}' ({})", target, spec.get());
+    }
+
+    /** Stops mirroring and removes the migration marker; {@code drop} also deletes the target collections. */
+    public synchronized void stopShadow(boolean drop) {
+        ShadowCollection stopped = shadow;
+        if (stopped == null) return;
+        synchronized (shadowLock) {
+            shadow = null;
+        }
+        for (Shard shard : ring.shards()) {
+            updateSourceMetadata(shard, metadata -> metadata.remove(MIGRATION_KEY));
+            if (drop) {
+                Shard t = stopped.target(shard);
+                guard.write("collection", t.host(), () -> restTemplate.delete(
+                        t.host() + "/api/v1/collections/" + t.collection()));
+            }
+        }
+        log.info("Stopped mirroring writes into migration target '{}'{}", stopped.name(),
+                drop ? ", target dropped" : "");
+    }
+
+    /**
+     * Switches the service over to the migration target: with writes drained
+     * and blocked, {@code beforeSwitch} copies the last dirty chunks, then every
+     * source collection is aliased to its target, ids and embedding spec are
+     * swapped and mirroring stops. Reads in flight finish on the old collection.
+     *
+     * @param vectorSize length of the target's vectors, so writes embedded with
+     *                   the old spec while waiting for the lock are re-embedded
+     */
+    public synchronized void switchToShadow(Duration drainTimeout, int vectorSize, Runnable beforeSwitch) {
+        ShadowCollection target = requireShadow();
+        try {
+            if (!switchLock.writeLock().tryLock(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Writes did not drain within " + drainTimeout.toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for writes to drain", e);
+        }
+        try {
+            beforeSwitch.run();
+            if (target.dirtyCount() > 0) {
+                throw new IllegalStateException(target.dirtyCount() + " chunk(s) could not be copied to the target");
+            }
+            List<Shard> aliased = new ArrayList<>();
+            try {
+                for (Shard shard : ring.shards()) {
+                    String alias = target.target(shard).collection();
+                    updateSourceMetadata(shard, metadata -> {
+                        metadata.remove(MIGRATION_KEY);
+                        metadata.put(ALIAS_KEY, alias);
+                    });
+                    aliased.add(shard);
+                }
+            } catch (RuntimeException e) {
+                // put the shards already switched back, so that all of them still resolve the same way
+                for (Shard shard : aliased) {
+                    String previous = liveNames.get(shard);
+                    updateSourceMetadata(shard, metadata -> {
+                        metadata.put(MIGRATION_KEY, target.name());
+                        if (previous == null) metadata.remove(ALIAS_KEY);
+                        else metadata.put(ALIAS_KEY, previous);
+                    });
+                }
+                throw e;
+            }
+            for (Shard shard : ring.shards()) {
+                collectionIds.put(shard, target.targetId(shard));
+                liveNames.put(shard, target.target(shard).collection());
+            }
+            readCollectionIds.clear();
+            guard.forgetAll();
+            writeGeneration.incrementAndGet();
+            embeddingService.use(target.spec());
+            this.vectorSize = vectorSize;
+            synchronized (shadowLock) {
+                shadow = null;
+            }
+            log.info("Switched to collection '{}' ({})", target.name(), target.spec());
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    /** One page of a source shard read from its own node, so that it reflects every acknowledged write. */
+    public Map<?, ?> listConsistent(Shard shard, int limit, int offset, List<String> include) {
+        return stageMetrics.time(Stage.CHROMA, "list", () -> guard.readConsistent("list", shard.host(),
+                () -> restTemplate.postForObject(collectionUrl(shard) + "/get",
+                        listBody(limit, offset, include), Map.class)));
+    }
+
+    /** Chunks of a source shard read from its own node. */
+    public Map<?, ?> getConsistent(Shard shard, List<String> ids, List<String> include) {
+        return stageMetrics.time(Stage.CHROMA, "get", () -> guard.readConsistent("get", shard.host(),
+                () -> restTemplate.postForObject(collectionUrl(shard) + "/get",
+                        getBody(ids, null, include), Map.class)));
+    }
+
+    /** One page of the migration target of {@code source}. */
+    public Map<?, ?> listShadow(Shard source, int limit, int offset, List<String> include) {
+        return shadowCall(source, "list", "/get", listBody(limit, offset, include), Map.class);
+    }
+
+    /** Chunks of the migration target of {@code source}. */
+    public Map<?, ?> getShadow(Shard source, List<String> ids, List<String> include) {
+        return shadowCall(source, "get", "/get", getBody(ids, null, include), Map.class);
+    }
+
+    /**
+     * Writes chunks read from {@code source} at clock value {@code readTime}
+     * into its migration target with {@code /upsert}. Chunks a mirrored write
+     * touched since are left out and marked dirty.
+     *
+     * @return chunks written
+     */
+    public int copyToShadow(Shard source, long readTime, List<String> ids, List<String> documents,
+                            List<Map<String, Object>> metadatas, List<float[]> embeddings) {
+        ShadowCollection target = requireShadow();
+        target.lock.lock();
+        try {
+            List<Integer> rows = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                if (target.touchedSince(ids.get(i), readTime)) target.markDirty(ids.get(i));
+                else rows.add(i);
+            }
+            if (!rows.isEmpty()) {
+                shadowCall(source, "copy", "/upsert", upsertBody(pick(ids, rows), pick(documents, rows),
+                        pick(metadatas, rows), pick(embeddings, rows)), Void.class);
+            }
+            return rows.size();
+        } finally {
+            target.lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes chunks found missing from {@code source} at {@code readTime}
+     * from its migration target, unless a mirrored write touched them since.
+     */
+    public int deleteFromShadow(Shard source, long readTime, List<String> ids) {
+        ShadowCollection target = requireShadow();
+        target.lock.lock();
+        try {
+            List<String> gone = ids.stream().filter(id -> !target.touchedSince(id, readTime)).toList();
+            if (!gone.isEmpty()) shadowCall(source, "copy", "/delete", Map.of("ids", gone), Void.class);
+            return gone.size();
+        } finally {
+            target.lock.unlock();
+        }
+    }
+
+    /** Forgets mirrored-write stamps that can no longer affect reads taken at or after {@code readTime}. */
+    public void releaseShadowStamps(long readTime) {
+        ShadowCollection target = shadow;
+        if (target != null) target.forgetBefore(readTime);
+    }
+
+    public int countShadow(Shard source) {
+        Integer count = stageMetrics.time(Stage.CHROMA, "count", () -> guard.readConsistent("count",
+                requireShadow().target(source).host(),
+                () -> restTemplate.getForObject(shadowUrl(requireShadow(), source) + "/count", Integer.class)));
+        return count == null ? 0 : count;
+    }
+
+    /** Checkpoint stored with the migration target, or {@code null}. */
+    public String shadowCheckpoint() {
+        ShadowCollection target = requireShadow();
+        Shard first = target.target(ring.shards().get(0));
+        Map<?, ?> collection = findCollection(first.host(), first.collection());
+        return collection == null ? null : (String) metadata(collection).get(CHECKPOINT_KEY);
+    }
+
+    /** Stores {@code checkpoint} in the metadata of the first shard's migration target. */
+    public void saveShadowCheckpoint(String checkpoint) {
+        ShadowCollection target = requireShadow();
+        Shard source = ring.shards().get(0);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(MODEL_KEY, target.spec().model());
+        metadata.put(DIMENSIONS_KEY, target.spec().dimensions());
+        metadata.put(CHECKPOINT_KEY, checkpoint);
+        modifyMetadata(target.target(source).host(), target.targetId(source), metadata);
+    }
+
+    private ShadowCollection requireShadow() {
+        ShadowCollection target = shadow;
+        if (target == null) throw new MigrationConflictException("No migration is running");
+        return target;
+    }
+
+    /** Runs a write to this service's collection so that a switch cannot happen in the middle of it. */
+    private void writing(Runnable write) {
+        switchLock.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            // also after a failure, which may have been applied in part
+            writeGeneration.incrementAndGet();
+            switchLock.readLock().unlock();
+        }
+    }
+
+    /** {@code embedding}, or a new one if it was made with the spec used before a switch. */
+    private float[] current(String content, float[] embedding) {
+        int size = vectorSize;
+        if (size == 0 || embedding.length == size || content == null) return embedding;
+        return embeddingService.embed(content, Priority.BULK);
+    }
+
+    /**
+     * Repeats a write on the migration target, embedding {@code documents}
+     * with the target's spec. A failure does not fail the write; the chunks
+     * are marked dirty and copied again before the switch.
+     */
+    private void mirror(Shard shard, String op, List<String> ids, List<String> documents,
+                        List<Map<String, Object>> metadatas) {
+        ShadowCollection target = shadow;
+        if (target == null) return;
+        try {
+            Map<String, Object> body = new HashMap<>();
+            body.put("ids", ids);
+            if (documents != null) {
+                List<List<Float>> vectors = new ArrayList<>(documents.size());
+                for (String document : documents) {
+                    vectors.add(toList(embeddingService.embed(document, Priority.BULK, target.spec())));
+                }
+                body.put("documents", documents);
+                body.put("embeddings", vectors);
+            }
+            if (metadatas != null) body.put("metadatas", metadatas);
+
+            target.lock.lock();
+            try {
+                shadowCall(shard, "mirror", "/" + op, body, Void.class);
+            } finally {
+                target.touch(ids);
+                target.lock.unlock();
+            }
+            target.onMirrored(ids.size());
+        } catch (RuntimeException e) {
+            target.onMirrorFailed(ids);
+            log.warn("Mirroring {} of {} chunk(s) into '{}' failed, will copy again: {}",
+                    op, ids.size(), target.name(), e.getMessage());
+        }
+    }
+
+    private <T> T shadowCall(Shard source, String op, String path, Map<String, Object> body, Class<T> type) {
+        ShadowCollection target = requireShadow();
+        String url = shadowUrl(target, source) + path;
+        return stageMetrics.time(Stage.CHROMA, op, () -> guard.write(op, target.target(source).host(),
+                () -> restTemplate.postForObject(url, body, type)));
+    }
+
+    private static String shadowUrl(ShadowCollection target, Shard source) {
+        return target.target(source).host() + "/api/v1/collections/" + target.targetId(source);
+    }
+
+    /** Target of {@code shard} in a migration into {@code target}: the same node, a derived name if sharded. */
+    private Shard targetShard(Shard shard, String target) {
+        String name = shard.collection().equals(collectionName) ? target : shard.collection() + "-" + target;
+        return new Shard(shard.index(), shard.host(), name);
+    }
+
+    /** Read-modify-write of the metadata of the configured collection of {@code shard}. */
+    private void updateSourceMetadata(Shard shard, Consumer<Map<String, Object>> change) {
+        Map<?, ?> collection = findCollection(shard.host(), shard.collection());
+        if (collection == null) throw new IllegalStateException("Collection '" + shard.collection()
+                + "' on " + shard.host() + " does not exist");
+        Map<String, Object> metadata = new HashMap<>();
+        metadata(collection).forEach((key, value) -> metadata.put(key.toString(), value));
+        change.accept(metadata);
+        modifyMetadata(shard.host(), (String) collection.get("id"), metadata);
     }
 
     // ------------------------------------------------------------------ helper
-    private static List<Float> toList(float[] arr) {
+    /** Shard the chunk is on: its home shard unless it was found elsewhere. */
+    private Shard locate(String id) {
+        Shard known = misplaced.getIfPresent(id);
+        return known != null ? known : ring.route(id);
+    }
+
+    private String collectionPath(Shard shard) {
+        return "/api/v1/collections/" + collectionId(shard);
+    }
+
+    private String collectionUrl(Shard shard) {
+        return shard.host() + collectionPath(shard);
+    }
+
+    /** Collection URL of {@code shard} on the host a read was routed to. */
+    private String readUrl(String host, Shard shard) {
+        return host + "/api/v1/collections/" + collectionId(host, shard);
+    }
+
+    private static List<?> ids(Map<?, ?> result) {
+        return result.get("ids") instanceof List<?> ids ? ids : List.of();
+    }
+
+    private static <T> List<T> pick(List<T> values, List<Integer> rows) {
+        List<T> picked = new ArrayList<>(rows.size());
+        for (int row : rows) picked.add(values.get(row));
+        return picked;
+    }
+
+    private static Map<String, Object> upsertBody(List<String> ids, List<String> documents,
+                                                  List<Map<String, Object>> metadatas, List<float[]> embeddings) {
+        List<List<Float>> vectors = new ArrayList<>(embeddings.size());
+        for (float[] embedding : embeddings) vectors.add(toList(embedding));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("ids", ids);
+        body.put("documents", documents);
+        body.put("metadatas", metadatas);
+        body.put("embeddings", vectors);
+        return body;
+    }
+
+    /** Degraded-answer key of a read, scoped to the shard it was sent to. */
+    private record ShardKey(int shard, Object key) {
+    }
+
+    private record HostCollection(String host, String collection) {
+    }
+
+    /** Identifies a query for degraded answers; compares the vectors by value. */
+    private record QueryKey(float[][] embeddings, int nResults) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof QueryKey other && nResults == other.nResults
+                    && Arrays.deepEquals(embeddings, other.embeddings);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.deepHashCode(embeddings) + nResults;
+        }
+    }
+
+    static List<Float> toList(float[] arr) {
         List<Float> list = new ArrayList<>(arr.length);
         for (float v : arr) list.add(v);
         return list;
     }
+
+    @PreDestroy
+    void shutdown() {
+        scatterPool.shutdownNow();
+    }
 }
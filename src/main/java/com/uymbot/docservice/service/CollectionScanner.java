@@ -0,0 +1,155 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.sharding.Shard;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walks the whole collection page by page in ChromaDB's storage order.
+ * <p>
+ * ChromaDB's v1 API only pages by offset; to keep the position stable the
+ * scanner remembers the last id it handed out and re-reads it as the first
+ * row of the next page. If chunks before the cursor were deleted in the
+ * meantime, the id is looked up again in an id-only window before the
+ * offset and the scan resumes right after it, so no chunk is skipped or
+ * visited twice. If that id was deleted itself, the scan resumes after the
+ * last chunk of the previous page that still exists; everything after it on
+ * that page is gone as well. Only one page is held in memory at a time.
+ * </p>
+ * <p>
+ * A scan can also run over one shard, reading from the shard's own node, and
+ * be resumed from the {@link Cursor} handed out with each page.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CollectionScanner {
+
+    private static final int RESYNC_WINDOW = 1000;
+    private static final int MAX_RESYNCS_PER_PAGE = 3;
+
+    private final ChromaDbService chromaDbService;
+
+    /** Receives rows {@code from} (inclusive) to the end of the {@code ids} column of each page. */
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(Map<?, ?> page, int from) throws IOException;
+    }
+
+    /** Like {@link PageConsumer}; {@code next} is where a later scan resumes after this page. */
+    @FunctionalInterface
+    public interface CursorConsumer {
+        void accept(Map<?, ?> page, int from, Cursor next) throws IOException;
+    }
+
+    /** Reads {@code limit} rows from {@code offset}. */
+    @FunctionalInterface
+    public interface PageSource {
+        Map<?, ?> list(int limit, int offset, List<String> include);
+    }
+
+    /** The row a scan was positioned after can no longer be found. */
+    public static class CursorLostException extends IllegalStateException {
+        CursorLostException(String message) {
+            super(message);
+        }
+    }
+
+    /** Scan position: offset of the next row and id of the row before it. */
+    public record Cursor(int offset, String lastId) {
+        public static final Cursor START = new Cursor(0, null);
+    }
+
+    /**
+     * @param include  ChromaDB {@code include} fields fetched for every page
+     * @param pageSize chunks fetched per ChromaDB call
+     * @return number of chunks visited
+     */
+    public long scan(List<String> include, int pageSize, PageConsumer consumer) throws IOException {
+        return scan(chromaDbService::list, include, pageSize, Cursor.START,
+                (page, from, next) -> consumer.accept(page, from));
+    }
+
+    /** Scans one shard from {@code start}, reading from its own node so that every acknowledged write is seen. */
+    public long scan(Shard shard, List<String> include, int pageSize, Cursor start, CursorConsumer consumer)
+            throws IOException {
+        return scan((limit, offset, fields) -> chromaDbService.listConsistent(shard, limit, offset, fields),
+                include, pageSize, start, consumer);
+    }
+
+    /** Scans whatever {@code source} pages through from {@code start}. */
+    public long scan(PageSource source, List<String> include, int pageSize, Cursor start, CursorConsumer consumer)
+            throws IOException {
+        long visited = 0;
+        int offset = start.offset();
+        String lastId = start.lastId();
+        // ids handed out with the last page, newest last; fallback anchors if lastId is deleted
+        List<?> lastPage = lastId == null ? List.of() : List.of(lastId);
+        int resyncs = 0;
+
+        while (true) {
+            boolean overlap = lastId != null;
+            Map<?, ?> page = overlap
+                    ? source.list(pageSize + 1, offset - 1, include)
+                    : source.list(pageSize, offset, include);
+            List<?> ids = (List<?>) page.get("ids");
+            if (ids == null) ids = List.of();
+
+            int first = 0;
+            if (overlap) {
+                if (ids.isEmpty() || !lastId.equals(ids.get(0))) {
+                    if (++resyncs > MAX_RESYNCS_PER_PAGE) {
+                        throw new IllegalStateException(
+                                "Collection keeps changing under the scan cursor at offset " + offset);
+                    }
+                    Cursor resumed = resync(source, lastPage, offset);
+                    offset = resumed.offset();
+                    lastId = resumed.lastId();
+                    continue;
+                }
+                first = 1;
+            }
+            resyncs = 0;
+
+            int rows = ids.size() - first;
+            if (rows > 0) {
+                offset += rows;
+                lastId = (String) ids.get(ids.size() - 1);
+                lastPage = ids.subList(first, ids.size());
+                consumer.accept(page, first, new Cursor(offset, lastId));
+            }
+            visited += rows;
+            if (rows < pageSize) return visited;
+        }
+    }
+
+    /**
+     * Finds the newest of {@code lastPage} that still exists in an id-only
+     * window before {@code offset}; returns the position just after it.
+     */
+    private Cursor resync(PageSource source, List<?> lastPage, int offset) {
+        int from = Math.max(0, offset - RESYNC_WINDOW);
+        List<?> window = (List<?>) source.list(offset - from, from, List.of()).get("ids");
+        if (window != null) {
+            for (int i = lastPage.size() - 1; i >= 0; i--) {
+                int index = window.lastIndexOf(lastPage.get(i));
+                if (index < 0) continue;
+                log.debug("Scan cursor moved from offset {} to {}", offset, from + index + 1);
+                return new Cursor(from + index + 1, (String) lastPage.get(i));
+            }
+        }
+        throw new CursorLostException("Scan cursor lost: none of the " + lastPage.size()
+                + " chunk(s) last read is within " + RESYNC_WINDOW + " chunks before offset " + offset);
+    }
+
+    /** Value of {@code column} for row {@code i} of a page, or {@code null} if it was not included. */
+    public static Object row(Map<?, ?> page, String column, int i) {
+        return page.get(column) instanceof List<?> values && i < values.size() ? values.get(i) : null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.uymbot.docservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.uymbot.docservice.dto.DocumentResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of {@link DocumentResponse} keyed by chunk id.
+ * <p>
+ * Filled by reads and by {@code create}, invalidated by {@code update} and
+ * {@code delete}. Loads are atomic per id, so an invalidation that races
+ * with a load of the same id waits for it and removes its (possibly stale)
+ * result. Entries also expire after {@code docservice.cache.documents.ttl}
+ * to bound staleness from writes that bypass this service. Updates and
+ * deletes never take existence or content from here; they read the chunk
+ * from ChromaDB.
+ * </p>
+ * <p>
+ * Hit/miss/eviction counts are published as {@code cache.*{cache=documents}}.
+ * </p>
+ */
+@Component
+public class DocumentCache {
+
+    private final Cache<String, DocumentResponse> cache;
+
+    public DocumentCache(@Value("${docservice.cache.documents.max-size:10000}") long maxSize,
+                         @Value("${docservice.cache.documents.ttl:10m}") Duration ttl,
+                         MeterRegistry registry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "documents");
+    }
+
+    /** Returns the cached document or loads it; {@code null} from the loader is not cached. */
+    public DocumentResponse get(String id, Function<String, DocumentResponse> loader) {
+        return cache.get(id, loader);
+    }
+
+    /** Returns the cached document without loading it. */
+    public DocumentResponse getIfPresent(String id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void put(DocumentResponse document) {
+        cache.put(document.getId(), document);
+    }
+
+    public void putAll(Collection<DocumentResponse> documents) {
+        documents.forEach(this::put);
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+    }
+}
@@ -0,0 +1,128 @@
+package com.uymbot.docservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams the whole collection as NDJSON, one chunk per line.
+ * <p>
+ * Pages come from {@link CollectionScanner} and are written straight to the
+ * output through a {@link JsonGenerator}, so only one page is ever held in
+ * memory and no chunk is skipped or written twice when chunks are deleted
+ * while the export runs.
+ * </p>
+ * <p>
+ * The status and the first lines are sent before the scan is done, so a scan
+ * that fails midway ends the stream with one last line
+ * {@code {"error":"cursor_lost"|"export_failed","message":...,"exported":n}}
+ * and then fails the request. A file without that line is complete.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentExportService {
+
+    private final CollectionScanner collectionScanner;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes every chunk to {@code out}.
+     *
+     * @param fields   subset of {@code id, title, content, metadata, embedding}
+     *                 to write; embeddings are only fetched when requested
+     * @param pageSize chunks fetched per ChromaDB call
+     * @return number of chunks written
+     */
+    public long export(OutputStream out, Set<String> fields, int pageSize) throws IOException {
+        List<String> include = new ArrayList<>();
+        if (fields.contains("content")) include.add("documents");
+        if (fields.contains("title") || fields.contains("metadata")) include.add("metadatas");
+        if (fields.contains("embedding")) include.add("embeddings");
+
+        long start = System.nanoTime();
+        long exported;
+
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null);   // rows are separated by the explicit newline
+        long[] written = {0};
+        try (gen) {
+            try {
+                exported = collectionScanner.scan(include, pageSize, (page, from) -> {
+                    int size = ((List<?>) page.get("ids")).size();
+                    for (int i = from; i < size; i++) {
+                        writeRow(gen, page, i, fields);
+                        written[0]++;
+                    }
+                    gen.flush();
+                });
+            } catch (RuntimeException e) {
+                log.error("Export failed after {} chunk(s)", written[0], e);
+                // a row cut off halfway cannot be followed by valid JSON; the client sees a broken last line then
+                if (gen.getOutputContext().inRoot()) {
+                    writeError(gen, e instanceof CollectionScanner.CursorLostException ? "cursor_lost" : "export_failed",
+                            e.getMessage(), written[0]);
+                }
+                throw e;
+            }
+        }
+        log.info("Exported {} chunk(s) in {} ms", exported, (System.nanoTime() - start) / 1_000_000);
+        return exported;
+    }
+
+    /** Trailing line telling a client that already has a 200 and part of the rows that the export broke off. */
+    private static void writeError(JsonGenerator gen, String error, String message, long exported) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("error", error);
+        gen.writeStringField("message", message);
+        gen.writeNumberField("exported", exported);
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        gen.flush();
+    }
+
+    private static void writeRow(JsonGenerator gen, Map<?, ?> page, int i, Set<String> fields) throws IOException {
+        Map<?, ?> meta = CollectionScanner.row(page, "metadatas", i) instanceof Map<?, ?> m ? m : Map.of();
+
+        gen.writeStartObject();
+        if (fields.contains("id")) {
+            gen.writeStringField("id", (String) ((List<?>) page.get("ids")).get(i));
+        }
+        if (fields.contains("title")) {
+            Object title = meta.get(DocumentService.TITLE_KEY);
+            gen.writeStringField("title", title == null ? "" : title.toString());
+        }
+        if (fields.contains("content")) {
+            gen.writeStringField("content", (String) CollectionScanner.row(page, "documents", i));
+        }
+        if (fields.contains("metadata")) {
+            gen.writeObjectFieldStart("metadata");
+            for (Map.Entry<?, ?> e : meta.entrySet()) {
+                String key = e.getKey().toString();
+                if (key.equals(DocumentService.TITLE_KEY) || key.equals(DocumentService.CONTENT_HASH_KEY)) continue;
+                gen.writeObjectField(key, e.getValue());
+            }
+            gen.writeEndObject();
+        }
+        if (fields.contains("embedding")) {
+            gen.writeArrayFieldStart("embedding");
+            if (CollectionScanner.row(page, "embeddings", i) instanceof List<?> vector) {
+                for (Object v : vector) gen.writeNumber(((Number) v).floatValue());
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+}
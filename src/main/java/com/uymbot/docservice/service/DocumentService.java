@@ -1,17 +1,42 @@
 package com.uymbot.docservice.service;
 
+import com.uymbot.docservice.dto.BatchDeleteRequest;
+import com.uymbot.docservice.dto.BatchDeleteResponse;
+import com.uymbot.docservice.dto.BatchGetResponse;
+import com.uymbot.docservice.dto.BatchSearchResponse;
 import com.uymbot.docservice.dto.DocumentRequest;
 import com.uymbot.docservice.dto.DocumentResponse;
 import com.uymbot.docservice.dto.DocumentUpdateRequest;
+import com.uymbot.docservice.dto.DocumentUploadResponse;
 import com.uymbot.docservice.dto.RagChunkResponse;
 import com.uymbot.docservice.dto.RagDocumentMeta;
 import com.uymbot.docservice.dto.RagImportRequest;
 import com.uymbot.docservice.exception.DocumentNotFoundException;
+import com.uymbot.docservice.exception.InvalidUploadException;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
+import com.uymbot.docservice.observability.jfr.DocumentIngestEvent;
+import com.uymbot.docservice.observability.jfr.SearchQueryEvent;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.resilience.SingleFlight;
+import com.uymbot.docservice.sharding.ShardRing;
+import com.uymbot.docservice.writebuffer.ChromaWriteBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -19,90 +44,588 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DocumentService {
 
-    private static final String TITLE_KEY = "_title";
+    static final String TITLE_KEY = "_title";
     private static final String CHUNK_INDEX_KEY = "chunkIndex";
     private static final String TOTAL_CHUNKS_KEY = "totalChunks";
+    static final String CONTENT_HASH_KEY = "_contentHash";
+    private static final String CHUNK_PART_KEY = "chunkPart";
+    private static final String CHUNK_PARTS_KEY = "chunkParts";
+    /** Set on the extra parts of a split update: id of the chunk they were split off. */
+    private static final String PART_OF_KEY = "partOf";
+    private static final int UPLOAD_DELETE_PAGE = 500;
 
     private final ChromaDbService chromaDbService;
     private final EmbeddingService embeddingService;
     private final RagClient ragClient;
     private final TextChunkingService textChunkingService;
+    private final StageMetrics stageMetrics;
+    private final SingleFlight singleFlight;
+    private final DocumentCache documentCache;
+    private final ChromaWriteBuffer writeBuffer;
+    private final SearchCache searchCache;
+    private final NearDuplicateIndex nearDuplicates;
+
+    /** Chunks of an uploaded file embedded with one provider call and written together. */
+    @Value("${docservice.upload.batch-size:32}")
+    private int uploadBatchSize = 32;
 
     // ------------------------------------------------------------------ CREATE
     /**
      * Splits the document content into optimal chunks for OpenAI embeddings,
-     * embeds each chunk, and stores them all in ChromaDB.
+     * embeds each chunk, and stores them all in ChromaDB through the
+     * {@link ChromaWriteBuffer}. Chunk ids are {@code <documentId>:<chunkIndex>},
+     * so all chunks of a document land on the same shard.
+     * <p>
+     * A chunk the {@link NearDuplicateIndex} matches to a stored one is not
+     * embedded: it is left out, and reported under the stored chunk's id, or
+     * stored with the stored chunk's embedding, depending on the mode; both
+     * carry {@code duplicateOf}.
+     * </p>
      *
      * @return one {@link DocumentResponse} per chunk
      */
     public List<DocumentResponse> create(DocumentRequest req) {
-        List<String> chunks = textChunkingService.split(req.getContent());
+        DocumentIngestEvent event = new DocumentIngestEvent();
+        event.begin();
+        List<DocumentResponse> responses = null;
+        try {
+            responses = doCreate(req);
+            return responses;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.contentChars = req.getContent() == null ? 0 : req.getContent().length();
+                event.contentBytes = StageMetrics.utf8Length(req.getContent());
+                event.chunkCount = responses == null ? 0 : responses.size();
+                event.success = responses != null;
+                event.commit();
+            }
+        }
+    }
+
+    private List<DocumentResponse> doCreate(DocumentRequest req) {
+        List<String> chunks = stageMetrics.time(Stage.CHUNK, "split",
+                () -> textChunkingService.split(req.getContent()));
         int totalChunks = chunks.size();
         log.debug("Creating document '{}' as {} chunk(s)", req.getTitle(), totalChunks);
 
+        String documentId = UUID.randomUUID().toString();
         List<DocumentResponse> responses = new ArrayList<>(totalChunks);
+        List<DocumentResponse> stored = new ArrayList<>(totalChunks);
+        List<CompletableFuture<Void>> writes = new ArrayList<>(totalChunks);
+        NearDuplicateIndex.Pending pending = nearDuplicates.pending();
+        Map<String, DocumentResponse> storedById = new HashMap<>();
+        Map<String, float[]> embeddings = new HashMap<>();
         for (int i = 0; i < totalChunks; i++) {
             String chunkText = chunks.get(i);
-            String chunkId = UUID.randomUUID().toString();
-
-            Map<String, Object> meta = buildMeta(req.getTitle(), req.getMetadata());
-            meta.put(CHUNK_INDEX_KEY, i);
-            meta.put(TOTAL_CHUNKS_KEY, totalChunks);
-
-            float[] embedding = embeddingService.embed(chunkText);
-            chromaDbService.add(chunkId, chunkText, meta, embedding);
+            String chunkId = ShardRing.chunkId(documentId, i);
+
+            NearDuplicateIndex.Signature signature = nearDuplicates.signature(chunkText);
+            // an earlier chunk of this request is not indexed before its write is acknowledged
+            String earlier = signature == null ? null : pending.find(signature);
+            NearDuplicateIndex.Match duplicate = signature == null || earlier != null
+                    ? null : nearDuplicates.find(signature);
+            String duplicateOf = earlier != null ? earlier : duplicate != null ? duplicate.id() : null;
+
+            if (duplicateOf != null && nearDuplicates.mode() == NearDuplicateIndex.Mode.SKIP) {
+                // the chunk that holds this text, as a read would return it
+                responses.add(earlier != null ? storedById.get(earlier)
+                        : stageMetrics.time(Stage.MAP, "get", () -> toResponse(duplicateOf, duplicate.stored(), 0)));
+                continue;
+            }
 
             Map<String, Object> responseMetadata = new HashMap<>(
                     req.getMetadata() == null ? Map.of() : req.getMetadata());
             responseMetadata.put(CHUNK_INDEX_KEY, i);
             responseMetadata.put(TOTAL_CHUNKS_KEY, totalChunks);
+            if (duplicateOf != null) responseMetadata.put(NearDuplicateIndex.DUPLICATE_OF_KEY, duplicateOf);
 
-            responses.add(DocumentResponse.builder()
+            String hash = contentHash(chunkText);
+            DocumentResponse response = DocumentResponse.builder()
                     .id(chunkId)
                     .title(req.getTitle())
                     .content(chunkText)
                     .metadata(responseMetadata)
-                    .build());
+                    .contentHash(hash)
+                    .build();
+
+            Map<String, Object> meta = buildMeta(req.getTitle(), req.getMetadata());
+            meta.put(CHUNK_INDEX_KEY, i);
+            meta.put(TOTAL_CHUNKS_KEY, totalChunks);
+            meta.put(CONTENT_HASH_KEY, hash);
+            if (duplicateOf != null) meta.put(NearDuplicateIndex.DUPLICATE_OF_KEY, duplicateOf);
+
+            float[] embedding = earlier != null ? embeddings.get(earlier)
+                    : duplicate != null ? duplicate.embedding() : embeddingService.embed(chunkText);
+            writes.add(writeBuffer.add(chunkId, chunkText, meta, embedding));
+            if (signature != null && duplicateOf == null) {
+                pending.add(chunkId, signature);
+                storedById.put(chunkId, response);
+                embeddings.put(chunkId, embedding);
+            }
+
+            responses.add(response);
+            stored.add(response);
         }
+        writeBuffer.await(writes);
+        documentCache.putAll(stored);
+        pending.index();
+        stageMetrics.recordIngest(totalChunks, req.getContent());
         return responses;
     }
 
+    // ------------------------------------------------------------------ UPLOAD
+    /**
+     * Stores a text file as one document like {@link #create}, without holding
+     * the file in memory. The file is read twice: once to count its chunks for
+     * {@code totalChunks}, once to embed and store them in batches of
+     * {@code docservice.upload.batch-size}, each batch embedded with one
+     * provider call while the previous one is being written. Uploaded chunks
+     * are not put in the document cache. If the upload fails, the chunks
+     * stored so far are deleted again.
+     *
+     * @throws InvalidUploadException if the file contains no text
+     */
+    public DocumentUploadResponse upload(String title, Map<String, Object> metadata, Resource file, Charset charset)
+            throws IOException {
+        long started = System.nanoTime();
+        DocumentIngestEvent event = new DocumentIngestEvent();
+        event.begin();
+        long bytes = file.contentLength();
+        long chars = 0;
+        DocumentUploadResponse response = null;
+        try {
+            int totalChunks;
+            try (CountingReader reader = new CountingReader(new InputStreamReader(file.getInputStream(), charset))) {
+                totalChunks = textChunkingService.split(reader, chunk -> { });
+                chars = reader.count;
+            }
+            if (totalChunks == 0) throw new InvalidUploadException("File contains no text");
+            log.debug("Uploading '{}' ({} bytes) as {} chunk(s)", title, bytes, totalChunks);
+
+            ChunkUpload upload = new ChunkUpload(title, metadata, totalChunks);
+            try (Reader reader = new InputStreamReader(file.getInputStream(), charset)) {
+                textChunkingService.split(reader, upload::accept);
+                upload.finish();
+            } catch (IOException | RuntimeException e) {
+                upload.abort();
+                throw e;
+            }
+            stageMetrics.recordIngest(upload.stored, bytes);
+            response = DocumentUploadResponse.builder()
+                    .documentId(upload.documentId)
+                    .title(title)
+                    .chunks(totalChunks)
+                    .stored(upload.stored)
+                    .skipped(upload.skipped)
+                    .linked(upload.linked)
+                    .bytes(bytes)
+                    .tookMs((System.nanoTime() - started) / 1_000_000)
+                    .build();
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.contentChars = (int) Math.min(chars, Integer.MAX_VALUE);
+                event.contentBytes = bytes;
+                event.chunkCount = response == null ? 0 : response.getChunks();
+                event.success = response != null;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Second pass of {@link #upload}: collects chunks into batches; at most one
+     * batch is held and one batch of writes is in flight.
+     */
+    private final class ChunkUpload {
+
+        private final String documentId = UUID.randomUUID().toString();
+        private final String title;
+        private final Map<String, Object> metadata;
+        private final int totalChunks;
+        private final List<String> batch = new ArrayList<>(uploadBatchSize);
+        private List<CompletableFuture<Void>> writes = List.of();
+        /** Chunks of the batch being written, not indexed until its writes are acknowledged. */
+        private NearDuplicateIndex.Pending inFlight = nearDuplicates.pending();
+        /** Embeddings of the chunks in {@code inFlight}, kept in link mode for chunks linked to them. */
+        private Map<String, float[]> inFlightEmbeddings = Map.of();
+        /** Chunks handed to the write buffer, ids {@code <documentId>:0} onwards. */
+        private int submitted;
+        private int stored;
+        private int skipped;
+        private int linked;
+
+        ChunkUpload(String title, Map<String, Object> metadata, int totalChunks) {
+            this.title = title;
+            this.metadata = metadata;
+            this.totalChunks = totalChunks;
+        }
+
+        void accept(String chunk) {
+            batch.add(chunk);
+            if (batch.size() >= uploadBatchSize) flush();
+        }
+
+        void finish() {
+            flush();
+            awaitWrites();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) return;
+            int first = submitted;
+            NearDuplicateIndex.Pending current = nearDuplicates.pending();
+            String[] duplicateOf = new String[batch.size()];
+            float[][] linkedEmbeddings = new float[batch.size()][];
+            List<String> unique = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                NearDuplicateIndex.Signature signature = nearDuplicates.signature(batch.get(i));
+                if (signature != null) {
+                    // chunks of this and the previous batch are not indexed yet
+                    duplicateOf[i] = current.find(signature);
+                    if (duplicateOf[i] == null) duplicateOf[i] = inFlight.find(signature);
+                    if (duplicateOf[i] == null) {
+                        NearDuplicateIndex.Match duplicate = nearDuplicates.find(signature);
+                        if (duplicate != null) {
+                            duplicateOf[i] = duplicate.id();
+                            linkedEmbeddings[i] = duplicate.embedding();
+                        }
+                    }
+                    if (duplicateOf[i] == null) current.add(ShardRing.chunkId(documentId, first + i), signature);
+                }
+                if (duplicateOf[i] == null) unique.add(batch.get(i));
+            }
+            // embedded while the previous batch is still being written
+            Iterator<float[]> embeddings = embeddingService.embedAll(unique, Priority.BULK).iterator();
+            Map<String, float[]> batchEmbeddings = new HashMap<>();
+            awaitWrites();
+
+            List<CompletableFuture<Void>> batchWrites = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (duplicateOf[i] != null && nearDuplicates.mode() == NearDuplicateIndex.Mode.SKIP) {
+                    skipped++;
+                    continue;
+                }
+                String chunkText = batch.get(i);
+                String chunkId = ShardRing.chunkId(documentId, first + i);
+                Map<String, Object> meta = buildMeta(title, metadata);
+                meta.put(CHUNK_INDEX_KEY, first + i);
+                meta.put(TOTAL_CHUNKS_KEY, totalChunks);
+                meta.put(CONTENT_HASH_KEY, contentHash(chunkText));
+                float[] embedding;
+                if (duplicateOf[i] != null) {
+                    meta.put(NearDuplicateIndex.DUPLICATE_OF_KEY, duplicateOf[i]);
+                    embedding = linkedEmbeddings[i] != null ? linkedEmbeddings[i]
+                            : batchEmbeddings.getOrDefault(duplicateOf[i], inFlightEmbeddings.get(duplicateOf[i]));
+                    linked++;
+                } else {
+                    embedding = embeddings.next();
+                    if (nearDuplicates.mode() == NearDuplicateIndex.Mode.LINK) batchEmbeddings.put(chunkId, embedding);
+                }
+                submitted = first + i + 1;
+                batchWrites.add(writeBuffer.add(chunkId, chunkText, meta, embedding));
+                stored++;
+            }
+            submitted = first + batch.size();
+            writes = batchWrites;
+            inFlight = current;
+            inFlightEmbeddings = batchEmbeddings;
+            batch.clear();
+        }
+
+        private void awaitWrites() {
+            writeBuffer.await(writes);
+            inFlight.index();
+            writes = List.of();
+        }
+
+        /** Deletes every chunk id handed out so far; ids of skipped chunks were never stored. */
+        void abort() {
+            try {
+                writeBuffer.awaitDocumentApplied(documentId);
+                for (int from = 0; from < submitted; from += UPLOAD_DELETE_PAGE) {
+                    List<String> ids = new ArrayList<>();
+                    for (int i = from; i < Math.min(from + UPLOAD_DELETE_PAGE, submitted); i++) {
+                        ids.add(ShardRing.chunkId(documentId, i));
+                    }
+                    chromaDbService.deleteAll(ids);
+                }
+                log.warn("Upload of '{}' failed, deleted its {} chunk id(s)", title, submitted);
+            } catch (RuntimeException e) {
+                log.warn("Upload of '{}' failed and its chunks {}:0..{} could not be deleted: {}",
+                        title, documentId, submitted - 1, e.getMessage());
+            }
+        }
+    }
+
+    /** Counts the characters read, for {@link #upload}'s JFR event. */
+    private static final class CountingReader extends FilterReader {
+
+        private long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) count++;
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
     // -------------------------------------------------------------------- READ
     public DocumentResponse getById(String id) {
+        DocumentResponse document = documentCache.get(id, this::load);
+        if (document == null) throw new DocumentNotFoundException(id);
+        return document;
+    }
+
+    /**
+     * The chunk as ChromaDB holds it now, for writes that must not act on a
+     * cached copy: a cached entry may outlive a change or delete made by
+     * another instance. The entry of a chunk that is gone is dropped.
+     */
+    private DocumentResponse requireStored(String id) {
+        DocumentResponse stored = load(id);
+        if (stored == null) {
+            documentCache.invalidate(id);
+            throw new DocumentNotFoundException(id);
+        }
+        return stored;
+    }
+
+    private DocumentResponse load(String id) {
+        writeBuffer.awaitApplied(List.of(id));
         return chromaDbService.getById(id)
-                .map(result -> toResponse(id, result, 0))
-                .orElseThrow(() -> new DocumentNotFoundException(id));
+                .map(result -> stageMetrics.time(Stage.MAP, "get", () -> toResponse(id, result, 0)))
+                .orElse(null);
     }
 
+    /**
+     * Lists one page straight from ChromaDB. Pages are not put into the
+     * cache: a page read before a concurrent update or delete would
+     * otherwise be served from there until the entry expires.
+     */
     public List<DocumentResponse> listAll(int limit, int offset) {
         Map<?, ?> result = chromaDbService.list(limit, offset);
-        return toResponseList(result);
+        return stageMetrics.time(Stage.MAP, "list", () -> toResponseList(result));
     }
 
     // ------------------------------------------------------------------ UPDATE
+    /**
+     * Updates one chunk. When the content is unchanged (same stored content
+     * hash) only title and metadata are sent to ChromaDB and no embedding is
+     * computed. New content longer than the chunk size is split: the first
+     * part keeps {@code id}, the rest are added as new chunks linked back by
+     * {@code partOf}, and every part carries {@code chunkPart} /
+     * {@code chunkParts}. Parts split off by an earlier content update are
+     * deleted first.
+     *
+     * @return the chunk stored under {@code id}, with the other parts in {@code parts}
+     */
     public DocumentResponse update(String id, DocumentUpdateRequest req) {
-        DocumentResponse existing = getById(id);   // throws 404 if not found
+        // the stored hash decides the path; the cache may hold content another instance has replaced since
+        DocumentResponse existing = requireStored(id);
 
-        String newTitle   = req.getTitle()   != null ? req.getTitle()   : existing.getTitle();
-        String newContent = req.getContent() != null ? req.getContent() : existing.getContent();
+        String newTitle = req.getTitle() != null ? req.getTitle() : existing.getTitle();
         Map<String, Object> newMeta = req.getMetadata() != null ? req.getMetadata() : existing.getMetadata();
 
-        float[] embedding = embeddingService.embed(newContent);
-        Map<String, Object> meta = buildMeta(newTitle, newMeta);
-        chromaDbService.update(id, newContent, meta, embedding);
+        String existingHash = existing.getContentHash() != null
+                ? existing.getContentHash() : contentHash(existing.getContent());
+        String newHash = req.getContent() != null ? contentHash(req.getContent()) : existingHash;
+
+        DocumentResponse updated;
+        if (newHash.equals(existingHash)) {
+            newMeta = keepPartOf(newMeta, existing.getMetadata());
+            Map<String, Object> meta = buildMeta(newTitle, newMeta);
+            meta.put(CONTENT_HASH_KEY, existingHash);
+            chromaDbService.updateMetadata(id, meta);
+            updated = DocumentResponse.builder()
+                    .id(id)
+                    .title(newTitle)
+                    .content(existing.getContent())
+                    .metadata(newMeta)
+                    .contentHash(existingHash)
+                    .build();
+        } else {
+            updated = replaceContent(id, newTitle, req.getContent(), keepPartOf(newMeta, existing.getMetadata()));
+        }
+        documentCache.invalidate(id);
+        return updated;
+    }
 
-        return DocumentResponse.builder()
-                .id(id)
-                .title(newTitle)
-                .content(newContent)
-                .metadata(newMeta)
-                .build();
+    private DocumentResponse replaceContent(String id, String title, String content, Map<String, Object> metadata) {
+        List<String> parts = stageMetrics.time(Stage.CHUNK, "split", () -> textChunkingService.split(content));
+        if (parts.isEmpty()) parts = List.of(content);
+
+        Map<String, Object> baseMeta = new HashMap<>(metadata == null ? Map.of() : metadata);
+        baseMeta.remove(CHUNK_PART_KEY);
+        baseMeta.remove(CHUNK_PARTS_KEY);
+        baseMeta.remove(NearDuplicateIndex.DUPLICATE_OF_KEY);
+        Object partOf = baseMeta.remove(PART_OF_KEY);
+
+        // the parts of the old content would otherwise stay searchable next to the new ones
+        writeBuffer.awaitDocumentApplied(ShardRing.routingKey(id));
+        List<String> oldParts = partsOf(id);
+        chromaDbService.deleteAll(oldParts);
+        oldParts.forEach(documentCache::invalidate);
+
+        DocumentResponse first = null;
+        List<DocumentResponse> added = new ArrayList<>();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            String partText = parts.get(i);
+            // extra parts stay with the chunk's document (and shard)
+            String partId = i == 0 ? id : ShardRing.chunkId(ShardRing.routingKey(id), UUID.randomUUID());
+            String hash = contentHash(partText);
+
+            Map<String, Object> responseMeta = new HashMap<>(baseMeta);
+            if (parts.size() > 1) {
+                responseMeta.put(CHUNK_PART_KEY, i);
+                responseMeta.put(CHUNK_PARTS_KEY, parts.size());
+            }
+            if (i > 0) {
+                responseMeta.put(PART_OF_KEY, id);
+            } else if (partOf != null) {
+                // the chunk is itself a part of an earlier split and stays linked to it
+                responseMeta.put(PART_OF_KEY, partOf);
+            }
+            Map<String, Object> meta = buildMeta(title, responseMeta);
+            meta.put(CONTENT_HASH_KEY, hash);
+
+            float[] embedding = embeddingService.embed(partText);
+            if (i == 0) {
+                chromaDbService.update(partId, partText, meta, embedding);
+            } else {
+                writes.add(writeBuffer.add(partId, partText, meta, embedding));
+            }
+
+            DocumentResponse response = DocumentResponse.builder()
+                    .id(partId)
+                    .title(title)
+                    .content(partText)
+                    .metadata(responseMeta)
+                    .contentHash(hash)
+                    .build();
+            if (i == 0) {
+                first = response;
+            } else {
+                added.add(response);
+            }
+        }
+        writeBuffer.await(writes);
+        documentCache.putAll(added);
+        if (parts.size() > 1) {
+            first.setParts(added);
+            log.debug("Update of chunk {} split into {} parts, {} old part(s) removed",
+                    id, parts.size(), oldParts.size());
+        }
+        return first;
+    }
+
+    /**
+     * Ids of the chunks split off {@code id} by earlier content updates,
+     * including parts split off those parts.
+     */
+    private List<String> partsOf(String id) {
+        Set<String> found = new LinkedHashSet<>();
+        List<String> parents = List.of(id);
+        while (!parents.isEmpty()) {
+            Map<String, Object> where = parents.size() == 1
+                    ? Map.of(PART_OF_KEY, parents.get(0))
+                    : Map.of(PART_OF_KEY, Map.of("$in", parents));
+            parents = chromaDbService.findIds(null, where).stream()
+                    .filter(part -> !part.equals(id) && found.add(part))
+                    .toList();
+        }
+        return List.copyOf(found);
+    }
+
+    /** {@code metadata} with the {@code partOf} link of the stored chunk, which clients cannot set or drop. */
+    private static Map<String, Object> keepPartOf(Map<String, Object> metadata, Map<String, Object> stored) {
+        Object partOf = stored == null ? null : stored.get(PART_OF_KEY);
+        if (metadata != null && Objects.equals(metadata.get(PART_OF_KEY), partOf)) return metadata;
+        Map<String, Object> kept = new HashMap<>(metadata == null ? Map.of() : metadata);
+        if (partOf != null) kept.put(PART_OF_KEY, partOf);
+        else kept.remove(PART_OF_KEY);
+        return kept;
     }
 
     // ------------------------------------------------------------------ DELETE
     public void delete(String id) {
-        getById(id);  // throws 404 if not found
+        requireStored(id);
         chromaDbService.delete(id);
+        documentCache.invalidate(id);
+    }
+
+    // ------------------------------------------------------------------- BATCH
+    /**
+     * Fetches several chunks: cached ones are served directly, the rest with
+     * a single ChromaDB {@code /get}.
+     */
+    public BatchGetResponse batchGet(List<String> ids) {
+        List<String> requested = ids.stream().distinct().toList();
+        Map<String, DocumentResponse> found = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String id : requested) {
+            DocumentResponse cached = documentCache.getIfPresent(id);
+            if (cached != null) found.put(id, cached);
+            else uncached.add(id);
+        }
+        if (!uncached.isEmpty()) {
+            writeBuffer.awaitApplied(uncached);
+            Map<?, ?> result = chromaDbService.getByIds(uncached);
+            List<DocumentResponse> loaded = stageMetrics.time(Stage.MAP, "get", () -> toResponseList(result));
+            documentCache.putAll(loaded);
+            loaded.forEach(d -> found.put(d.getId(), d));
+        }
+
+        List<DocumentResponse> documents = new ArrayList<>(found.size());
+        List<String> notFound = new ArrayList<>();
+        for (String id : requested) {
+            DocumentResponse document = found.get(id);
+            if (document != null) documents.add(document);
+            else notFound.add(id);
+        }
+        return BatchGetResponse.builder().documents(documents).notFound(notFound).build();
+    }
+
+    /**
+     * Deletes the chunks selected by id list or metadata filter with one
+     * ChromaDB {@code /delete}, after one id-only {@code /get} that resolves
+     * which of them exist.
+     */
+    public BatchDeleteResponse batchDelete(BatchDeleteRequest req) {
+        List<String> deleted;
+        List<String> notFound;
+        if (req.getIds() != null && !req.getIds().isEmpty()) {
+            List<String> requested = req.getIds().stream().distinct().toList();
+            writeBuffer.awaitApplied(requested);
+            Set<String> existing = new HashSet<>(chromaDbService.findIds(requested, null));
+            deleted = requested.stream().filter(existing::contains).toList();
+            notFound = requested.stream().filter(id -> !existing.contains(id)).toList();
+            notFound.forEach(documentCache::invalidate);
+        } else {
+            writeBuffer.awaitAllApplied();
+            deleted = chromaDbService.findIds(null, req.getWhere());
+            notFound = List.of();
+        }
+
+        chromaDbService.deleteAll(deleted);
+        deleted.forEach(documentCache::invalidate);
+        log.debug("Batch delete removed {} chunk(s), {} not found", deleted.size(), notFound.size());
+        return BatchDeleteResponse.builder().deleted(deleted).notFound(notFound).build();
     }
 
     // ----------------------------------------------------------------- IMPORT FROM RAG
@@ -133,12 +656,84 @@ public class DocumentService {
 
     // ------------------------------------------------------------------ SEARCH
     public List<DocumentResponse> search(String query, int nResults) {
+        SearchQueryEvent event = new SearchQueryEvent();
+        event.begin();
+        List<DocumentResponse> results = null;
+        try {
+            // identical concurrent searches share one embed + query round trip
+            results = singleFlight.execute("search", new SearchKey(SingleFlight.normalize(query), nResults),
+                    () -> doSearch(query, nResults));
+            return results;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.queryChars = query == null ? 0 : query.length();
+                event.requestedResults = nResults;
+                event.resultCount = results == null ? 0 : results.size();
+                event.success = results != null;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Looks the query up in the {@link SearchCache} by text, then by
+     * embedding, before counting and querying ChromaDB. Results are cached
+     * under the write generation read before the query, unless the embedding
+     * came from the fallback and lives in another vector space.
+     */
+    private List<DocumentResponse> doSearch(String query, int nResults) {
+        long generation = chromaDbService.writeGeneration();
+        String text = SingleFlight.normalize(query);
+        List<DocumentResponse> cached = searchCache.get(text, nResults, generation);
+        if (cached != null) return cached;
+
+        long fallbacks = embeddingService.fallbacks();
+        float[] embedding = embeddingService.embed(query, Priority.INTERACTIVE);
+        cached = searchCache.getSimilar(embedding, nResults, generation);
+        if (cached != null) return cached;
+
+        List<DocumentResponse> results;
         int count = chromaDbService.count();
-        if (count == 0) return List.of();
-        int n = Math.min(nResults, count);
-        float[] embedding = embeddingService.embed(query);
-        Map<?, ?> result = chromaDbService.query(embedding, n);
-        return toQueryResponseList(result);
+        if (count == 0) {
+            results = List.of();
+        } else {
+            Map<?, ?> result = chromaDbService.query(embedding, Math.min(nResults, count));
+            results = stageMetrics.time(Stage.MAP, "query", () -> toQueryResponseList(result));
+        }
+        if (embeddingService.fallbacks() == fallbacks) searchCache.put(text, embedding, nResults, generation, results);
+        return results;
+    }
+
+    private record SearchKey(String query, int nResults) {
+    }
+
+    /**
+     * Answers several queries with one embeddings request and one ChromaDB
+     * {@code /query} call per shard. Repeated queries are sent once. Unlike
+     * {@link #search} there is no {@code count} round trip; ChromaDB caps
+     * {@code n_results} at the collection size itself.
+     *
+     * @param merge also fuse the per-query results into one ranking, see {@link RankFusion}
+     */
+    public BatchSearchResponse searchBatch(List<String> queries, int nResults, boolean merge) {
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> unique = new ArrayList<>();
+        for (String query : queries) {
+            if (slots.putIfAbsent(SingleFlight.normalize(query), unique.size()) == null) unique.add(query);
+        }
+        List<float[]> embeddings = embeddingService.embedAll(unique, Priority.INTERACTIVE);
+        List<Map<?, ?>> answers = chromaDbService.queryAll(embeddings, nResults);
+        List<List<DocumentResponse>> uniqueResults = stageMetrics.time(Stage.MAP, "query",
+                () -> answers.stream().map(DocumentService::toQueryResponseList).toList());
+
+        List<List<DocumentResponse>> results = queries.stream()
+                .map(query -> uniqueResults.get(slots.get(SingleFlight.normalize(query))))
+                .toList();
+        return BatchSearchResponse.builder()
+                .results(results)
+                .merged(merge ? RankFusion.fuse(uniqueResults, nResults) : null)
+                .build();
     }
 
     // ----------------------------------------------------------------- helpers
@@ -149,23 +744,35 @@ public class DocumentService {
         return meta;
     }
 
+    /** Hex SHA-256 of the UTF-8 content; stored with every chunk to detect unchanged content. */
+    static String contentHash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     @SuppressWarnings("unchecked")
-    private DocumentResponse toResponse(String id, Map<?, ?> result, int index) {
+    static DocumentResponse toResponse(String id, Map<?, ?> result, int index) {
         List<?> ids       = (List<?>) result.get("ids");
         List<?> documents = (List<?>) result.get("documents");
         List<?> metadatas = (List<?>) result.get("metadatas");
 
         Map<String, Object> meta = new HashMap<>((Map<String, Object>) metadatas.get(index));
         String title = (String) meta.remove(TITLE_KEY);
+        Object hash = meta.remove(CONTENT_HASH_KEY);
         return DocumentResponse.builder()
                 .id((String) ids.get(index))
                 .title(title == null ? "" : title)
                 .content((String) documents.get(index))
                 .metadata(meta)
+                .contentHash(hash instanceof String h ? h : null)
                 .build();
     }
 
-    private List<DocumentResponse> toResponseList(Map<?, ?> result) {
+    static List<DocumentResponse> toResponseList(Map<?, ?> result) {
         List<?> ids = (List<?>) result.get("ids");
         if (ids == null || ids.isEmpty()) return List.of();
         List<DocumentResponse> docs = new ArrayList<>();
@@ -176,7 +783,7 @@ public class DocumentService {
     }
 
     @SuppressWarnings("unchecked")
-    private List<DocumentResponse> toQueryResponseList(Map<?, ?> result) {
+    static List<DocumentResponse> toQueryResponseList(Map<?, ?> result) {
         // Query results are nested: ids[0], documents[0], metadatas[0]
         List<List<String>> ids       = (List<List<String>>) result.get("ids");
         List<List<String>> documents = (List<List<String>>) result.get("documents");
@@ -192,11 +799,13 @@ public class DocumentService {
         for (int i = 0; i < idRow.size(); i++) {
             Map<String, Object> meta = new HashMap<>(metaRow.get(i));
             String title = (String) meta.remove(TITLE_KEY);
+            Object hash = meta.remove(CONTENT_HASH_KEY);
             docs.add(DocumentResponse.builder()
                     .id(idRow.get(i))
                     .title(title == null ? "" : title)
                     .content(docRow.get(i))
                     .metadata(meta)
+                    .contentHash(hash instanceof String h ? h : null)
                     .build());
         }
         return docs;
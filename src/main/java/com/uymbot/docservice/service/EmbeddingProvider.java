@@ -0,0 +1,29 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.resilience.Priority;
+
+import java.util.List;
+
+/**
+ * Source of embedding vectors for a family of models.
+ * <p>
+ * {@link EmbeddingService} picks the provider that supports the
+ * {@link EmbeddingSpec} of the collection, so the spec stored with the
+ * collection decides the provider and a re-embedding migration can move a
+ * collection from one provider to another. Input validation, single-flight
+ * and the fallback to the local provider stay in {@link EmbeddingService}.
+ * </p>
+ */
+public interface EmbeddingProvider {
+
+    /** Name used in configuration and logs. */
+    String name();
+
+    boolean supports(EmbeddingSpec spec);
+
+    /** Whether calls leave the process and can be slow, throttled or unavailable. */
+    boolean remote();
+
+    /** Embeds non-blank texts with {@code spec}; vectors are returned in input order. */
+    List<float[]> embed(List<String> texts, Priority priority, EmbeddingSpec spec);
+}
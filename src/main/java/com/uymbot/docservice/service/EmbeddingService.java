@@ -1,76 +1,179 @@
 package com.uymbot.docservice.service;
 
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.resilience.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * OpenAI-backed text embedding service.
- * Calls the OpenAI /v1/embeddings endpoint to produce semantic float vectors.
+ * Text embedding service in front of the {@link EmbeddingProvider}s.
+ * <p>
+ * {@code docservice.embedding.provider} selects the provider new collections
+ * are embedded with: {@code openai} (the {@code openai.*} model settings) or
+ * {@code local} ({@link LocalEmbeddingProvider}, in process). Concurrent
+ * requests for the same (whitespace-normalised) text share one call via
+ * {@link SingleFlight}.
+ * </p>
+ * <p>
+ * Vectors are produced with the active {@link EmbeddingSpec}: the configured
+ * one until a re-embedding migration switches the collection to another spec.
+ * The provider follows the spec, so a collection embedded locally keeps being
+ * embedded locally whatever the configuration says.
+ * </p>
+ * <p>
+ * With {@code docservice.embedding.fallback} enabled, searches whose remote
+ * embedding call fails are embedded locally with the collection's vector
+ * length instead of failing. Those vectors come from another space than the
+ * stored ones, so results are ranked by chance; it keeps development and load
+ * test setups answering, nothing more. Writes never fall back: their vectors
+ * would stay in the collection.
+ * </p>
  */
 @Slf4j
 @Service
 public class EmbeddingService {
 
-    private final RestTemplate restTemplate;
+    private final List<EmbeddingProvider> providers;
+    private final LocalEmbeddingProvider localProvider;
+    private final SingleFlight singleFlight;
+    private final Counter fallbacks;
 
-    @Value("${openai.api-key}")
-    private String apiKey;
+    /** Vector length of remote specs that leave it to the model, as last returned. */
+    private final Map<EmbeddingSpec, Integer> observedDimensions = new ConcurrentHashMap<>();
+
+    /** Spec adopted from the collection, overriding the configured one. */
+    private volatile EmbeddingSpec adopted;
+
+    @Value("${docservice.embedding.provider:openai}")
+    private String provider;
+
+    @Value("${docservice.embedding.local.dimensions:384}")
+    private int localDimensions;
+
+    @Value("${docservice.embedding.fallback:false}")
+    private boolean fallback;
 
     @Value("${openai.embedding-model}")
     private String model;
 
-    @Value("${openai.embedding-url}")
-    private String embeddingUrl;
+    @Value("${openai.embedding-dimensions:0}")
+    private int dimensions;
 
-    public EmbeddingService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public EmbeddingService(List<EmbeddingProvider> providers, LocalEmbeddingProvider localProvider,
+                            SingleFlight singleFlight, MeterRegistry registry) {
+        this.providers = providers;
+        this.localProvider = localProvider;
+        this.singleFlight = singleFlight;
+        this.fallbacks = Counter.builder("docservice.embedding.fallback")
+                .description("Search embeddings produced locally because the remote provider failed")
+                .register(registry);
     }
 
-    @SuppressWarnings("unchecked")
+    /** Embeds ingestion text at {@link Priority#BULK}. */
     public float[] embed(String text) {
+        return embed(text, Priority.BULK);
+    }
+
+    public float[] embed(String text, Priority priority) {
+        return embed(text, priority, spec());
+    }
+
+    /** Embeds with {@code spec} instead of the active one, e.g. into a migration's target collection. */
+    public float[] embed(String text, Priority priority, EmbeddingSpec spec) {
         if (text == null || text.isBlank()) {
             throw new IllegalArgumentException("Text to embed must not be null or blank");
         }
+        return singleFlight.execute("embed", new EmbedKey(spec, SingleFlight.normalize(text)),
+                () -> doEmbed(List.of(text), priority, spec).get(0));
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
+    /** Spec new embeddings are produced with. */
+    public EmbeddingSpec spec() {
+        EmbeddingSpec spec = adopted;
+        return spec != null ? spec : configured();
+    }
 
-        Map<String, Object> requestBody = Map.of("input", text, "model", model);
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    /** Whether embedding with the active spec calls out of the process. */
+    public boolean remote() {
+        return provider(spec()).remote();
+    }
 
-        Map<?, ?> response;
-        try {
-            response = restTemplate.postForObject(embeddingUrl, entity, Map.class);
-        } catch (Exception e) {
-            throw new IllegalStateException("OpenAI embedding API call failed: " + e.getMessage(), e);
-        }
+    /**
+     * Search embeddings produced by the fallback so far. A caller that sees it
+     * unchanged around its call got a vector from the active spec's provider.
+     */
+    public long fallbacks() {
+        return (long) fallbacks.count();
+    }
 
-        if (response == null) {
-            throw new IllegalStateException("OpenAI embedding API returned null response");
+    /** Switches to the spec of the collection; called when a migration switches or on startup after one. */
+    public void use(EmbeddingSpec spec) {
+        if (spec.equals(spec())) return;
+        if (!spec.equals(configured())) {
+            log.warn("Embedding with {} as used by the collection instead of the configured {}; update "
+                    + "docservice.embedding.provider / openai.embedding-model / openai.embedding-dimensions to match",
+                    spec, configured());
         }
-        List<?> data = (List<?>) response.get("data");
-        if (data == null || data.isEmpty()) {
-            throw new IllegalStateException("OpenAI embedding API returned no data");
+        adopted = spec;
+    }
+
+    /**
+     * Embeds several texts with one provider call, e.g. the reformulations of a
+     * search query; vectors are returned in input order. A single text goes
+     * through {@link #embed(String, Priority)}.
+     */
+    public List<float[]> embedAll(List<String> texts, Priority priority) {
+        for (String text : texts) {
+            if (text == null || text.isBlank()) {
+                throw new IllegalArgumentException("Text to embed must not be null or blank");
+            }
         }
-        List<Double> embeddingValues = (List<Double>) ((Map<?, ?>) data.get(0)).get("embedding");
-        if (embeddingValues == null || embeddingValues.isEmpty()) {
-            throw new IllegalStateException("OpenAI embedding API returned empty embedding vector");
+        if (texts.isEmpty()) return List.of();
+        if (texts.size() == 1) return List.of(embed(texts.get(0), priority));
+        return doEmbed(texts, priority, spec());
+    }
+
+    private EmbeddingSpec configured() {
+        return switch (provider) {
+            case "openai" -> new EmbeddingSpec(model, dimensions);
+            case "local" -> new EmbeddingSpec(LocalEmbeddingProvider.MODEL, localDimensions);
+            default -> throw new IllegalStateException(
+                    "Unknown docservice.embedding.provider '" + provider + "', expected openai or local");
+        };
+    }
+
+    private EmbeddingProvider provider(EmbeddingSpec spec) {
+        for (EmbeddingProvider candidate : providers) {
+            if (candidate.supports(spec)) return candidate;
         }
+        throw new IllegalStateException("No embedding provider for " + spec);
+    }
 
-        float[] result = new float[embeddingValues.size()];
-        for (int i = 0; i < embeddingValues.size(); i++) {
-            result[i] = embeddingValues.get(i).floatValue();
+    private List<float[]> doEmbed(List<String> texts, Priority priority, EmbeddingSpec spec) {
+        EmbeddingProvider selected = provider(spec);
+        try {
+            List<float[]> vectors = selected.embed(texts, priority, spec);
+            if (selected.remote() && spec.dimensions() == 0) observedDimensions.put(spec, vectors.get(0).length);
+            return vectors;
+        } catch (IllegalStateException | ServiceUnavailableException e) {
+            int length = spec.dimensions() > 0 ? spec.dimensions() : observedDimensions.getOrDefault(spec, 0);
+            if (!fallback || !selected.remote() || priority != Priority.INTERACTIVE || length == 0) throw e;
+            log.warn("{} embedding failed ({}), embedding {} search text(s) locally",
+                    selected.name(), e.getMessage(), texts.size());
+            fallbacks.increment(texts.size());
+            return localProvider.embed(texts, priority, new EmbeddingSpec(LocalEmbeddingProvider.MODEL, length));
         }
-        log.debug("Embedded text with model={}, dim={}", model, result.length);
-        return result;
+    }
+
+    /** Single-flight key: the same text embedded with different specs gives different vectors. */
+    private record EmbedKey(EmbeddingSpec spec, String text) {
     }
 }
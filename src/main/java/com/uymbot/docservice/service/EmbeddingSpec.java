@@ -0,0 +1,22 @@
+package com.uymbot.docservice.service;
+
+/**
+ * Model and output size of the embeddings in a collection.
+ *
+ * @param model      OpenAI embedding model
+ * @param dimensions requested vector length; {@code 0} sends no
+ *                   {@code dimensions} parameter and gets the model's native
+ *                   size. Only the {@code text-embedding-3-*} models accept it.
+ */
+public record EmbeddingSpec(String model, int dimensions) {
+
+    public EmbeddingSpec {
+        if (model == null || model.isBlank()) throw new IllegalArgumentException("Embedding model must be set");
+        if (dimensions < 0) throw new IllegalArgumentException("Embedding dimensions must not be negative");
+    }
+
+    @Override
+    public String toString() {
+        return dimensions == 0 ? model : model + "/" + dimensions;
+    }
+}
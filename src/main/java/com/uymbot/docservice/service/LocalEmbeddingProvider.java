@@ -0,0 +1,133 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.resilience.Priority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process embeddings by feature hashing of character n-grams, for offline
+ * development, load tests and as a fallback when the remote provider is down.
+ * <p>
+ * The text is lower-cased and whitespace runs become one space, with a space
+ * added at both ends so that word starts and ends are features of their own.
+ * Every 3-, 4- and 5-gram is hashed to a dimension and adds ±1 there (the
+ * sign is another bit of the hash, which keeps collisions from biasing
+ * similarities); the vector is then scaled to unit length. Texts sharing
+ * words and word fragments therefore land close together. There is no
+ * notion of meaning: synonyms and translations are not similar.
+ * </p>
+ * <p>
+ * The same text always gives the same vector, on every JVM. Apart from the
+ * result array nothing is allocated; a full 1000-token chunk takes well under
+ * a tenth of a millisecond ({@code LocalEmbeddingBenchmark}). Changing the
+ * n-gram lengths or the hash changes the vectors, which needs a new
+ * {@link #MODEL} name and a re-embedding migration.
+ * </p>
+ */
+@Component
+public class LocalEmbeddingProvider implements EmbeddingProvider {
+
+    /** Model name in the {@link EmbeddingSpec}; the dimensions are free to choose. */
+    public static final String MODEL = "local-ngram-hash";
+    /** Dimensions when the spec leaves them at 0. */
+    public static final int DEFAULT_DIMENSIONS = 384;
+
+    private static final int MIN_N = 3;
+    private static final int MAX_N = 5;
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public boolean supports(EmbeddingSpec spec) {
+        return MODEL.equals(spec.model());
+    }
+
+    @Override
+    public boolean remote() {
+        return false;
+    }
+
+    /** {@code spec}'s model is not checked, so the fallback can produce vectors of another spec's size. */
+    @Override
+    public List<float[]> embed(List<String> texts, Priority priority, EmbeddingSpec spec) {
+        int dimensions = spec.dimensions() > 0 ? spec.dimensions() : DEFAULT_DIMENSIONS;
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) vectors.add(embed(text, dimensions));
+        return vectors;
+    }
+
+    static float[] embed(CharSequence text, int dimensions) {
+        float[] vector = new float[dimensions];
+        long history = append(vector, 0L, 0, ' ');
+        int seen = 1;
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (space) continue;
+                c = ' ';
+                space = true;
+            } else {
+                c = Character.toLowerCase(c);
+                space = false;
+            }
+            history = append(vector, history, seen++, c);
+        }
+        if (!space) append(vector, history, seen, ' ');
+        normalize(vector);
+        return vector;
+    }
+
+    /**
+     * Adds the n-grams ending with {@code c}, given the {@code seen} characters
+     * before it, the last four of which are in {@code history} (16 bits each,
+     * most recent lowest). The 3-gram's hash is extended by one older
+     * character for the 4-gram and again for the 5-gram. Returns the new history.
+     */
+    private static long append(float[] vector, long history, int seen, char c) {
+        if (seen >= MIN_N - 1) {
+            int hash = (FNV_OFFSET ^ c) * FNV_PRIME;
+            hash = (hash ^ (char) history) * FNV_PRIME;
+            for (int n = MIN_N; n <= MAX_N && n <= seen + 1; n++) {
+                hash = (hash ^ (char) (history >>> (16 * (n - 2)))) * FNV_PRIME;
+                add(vector, mix(hash ^ n));
+            }
+        }
+        return history << 16 | c;
+    }
+
+    private static void add(float[] vector, int hash) {
+        // multiply-shift maps the hash onto [0, length) without a division; the sign is the low bit
+        int index = (int) ((Integer.toUnsignedLong(hash) * vector.length) >>> 32);
+        vector[index] += (hash & 1) == 0 ? 1f : -1f;
+    }
+
+    /** Murmur3's finaliser; FNV alone leaves the low bits poorly mixed for short keys. */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static void normalize(float[] vector) {
+        double sum = 0;
+        for (float v : vector) sum += v * v;
+        if (sum == 0) {
+            // every feature cancelled out; still a valid direction for cosine distance
+            vector[0] = 1f;
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) vector[i] *= scale;
+    }
+}
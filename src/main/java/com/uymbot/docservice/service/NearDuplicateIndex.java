@@ -0,0 +1,486 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.writebuffer.ChromaWriteBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds stored chunks that are near-duplicates of a new one before it is
+ * embedded.
+ * <p>
+ * A chunk's features are its word bigrams (lower-cased runs of letters and
+ * digits), and two chunks are near-duplicates when the Jaccard similarity of
+ * their bigram sets reaches {@code similarity}: at 0.9 that is a 600-word
+ * chunk with about 15 words changed, or a 100-word one with two or three.
+ * Candidates are found by MinHash with locality-sensitive hashing: 128 min-hashes
+ * of the bigram set are grouped into 16 bands of 8, and each band is hashed
+ * to one int key. Chunks sharing any band key are candidates; a pair at
+ * similarity 0.8 shares one with probability 0.95, at 0.9 almost surely, at
+ * 0.5 with 0.06.
+ * </p>
+ * <p>
+ * Only the band keys are kept, in primitive arrays: a ring of {@code capacity}
+ * slots, overwritten oldest first, and one hash table per band whose buckets
+ * are chains through a per-band {@code next} array. A chain ends where it
+ * reaches a slot written after the one it came from, i.e. one already
+ * overwritten. That is about 140 bytes per chunk plus its id, and the same
+ * again for the tables.
+ * </p>
+ * <p>
+ * Candidates sharing the most bands are read back from their shard, at most
+ * three, and the first whose current text still reaches {@code similarity}
+ * exactly is the match. Chunks deleted or changed since, by this instance or
+ * another one, are therefore never matched. With {@code mode: skip} the new
+ * chunk is not stored at all and the chunk read back stands in for it; with
+ * {@code link} it is stored under its own id with the match's embedding and
+ * carries {@value #DUPLICATE_OF_KEY}. Either way no embedding is computed.
+ * Only chunks stored with an embedding of their own are indexed, once their
+ * write has been acknowledged; until then a {@link Pending} set matches them
+ * against the later chunks of the same request. With
+ * {@code load-on-start} the index is filled from the collection in the
+ * background after startup. Chunks shorter than {@code min-chars} are neither
+ * looked up nor indexed.
+ * </p>
+ * <p>
+ * Counted as {@code docservice.dedup.chunks{result=unique|skipped|linked}};
+ * {@code docservice.dedup.candidates.rejected} counts candidates that failed
+ * the read-back, and {@code docservice.dedup.index.size} is the number of
+ * chunks held.
+ * </p>
+ */
+@Slf4j
+@Component
+public class NearDuplicateIndex {
+
+    /** Metadata key holding the id of the chunk a duplicate was matched to. */
+    public static final String DUPLICATE_OF_KEY = "duplicateOf";
+
+    public enum Mode { OFF, SKIP, LINK }
+
+    /** Bigram hashes of a chunk and their LSH band keys. */
+    public record Signature(long[] shingles, int[] bands) {
+    }
+
+    /**
+     * A stored chunk a new one duplicates. {@code embedding} is only read in
+     * {@link Mode#LINK}; {@code stored}, the {@code /get} result for {@code id},
+     * only in {@link Mode#SKIP}.
+     */
+    public record Match(String id, float[] embedding, Map<?, ?> stored) {
+    }
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 8;
+    /** Candidates read back per lookup. */
+    private static final int MAX_CANDIDATES = 3;
+    /** Slots visited per bucket; bounds lookups in buckets crowded by identical boilerplate. */
+    private static final int MAX_CHAIN = 256;
+    private static final int LOAD_PAGE_SIZE = 500;
+    private static final long FNV64_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
+    /** Coefficients of the min-hash functions {@code a * x + b}, fixed so that signatures never change. */
+    private static final long[] A = new long[BANDS * ROWS];
+    private static final long[] B = new long[BANDS * ROWS];
+
+    static {
+        long seed = 0x5eed_d0c5_e7c1_ce00L;
+        for (int i = 0; i < A.length; i++) {
+            A[i] = mix(seed += 0x9e3779b97f4a7c15L) | 1;
+            B[i] = mix(seed += 0x9e3779b97f4a7c15L);
+        }
+    }
+
+    private final ChromaDbService chromaDbService;
+    private final ChromaWriteBuffer writeBuffer;
+    private final CollectionScanner scanner;
+    private final Mode mode;
+    private final double similarity;
+    private final int minChars;
+    private final boolean loadOnStart;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int tableMask;
+    /** Per band, the newest slot of each bucket or -1. */
+    private final int[][] heads;
+    /** Per band, the next older slot of the same bucket or -1. */
+    private final int[][] next;
+    /** Band keys of each slot, {@code BANDS} per slot. */
+    private final int[] keys;
+    /** Insertion number of each slot, to detect chains running into overwritten slots. */
+    private final long[] written;
+    private final String[] ids;
+    private long added;
+
+    private final Counter unique;
+    private final Counter skipped;
+    private final Counter linked;
+    private final Counter rejected;
+
+    public NearDuplicateIndex(ChromaDbService chromaDbService,
+                              ChromaWriteBuffer writeBuffer,
+                              CollectionScanner scanner,
+                              @Value("${docservice.dedup.mode:off}") String mode,
+                              @Value("${docservice.dedup.similarity:0.9}") double similarity,
+                              @Value("${docservice.dedup.min-chars:200}") int minChars,
+                              @Value("${docservice.dedup.capacity:100000}") int capacity,
+                              @Value("${docservice.dedup.load-on-start:true}") boolean loadOnStart,
+                              MeterRegistry registry) {
+        this.chromaDbService = chromaDbService;
+        this.writeBuffer = writeBuffer;
+        this.scanner = scanner;
+        this.mode = capacity > 0 ? Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)) : Mode.OFF;
+        this.similarity = similarity;
+        this.minChars = minChars;
+        this.loadOnStart = loadOnStart;
+
+        int slots = this.mode == Mode.OFF ? 0 : capacity;
+        int tableSize = slots <= 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.tableMask = tableSize - 1;
+        this.heads = new int[BANDS][tableSize];
+        for (int[] table : heads) Arrays.fill(table, -1);
+        this.next = new int[BANDS][slots];
+        this.keys = new int[slots * BANDS];
+        this.written = new long[slots];
+        this.ids = new String[slots];
+
+        this.unique = chunks(registry, "unique");
+        this.skipped = chunks(registry, "skipped");
+        this.linked = chunks(registry, "linked");
+        this.rejected = Counter.builder("docservice.dedup.candidates.rejected")
+                .description("Near-duplicate candidates that were deleted, changed or not similar enough when read back")
+                .register(registry);
+        Gauge.builder("docservice.dedup.index.size", this, NearDuplicateIndex::size)
+                .description("Chunks held by the near-duplicate index")
+                .register(registry);
+    }
+
+    private static Counter chunks(MeterRegistry registry, String result) {
+        return Counter.builder("docservice.dedup.chunks")
+                .description("Ingested chunks checked for near-duplicates, by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /** Signature of {@code text}, or {@code null} when it is not looked up or indexed. */
+    public Signature signature(String text) {
+        if (mode == Mode.OFF || text == null || text.length() < minChars) return null;
+        long[] shingles = shingles(text);
+        return shingles.length == 0 ? null : new Signature(shingles, bands(shingles));
+    }
+
+    /**
+     * The stored chunk {@code signature} duplicates, confirmed by reading it
+     * back, or {@code null}. A failed read-back counts as no match, so a
+     * ChromaDB problem costs an embedding, not the write.
+     */
+    public Match find(Signature signature) {
+        for (String id : candidates(signature.bands())) {
+            Match match = confirm(id, signature.shingles());
+            if (match != null) {
+                (mode == Mode.SKIP ? skipped : linked).increment();
+                return match;
+            }
+            rejected.increment();
+        }
+        unique.increment();
+        return null;
+    }
+
+    private Match confirm(String id, long[] shingles) {
+        List<String> include = mode == Mode.LINK
+                ? List.of("documents", "metadatas", "embeddings") : List.of("documents", "metadatas");
+        try {
+            writeBuffer.awaitApplied(List.of(id));
+            Map<?, ?> found = chromaDbService.getConsistent(chromaDbService.home(id), List.of(id), include);
+            if (!(CollectionScanner.row(found, "documents", 0) instanceof String document)
+                    || jaccard(shingles(document), shingles) < similarity) {
+                return null;
+            }
+            if (mode == Mode.SKIP) return new Match(id, null, found);
+            if (!(CollectionScanner.row(found, "embeddings", 0) instanceof List<?> vector)) return null;
+            float[] embedding = new float[vector.size()];
+            for (int i = 0; i < embedding.length; i++) embedding[i] = ((Number) vector.get(i)).floatValue();
+            // a linked chunk names the chunk it was matched to, so links never chain
+            Object original = CollectionScanner.row(found, "metadatas", 0) instanceof Map<?, ?> metadata
+                    ? metadata.get(DUPLICATE_OF_KEY) : null;
+            return new Match(original instanceof String o ? o : id, embedding, null);
+        } catch (RuntimeException e) {
+            log.debug("Could not read back near-duplicate candidate {}: {}", id, e.toString());
+            return null;
+        }
+    }
+
+    /** Ids of indexed chunks sharing a band key with {@code bands}, most shared bands first. */
+    List<String> candidates(int[] bands) {
+        if (mode == Mode.OFF) return List.of();
+        int[] hits = new int[BANDS * 2];
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            for (int b = 0; b < BANDS; b++) {
+                long before = Long.MAX_VALUE;
+                int slot = heads[b][bands[b] & tableMask];
+                for (int steps = 0; slot >= 0 && written[slot] < before && steps < MAX_CHAIN; steps++) {
+                    if (keys[slot * BANDS + b] == bands[b]) {
+                        if (count == hits.length) hits = Arrays.copyOf(hits, count * 2);
+                        hits[count++] = slot;
+                    }
+                    before = written[slot];
+                    slot = next[b][slot];
+                }
+            }
+            // runs of the same slot in the sorted hits are its shared bands
+            Arrays.sort(hits, 0, count);
+            int[] best = new int[MAX_CANDIDATES];
+            int[] shared = new int[MAX_CANDIDATES];
+            int found = 0;
+            for (int i = 0; i < count; ) {
+                int run = i;
+                while (run < count && hits[run] == hits[i]) run++;
+                int n = run - i;
+                int j = Math.min(found, MAX_CANDIDATES - 1);
+                if (found < MAX_CANDIDATES || n > shared[j]) {
+                    while (j > 0 && shared[j - 1] < n) {
+                        best[j] = best[j - 1];
+                        shared[j] = shared[j - 1];
+                        j--;
+                    }
+                    best[j] = hits[i];
+                    shared[j] = n;
+                    found = Math.min(found + 1, MAX_CANDIDATES);
+                }
+                i = run;
+            }
+            List<String> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                if (!result.contains(ids[best[i]])) result.add(ids[best[i]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Indexes a stored chunk, overwriting the oldest one when full. */
+    public void add(String id, Signature signature) {
+        if (mode == Mode.OFF) return;
+        int[] bands = signature.bands();
+        lock.writeLock().lock();
+        try {
+            int slot = (int) (added % written.length);
+            written[slot] = ++added;
+            ids[slot] = id;
+            for (int b = 0; b < BANDS; b++) {
+                keys[slot * BANDS + b] = bands[b];
+                int bucket = bands[b] & tableMask;
+                next[b][slot] = heads[b][bucket];
+                heads[b][bucket] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** An empty set for the chunks of one request. */
+    public Pending pending() {
+        return new Pending();
+    }
+
+    /**
+     * Chunks of one request whose writes are not acknowledged yet, so not
+     * indexed, matched by the same band keys and exact similarity without a
+     * read-back. Only chunks with an embedding of their own are added.
+     */
+    public final class Pending {
+
+        private final List<String> ids = new ArrayList<>();
+        private final List<Signature> signatures = new ArrayList<>();
+        /** Band number and key to the positions in {@code ids} that have them. */
+        private final Map<Long, List<Integer>> buckets = new HashMap<>();
+
+        private Pending() {
+        }
+
+        public void add(String id, Signature signature) {
+            int position = ids.size();
+            ids.add(id);
+            signatures.add(signature);
+            int[] bands = signature.bands();
+            for (int b = 0; b < BANDS; b++) {
+                buckets.computeIfAbsent(bucket(b, bands[b]), k -> new ArrayList<>(1)).add(position);
+            }
+        }
+
+        /** Id of an earlier chunk {@code signature} duplicates, counted like a match of {@link #find}, or {@code null}. */
+        public String find(Signature signature) {
+            int[] bands = signature.bands();
+            Set<Integer> checked = new HashSet<>();
+            for (int b = 0; b < BANDS && checked.size() < MAX_CHAIN; b++) {
+                for (int position : buckets.getOrDefault(bucket(b, bands[b]), List.of())) {
+                    if (checked.add(position)
+                            && jaccard(signatures.get(position).shingles(), signature.shingles()) >= similarity) {
+                        (mode == Mode.SKIP ? skipped : linked).increment();
+                        return ids.get(position);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /** Indexes the chunks added so far, once their writes have been acknowledged, and forgets them. */
+        public void index() {
+            for (int i = 0; i < ids.size(); i++) NearDuplicateIndex.this.add(ids.get(i), signatures.get(i));
+            ids.clear();
+            signatures.clear();
+            buckets.clear();
+        }
+
+        private static long bucket(int band, int key) {
+            return (long) band << 32 | (key & 0xffffffffL);
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return (int) Math.min(added, written.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Fills the index from the collection in the background, leaving out linked chunks. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (mode == Mode.OFF || !loadOnStart) return;
+        Thread thread = new Thread(Lane.INGEST.wrap(() -> {
+            long start = System.nanoTime();
+            try {
+                long[] indexed = new long[1];
+                long scanned = scanner.scan(List.of("documents", "metadatas"), LOAD_PAGE_SIZE, (page, from) -> {
+                    List<?> pageIds = (List<?>) page.get("ids");
+                    for (int i = from; i < pageIds.size(); i++) {
+                        if (CollectionScanner.row(page, "metadatas", i) instanceof Map<?, ?> metadata
+                                && metadata.containsKey(DUPLICATE_OF_KEY)) continue;
+                        Signature signature = CollectionScanner.row(page, "documents", i) instanceof String document
+                                ? signature(document) : null;
+                        if (signature == null) continue;
+                        add((String) pageIds.get(i), signature);
+                        indexed[0]++;
+                    }
+                });
+                log.info("Near-duplicate index loaded: {} of {} chunk(s) indexed in {} ms", indexed[0], scanned,
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Loading the near-duplicate index failed; only chunks written from now on are detected", e);
+            }
+        }), "dedup-index-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Sorted, distinct 64-bit hashes of the word bigrams of {@code text}. */
+    static long[] shingles(CharSequence text) {
+        long[] shingles = new long[16];
+        int count = 0;
+        long word = FNV64_OFFSET;
+        long previous = 0;
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word = (word ^ Character.toLowerCase(c)) * FNV64_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                if (words++ > 0) {
+                    if (count == shingles.length) shingles = Arrays.copyOf(shingles, count * 2);
+                    shingles[count++] = mix(Long.rotateLeft(previous, 32) ^ word);
+                }
+                previous = word;
+                word = FNV64_OFFSET;
+                inWord = false;
+            }
+        }
+        Arrays.sort(shingles, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || shingles[i] != shingles[distinct - 1]) shingles[distinct++] = shingles[i];
+        }
+        return Arrays.copyOf(shingles, distinct);
+    }
+
+    /** One key per band, each folding {@code ROWS} min-hashes of {@code shingles}. */
+    static int[] bands(long[] shingles) {
+        int[] bands = new int[BANDS];
+        for (int b = 0; b < BANDS; b++) {
+            long key = b;
+            for (int r = 0; r < ROWS; r++) {
+                int h = b * ROWS + r;
+                long min = Long.MAX_VALUE;
+                for (long shingle : shingles) {
+                    // multiply-shift universal hashing; the upper half is the well-mixed one
+                    long value = (A[h] * shingle + B[h]) >>> 32;
+                    if (value < min) min = value;
+                }
+                key = mix(key * 31 + min);
+            }
+            bands[b] = (int) key;
+        }
+        return bands;
+    }
+
+    /** Jaccard similarity of two sorted distinct hash sets. */
+    static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 && b.length == 0) return 1;
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    /** Murmur3's 64-bit finaliser. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e2b40a10fL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
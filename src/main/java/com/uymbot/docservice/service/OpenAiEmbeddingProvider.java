@@ -0,0 +1,214 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
+import com.uymbot.docservice.observability.jfr.EmbeddingCallEvent;
+import com.uymbot.docservice.resilience.EmbeddingRateLimiter;
+import com.uymbot.docservice.resilience.Priority;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeddings from the OpenAI {@code /v1/embeddings} endpoint.
+ * <p>
+ * Every call is scheduled through {@link EmbeddingRateLimiter}; rate-limited
+ * (429), 5xx and I/O failures are retried up to
+ * {@code openai.rate-limit.max-retries} times. Serves every model other than
+ * the {@linkplain LocalEmbeddingProvider local} one.
+ * </p>
+ */
+@Slf4j
+@Component
+public class OpenAiEmbeddingProvider implements EmbeddingProvider {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final RestTemplate restTemplate;
+    private final StageMetrics stageMetrics;
+    private final EmbeddingRateLimiter rateLimiter;
+
+    @Value("${openai.api-key}")
+    private String apiKey;
+
+    @Value("${openai.embedding-url}")
+    private String embeddingUrl;
+
+    @Value("${openai.rate-limit.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${openai.rate-limit.chars-per-token:3}")
+    private double charsPerToken;
+
+    public OpenAiEmbeddingProvider(RestTemplate restTemplate, StageMetrics stageMetrics,
+                                   EmbeddingRateLimiter rateLimiter) {
+        this.restTemplate = restTemplate;
+        this.stageMetrics = stageMetrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public String name() {
+        return "openai";
+    }
+
+    @Override
+    public boolean supports(EmbeddingSpec spec) {
+        return !LocalEmbeddingProvider.MODEL.equals(spec.model());
+    }
+
+    @Override
+    public boolean remote() {
+        return true;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts, Priority priority, EmbeddingSpec spec) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(apiKey);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("input", texts.size() == 1 ? texts.get(0) : texts);
+        requestBody.put("model", spec.model());
+        if (spec.dimensions() > 0) requestBody.put("dimensions", spec.dimensions());
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+
+        int chars = 0;
+        int tokens = 0;
+        for (String text : texts) {
+            chars += text.length();
+            tokens += estimateTokens(text);
+        }
+
+        EmbeddingCallEvent event = new EmbeddingCallEvent();
+        event.begin();
+        Map<?, ?> response = null;
+        List<float[]> result = null;
+        try {
+            response = call(entity, priority, tokens);
+            result = toVectors(response, texts.size());
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.model = spec.model();
+                event.batchSize = texts.size();
+                event.inputChars = chars;
+                event.tokens = totalTokens(response);
+                event.dimensions = result == null ? 0 : result.get(0).length;
+                event.success = result != null;
+                event.commit();
+            }
+        }
+        log.debug("Embedded {} text(s) with model={}, dim={}", texts.size(), spec.model(), result.get(0).length);
+        return result;
+    }
+
+    private Map<?, ?> call(HttpEntity<Map<String, Object>> entity, Priority priority, int tokens) {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire(priority, tokens);
+            try {
+                ResponseEntity<Map<String, Object>> response = stageMetrics.time(Stage.EMBED, "embed",
+                        () -> restTemplate.exchange(embeddingUrl, HttpMethod.POST, entity, RESPONSE_TYPE));
+                rateLimiter.onSuccess(response.getHeaders());
+                return response.getBody();
+            } catch (HttpClientErrorException.TooManyRequests e) {
+                Duration pause = rateLimiter.onRateLimited(e.getResponseHeaders(), attempt);
+                if (attempt >= maxRetries) {
+                    throw new ServiceUnavailableException(
+                            "OpenAI embedding API rate limit exceeded after " + (attempt + 1) + " attempts", pause, e);
+                }
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                if (attempt >= maxRetries) {
+                    throw new IllegalStateException("OpenAI embedding API call failed: " + e.getMessage(), e);
+                }
+                Duration backoff = rateLimiter.backoff(attempt);
+                log.warn("Embedding API call failed ({}), retrying in {} ms", e.getMessage(), backoff.toMillis());
+                sleep(backoff);
+            } catch (ServiceUnavailableException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("OpenAI embedding API call failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying embedding call", e);
+        }
+    }
+
+    /**
+     * Tokens reserved from the rate limiter for {@code text}. English averages
+     * about 4 characters per token, Turkish closer to 3, so the default
+     * {@code openai.rate-limit.chars-per-token} of 3 reserves too much rather
+     * than too little; the provider's headers correct the bucket afterwards.
+     */
+    int estimateTokens(String text) {
+        return Math.max(1, (int) Math.ceil(text.length() / charsPerToken));
+    }
+
+    /**
+     * Decodes the {@code data[].embedding} entries of an OpenAI embeddings
+     * response for {@code count} inputs, placed by their {@code index}.
+     */
+    @SuppressWarnings("unchecked")
+    static List<float[]> toVectors(Map<?, ?> response, int count) {
+        if (response == null) {
+            throw new IllegalStateException("OpenAI embedding API returned null response");
+        }
+        List<?> data = (List<?>) response.get("data");
+        if (data == null || data.size() < count) {
+            throw new IllegalStateException("OpenAI embedding API returned "
+                    + (data == null ? 0 : data.size()) + " embeddings for " + count + " inputs");
+        }
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            Map<?, ?> entry = (Map<?, ?>) data.get(i);
+            int index = entry.get("index") instanceof Number n ? n.intValue() : i;
+            List<Double> embeddingValues = (List<Double>) entry.get("embedding");
+            if (embeddingValues == null || embeddingValues.isEmpty()) {
+                throw new IllegalStateException("OpenAI embedding API returned empty embedding vector");
+            }
+            if (index < 0 || index >= count || vectors[index] != null) {
+                throw new IllegalStateException("OpenAI embedding API returned unexpected index " + index);
+            }
+            float[] vector = new float[embeddingValues.size()];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = embeddingValues.get(j).floatValue();
+            }
+            vectors[index] = vector;
+        }
+        return List.of(vectors);
+    }
+
+    /** {@code usage.total_tokens} of an embeddings response, or -1 when absent. */
+    static int totalTokens(Map<?, ?> response) {
+        if (response != null && response.get("usage") instanceof Map<?, ?> usage
+                && usage.get("total_tokens") instanceof Number tokens) {
+            return tokens.intValue();
+        }
+        return -1;
+    }
+}
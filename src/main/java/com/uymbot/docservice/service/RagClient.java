@@ -2,8 +2,11 @@ package com.uymbot.docservice.service;
 
 import com.uymbot.docservice.dto.RagChunkResponse;
 import com.uymbot.docservice.dto.RagDocumentMeta;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -14,13 +17,19 @@ import java.util.List;
 
 /**
  * HTTP client for the RAG Chunking/Parser service.
+ * <p>
+ * The response DTOs are bound outside any controller, so their reflection
+ * hints for the native image are registered here.
+ * </p>
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@RegisterReflectionForBinding({RagDocumentMeta.class, RagChunkResponse.class})
 public class RagClient {
 
     private final RestTemplate restTemplate;
+    private final StageMetrics stageMetrics;
 
     @Value("${rag.service.base-url}")
     private String ragServiceBaseUrl;
@@ -28,17 +37,18 @@ public class RagClient {
     public RagDocumentMeta getDocument(String ragDocumentId) {
         String url = ragServiceBaseUrl + "/api/documents/" + ragDocumentId;
         log.debug("Fetching RAG document metadata from {}", url);
-        return restTemplate.getForObject(url, RagDocumentMeta.class);
+        return stageMetrics.time(Stage.RAG, "document",
+                () -> restTemplate.getForObject(url, RagDocumentMeta.class));
     }
 
     public List<RagChunkResponse> getChunks(String ragDocumentId) {
         String url = ragServiceBaseUrl + "/api/documents/" + ragDocumentId + "/chunks";
         log.debug("Fetching RAG document chunks from {}", url);
-        return restTemplate.exchange(
+        return stageMetrics.time(Stage.RAG, "chunks", () -> restTemplate.exchange(
                 url,
                 HttpMethod.GET,
                 null,
                 new ParameterizedTypeReference<List<RagChunkResponse>>() {}
-        ).getBody();
+        ).getBody());
     }
 }
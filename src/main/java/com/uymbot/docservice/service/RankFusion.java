@@ -0,0 +1,64 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.dto.DocumentResponse;
+import com.uymbot.docservice.dto.RankedDocument;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion (Cormack et al., 2009) of several result lists.
+ * <p>
+ * A document scores {@code 1 / (K + rank)} for every list it appears in,
+ * with 1-based ranks. Only ranks are used, so lists whose distances are not
+ * comparable (different queries) fuse fairly, and documents found by several
+ * queries rise above those found by one.
+ * </p>
+ */
+final class RankFusion {
+
+    /** Damping constant from the original paper; keeps a single first place from dominating. */
+    static final int K = 60;
+
+    private RankFusion() {
+    }
+
+    /** @return at most {@code limit} documents, each id once, best score first */
+    static List<RankedDocument> fuse(List<List<DocumentResponse>> rankings, int limit) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (List<DocumentResponse> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                DocumentResponse doc = ranking.get(i);
+                Entry entry = entries.computeIfAbsent(doc.getId(), id -> new Entry(doc));
+                entry.score += 1.0 / (K + i + 1);
+                entry.matches++;
+                entry.bestRank = Math.min(entry.bestRank, i);
+            }
+        }
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        // stable: equal scores keep the order documents were first seen in
+        sorted.sort(Comparator.comparingDouble((Entry e) -> -e.score).thenComparingInt(e -> e.bestRank));
+        return sorted.stream().limit(limit).map(e -> RankedDocument.builder()
+                .id(e.doc.getId())
+                .title(e.doc.getTitle())
+                .content(e.doc.getContent())
+                .metadata(e.doc.getMetadata())
+                .score(e.score)
+                .matches(e.matches)
+                .build()).toList();
+    }
+
+    private static final class Entry {
+        final DocumentResponse doc;
+        double score;
+        int matches;
+        int bestRank = Integer.MAX_VALUE;
+
+        Entry(DocumentResponse doc) {
+            this.doc = doc;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.dto.DocumentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search results of recent queries, found by query text or by query
+ * embedding.
+ * <p>
+ * The first tier matches the whitespace-normalised query text and spares the
+ * embedding call as well. The second tier compares the query's embedding with
+ * the embeddings of the cached queries, a flat scan over at most
+ * {@code max-size} unit vectors, and serves the results of the most similar
+ * one if its cosine similarity reaches {@code similarity-threshold}.
+ * Paraphrases of a recent question then cost an embedding but no ChromaDB
+ * round trip. A threshold of {@code 1}, the default, leaves only the text
+ * tier: different questions can embed above 0.95 (e.g. resetting a password
+ * and resetting a PIN), so a lower threshold is chosen from the similarity
+ * histogram below. With the tier off only a {@code similarity-sample-rate}
+ * share of lookups scans the entries to feed that histogram; the rest are
+ * misses at no cost.
+ * </p>
+ * <p>
+ * Every entry carries the {@linkplain ChromaDbService#writeGeneration() write
+ * generation} read before its ChromaDB query and is only served while it is
+ * still current, so a write through this instance retires every entry at once.
+ * Entries also expire after {@code ttl} to bound staleness from writes by other
+ * instances or by anything else that bypasses this service. Results for a
+ * larger {@code nResults} serve smaller ones from their prefix.
+ * </p>
+ * <p>
+ * Lookups are counted as {@code docservice.search.cache{result}}: {@code text}
+ * and {@code similar} hits, {@code stale} when the best match was retired by a
+ * write or the ttl, {@code miss} otherwise. {@code docservice.search.cache.similarity}
+ * records, per embedding lookup, the best similarity to a current entry, hit
+ * or not, which shows where to put the threshold; {@code docservice.search.cache.age}
+ * is the age of the results served.
+ * </p>
+ */
+@Component
+public class SearchCache {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final double threshold;
+    private final double sampleRate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Ring of entries, overwritten oldest first. */
+    private final Entry[] entries;
+    private final Map<String, Integer> slotsByText = new HashMap<>();
+    private int next;
+
+    private final Counter textHits;
+    private final Counter similarHits;
+    private final Counter staleLookups;
+    private final Counter misses;
+    private final DistributionSummary similarity;
+    private final DistributionSummary age;
+
+    private record Entry(String text, float[] vector, int nResults, long generation, long createdNanos,
+                         List<DocumentResponse> results) {
+    }
+
+    public SearchCache(@Value("${docservice.cache.search.enabled:true}") boolean enabled,
+                       @Value("${docservice.cache.search.max-size:1000}") int maxSize,
+                       @Value("${docservice.cache.search.ttl:5m}") Duration ttl,
+                       @Value("${docservice.cache.search.similarity-threshold:1.0}") double threshold,
+                       @Value("${docservice.cache.search.similarity-sample-rate:0.01}") double sampleRate,
+                       MeterRegistry registry) {
+        this.enabled = enabled && maxSize > 0;
+        this.entries = new Entry[Math.max(maxSize, 0)];
+        this.ttlNanos = ttl.toNanos();
+        this.threshold = threshold;
+        this.sampleRate = sampleRate;
+
+        this.textHits = lookups(registry, "text");
+        this.similarHits = lookups(registry, "similar");
+        this.staleLookups = lookups(registry, "stale");
+        this.misses = lookups(registry, "miss");
+        this.similarity = DistributionSummary.builder("docservice.search.cache.similarity")
+                .description("Best cosine similarity between a search and a cached search, per embedding lookup")
+                .serviceLevelObjectives(0.8, 0.85, 0.9, 0.925, 0.95, 0.96, 0.97, 0.98, 0.99, 1.0)
+                .register(registry);
+        this.age = DistributionSummary.builder("docservice.search.cache.age")
+                .description("Age of search results served from the cache")
+                .baseUnit("seconds")
+                .serviceLevelObjectives(1, 5, 15, 30, 60, 120, 300)
+                .register(registry);
+        Gauge.builder("docservice.search.cache.size", this, SearchCache::size)
+                .description("Searches in the cache")
+                .register(registry);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("docservice.search.cache")
+                .description("Search cache lookups by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /** Results cached for the same normalised query text, or {@code null}; a miss is not counted yet. */
+    public List<DocumentResponse> get(String text, int nResults, long generation) {
+        if (!enabled) return null;
+        long now = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsByText.get(text);
+            Entry entry = slot == null ? null : entries[slot];
+            if (entry == null || entry.nResults < nResults || !current(entry, generation, now)) return null;
+            return hit(textHits, entry, nResults, now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Results cached for the most similar query embedding, or {@code null} if none is similar enough. */
+    public List<DocumentResponse> getSimilar(float[] vector, int nResults, long generation) {
+        if (!enabled) return null;
+        // rounding can put a near-identical vector at 1.0; a threshold of 1 means same text only
+        boolean similarTier = threshold < 1;
+        if (!similarTier && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            misses.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        float norm = norm(vector);
+        if (norm == 0) {
+            misses.increment();
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Entry best = null;
+            double bestSimilarity = -1;
+            double bestRetired = -1;
+            for (Entry entry : entries) {
+                if (entry == null || entry.vector.length != vector.length || entry.nResults < nResults) continue;
+                double s = dot(entry.vector, vector) / norm;
+                if (!current(entry, generation, now)) {
+                    bestRetired = Math.max(bestRetired, s);
+                } else if (s > bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = s;
+                }
+            }
+            if (best != null) similarity.record(bestSimilarity);
+            if (similarTier && best != null && bestSimilarity >= threshold) {
+                return hit(similarHits, best, nResults, now);
+            }
+            (similarTier && bestRetired >= threshold ? staleLookups : misses).increment();
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Caches the results of a search for {@code text}, embedded as
+     * {@code vector}, run against {@code generation}. A previous entry for
+     * the same text is replaced.
+     */
+    public void put(String text, float[] vector, int nResults, long generation, List<DocumentResponse> results) {
+        if (!enabled) return;
+        float norm = norm(vector);
+        if (norm == 0) return;
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < unit.length; i++) unit[i] = vector[i] / norm;
+        Entry entry = new Entry(text, unit, nResults, generation, System.nanoTime(), List.copyOf(results));
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsByText.get(text);
+            if (slot == null) {
+                slot = next;
+                next = (next + 1) % entries.length;
+                Entry evicted = entries[slot];
+                if (evicted != null) slotsByText.remove(evicted.text);
+                slotsByText.put(text, slot);
+            }
+            entries[slot] = entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean current(Entry entry, long generation, long now) {
+        return entry.generation == generation && now - entry.createdNanos < ttlNanos;
+    }
+
+    private List<DocumentResponse> hit(Counter counter, Entry entry, int nResults, long now) {
+        counter.increment();
+        age.record((double) (now - entry.createdNanos) / TimeUnit.SECONDS.toNanos(1));
+        List<DocumentResponse> results = entry.results;
+        return results.size() <= nResults ? results : results.subList(0, nResults);
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByText.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+}
@@ -0,0 +1,123 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.sharding.Shard;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Target of a running re-embedding migration: the collections, one per
+ * source shard on the same node, that writes are mirrored into and the
+ * background copy fills.
+ * <p>
+ * Mirrored writes and the copy job's writes are ordered by a logical clock.
+ * The job reads the clock before it reads a page from the source; every
+ * mirrored write stamps the chunks it touched. Under {@link #lock} the job
+ * only writes chunks not stamped after its read and marks the others dirty,
+ * so it never overwrites a newer write or brings back a deleted chunk.
+ * Dirty chunks, and chunks whose mirrored write failed, are copied again
+ * from the source before the switch.
+ * </p>
+ */
+public final class ShadowCollection {
+
+    private final String name;
+    private final EmbeddingSpec spec;
+    /** Target shard and collection id by source shard index. */
+    private final Map<Integer, Shard> targets;
+    private final Map<Integer, String> targetIds;
+
+    final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> touched = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong mirrored = new AtomicLong();
+    private final AtomicLong mirrorFailures = new AtomicLong();
+
+    public ShadowCollection(String name, EmbeddingSpec spec, Map<Integer, Shard> targets, Map<Integer, String> targetIds) {
+        this.name = name;
+        this.spec = spec;
+        this.targets = Map.copyOf(targets);
+        this.targetIds = Map.copyOf(targetIds);
+    }
+
+    /** Name the migration was started with; per-shard collection names derive from it. */
+    public String name() {
+        return name;
+    }
+
+    public EmbeddingSpec spec() {
+        return spec;
+    }
+
+    public Shard target(Shard source) {
+        return targets.get(source.index());
+    }
+
+    String targetId(Shard source) {
+        return targetIds.get(source.index());
+    }
+
+    /** Current clock value; take it before reading from the source. */
+    public long now() {
+        return clock.get();
+    }
+
+    /** Chunks mirrored into the target so far. */
+    public long mirrored() {
+        return mirrored.get();
+    }
+
+    /** Mirrored writes that failed and left their chunks dirty. */
+    public long mirrorFailures() {
+        return mirrorFailures.get();
+    }
+
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    void touch(Collection<String> ids) {
+        for (String id : ids) touched.put(id, clock.incrementAndGet());
+    }
+
+    boolean touchedSince(String id, long time) {
+        Long stamp = touched.get(id);
+        return stamp != null && stamp > time;
+    }
+
+    /** Drops stamps no read taken at or after {@code time} can be affected by. */
+    void forgetBefore(long time) {
+        touched.values().removeIf(stamp -> stamp <= time);
+    }
+
+    void onMirrored(int chunks) {
+        mirrored.addAndGet(chunks);
+    }
+
+    void onMirrorFailed(Collection<String> ids) {
+        mirrorFailures.incrementAndGet();
+        dirty.addAll(ids);
+    }
+
+    void markDirty(String id) {
+        dirty.add(id);
+    }
+
+    /** Marks chunks to be copied again, e.g. because copying them failed. */
+    public void markDirty(Collection<String> ids) {
+        dirty.addAll(ids);
+    }
+
+    /** Removes and returns the dirty chunk ids; put them back with {@link #markDirty(Collection)} on failure. */
+    public List<String> takeDirty() {
+        List<String> taken = List.copyOf(dirty);
+        taken.forEach(dirty::remove);
+        return taken;
+    }
+}
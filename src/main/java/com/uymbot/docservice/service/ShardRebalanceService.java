@@ -0,0 +1,135 @@
+package com.uymbot.docservice.service;
+
+import com.uymbot.docservice.dto.ShardRebalanceResponse;
+import com.uymbot.docservice.dto.ShardStatus;
+import com.uymbot.docservice.sharding.Shard;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves chunks onto the shards the hash ring assigns them to.
+ * <p>
+ * After a shard is added to {@code chromadb.sharding.shards}, about
+ * {@code 1/N} of the documents belong on the new shard but still live on
+ * their old one. The rebalance walks every shard page by page and copies
+ * each misplaced chunk, embedding included, to its home shard with
+ * {@code /upsert} before deleting it from the source, so a chunk is never
+ * missing and no embedding is recomputed. Until it has moved, a chunk is
+ * still found through {@link ChromaDbService}'s miss lookup.
+ * </p>
+ * <p>
+ * Writes to a chunk between its copy and its delete can be lost, so run the
+ * rebalance at a quiet time; it is idempotent and can simply be run again.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShardRebalanceService {
+
+    private static final List<String> INCLUDE = List.of("documents", "metadatas", "embeddings");
+
+    private final ChromaDbService chromaDbService;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public List<ShardStatus> status() {
+        List<ShardStatus> status = new ArrayList<>();
+        for (Shard shard : chromaDbService.shards()) {
+            status.add(ShardStatus.builder()
+                    .index(shard.index())
+                    .host(shard.host())
+                    .collection(shard.collection())
+                    .count(chromaDbService.count(shard))
+                    .build());
+        }
+        return status;
+    }
+
+    /**
+     * @param dryRun    only count the chunks that would move
+     * @param batchSize chunks read per page and moved per upsert
+     */
+    @SuppressWarnings("unchecked")
+    public ShardRebalanceResponse rebalance(boolean dryRun, int batchSize) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rebalance is already running");
+        }
+        try {
+            long start = System.nanoTime();
+            long scanned = 0;
+            long moved = 0;
+            Map<String, Long> moves = new TreeMap<>();
+
+            for (Shard source : chromaDbService.shards()) {
+                int offset = 0;
+                while (true) {
+                    Map<?, ?> page = chromaDbService.list(source, batchSize, offset, dryRun ? List.of() : INCLUDE);
+                    List<String> ids = (List<String>) page.get("ids");
+                    if (ids == null || ids.isEmpty()) break;
+                    scanned += ids.size();
+
+                    Map<Shard, List<Integer>> byTarget = new LinkedHashMap<>();
+                    for (int i = 0; i < ids.size(); i++) {
+                        Shard home = chromaDbService.home(ids.get(i));
+                        if (!home.equals(source)) byTarget.computeIfAbsent(home, s -> new ArrayList<>()).add(i);
+                    }
+
+                    int movedFromPage = 0;
+                    for (Map.Entry<Shard, List<Integer>> target : byTarget.entrySet()) {
+                        List<Integer> rows = target.getValue();
+                        if (!dryRun) move(page, rows, source, target.getKey());
+                        moves.merge(source.name() + " -> " + target.getKey().name(), (long) rows.size(), Long::sum);
+                        movedFromPage += rows.size();
+                    }
+                    moved += movedFromPage;
+
+                    if (ids.size() < batchSize) break;
+                    // moved rows were deleted from this page, so the next page starts that much earlier
+                    offset += ids.size() - (dryRun ? 0 : movedFromPage);
+                }
+                log.info("Rebalance {} shard {}: {} chunk(s) scanned so far, {} to move",
+                        dryRun ? "(dry run) of" : "of", source, scanned, moved);
+            }
+
+            long tookMs = (System.nanoTime() - start) / 1_000_000;
+            log.info("Rebalance{} finished: {} of {} chunk(s) moved in {} ms", dryRun ? " (dry run)" : "",
+                    moved, scanned, tookMs);
+            return ShardRebalanceResponse.builder()
+                    .dryRun(dryRun)
+                    .scanned(scanned)
+                    .moved(moved)
+                    .moves(moves)
+                    .tookMs(tookMs)
+                    .build();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void move(Map<?, ?> page, List<Integer> rows, Shard source, Shard target) {
+        List<String> ids = new ArrayList<>(rows.size());
+        List<String> documents = new ArrayList<>(rows.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(rows.size());
+        List<float[]> embeddings = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            ids.add((String) CollectionScanner.row(page, "ids", row));
+            documents.add((String) CollectionScanner.row(page, "documents", row));
+            metadatas.add((Map<String, Object>) CollectionScanner.row(page, "metadatas", row));
+            List<?> vector = (List<?>) CollectionScanner.row(page, "embeddings", row);
+            float[] embedding = new float[vector.size()];
+            for (int d = 0; d < embedding.length; d++) embedding[d] = ((Number) vector.get(d)).floatValue();
+            embeddings.add(embedding);
+        }
+        chromaDbService.upsert(target, ids, documents, metadatas, embeddings);
+        chromaDbService.delete(source, ids);
+    }
+}
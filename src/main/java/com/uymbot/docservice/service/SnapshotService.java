@@ -0,0 +1,159 @@
+package com.uymbot.docservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.SnapshotRestoreResponse;
+import com.uymbot.docservice.snapshot.SnapshotBlock;
+import com.uymbot.docservice.snapshot.SnapshotReader;
+import com.uymbot.docservice.snapshot.SnapshotWriter;
+import com.uymbot.docservice.snapshot.VectorEncoding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Binary snapshots of the collection including embeddings.
+ * <p>
+ * A snapshot is written page by page while scanning the collection (see
+ * {@link SnapshotWriter} for the format) and restored with batched
+ * {@code /upsert} calls into any collection. Neither direction calls the
+ * embedding API, so restoring works without an API key and costs nothing;
+ * re-running a restore that failed half way is safe.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SnapshotService {
+
+    private static final List<String> INCLUDE = List.of("documents", "metadatas", "embeddings");
+
+    private final CollectionScanner collectionScanner;
+    private final ChromaDbService chromaDbService;
+    private final DocumentCache documentCache;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes the whole collection to {@code out}; one block per page.
+     *
+     * @return number of chunks written
+     */
+    public long snapshot(OutputStream out, VectorEncoding encoding, int pageSize) throws IOException {
+        long start = System.nanoTime();
+        SnapshotWriter writer = new SnapshotWriter(out, encoding, chromaDbService.collectionName(), objectMapper);
+        collectionScanner.scan(INCLUDE, pageSize, (page, from) -> writer.write(toBlock(page, from)));
+        writer.finish();
+        log.info("Snapshot of {} chunk(s) ({}) written in {} ms", writer.rows(),
+                encoding.name().toLowerCase(Locale.ROOT), (System.nanoTime() - start) / 1_000_000);
+        return writer.rows();
+    }
+
+    /**
+     * Loads a snapshot into {@code collection} (the service's own collection
+     * if {@code null}), {@code batchSize} chunks per upsert. Each block is
+     * verified before any of its chunks is written.
+     */
+    public SnapshotRestoreResponse restore(InputStream in, String collection, int batchSize) throws IOException {
+        long start = System.nanoTime();
+        String target = collection == null || collection.isBlank() ? chromaDbService.collectionName() : collection;
+        boolean own = target.equals(chromaDbService.collectionName());
+        SnapshotReader reader = new SnapshotReader(in, objectMapper);
+
+        Batch batch = new Batch(batchSize);
+        long restored = 0;
+        int batches = 0;
+        for (SnapshotBlock block = reader.next(); block != null; block = reader.next()) {
+            for (int i = 0; i < block.size(); i++) {
+                batch.add(block, i);
+                if (batch.size() == batchSize) {
+                    restored += batch.flush(target, own);
+                    batches++;
+                }
+            }
+        }
+        if (batch.size() > 0) {
+            restored += batch.flush(target, own);
+            batches++;
+        }
+
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Restored {} chunk(s) from snapshot of '{}' into '{}' with {} upsert(s) in {} ms",
+                restored, reader.collection(), target, batches, tookMs);
+        return SnapshotRestoreResponse.builder()
+                .collection(target)
+                .sourceCollection(reader.collection())
+                .snapshotCreatedAt(reader.createdAt())
+                .encoding(reader.encoding().name().toLowerCase(Locale.ROOT))
+                .restored(restored)
+                .batches(batches)
+                .tookMs(tookMs)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SnapshotBlock toBlock(Map<?, ?> page, int from) {
+        int size = ((List<?>) page.get("ids")).size() - from;
+        List<String> ids = new ArrayList<>(size);
+        List<String> documents = new ArrayList<>(size);
+        List<Map<String, Object>> metadatas = new ArrayList<>(size);
+        List<float[]> embeddings = new ArrayList<>(size);
+        for (int i = from; i < from + size; i++) {
+            ids.add((String) CollectionScanner.row(page, "ids", i));
+            documents.add((String) CollectionScanner.row(page, "documents", i));
+            metadatas.add((Map<String, Object>) CollectionScanner.row(page, "metadatas", i));
+            embeddings.add(CollectionScanner.row(page, "embeddings", i) instanceof List<?> vector ? toArray(vector) : null);
+        }
+        return new SnapshotBlock(ids, documents, metadatas, embeddings);
+    }
+
+    private static float[] toArray(List<?> vector) {
+        float[] out = new float[vector.size()];
+        for (int i = 0; i < out.length; i++) out[i] = ((Number) vector.get(i)).floatValue();
+        return out;
+    }
+
+    /** Rows collected for the next upsert. */
+    private final class Batch {
+        private final List<String> ids;
+        private final List<String> documents;
+        private final List<Map<String, Object>> metadatas;
+        private final List<float[]> embeddings;
+
+        Batch(int capacity) {
+            ids = new ArrayList<>(capacity);
+            documents = new ArrayList<>(capacity);
+            metadatas = new ArrayList<>(capacity);
+            embeddings = new ArrayList<>(capacity);
+        }
+
+        void add(SnapshotBlock block, int i) {
+            ids.add(block.ids().get(i));
+            documents.add(block.documents().get(i));
+            metadatas.add(block.metadatas().get(i));
+            embeddings.add(block.embeddings().get(i));
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        int flush(String collection, boolean own) {
+            int size = ids.size();
+            chromaDbService.upsertAll(collection, List.copyOf(ids), new ArrayList<>(documents),
+                    new ArrayList<>(metadatas), List.copyOf(embeddings));
+            if (own) ids.forEach(documentCache::invalidate);
+            ids.clear();
+            documents.clear();
+            metadatas.clear();
+            embeddings.clear();
+            return size;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.uymbot.docservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.DocumentRequest;
+import com.uymbot.docservice.dto.DocumentResponse;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.sharding.ScatterGather;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.NativeDetector;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the cold-start cost off the first requests after a deploy.
+ * <p>
+ * Spring Boot reports readiness {@code ACCEPTING_TRAFFIC} only after every
+ * {@link ApplicationRunner} has returned, so while this runs
+ * {@code /actuator/health/readiness} is {@code OUT_OF_SERVICE} and no
+ * traffic is routed here. In order, it
+ * </p>
+ * <ol>
+ *   <li>resolves every shard's collection (including migration aliases);</li>
+ *   <li>opens {@code connections} pooled connections to every ChromaDB node
+ *       and, with a remote provider, the embeddings API with concurrent
+ *       heartbeats / tiny embeddings;</li>
+ *   <li>runs {@code iterations} rounds of synthetic chunking, hashing, result
+ *       mapping, merging and JSON work so the hot paths are JIT-compiled;</li>
+ *   <li>sends requests that need no dependency (health, a search rejected by
+ *       validation) to its own port, which initialises the web layer: request
+ *       binding, bean validation metadata, filters and error rendering;</li>
+ *   <li>runs the searches in {@code queries-file}, which fills the caches
+ *       searches go through.</li>
+ * </ol>
+ * <p>
+ * Each step is best effort: a failure is logged and the next step runs, and
+ * steps still pending when {@code timeout} expires are skipped, so a
+ * dependency outage delays readiness by at most the timeout.
+ * </p>
+ */
+@Slf4j
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    /** Results per preloaded search, as {@code SearchRequest}'s default. */
+    private static final int PRELOAD_RESULTS = 5;
+    private static final int SYNTHETIC_HITS = 10;
+    private static final int WEB_ROUNDS = 50;
+
+    private final ChromaDbService chromaDbService;
+    private final EmbeddingService embeddingService;
+    private final DocumentService documentService;
+    private final TextChunkingService textChunkingService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final Environment environment;
+
+    private final boolean enabled;
+    private final Duration timeout;
+    private final int connections;
+    private final int iterations;
+    private final String queriesFile;
+    private final int maxQueries;
+
+    /** Keeps the synthetic work observable so the JIT cannot drop it. */
+    private long sink;
+
+    public StartupWarmup(ChromaDbService chromaDbService,
+                         EmbeddingService embeddingService,
+                         DocumentService documentService,
+                         TextChunkingService textChunkingService,
+                         ObjectMapper objectMapper,
+                         MeterRegistry registry,
+                         Environment environment,
+                         @Value("${docservice.warmup.enabled:true}") boolean enabled,
+                         @Value("${docservice.warmup.timeout:60s}") Duration timeout,
+                         @Value("${docservice.warmup.connections:4}") int connections,
+                         @Value("${docservice.warmup.iterations:2000}") int iterations,
+                         @Value("${docservice.warmup.queries-file:}") String queriesFile,
+                         @Value("${docservice.warmup.max-queries:200}") int maxQueries) {
+        this.chromaDbService = chromaDbService;
+        this.embeddingService = embeddingService;
+        this.documentService = documentService;
+        this.textChunkingService = textChunkingService;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.connections = connections;
+        this.iterations = iterations;
+        this.queriesFile = queriesFile;
+        this.maxQueries = maxQueries;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+
+        step("collections", deadline, chromaDbService::resolveCollections);
+        step("connections", deadline, () -> openConnections(deadline));
+        // a native image is compiled ahead of time; there is no JIT to warm
+        if (!NativeDetector.inNativeImage()) step("code", deadline, () -> exerciseCodePaths(deadline));
+        step("web", deadline, () -> exerciseWebLayer(deadline));
+        if (!queriesFile.isBlank()) step("queries", deadline, () -> preload(deadline));
+
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void step(String name, long deadline, Runnable step) {
+        if (System.nanoTime() >= deadline) {
+            log.warn("Warm-up step '{}' skipped: warm-up timeout of {} exceeded", name, timeout);
+            return;
+        }
+        Timer.Sample sample = Timer.start(registry);
+        String result = "success";
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            result = "failure";
+            log.warn("Warm-up step '{}' failed: {}", name, e.toString());
+        } finally {
+            long nanos = sample.stop(Timer.builder("docservice.warmup")
+                    .description("Duration of each startup warm-up step")
+                    .tag("step", name)
+                    .tag("result", result)
+                    .register(registry));
+            log.info("Warm-up step '{}' took {} ms", name, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    /**
+     * Concurrent requests make the pool open one connection per request;
+     * they stay in the pool as keep-alive connections afterwards.
+     */
+    private void openConnections(long deadline) {
+        boolean remoteEmbeddings = embeddingService.remote();
+        List<Callable<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            String text = "warm-up " + i;   // distinct, so single-flight does not share the calls
+            calls.add(chromaDbService::heartbeat);
+            if (remoteEmbeddings) calls.add(() -> embeddingService.embed(text, Priority.BULK));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(calls.size(), r -> {
+            Thread t = new Thread(r, "warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            int failed = 0;
+            String firstFailure = null;
+            for (Future<Object> call : pool.invokeAll(calls, Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS)) {
+                try {
+                    call.get();
+                } catch (ExecutionException | CancellationException e) {
+                    if (failed++ == 0) firstFailure = e instanceof ExecutionException ? e.getCause().toString() : "timeout";
+                }
+            }
+            if (failed > 0) {
+                throw new IllegalStateException(failed + " of " + calls.size() + " calls failed, first: " + firstFailure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while opening connections", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void exerciseCodePaths(long deadline) {
+        String text = syntheticText();
+        Map<String, Object> answer = syntheticAnswer();
+        boolean remoteEmbeddings = embeddingService.remote();
+        Map<String, Object> embeddingResponse = syntheticEmbeddingResponse(embeddingService.spec().dimensions());
+        byte[] requestJson;
+        try {
+            requestJson = objectMapper.writeValueAsBytes(DocumentRequest.builder()
+                    .title("Warm-up").content(text).metadata(Map.of("source", "warm-up")).build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        int rounds = 0;
+        try {
+            for (; rounds < iterations && System.nanoTime() < deadline; rounds++) {
+                // ingest: parse, chunk, hash
+                DocumentRequest request = objectMapper.readValue(requestJson, DocumentRequest.class);
+                for (String chunk : textChunkingService.split(request.getContent())) {
+                    sink += DocumentService.contentHash(chunk).length();
+                }
+                // search: decode (or compute) the vector, map, merge, fuse, serialise
+                float[] vector = remoteEmbeddings
+                        ? OpenAiEmbeddingProvider.toVectors(embeddingResponse, 1).get(0)
+                        : embeddingService.embed(request.getContent(), Priority.INTERACTIVE);
+                sink += ChromaDbService.toList(vector).size();
+                List<DocumentResponse> hits = DocumentService.toQueryResponseList(
+                        ScatterGather.mergeQueries(List.of(answer, answer), SYNTHETIC_HITS));
+                sink += RankFusion.fuse(List.of(hits, hits.subList(1, hits.size())), PRELOAD_RESULTS).size();
+                sink += objectMapper.writeValueAsBytes(hits).length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("Ran {} warm-up rounds ({})", rounds, sink);
+    }
+
+    private void exerciseWebLayer(long deadline) {
+        String port = environment.getProperty("local.server.port");
+        if (port == null) return;   // no embedded server, e.g. in tests
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        URI base = URI.create("http://localhost:" + port);
+        HttpRequest health = HttpRequest.newBuilder(base.resolve("/documents/health")).GET().build();
+        HttpRequest invalidSearch = HttpRequest.newBuilder(base.resolve("/documents/search"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"query\": \" \", \"nResults\": 5}"))
+                .build();
+        try {
+            for (int i = 0; i < WEB_ROUNDS && System.nanoTime() < deadline; i++) {
+                sink += client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode();
+                sink += client.send(invalidSearch, HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while warming the web layer", e);
+        }
+    }
+
+    private void preload(long deadline) {
+        List<String> queries;
+        try {
+            queries = Files.readAllLines(Path.of(queriesFile), StandardCharsets.UTF_8).stream()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .distinct()
+                    .limit(maxQueries)
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read warm-up queries from " + queriesFile, e);
+        }
+        int done = 0;
+        for (String query : queries) {
+            if (System.nanoTime() >= deadline) break;
+            documentService.search(query, PRELOAD_RESULTS);
+            done++;
+        }
+        log.info("Preloaded {} of {} searches from {}", done, queries.size(), queriesFile);
+    }
+
+    private static String syntheticText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append("Warm-up sentence ").append(i).append(" describes topic ").append(i % 7)
+                    .append(" in a few ordinary words.");
+            text.append(i % 12 == 11 ? "\n\n" : " ");
+        }
+        return text.toString();
+    }
+
+    /** A ChromaDB {@code /query} answer in the nested single-query shape. */
+    private static Map<String, Object> syntheticAnswer() {
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        for (int i = 0; i < SYNTHETIC_HITS; i++) {
+            ids.add("00000000-0000-0000-0000-00000000000" + i + ":0");
+            documents.add("Warm-up document " + i);
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put(DocumentService.TITLE_KEY, "Warm-up " + i);
+            metadata.put(DocumentService.CONTENT_HASH_KEY, DocumentService.contentHash("Warm-up document " + i));
+            metadata.put("chunkIndex", 0);
+            metadata.put("totalChunks", 1);
+            metadatas.add(metadata);
+            distances.add(0.1 * i);
+        }
+        return Map.of("ids", List.of(ids), "documents", List.of(documents),
+                "metadatas", List.of(metadatas), "distances", List.of(distances));
+    }
+
+    /** An OpenAI embeddings response for one input; {@code dimensions} 0 = the model's 1536. */
+    private static Map<String, Object> syntheticEmbeddingResponse(int dimensions) {
+        List<Double> embedding = new ArrayList<>();
+        for (int i = 0; i < (dimensions > 0 ? dimensions : 1536); i++) embedding.add(Math.sin(i));
+        return Map.of("data", List.of(Map.of("index", 0, "embedding", embedding)),
+                "usage", Map.of("total_tokens", 1));
+    }
+}
@@ -1,11 +1,16 @@
 package com.uymbot.docservice.service;
 
+import com.uymbot.docservice.observability.jfr.ChunkSplitEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Splits long text into chunks that fit within OpenAI's embedding token limit.
@@ -24,6 +29,9 @@ public class TextChunkingService {
     /** Approximate characters per token for English text. */
     private static final int CHARS_PER_TOKEN = 4;
 
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\n\n+");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("(?<=[.!?])\\s+");
+
     /** Target chunk size in tokens (configurable). */
     @Value("${openai.chunk-size:1000}")
     private int chunkSizeTokens;
@@ -37,25 +45,109 @@ public class TextChunkingService {
      *         short enough to fit in one chunk
      */
     public List<String> split(String text) {
-        if (text == null || text.isBlank()) {
-            return List.of();
+        ChunkSplitEvent event = new ChunkSplitEvent();
+        event.begin();
+        int maxChars = chunkSizeTokens * CHARS_PER_TOKEN;
+        List<String> chunks = split(text, maxChars);
+        event.end();
+        if (event.shouldCommit()) {
+            event.inputChars = text == null ? 0 : text.length();
+            event.maxChars = maxChars;
+            event.chunkCount = chunks.size();
+            event.commit();
         }
+        return chunks;
+    }
 
+    /**
+     * Splits the text read from {@code reader} with the same rules as
+     * {@link #split(String)}, handing every chunk to {@code sink} as soon as
+     * it is complete. At most one paragraph, one sentence and one chunk are
+     * held at a time, about three chunk sizes of characters however long the
+     * text is. The chunks are those {@link #split(String)} returns for the
+     * whole text, except around runs of whitespace longer than a chunk.
+     * {@code reader} is not closed.
+     *
+     * @return number of chunks
+     */
+    public int split(Reader reader, Consumer<String> sink) throws IOException {
+        ChunkSplitEvent event = new ChunkSplitEvent();
+        event.begin();
         int maxChars = chunkSizeTokens * CHARS_PER_TOKEN;
+        Chunker chunker = new Chunker(maxChars, sink);
+
+        // as in split(String), a text that fits into one chunk is only stripped
+        char[] buffer = new char[Math.max(maxChars + 1, 8192)];
+        int head = 0;
+        for (int n; head <= maxChars && (n = reader.read(buffer, head, buffer.length - head)) >= 0; ) {
+            head += n;
+        }
+        long chars = head;
+        if (head <= maxChars) {
+            split(new String(buffer, 0, head), maxChars).forEach(chunker::emit);
+        } else {
+            StreamSplitter splitter = new StreamSplitter(chunker);
+            splitter.accept(buffer, head);
+            for (int n; (n = reader.read(buffer)) >= 0; ) {
+                splitter.accept(buffer, n);
+                chars += n;
+            }
+            splitter.finish();
+            log.debug("Split streamed text ({} chars) into {} chunks (maxChars={})", chars, chunker.count, maxChars);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.inputChars = (int) Math.min(chars, Integer.MAX_VALUE);
+            event.maxChars = maxChars;
+            event.chunkCount = chunker.count;
+            event.commit();
+        }
+        return chunker.count;
+    }
+
+    private List<String> split(String text, int maxChars) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
 
         if (text.length() <= maxChars) {
             return List.of(text.strip());
         }
 
         List<String> chunks = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
+        Chunker chunker = new Chunker(maxChars, chunks::add);
 
         // First split on paragraph boundaries (\n\n or more)
-        String[] paragraphs = text.split("\n\n+");
+        for (String paragraph : PARAGRAPH_BREAK.split(text)) {
+            chunker.paragraph(paragraph);
+        }
+        chunker.flush();
+
+        log.debug("Split text ({} chars) into {} chunks (maxChars={})",
+                text.length(), chunks.size(), maxChars);
+        return chunks;
+    }
+
+    /**
+     * Packs paragraphs, and the sentences of paragraphs too large for one
+     * chunk, greedily into chunks of at most {@code maxChars} characters.
+     */
+    private static final class Chunker {
 
-        for (String paragraph : paragraphs) {
+        private final int maxChars;
+        private final Consumer<String> sink;
+        private final StringBuilder current = new StringBuilder();
+        private int count;
+
+        Chunker(int maxChars, Consumer<String> sink) {
+            this.maxChars = maxChars;
+            this.sink = sink;
+        }
+
+        void paragraph(String paragraph) {
             if (paragraph.isBlank()) {
-                continue;
+                return;
             }
 
             if (current.length() + paragraph.length() + 2 <= maxChars) {
@@ -66,37 +158,21 @@ public class TextChunkingService {
                 current.append(paragraph);
             } else if (paragraph.length() > maxChars) {
                 // Paragraph itself is too large — flush current and split by sentences
-                if (current.length() > 0) {
-                    chunks.add(current.toString().strip());
-                    current = new StringBuilder();
+                flush();
+                for (String sentence : SENTENCE_BREAK.split(paragraph)) {
+                    sentence(sentence);
                 }
-                splitBySentences(paragraph, maxChars, chunks, current);
             } else {
                 // Start a new chunk with this paragraph
-                if (current.length() > 0) {
-                    chunks.add(current.toString().strip());
-                }
-                current = new StringBuilder(paragraph);
+                flush();
+                current.append(paragraph);
             }
         }
 
-        if (current.length() > 0) {
-            chunks.add(current.toString().strip());
-        }
-
-        log.debug("Split text ({} chars) into {} chunks (maxChars={})",
-                text.length(), chunks.size(), maxChars);
-        return chunks;
-    }
-
-    /** Splits a single oversized paragraph on sentence boundaries. */
-    private void splitBySentences(String text, int maxChars,
-                                   List<String> chunks, StringBuilder current) {
-        String[] sentences = text.split("(?<=[.!?])\\s+");
-
-        for (String sentence : sentences) {
+        /** One sentence of a paragraph larger than a chunk; the rest of the paragraph stays in {@code current}. */
+        void sentence(String sentence) {
             if (sentence.isBlank()) {
-                continue;
+                return;
             }
 
             if (current.length() + sentence.length() + 1 <= maxChars) {
@@ -106,21 +182,159 @@ public class TextChunkingService {
                 current.append(sentence);
             } else if (sentence.length() > maxChars) {
                 // Single sentence is longer than the limit — hard split
-                if (current.length() > 0) {
-                    chunks.add(current.toString().strip());
-                    current.delete(0, current.length());
-                }
+                flush();
                 for (int i = 0; i < sentence.length(); i += maxChars) {
-                    chunks.add(sentence.substring(i, Math.min(i + maxChars, sentence.length())).strip());
+                    emit(sentence.substring(i, Math.min(i + maxChars, sentence.length())));
                 }
             } else {
-                if (current.length() > 0) {
-                    chunks.add(current.toString().strip());
-                    current.delete(0, current.length());
-                }
+                flush();
                 current.append(sentence);
             }
         }
-        // remaining text stays in `current` — caller adds it to chunks
+
+        void flush() {
+            if (current.length() > 0) {
+                emit(current.toString());
+                current.setLength(0);
+            }
+        }
+
+        /** Hands a chunk to the sink, stripped; pieces of a hard split that are only whitespace are dropped. */
+        void emit(String chunk) {
+            String stripped = chunk.strip();
+            if (stripped.isEmpty()) {
+                return;
+            }
+            sink.accept(stripped);
+            count++;
+        }
+    }
+
+    /**
+     * Feeds streamed text to a {@link Chunker} the way {@link #split(String, int)}
+     * does: paragraphs end at runs of two or more {@code \n}, and a paragraph
+     * that outgrows a chunk is passed on sentence by sentence (a sentence ends
+     * at whitespace after {@code .!?}) as soon as each one is complete, a
+     * sentence outgrowing a chunk piece by piece.
+     */
+    private static final class StreamSplitter {
+
+        private final Chunker chunker;
+        private final int maxChars;
+        private final StringBuilder paragraph = new StringBuilder();
+        private final StringBuilder sentence = new StringBuilder();
+        /** Line feeds seen but not yet known to be a paragraph break. */
+        private int newlines;
+        /** The current paragraph is larger than a chunk and goes through {@link #sentence}. */
+        private boolean longParagraph;
+        /** Last character of the current sentence, including pieces already handed out. */
+        private char last;
+        /** Dropping the whitespace after a sentence end. */
+        private boolean skipping;
+        /** The current sentence is larger than a chunk and handed out in pieces. */
+        private boolean hardSplit;
+
+        StreamSplitter(Chunker chunker) {
+            this.chunker = chunker;
+            this.maxChars = chunker.maxChars;
+        }
+
+        void accept(char[] chars, int length) {
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (c == '\n') {
+                    newlines++;
+                    continue;
+                }
+                if (newlines > 0) {
+                    boolean paragraphBreak = newlines > 1;
+                    newlines = 0;
+                    if (paragraphBreak) {
+                        endParagraph();
+                    } else {
+                        content('\n');
+                    }
+                }
+                content(c);
+            }
+        }
+
+        void finish() {
+            if (newlines == 1) {
+                content('\n');
+            }
+            newlines = 0;
+            endParagraph();
+            chunker.flush();
+        }
+
+        private void content(char c) {
+            if (longParagraph) {
+                sentence(c);
+                return;
+            }
+            paragraph.append(c);
+            if (paragraph.length() > maxChars) {
+                longParagraph = true;
+                chunker.flush();
+                for (int i = 0; i < paragraph.length(); i++) {
+                    sentence(paragraph.charAt(i));
+                }
+                paragraph.setLength(0);
+            }
+        }
+
+        private void endParagraph() {
+            if (longParagraph) {
+                endSentence();
+                longParagraph = false;
+                skipping = false;
+                last = 0;
+            } else {
+                chunker.paragraph(paragraph.toString());
+                paragraph.setLength(0);
+            }
+        }
+
+        private void sentence(char c) {
+            boolean whitespace = isSentenceWhitespace(c);
+            if (skipping) {
+                if (whitespace) {
+                    return;
+                }
+                skipping = false;
+            }
+            if (whitespace && (last == '.' || last == '!' || last == '?')) {
+                endSentence();
+                skipping = true;
+                return;
+            }
+            sentence.append(c);
+            last = c;
+            if (sentence.length() > maxChars) {
+                if (!hardSplit) {
+                    chunker.flush();
+                    hardSplit = true;
+                }
+                chunker.emit(sentence.substring(0, maxChars));
+                sentence.delete(0, maxChars);
+            }
+        }
+
+        private void endSentence() {
+            if (hardSplit) {
+                chunker.emit(sentence.toString());
+                hardSplit = false;
+            } else {
+                chunker.sentence(sentence.toString());
+            }
+            sentence.setLength(0);
+            last = 0;
+        }
+
+        /** {@code \s} of {@link #SENTENCE_BREAK}. */
+        private static boolean isSentenceWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
     }
 }
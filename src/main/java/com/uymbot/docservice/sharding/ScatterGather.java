@@ -0,0 +1,204 @@
+package com.uymbot.docservice.sharding;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.observability.RequestTimings;
+import com.uymbot.docservice.resilience.Lane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Runs one call per shard in parallel and collects the answers that arrive
+ * within the shard timeout.
+ * <p>
+ * A shard that fails or misses the deadline is skipped and counted in
+ * {@code docservice.shard.skipped{shard,op,reason}}, so one slow node
+ * degrades results instead of failing the request. Only when no shard
+ * answered is the call failed, with the first shard's error if it was a
+ * {@link RuntimeException}.
+ * </p>
+ */
+@Slf4j
+public class ScatterGather {
+
+    private final ExecutorService executor;
+    private final Duration shardTimeout;
+    private final MeterRegistry registry;
+    private final Map<String, Counter> skipped = new ConcurrentHashMap<>();
+
+    public ScatterGather(ExecutorService executor, Duration shardTimeout, MeterRegistry registry) {
+        this.executor = executor;
+        this.shardTimeout = shardTimeout;
+        this.registry = registry;
+    }
+
+    /** @return the answers in shard order; shards that were skipped are absent */
+    public <T> Map<Shard, T> call(String op, Collection<Shard> shards, Function<Shard, T> call) {
+        if (shards.size() == 1) return callOnly(shards, call);
+
+        Map<Shard, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            try {
+                futures.put(shard, CompletableFuture.supplyAsync(
+                        Lane.propagate(RequestTimings.propagate(() -> call.apply(shard))), executor));
+            } catch (RejectedExecutionException e) {
+                futures.put(shard, CompletableFuture.failedFuture(e));
+            }
+        }
+
+        long deadline = System.nanoTime() + shardTimeout.toNanos();
+        Map<Shard, T> answers = new LinkedHashMap<>();
+        RuntimeException firstFailure = null;
+        for (Map.Entry<Shard, CompletableFuture<T>> entry : futures.entrySet()) {
+            Shard shard = entry.getKey();
+            try {
+                T answer = entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                answers.put(shard, answer);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                skip(op, shard, "timeout", null);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                skip(op, shard, "error", cause);
+                if (firstFailure == null && cause instanceof RuntimeException re) firstFailure = re;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shard " + shard, e);
+            }
+        }
+
+        if (answers.isEmpty()) {
+            if (firstFailure != null) throw firstFailure;
+            throw new ServiceUnavailableException("ChromaDB " + op + " unavailable: no shard answered within "
+                    + shardTimeout.toMillis() + " ms", Duration.ofSeconds(1));
+        }
+        return answers;
+    }
+
+    /**
+     * Like {@link #call} but every shard must answer: the first failure is
+     * rethrown and there is no shard timeout beyond the per-call read
+     * deadline. For reads whose result must be complete, such as existence
+     * checks and offset arithmetic.
+     */
+    public <T> Map<Shard, T> callAll(String op, Collection<Shard> shards, Function<Shard, T> call) {
+        if (shards.size() == 1) return callOnly(shards, call);
+        Map<Shard, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (Shard shard : shards) {
+            try {
+                futures.put(shard, CompletableFuture.supplyAsync(
+                        Lane.propagate(RequestTimings.propagate(() -> call.apply(shard))), executor));
+            } catch (RejectedExecutionException e) {
+                futures.values().forEach(f -> f.cancel(true));
+                throw new ServiceUnavailableException("ChromaDB " + op + " unavailable: scatter pool exhausted",
+                        Duration.ofSeconds(1), e);
+            }
+        }
+        Map<Shard, T> answers = new LinkedHashMap<>();
+        for (Map.Entry<Shard, CompletableFuture<T>> entry : futures.entrySet()) {
+            try {
+                answers.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                futures.values().forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException("Shard " + entry.getKey() + " failed for '" + op + "'", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shard " + entry.getKey(), e);
+            }
+        }
+        return answers;
+    }
+
+    /** Calls the one shard on the caller's thread; a {@code null} answer is kept, as when scattering. */
+    private static <T> Map<Shard, T> callOnly(Collection<Shard> shards, Function<Shard, T> call) {
+        Shard only = shards.iterator().next();
+        Map<Shard, T> answers = new LinkedHashMap<>();
+        answers.put(only, call.apply(only));
+        return answers;
+    }
+
+    private void skip(String op, Shard shard, String reason, Throwable cause) {
+        skipped.computeIfAbsent(shard.name() + '|' + op + '|' + reason, k -> Counter.builder("docservice.shard.skipped")
+                .description("Shard answers left out of a scatter-gather call")
+                .tag("shard", shard.name())
+                .tag("op", op)
+                .tag("reason", reason)
+                .register(registry)).increment();
+        log.warn("Shard {} skipped for '{}': {}", shard, op, cause == null ? reason : cause.toString());
+    }
+
+    /**
+     * Merges per-shard ChromaDB {@code /query} answers for a single query
+     * embedding into one answer with the {@code n} nearest chunks overall,
+     * ordered by ascending distance. The result has ChromaDB's nested shape
+     * ({@code ids[0]}, {@code documents[0]}, ...).
+     */
+    public static Map<String, Object> mergeQueries(Collection<? extends Map<?, ?>> answers, int n) {
+        List<Hit> hits = new ArrayList<>();
+        for (Map<?, ?> answer : answers) {
+            List<?> ids = firstRow(answer, "ids");
+            List<?> documents = firstRow(answer, "documents");
+            List<?> metadatas = firstRow(answer, "metadatas");
+            List<?> distances = firstRow(answer, "distances");
+            for (int i = 0; i < ids.size(); i++) {
+                double distance = i < distances.size() && distances.get(i) instanceof Number d
+                        ? d.doubleValue() : Double.MAX_VALUE;
+                hits.add(new Hit(ids.get(i), i < documents.size() ? documents.get(i) : null,
+                        i < metadatas.size() ? metadatas.get(i) : null, distance));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::distance));
+        List<Hit> top = hits.subList(0, Math.min(n, hits.size()));
+
+        Map<String, Object> merged = new LinkedHashMap<>();
+        merged.put("ids", List.of(top.stream().map(Hit::id).toList()));
+        merged.put("documents", List.of(top.stream().map(Hit::document).toList()));
+        merged.put("metadatas", List.of(top.stream().map(Hit::metadata).toList()));
+        merged.put("distances", List.of(top.stream().map(Hit::distance).toList()));
+        return merged;
+    }
+
+    /**
+     * Concatenates flat ChromaDB {@code /get} answers column by column;
+     * a column missing from every answer stays {@code null}.
+     */
+    public static Map<String, Object> concat(Collection<? extends Map<?, ?>> answers) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        for (String column : List.of("ids", "documents", "metadatas", "embeddings")) {
+            List<Object> values = null;
+            for (Map<?, ?> answer : answers) {
+                if (answer.get(column) instanceof List<?> part) {
+                    if (values == null) values = new ArrayList<>();
+                    values.addAll(part);
+                }
+            }
+            merged.put(column, column.equals("ids") && values == null ? List.of() : values);
+        }
+        return merged;
+    }
+
+    private static List<?> firstRow(Map<?, ?> answer, String column) {
+        return answer.get(column) instanceof List<?> rows && !rows.isEmpty() && rows.get(0) instanceof List<?> row
+                ? row : List.of();
+    }
+
+    private record Hit(Object id, Object document, Object metadata, double distance) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.uymbot.docservice.sharding;
+
+/**
+ * One ChromaDB collection holding a slice of the corpus.
+ *
+ * @param index      position in {@code chromadb.sharding.shards}
+ * @param host       base URL of the ChromaDB node
+ * @param collection collection name on that node
+ */
+public record Shard(int index, String host, String collection) {
+
+    /** Stable identity on the hash ring and in metric tags; independent of the index. */
+    public String name() {
+        return host + "/" + collection;
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,108 @@
+package com.uymbot.docservice.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring that assigns chunks to shards by their parent
+ * document id.
+ * <p>
+ * Every shard is placed on the ring {@code virtualNodes} times at positions
+ * derived from its {@link Shard#name()}, and a key belongs to the first
+ * shard clockwise from its own hash. Adding a shard therefore only moves
+ * the keys that now fall on the new shard (about {@code 1/N} of them), and
+ * the assignment does not depend on the order in which shards are listed.
+ * </p>
+ * <p>
+ * Chunk ids have the form {@code <documentId>:<suffix>}, so all chunks of a
+ * document live on the same shard. Ids without a separator (written before
+ * sharding existed) are routed by the whole id.
+ * </p>
+ */
+public final class ShardRing {
+
+    public static final char SEPARATOR = ':';
+
+    private final List<Shard> shards;
+    private final TreeMap<Long, Shard> ring = new TreeMap<>();
+
+    public ShardRing(List<Shard> shards, int virtualNodes) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required");
+        this.shards = List.copyOf(shards);
+        for (Shard shard : shards) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(hash(shard.name() + '#' + v), shard);
+            }
+        }
+    }
+
+    /** Shard that owns the chunk with the given id. */
+    public Shard route(String chunkId) {
+        if (shards.size() == 1) return shards.get(0);
+        Map.Entry<Long, Shard> owner = ring.ceilingEntry(hash(routingKey(chunkId)));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<Shard> shards() {
+        return shards;
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    /** Parent document id of a chunk id; the whole id for ids without a separator. */
+    public static String routingKey(String chunkId) {
+        int separator = chunkId.indexOf(SEPARATOR);
+        return separator < 0 ? chunkId : chunkId.substring(0, separator);
+    }
+
+    /** Id of a chunk of {@code documentId}; routed to the same shard as every other chunk of it. */
+    public static String chunkId(String documentId, Object suffix) {
+        return documentId + SEPARATOR + suffix;
+    }
+
+    /** First 8 bytes of the MD5 digest: well mixed and stable across JVMs and restarts. */
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) h = (h << 8) | (digest[i] & 0xff);
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * Parses {@code chromadb.sharding.shards}: comma-separated
+     * {@code <host>/<collection>} entries, e.g.
+     * {@code http://chroma-1:8000/documents}. An empty value means a single
+     * shard on {@code defaultHost} / {@code defaultCollection}.
+     */
+    public static List<Shard> parse(String spec, String defaultHost, String defaultCollection) {
+        if (spec == null || spec.isBlank()) {
+            return List.of(new Shard(0, defaultHost, defaultCollection));
+        }
+        String[] entries = spec.split(",");
+        Shard[] shards = new Shard[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String entry = entries[i].trim();
+            int slash = entry.lastIndexOf('/');
+            if (slash <= entry.indexOf("//") + 1 || slash == entry.length() - 1) {
+                throw new IllegalArgumentException("Shard '" + entry + "' must look like http://host:port/collection");
+            }
+            shards[i] = new Shard(i, entry.substring(0, slash), entry.substring(slash + 1));
+            for (int j = 0; j < i; j++) {
+                if (shards[j].name().equals(shards[i].name())) {
+                    throw new IllegalArgumentException("Shard '" + entry + "' is listed twice");
+                }
+            }
+        }
+        return List.of(shards);
+    }
+}
@@ -0,0 +1,61 @@
+package com.uymbot.docservice.snapshot;
+
+/**
+ * IEEE 754 half-precision conversions (Java 17 has no {@code Float.floatToFloat16}).
+ * <p>
+ * Rounds to nearest, ties to even; values beyond ±65504 become infinities and
+ * values below the smallest subnormal (~6e-8) become signed zero. For unit
+ * embedding vectors the relative error is below 0.05%.
+ * </p>
+ */
+public final class Float16 {
+
+    private Float16() {
+    }
+
+    public static short fromFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        if (exponent == 0xff) {   // infinity or NaN; keep NaN quiet and non-zero
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+        }
+        int e = exponent - 127 + 15;
+        if (e >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if (e <= 0) {
+            if (e < -10) return (short) sign;
+            mantissa |= 0x800000;
+            int shift = 14 - e;
+            return (short) (sign | round(mantissa >>> shift, mantissa & ((1 << shift) - 1), 1 << (shift - 1)));
+        }
+        // a carry out of the mantissa correctly bumps the exponent (up to infinity)
+        return (short) (sign | round((e << 10) | (mantissa >>> 13), mantissa & 0x1fff, 0x1000));
+    }
+
+    public static float toFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            float subnormal = mantissa * 0x1p-24f;
+            return sign != 0 ? -subnormal : subnormal;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    private static int round(int truncated, int remainder, int halfway) {
+        if (remainder > halfway || (remainder == halfway && (truncated & 1) != 0)) {
+            return truncated + 1;
+        }
+        return truncated;
+    }
+}
@@ -0,0 +1,18 @@
+package com.uymbot.docservice.snapshot;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One block of a snapshot: parallel columns of chunk ids, documents,
+ * metadata and embeddings, as in a ChromaDB {@code add} request.
+ */
+public record SnapshotBlock(List<String> ids,
+                            List<String> documents,
+                            List<Map<String, Object>> metadatas,
+                            List<float[]> embeddings) {
+
+    public int size() {
+        return ids.size();
+    }
+}
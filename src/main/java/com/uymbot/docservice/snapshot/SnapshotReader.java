@@ -0,0 +1,192 @@
+package com.uymbot.docservice.snapshot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.exception.InvalidSnapshotException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads snapshots written by {@link SnapshotWriter} block by block.
+ * <p>
+ * Every block is checked against its CRC before it is returned and the
+ * total row count is checked at the end marker, so a truncated or corrupted
+ * file surfaces as {@link InvalidSnapshotException} instead of partial data.
+ * Block sizes are bounded before anything is allocated.
+ * </p>
+ */
+public final class SnapshotReader {
+
+    private static final int MAX_BLOCK_ROWS = 100_000;
+    private static final int MAX_DIMENSION = 65_536;
+    private static final int MAX_TEXT_BYTES = 512 * 1024 * 1024;
+    private static final TypeReference<Map<String, Object>> METADATA = new TypeReference<>() {
+    };
+
+    private final DataInputStream in;
+    private final ObjectMapper objectMapper;
+    private final VectorEncoding encoding;
+    private final String collection;
+    private final Instant createdAt;
+    private final Inflater inflater = new Inflater();
+    private long rows;
+    private boolean finished;
+
+    public SnapshotReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        this.objectMapper = objectMapper;
+        try {
+            byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+            this.in.readFully(magic);
+            if (!Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+                throw new InvalidSnapshotException("Not a snapshot file");
+            }
+            int version = this.in.readUnsignedByte();
+            if (version != SnapshotWriter.VERSION) {
+                throw new InvalidSnapshotException("Unsupported snapshot version " + version);
+            }
+            int encoding = this.in.readUnsignedByte();
+            if (encoding >= VectorEncoding.values().length) {
+                throw new InvalidSnapshotException("Unknown vector encoding " + encoding);
+            }
+            this.encoding = VectorEncoding.values()[encoding];
+            this.collection = this.in.readUTF();
+            this.createdAt = Instant.ofEpochMilli(this.in.readLong());
+        } catch (EOFException e) {
+            throw new InvalidSnapshotException("Snapshot header is truncated", e);
+        }
+    }
+
+    public VectorEncoding encoding() {
+        return encoding;
+    }
+
+    /** Name of the collection the snapshot was taken from. */
+    public String collection() {
+        return collection;
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    /** @return the next block, or {@code null} after the end marker */
+    public SnapshotBlock next() throws IOException {
+        if (finished) return null;
+        try {
+            int size = in.readInt();
+            if (size == 0) {
+                long expected = in.readLong();
+                if (expected != rows) {
+                    throw new InvalidSnapshotException("Snapshot declares " + expected + " chunks but contains " + rows);
+                }
+                finished = true;
+                inflater.end();
+                return null;
+            }
+            int dimension = in.readInt();
+            int textLength = in.readInt();
+            int compressedLength = in.readInt();
+            if (size < 0 || size > MAX_BLOCK_ROWS || dimension < 0 || dimension > MAX_DIMENSION
+                    || textLength < 0 || textLength > MAX_TEXT_BYTES
+                    || compressedLength < 0 || compressedLength > MAX_TEXT_BYTES) {
+                throw new InvalidSnapshotException("Corrupted block header after " + rows + " chunks");
+            }
+            long vectorLength = (long) size * dimension * encoding.bytes();
+            if (vectorLength > Integer.MAX_VALUE - 8) {
+                throw new InvalidSnapshotException("Block after " + rows + " chunks is too large");
+            }
+
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            byte[] vectorBytes = new byte[(int) vectorLength];
+            in.readFully(vectorBytes);
+            int storedCrc = in.readInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            crc.update(vectorBytes);
+            if ((int) crc.getValue() != storedCrc) {
+                throw new InvalidSnapshotException("Checksum mismatch in block after " + rows + " chunks");
+            }
+
+            SnapshotBlock block = decode(size, dimension, inflate(compressed, textLength), vectorBytes);
+            rows += size;
+            return block;
+        } catch (EOFException e) {
+            throw new InvalidSnapshotException("Snapshot is truncated after " + rows + " chunks", e);
+        }
+    }
+
+    private SnapshotBlock decode(int size, int dimension, byte[] raw, byte[] vectorBytes) throws IOException {
+        DataInputStream text = new DataInputStream(new ByteArrayInputStream(raw));
+        List<String> ids = new ArrayList<>(size);
+        List<String> documents = new ArrayList<>(size);
+        List<Map<String, Object>> metadatas = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) ids.add(readString(text));
+        for (int i = 0; i < size; i++) documents.add(readString(text));
+        for (int i = 0; i < size; i++) {
+            byte[] json = readBytes(text);
+            metadatas.add(json == null ? null : objectMapper.readValue(json, METADATA));
+        }
+
+        ByteBuffer vectors = ByteBuffer.wrap(vectorBytes);
+        List<float[]> embeddings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = encoding == VectorEncoding.FLOAT16 ? Float16.toFloat(vectors.getShort()) : vectors.getFloat();
+            }
+            embeddings.add(vector);
+        }
+        return new SnapshotBlock(ids, documents, metadatas, embeddings);
+    }
+
+    private byte[] inflate(byte[] compressed, int length) {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[length];
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n != length || !inflater.finished()) {
+                throw new InvalidSnapshotException("Text section of block after " + rows + " chunks has the wrong length");
+            }
+        } catch (DataFormatException e) {
+            throw new InvalidSnapshotException("Text section of block after " + rows + " chunks is corrupted", e);
+        }
+        return raw;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.uymbot.docservice.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the binary snapshot format read by {@link SnapshotReader}.
+ * <p>
+ * All integers are big-endian.
+ * </p>
+ * <pre>
+ * header  "UYMSNAP" version:u8 encoding:u8 collection:modified-UTF-8 createdAtMillis:i64
+ * block*  rows:i32 (&gt; 0) dimension:i32 textLength:i32 compressedLength:i32
+ *         text:byte[compressedLength]    deflated ids, then documents, then metadata JSON;
+ *                                        each value is length:i32 (-1 = null) + UTF-8 bytes
+ *         vectors:byte[rows*dimension*w] row after row, w = 4 (float32) or 2 (float16)
+ *         crc32:i32                      over text and vectors
+ * end     0:i32 totalRows:i64
+ * </pre>
+ * <p>
+ * Text is stored column by column so that similar values (ids, repeated
+ * metadata keys) sit next to each other and deflate well; vectors are left
+ * uncompressed because embedding noise does not compress.
+ * </p>
+ */
+public final class SnapshotWriter {
+
+    static final byte[] MAGIC = "UYMSNAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final VectorEncoding encoding;
+    private final ObjectMapper objectMapper;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private long rows;
+
+    public SnapshotWriter(OutputStream out, VectorEncoding encoding, String collection,
+                          ObjectMapper objectMapper) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.encoding = encoding;
+        this.objectMapper = objectMapper;
+
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeByte(encoding.ordinal());
+        this.out.writeUTF(collection);
+        this.out.writeLong(System.currentTimeMillis());
+    }
+
+    public void write(SnapshotBlock block) throws IOException {
+        int size = block.size();
+        if (size == 0) return;
+        int dimension = dimension(block);
+
+        ByteArrayOutputStream textBuffer = new ByteArrayOutputStream(size * 256);
+        DataOutputStream text = new DataOutputStream(textBuffer);
+        for (String id : block.ids()) writeString(text, id);
+        for (int i = 0; i < size; i++) writeString(text, block.documents().get(i));
+        for (int i = 0; i < size; i++) {
+            Object metadata = block.metadatas().get(i);
+            writeBytes(text, metadata == null ? null : objectMapper.writeValueAsBytes(metadata));
+        }
+        byte[] raw = textBuffer.toByteArray();
+        byte[] compressed = deflate(raw);
+
+        ByteBuffer vectors = ByteBuffer.allocate(size * dimension * encoding.bytes());
+        for (float[] vector : block.embeddings()) {
+            for (float v : vector) {
+                if (encoding == VectorEncoding.FLOAT16) vectors.putShort(Float16.fromFloat(v));
+                else vectors.putFloat(v);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+        crc.update(vectors.array());
+
+        out.writeInt(size);
+        out.writeInt(dimension);
+        out.writeInt(raw.length);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        out.write(vectors.array());
+        out.writeInt((int) crc.getValue());
+        rows += size;
+    }
+
+    /** Writes the end marker and flushes; the underlying stream is left open. */
+    public void finish() throws IOException {
+        out.writeInt(0);
+        out.writeLong(rows);
+        out.flush();
+        deflater.end();
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    private static int dimension(SnapshotBlock block) {
+        List<float[]> embeddings = block.embeddings();
+        if (embeddings.size() != block.size()) {
+            throw new IllegalArgumentException("Block has " + block.size() + " ids but "
+                    + embeddings.size() + " embeddings");
+        }
+        int dimension = -1;
+        for (int i = 0; i < embeddings.size(); i++) {
+            float[] vector = embeddings.get(i);
+            if (vector == null) {
+                throw new IllegalArgumentException("Chunk " + block.ids().get(i) + " has no embedding");
+            }
+            if (dimension < 0) dimension = vector.length;
+            else if (vector.length != dimension) {
+                throw new IllegalArgumentException("Chunk " + block.ids().get(i) + " has " + vector.length
+                        + " dimensions, expected " + dimension);
+            }
+        }
+        return dimension;
+    }
+
+    private byte[] deflate(byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+}
@@ -0,0 +1,21 @@
+package com.uymbot.docservice.snapshot;
+
+/** How embedding components are stored in a snapshot. */
+public enum VectorEncoding {
+
+    /** 4 bytes per component, lossless. */
+    FLOAT32(4),
+
+    /** 2 bytes per component, see {@link Float16} for the precision loss. */
+    FLOAT16(2);
+
+    private final int bytes;
+
+    VectorEncoding(int bytes) {
+        this.bytes = bytes;
+    }
+
+    public int bytes() {
+        return bytes;
+    }
+}
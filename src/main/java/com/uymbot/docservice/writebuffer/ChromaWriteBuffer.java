@@ -0,0 +1,484 @@
+package com.uymbot.docservice.writebuffer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.observability.RequestTimings;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.sharding.ShardRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group commit for chunk writes: adds from all in-flight requests are
+ * gathered into one ChromaDB {@code /upsert} per shard instead of one
+ * {@code /add} per chunk.
+ * <p>
+ * A batch is flushed when it holds {@code max-batch-size} chunks, reaches
+ * {@code max-batch-bytes} (estimated request size), or {@code linger} after
+ * its first chunk arrived. Callers get a future per chunk that completes
+ * when the chunk is durable:
+ * </p>
+ * <ul>
+ *   <li>without a write-ahead log ({@code wal-dir} empty), once ChromaDB has
+ *       accepted the batch; a batch that fails to reach ChromaDB fails every
+ *       future in it;</li>
+ *   <li>with a log, once the batch is in the log and synced (one
+ *       {@code fsync} per batch). A separate thread then applies logged
+ *       batches to ChromaDB, retrying until it succeeds, and records each
+ *       applied batch in the log. Records logged but not applied when the
+ *       process stopped are replayed on startup.</li>
+ * </ul>
+ * <p>
+ * A batch mixes chunks of unrelated requests. When ChromaDB rejects one
+ * ({@code 4xx}, e.g. a wrong embedding dimension), the batch is split in
+ * halves and retried until the rejected chunks are isolated; only their
+ * futures fail, and with a log only they are dropped.
+ * </p>
+ * <p>
+ * A chunk acknowledged from the log may not be in ChromaDB yet; reads,
+ * updates and deletes of a chunk id that is still pending wait for it with
+ * {@link #awaitApplied(Collection)}, searches may briefly miss it. At most
+ * {@code max-pending} chunks are buffered; beyond that writes are refused
+ * with a {@code 503}. With {@code enabled=false} every add goes straight to
+ * {@link ChromaDbService#add} on the caller's thread.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ChromaWriteBuffer {
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(5);
+
+    private final ChromaDbService chroma;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxBatchBytes;
+    private final long lingerNanos;
+    private final Duration ackTimeout;
+    private final WriteAheadLog wal;
+
+    private final BlockingQueue<PendingWrite> incoming = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<PendingWrite>> logged = new LinkedBlockingQueue<>();
+    private final Map<String, PendingWrite> pendingById = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final AtomicLong seq;
+    private volatile PendingWrite last;
+    private volatile boolean running = true;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final DistributionSummary batchSize;
+    private final Map<String, Counter> flushes = new ConcurrentHashMap<>();
+    private final Counter retries;
+    private final Counter dropped;
+    private final MeterRegistry registry;
+
+    @Autowired
+    public ChromaWriteBuffer(ChromaDbService chroma,
+                             ObjectMapper objectMapper,
+                             @Value("${docservice.write-buffer.enabled:true}") boolean enabled,
+                             @Value("${docservice.write-buffer.max-batch-size:256}") int maxBatchSize,
+                             @Value("${docservice.write-buffer.max-batch-bytes:4MB}") DataSize maxBatchBytes,
+                             @Value("${docservice.write-buffer.linger:5ms}") Duration linger,
+                             @Value("${docservice.write-buffer.max-pending:10000}") int maxPending,
+                             @Value("${docservice.write-buffer.ack-timeout:30s}") Duration ackTimeout,
+                             @Value("${docservice.write-buffer.wal-dir:}") String walDir,
+                             @Value("${docservice.write-buffer.wal-segment-size:64MB}") DataSize walSegmentSize,
+                             MeterRegistry registry) {
+        this.chroma = chroma;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchBytes = maxBatchBytes.toBytes();
+        this.lingerNanos = linger.toNanos();
+        this.ackTimeout = ackTimeout;
+        this.capacity = new Semaphore(maxPending);
+        this.registry = registry;
+        this.wal = enabled && walDir != null && !walDir.isBlank()
+                ? openLog(Path.of(walDir), walSegmentSize, objectMapper) : null;
+        this.seq = new AtomicLong(wal == null ? 0 : wal.nextSeq());
+
+        this.batchSize = DistributionSummary.builder("docservice.write-buffer.batch.size")
+                .description("Chunks per ChromaDB write issued by the write buffer")
+                .register(registry);
+        this.retries = Counter.builder("docservice.write-buffer.retries")
+                .description("Failed attempts to apply a logged batch to ChromaDB")
+                .register(registry);
+        this.dropped = Counter.builder("docservice.write-buffer.dropped")
+                .description("Logged chunks dropped because ChromaDB rejected them (4xx)")
+                .register(registry);
+        Gauge.builder("docservice.write-buffer.pending", pendingById, Map::size)
+                .description("Chunks accepted but not yet in ChromaDB")
+                .register(registry);
+
+        if (!enabled) return;
+        if (wal != null) {
+            List<PendingWrite> recovered = wal.recovered();
+            for (PendingWrite write : recovered) {
+                write.durable.complete(null);
+                pendingById.put(write.id, write);
+                last = write;
+            }
+            if (!recovered.isEmpty()) {
+                Counter.builder("docservice.write-buffer.replayed")
+                        .description("Chunks replayed from the write-ahead log at startup")
+                        .register(registry).increment(recovered.size());
+                for (int i = 0; i < recovered.size(); i += this.maxBatchSize) {
+                    logged.add(recovered.subList(i, Math.min(recovered.size(), i + this.maxBatchSize)));
+                }
+            }
+            start("chroma-write-apply", this::applyLoop);
+        }
+        start("chroma-write-buffer", this::batchLoop);
+        log.info("ChromaDB write buffer: batches of up to {} chunk(s) / {}, linger {} ms, {}",
+                this.maxBatchSize, maxBatchBytes, linger.toMillis(),
+                wal == null ? "acknowledged once in ChromaDB" : "acknowledged once logged in " + walDir);
+    }
+
+    /** Unbuffered: every add goes straight to ChromaDB on the caller's thread. */
+    public ChromaWriteBuffer(ChromaDbService chroma, MeterRegistry registry) {
+        this(chroma, new ObjectMapper(), false, 1, DataSize.ofBytes(1), Duration.ZERO, 1,
+                Duration.ZERO, "", DataSize.ofBytes(1), registry);
+    }
+
+    /**
+     * Queues one chunk for ChromaDB.
+     *
+     * @return completes when the chunk is durable; see the class comment
+     * @throws ServiceUnavailableException if {@code max-pending} chunks are already buffered
+     */
+    public CompletableFuture<Void> add(String id, String content, Map<String, Object> metadata, float[] embedding) {
+        if (!enabled) {
+            chroma.add(id, content, metadata, embedding);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!running) throw new ServiceUnavailableException("Write buffer is shutting down", Duration.ofSeconds(1));
+        if (!capacity.tryAcquire()) {
+            throw new ServiceUnavailableException("Write buffer full (" + pendingById.size() + " chunks pending)",
+                    Duration.ofSeconds(1));
+        }
+        PendingWrite write = new PendingWrite(seq.getAndIncrement(), id, content, metadata, embedding, false);
+        pendingById.put(id, write);
+        last = write;
+        incoming.add(write);
+        return write.durable;
+    }
+
+    /**
+     * Waits until every future is complete and rethrows the first failure.
+     *
+     * @throws ServiceUnavailableException if they are not complete within {@code ack-timeout}
+     */
+    public void await(List<CompletableFuture<Void>> futures) {
+        if (futures.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("ChromaDB write not acknowledged within "
+                    + ackTimeout.toMillis() + " ms", Duration.ofSeconds(1), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for ChromaDB write", Duration.ofSeconds(1), e);
+        } finally {
+            if (enabled) recordWait(start);
+        }
+    }
+
+    /** Waits until those of {@code ids} that are still buffered are in ChromaDB; failures are ignored. */
+    public void awaitApplied(Collection<String> ids) {
+        for (String id : ids) {
+            PendingWrite write = pendingById.get(id);
+            if (write != null) awaitQuietly(write);
+        }
+    }
+
+    /**
+     * Waits until the buffered chunks of {@code documentId}, those whose id
+     * has it as {@linkplain ShardRing#routingKey routing key}, are in ChromaDB;
+     * failures are ignored. Writes of other documents are not waited for.
+     */
+    public void awaitDocumentApplied(String documentId) {
+        for (PendingWrite write : pendingById.values()) {
+            if (ShardRing.routingKey(write.id).equals(documentId)) awaitQuietly(write);
+        }
+    }
+
+    /** Waits until everything buffered so far is in ChromaDB; failures are ignored. */
+    public void awaitAllApplied() {
+        PendingWrite write = last;
+        if (write != null) awaitQuietly(write);
+    }
+
+    private void awaitQuietly(PendingWrite write) {
+        long start = System.nanoTime();
+        try {
+            write.applied.get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // the write never made it; the caller sees ChromaDB as it is
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Pending write of " + write.id + " not applied within "
+                    + ackTimeout.toMillis() + " ms", Duration.ofSeconds(1), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted waiting for ChromaDB write", Duration.ofSeconds(1), e);
+        } finally {
+            recordWait(start);
+        }
+    }
+
+    /**
+     * The batch's ChromaDB call is timed on the buffer thread, outside any
+     * request; the caller's wait for it is what the request's
+     * {@code Server-Timing} shows as {@code chroma}.
+     */
+    private static void recordWait(long start) {
+        RequestTimings.record(Stage.CHROMA, System.nanoTime() - start);
+    }
+
+    // ------------------------------------------------------------------ batching
+    private void batchLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !incoming.isEmpty()) {
+            try {
+                PendingWrite first = incoming.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                String trigger = collect(batch, first.estimatedBytes());
+                flushes.computeIfAbsent(trigger, t -> Counter.builder("docservice.write-buffer.flushes")
+                        .description("Write buffer flushes by the limit that triggered them")
+                        .tag("trigger", t)
+                        .register(registry)).increment();
+                batchSize.record(batch.size());
+                if (wal == null) {
+                    apply(batch);
+                } else {
+                    log(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Write buffer batch of {} chunk(s) failed", batch.size(), e);
+            } finally {
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+    }
+
+    /** Fills {@code batch} until a limit is hit; returns which one. */
+    private String collect(List<PendingWrite> batch, long bytes) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (true) {
+            if (batch.size() >= maxBatchSize) return "size";
+            if (bytes >= maxBatchBytes) return "bytes";
+            long wait = deadline - System.nanoTime();
+            PendingWrite next = wait > 0 ? incoming.poll(wait, TimeUnit.NANOSECONDS) : incoming.poll();
+            if (next == null) return "linger";
+            batch.add(next);
+            bytes += next.estimatedBytes();
+        }
+    }
+
+    /** Without a log: one attempt, the outcome goes to the callers. */
+    private void apply(List<PendingWrite> batch) {
+        Set<PendingWrite> applied = new HashSet<>();
+        Map<PendingWrite, HttpClientErrorException> rejected = new HashMap<>();
+        RuntimeException failure = null;
+        try {
+            upsertIsolating(batch, applied, rejected);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (PendingWrite write : batch) {
+            finish(write, applied.contains(write) ? null
+                    : rejected.containsKey(write) ? rejected.get(write) : failure);
+        }
+    }
+
+    private void log(List<PendingWrite> batch) {
+        try {
+            wal.append(batch);
+            wal.sync();
+        } catch (IOException e) {
+            finish(batch, new UncheckedIOException("Write-ahead log append failed", e));
+            return;
+        }
+        for (PendingWrite write : batch) write.durable.complete(null);
+        logged.add(batch);
+    }
+
+    // ------------------------------------------------------------------ applying logged batches
+    private void applyLoop() {
+        while (running || !logged.isEmpty()) {
+            List<PendingWrite> batch;
+            try {
+                batch = logged.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (batch == null) continue;
+            // merge batches that queued up while ChromaDB was slow
+            batch = new ArrayList<>(batch);
+            while (batch.size() < maxBatchSize && logged.peek() != null
+                    && batch.size() + logged.peek().size() <= maxBatchSize) {
+                batch.addAll(logged.poll());
+            }
+            if (!applyWithRetry(batch)) break;
+        }
+    }
+
+    /** @return {@code false} if interrupted before the batch could be applied */
+    private boolean applyWithRetry(List<PendingWrite> batch) {
+        Set<PendingWrite> applied = new HashSet<>();
+        Map<PendingWrite, HttpClientErrorException> rejected = new HashMap<>();
+        List<PendingWrite> remaining = batch;
+        long backoffMs = 100;
+        while (true) {
+            try {
+                upsertIsolating(remaining, applied, rejected);
+                break;
+            } catch (RuntimeException e) {
+                remaining = batch.stream()
+                        .filter(write -> !applied.contains(write) && !rejected.containsKey(write))
+                        .toList();
+                retries.increment();
+                log.warn("Applying {} logged chunk(s) failed, retrying in {} ms: {}",
+                        remaining.size(), backoffMs, e.toString());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;   // stays in the log, replayed on the next start
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF.toMillis());
+            }
+        }
+        rejected.forEach((write, e) ->
+                log.error("ChromaDB rejected logged chunk {}, dropping it: {}", write.id, e.getMessage()));
+        dropped.increment(rejected.size());
+        for (PendingWrite write : batch) finish(write, rejected.get(write));
+        try {
+            wal.commit(batch.get(batch.size() - 1).seq);
+        } catch (IOException e) {
+            log.warn("Write-ahead log commit failed; the batch will be applied again on restart", e);
+        }
+        return true;
+    }
+
+    /**
+     * Upserts {@code batch}. If ChromaDB rejects it ({@code 4xx}), the halves
+     * are upserted separately, down to single chunks, so that a chunk it
+     * refuses does not take the chunks of other requests with it. Other
+     * failures propagate; {@code applied} then holds what made it.
+     */
+    private void upsertIsolating(List<PendingWrite> batch, Set<PendingWrite> applied,
+                                 Map<PendingWrite, HttpClientErrorException> rejected) {
+        try {
+            upsert(batch);
+            applied.addAll(batch);
+        } catch (HttpClientErrorException e) {
+            if (batch.size() == 1) {
+                rejected.put(batch.get(0), e);
+                return;
+            }
+            int half = batch.size() / 2;
+            upsertIsolating(batch.subList(0, half), applied, rejected);
+            upsertIsolating(batch.subList(half, batch.size()), applied, rejected);
+        }
+    }
+
+    private void upsert(List<PendingWrite> batch) {
+        List<String> ids = new ArrayList<>(batch.size());
+        List<String> documents = new ArrayList<>(batch.size());
+        List<Map<String, Object>> metadatas = new ArrayList<>(batch.size());
+        List<float[]> embeddings = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            ids.add(write.id);
+            documents.add(write.content);
+            metadatas.add(write.metadata);
+            embeddings.add(write.embedding);
+        }
+        // upsert rather than add: replaying a record that had been applied must not fail
+        chroma.upsertAll(chroma.collectionName(), ids, documents, metadatas, embeddings);
+    }
+
+    private void finish(List<PendingWrite> batch, RuntimeException failure) {
+        for (PendingWrite write : batch) finish(write, failure);
+    }
+
+    private void finish(PendingWrite write, RuntimeException failure) {
+        pendingById.remove(write.id, write);
+        if (!write.replayed) capacity.release();
+        if (failure == null) {
+            write.durable.complete(null);
+            write.applied.complete(null);
+        } else {
+            write.durable.completeExceptionally(failure);
+            write.applied.completeExceptionally(failure);
+        }
+    }
+
+    private static WriteAheadLog openLog(Path dir, DataSize segmentSize, ObjectMapper objectMapper) {
+        try {
+            return new WriteAheadLog(dir, segmentSize.toBytes(), objectMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + dir, e);
+        }
+    }
+
+    private void start(String name, Runnable loop) {
+        // batched writes draw on the ingest lane's connections
+        Thread thread = new Thread(Lane.INGEST.wrap(loop), name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    /** Flushes what is buffered; logged batches still failing after a grace period are left for replay. */
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            thread.join(ackTimeout.toMillis());
+            thread.interrupt();
+        }
+        if (wal != null) wal.close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.uymbot.docservice.writebuffer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One chunk waiting in the {@link ChromaWriteBuffer}.
+ * <p>
+ * {@code durable} completes when the caller may be answered: once the chunk
+ * is in the write-ahead log, or without a log once ChromaDB has it.
+ * {@code applied} completes once ChromaDB has it.
+ * </p>
+ */
+final class PendingWrite {
+
+    final long seq;
+    final String id;
+    final String content;
+    final Map<String, Object> metadata;
+    final float[] embedding;
+    /** Recovered from the log at startup; holds no slot of the pending limit. */
+    final boolean replayed;
+    final CompletableFuture<Void> durable = new CompletableFuture<>();
+    final CompletableFuture<Void> applied = new CompletableFuture<>();
+
+    PendingWrite(long seq, String id, String content, Map<String, Object> metadata, float[] embedding,
+                 boolean replayed) {
+        this.seq = seq;
+        this.id = id;
+        this.content = content;
+        this.metadata = metadata;
+        this.embedding = embedding;
+        this.replayed = replayed;
+    }
+
+    /** Rough size of the chunk in a ChromaDB request body. */
+    int estimatedBytes() {
+        int bytes = id.length() + content.length() + 12 * embedding.length;
+        return bytes + 32 * metadata.size();
+    }
+}
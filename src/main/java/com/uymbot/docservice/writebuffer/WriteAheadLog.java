@@ -0,0 +1,267 @@
+package com.uymbot.docservice.writebuffer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of chunk writes that have been acknowledged but may not
+ * have reached ChromaDB yet.
+ * <p>
+ * The log is a sequence of segment files {@code wal-<n>.log}; a segment is
+ * closed once it exceeds {@code segmentBytes} and deleted once every record
+ * in it has been committed. All integers are big-endian.
+ * </p>
+ * <pre>
+ * frame   length:i32 crc32:i32 payload:byte[length]
+ * payload 1:u8 seq:i64 id content metadataJson dimension:i32 vector:f32[dimension]   record
+ *         2:u8 seq:i64                                                               commit: all records &lt;= seq applied
+ *         strings are length:i32 + UTF-8 bytes
+ * </pre>
+ * <p>
+ * Reading a segment stops at the first torn or corrupt frame, which is what
+ * a crash in the middle of an append leaves behind. Records are applied with
+ * {@code upsert}, so replaying one that had already been applied is harmless.
+ * </p>
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+
+    private static final byte RECORD = 1;
+    private static final byte COMMIT = 2;
+    private static final TypeReference<Map<String, Object>> METADATA = new TypeReference<>() {
+    };
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final ObjectMapper objectMapper;
+    /** Closed segments and the highest record seq in each. */
+    private final TreeMap<Integer, Long> closed = new TreeMap<>();
+    private final List<PendingWrite> recovered = new ArrayList<>();
+
+    private int segment;
+    private FileChannel channel;
+    private long lastSeq;
+    private long nextSeq;
+
+    WriteAheadLog(Path dir, long segmentBytes, ObjectMapper objectMapper) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.objectMapper = objectMapper;
+        recover();
+        open(segment + 1);
+    }
+
+    /** Records that were logged but not committed before the last shutdown, in log order. */
+    List<PendingWrite> recovered() {
+        return recovered;
+    }
+
+    /** Sequence number for the first record appended by this process. */
+    long nextSeq() {
+        return nextSeq;
+    }
+
+    /** Appends records; they are durable after the next {@link #sync()}. */
+    synchronized void append(List<PendingWrite> writes) throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (PendingWrite write : writes) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(write.estimatedBytes());
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(RECORD);
+            out.writeLong(write.seq);
+            writeBytes(out, write.id.getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, write.content.getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, objectMapper.writeValueAsBytes(write.metadata));
+            out.writeInt(write.embedding.length);
+            for (float v : write.embedding) out.writeFloat(v);
+            frame(frames, payload.toByteArray());
+            lastSeq = Math.max(lastSeq, write.seq);
+        }
+        write(frames.toByteArray());
+        if (channel.size() >= segmentBytes) {
+            channel.force(false);
+            channel.close();
+            closed.put(segment, lastSeq);
+            open(segment + 1);
+        }
+    }
+
+    synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Records that every record up to {@code seq} is in ChromaDB and deletes
+     * the closed segments that hold nothing newer. Not synced: losing a
+     * commit only means applying a few records twice.
+     */
+    synchronized void commit(long seq) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(9);
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(COMMIT);
+        out.writeLong(seq);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(17);
+        frame(frame, payload.toByteArray());
+        write(frame.toByteArray());
+        deleteClosedUpTo(seq);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void recover() throws IOException {
+        List<Integer> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.matches("wal-\\d+\\.log"))
+                    .map(n -> Integer.parseInt(n.substring(4, n.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+        Map<Long, PendingWrite> records = new LinkedHashMap<>();
+        long committed = -1;
+        long maxSeq = -1;
+        for (int n : segments) {
+            long segmentMax = -1;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path(n))))) {
+                byte[] payload;
+                while ((payload = readFrame(in, n)) != null) {
+                    DataInputStream p = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte type = p.readByte();
+                    long seq = p.readLong();
+                    if (type == COMMIT) {
+                        committed = Math.max(committed, seq);
+                    } else if (type == RECORD) {
+                        records.put(seq, readRecord(p, seq));
+                        segmentMax = Math.max(segmentMax, seq);
+                    }
+                }
+            }
+            closed.put(n, segmentMax);
+            maxSeq = Math.max(maxSeq, segmentMax);
+            segment = n;
+        }
+        for (PendingWrite write : records.values()) {
+            if (write.seq > committed) recovered.add(write);
+        }
+        recovered.sort((a, b) -> Long.compare(a.seq, b.seq));
+        nextSeq = Math.max(maxSeq, committed) + 1;
+        lastSeq = nextSeq - 1;
+        // segments holding nothing to replay can go right away
+        deleteClosedUpTo(recovered.isEmpty() ? Long.MAX_VALUE : recovered.get(0).seq - 1);
+        if (!segments.isEmpty()) {
+            log.info("Write-ahead log {}: {} segment(s), {} uncommitted record(s) to replay",
+                    dir, segments.size(), recovered.size());
+        }
+    }
+
+    /** Deletes the closed segments whose records all have a seq of at most {@code seq}. */
+    private void deleteClosedUpTo(long seq) throws IOException {
+        for (Iterator<Map.Entry<Integer, Long>> it = closed.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Long> e = it.next();
+            if (e.getValue() > seq) break;
+            Files.deleteIfExists(path(e.getKey()));
+            it.remove();
+        }
+    }
+
+    private PendingWrite readRecord(DataInputStream in, long seq) throws IOException {
+        String id = new String(readBytes(in), StandardCharsets.UTF_8);
+        String content = new String(readBytes(in), StandardCharsets.UTF_8);
+        Map<String, Object> metadata = objectMapper.readValue(readBytes(in), METADATA);
+        float[] embedding = new float[in.readInt()];
+        for (int i = 0; i < embedding.length; i++) embedding[i] = in.readFloat();
+        return new PendingWrite(seq, id, content, metadata, embedding, true);
+    }
+
+    /** @return the frame payload, or {@code null} at the end of the segment or a torn frame */
+    private byte[] readFrame(DataInputStream in, int n) throws IOException {
+        int length;
+        int crc;
+        try {
+            length = in.readInt();
+            crc = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > segmentBytes + (64 << 20)) {
+            log.warn("Write-ahead log segment {}: bad frame length {}, ignoring the rest", n, length);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            log.warn("Write-ahead log segment {}: torn frame at the end, ignoring it", n);
+            return null;
+        }
+        CRC32 check = new CRC32();
+        check.update(payload);
+        if ((int) check.getValue() != crc) {
+            log.warn("Write-ahead log segment {}: checksum mismatch, ignoring the rest", n);
+            return null;
+        }
+        return payload;
+    }
+
+    private void open(int n) throws IOException {
+        segment = n;
+        channel = FileChannel.open(path(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private Path path(int n) {
+        return dir.resolve(String.format("wal-%010d.log", n));
+    }
+
+    private static void frame(ByteArrayOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream frame = new DataOutputStream(out);
+        frame.writeInt(payload.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(payload);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,128 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.resilience.Bulkhead;
+import com.uymbot.docservice.resilience.BulkheadRequestFactory;
+import com.uymbot.docservice.resilience.Bulkheads;
+import com.uymbot.docservice.resilience.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private Bulkhead bulkhead(int concurrent, int queued, Duration maxWait) {
+        return new Bulkhead(Lane.INGEST, concurrent, queued, maxWait, 1, Duration.ofMillis(50), registry);
+    }
+
+    private double rejected(String reason) {
+        return registry.get("docservice.bulkhead.rejected").tag("lane", "ingest").tag("reason", reason)
+                .counter().count();
+    }
+
+    @Test
+    void fullQueue_shedsImmediately_withRetryAfter() {
+        Bulkhead bulkhead = bulkhead(1, 0, Duration.ofSeconds(30));
+        bulkhead.acquire();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(bulkhead::acquire)
+                .isInstanceOf(ServiceUnavailableException.class)
+                .satisfies(e -> assertThat(((ServiceUnavailableException) e).getRetryAfter())
+                        .isEqualTo(Duration.ofSeconds(30)));
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(rejected("queue-full")).isEqualTo(1);
+    }
+
+    @Test
+    void queuedRequest_getsTheReleasedSlot_orTimesOut() throws Exception {
+        Bulkhead bulkhead = bulkhead(1, 1, Duration.ofSeconds(5));
+        bulkhead.acquire();
+
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(bulkhead::acquire);
+        Thread.sleep(50);
+        assertThat(registry.get("docservice.bulkhead.queued").tag("lane", "ingest").gauge().value()).isEqualTo(1);
+        bulkhead.release();
+        queued.get(1, TimeUnit.SECONDS);
+        assertThat(registry.get("docservice.bulkhead.active").tag("lane", "ingest").gauge().value()).isEqualTo(1);
+
+        Bulkhead impatient = new Bulkhead(Lane.CRUD, 1, 1, Duration.ofMillis(50), 0, Duration.ZERO, registry);
+        impatient.acquire();
+        assertThatThrownBy(impatient::acquire).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(registry.get("docservice.bulkhead.rejected").tag("lane", "crud").tag("reason", "timeout")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void outboundCalls_holdALaneConnectionUntilTheResponseIsClosed() throws Exception {
+        Bulkheads bulkheads = new Bulkheads(true, 4, 4, Duration.ofSeconds(1), 0, 4, 4, Duration.ofSeconds(1), 0,
+                4, 4, Duration.ofSeconds(1), 1, Duration.ofMillis(50), registry);
+        BulkheadRequestFactory factory = new BulkheadRequestFactory(
+                (uri, method) -> {
+                    MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+                    request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+                    return request;
+                }, bulkheads);
+        URI uri = URI.create("http://chroma:8000/api/v1/heartbeat");
+        AtomicReference<ClientHttpResponse> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+
+        Lane.INGEST.wrap(() -> {
+            try {
+                first.set(factory.createRequest(uri, HttpMethod.GET).execute());
+                factory.createRequest(uri, HttpMethod.GET).execute();
+            } catch (Throwable t) {
+                second.set(t);
+            }
+        }).run();
+        // another lane and threads without a lane are not held back by the ingest budget
+        Lane.SEARCH.wrap(() -> {
+            try {
+                factory.createRequest(uri, HttpMethod.GET).execute().close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).run();
+        factory.createRequest(uri, HttpMethod.GET).execute().close();
+
+        assertThat(second.get()).isInstanceOf(ServiceUnavailableException.class);
+        first.get().close();
+        Lane.INGEST.wrap(() -> {
+            try {
+                factory.createRequest(uri, HttpMethod.GET).execute().close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).run();
+        assertThat(registry.get("docservice.bulkhead.connections").tag("lane", "ingest").gauge().value()).isZero();
+    }
+
+    @Test
+    void laneFollowsWorkHandedToOtherThreads() throws Exception {
+        AtomicReference<Lane> seen = new AtomicReference<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Lane.SEARCH.wrap(() -> new Thread(Lane.propagate(() -> {
+            seen.set(Lane.current());
+            done.complete(null);
+        })).start()).run();
+
+        done.get(1, TimeUnit.SECONDS);
+        assertThat(seen.get()).isEqualTo(Lane.SEARCH);
+        assertThat(Lane.current()).isNull();
+    }
+}
@@ -0,0 +1,78 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.resilience.ChromaCallGuard;
+import com.uymbot.docservice.resilience.CircuitBreaker.State;
+import com.uymbot.docservice.resilience.ReplicaRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChromaCallGuardTest {
+
+    private static final String HOST = "http://chroma:8000";
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    /** One read thread; the breaker opens on the first recorded failure. */
+    private ChromaCallGuard guard() {
+        return new ChromaCallGuard(HOST, Duration.ofSeconds(5), 1, false, "", 0.95,
+                Duration.ofMillis(10), Duration.ofMillis(100), 0.1,
+                10, 1, 0.5, Duration.ofSeconds(10), 1, 100, Duration.ofMinutes(10),
+                new ReplicaRouter(Map.of(), false, 2, host -> true, registry), registry);
+    }
+
+    @Test
+    void fullReadPool_isAnsweredDegraded_withoutOpeningTheBreaker() throws Exception {
+        ChromaCallGuard guard = guard();
+        assertThat(guard.<Integer>read("count", "all", host -> 42)).isEqualTo(42);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> busy = callers.submit(() -> {
+            while (true) {
+                try {
+                    return guard.read("get", null, host -> {
+                        started.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "slow";
+                    });
+                } catch (ServiceUnavailableException e) {
+                    Thread.sleep(10);   // the first read's thread may not be back in the pool yet
+                }
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(guard.<Integer>read("count", "all", host -> 7)).isEqualTo(42);
+        assertThatThrownBy(() -> guard.read("get", "other", host -> "fast"))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessageContaining("read pool exhausted");
+        assertThat(guard.state()).isEqualTo(State.CLOSED);
+        assertThat(guard.write("add", () -> "written")).isEqualTo("written");
+
+        release.countDown();
+        assertThat(busy.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+}
@@ -0,0 +1,123 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.observability.ChromaHealthIndicator;
+import com.uymbot.docservice.resilience.ChromaCallGuard;
+import com.uymbot.docservice.resilience.CircuitBreaker.State;
+import com.uymbot.docservice.resilience.ReplicaRouter;
+import com.uymbot.docservice.service.ChromaDbService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChromaHealthIndicatorTest {
+
+    private final ChromaDbService chroma = mock(ChromaDbService.class);
+    private final ChromaCallGuard guard = mock(ChromaCallGuard.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        when(guard.state()).thenReturn(State.CLOSED);
+        when(guard.states()).thenReturn(Map.of("http://chroma:8000", State.CLOSED));
+    }
+
+    private ChromaHealthIndicator indicator(Duration cacheTtl) {
+        return new ChromaHealthIndicator(chroma, guard,
+                new ReplicaRouter(Map.of(), false, 2, host -> true, registry), cacheTtl);
+    }
+
+    @Test
+    void answeringHeartbeat_isUp_withLatencyAndCircuit() {
+        doReturn(Map.of("nanosecond heartbeat", 1L)).when(chroma).heartbeat();
+
+        Health health = indicator(Duration.ofSeconds(10)).health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsKeys("latencyMs", "checkedAt")
+                .containsEntry("circuit", "CLOSED")
+                .doesNotContainKeys("circuits", "replicas");
+    }
+
+    @Test
+    void failingHeartbeat_isDown_withTheError() {
+        doThrow(new ResourceAccessException("Connection refused")).when(chroma).heartbeat();
+        when(guard.state()).thenReturn(State.OPEN);
+
+        Health health = indicator(Duration.ofSeconds(10)).health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getDetails()).containsKey("checkedAt")
+                .containsEntry("circuit", "OPEN");
+        assertThat(health.getDetails().get("error").toString()).contains("Connection refused");
+    }
+
+    @Test
+    void timedOutHeartbeat_isDown() {
+        doThrow(new ResourceAccessException("I/O error on GET request: Read timed out",
+                new SocketTimeoutException("Read timed out"))).when(chroma).heartbeat();
+
+        Health health = indicator(Duration.ofSeconds(10)).health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getDetails().get("error").toString()).contains("Read timed out");
+    }
+
+    @Test
+    void heartbeat_isCachedForTheTtl_circuitIsReportedLive() {
+        doReturn(Map.of()).when(chroma).heartbeat();
+        ChromaHealthIndicator indicator = indicator(Duration.ofMinutes(1));
+
+        Health first = indicator.health();
+        doThrow(new ResourceAccessException("Connection refused")).when(chroma).heartbeat();
+        when(guard.state()).thenReturn(State.HALF_OPEN);
+        Health second = indicator.health();
+
+        verify(chroma, times(1)).heartbeat();
+        assertThat(second.getStatus()).isEqualTo(Status.UP);
+        assertThat(second.getDetails().get("checkedAt")).isEqualTo(first.getDetails().get("checkedAt"));
+        assertThat(second.getDetails()).containsEntry("circuit", "HALF_OPEN");
+    }
+
+    @Test
+    void expiredCache_checksAgain() {
+        doReturn(Map.of()).when(chroma).heartbeat();
+        ChromaHealthIndicator indicator = indicator(Duration.ZERO);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.UP);
+        doThrow(new ResourceAccessException("Connection refused")).when(chroma).heartbeat();
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+        verify(chroma, times(2)).heartbeat();
+    }
+
+    @Test
+    void shardsAndReplicas_areReportedPerHost() {
+        doReturn(Map.of()).when(chroma).heartbeat();
+        when(guard.states()).thenReturn(Map.of("http://a", State.CLOSED, "http://b", State.OPEN));
+        ChromaHealthIndicator indicator = new ChromaHealthIndicator(chroma, guard,
+                new ReplicaRouter(Map.of("http://a", List.of("http://a-r1")), false, 2, host -> true, registry),
+                Duration.ofSeconds(10));
+
+        Map<String, Object> details = indicator.health().getDetails();
+
+        assertThat(details.get("circuits")).isEqualTo(Map.of("http://a", State.CLOSED, "http://b", State.OPEN));
+        assertThat(details.get("replicas")).asInstanceOf(InstanceOfAssertFactories.MAP).containsOnlyKeys("http://a-r1");
+    }
+}
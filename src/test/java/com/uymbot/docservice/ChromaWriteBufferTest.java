@@ -0,0 +1,229 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.writebuffer.ChromaWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChromaWriteBufferTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<ChromaWriteBuffer> buffers = new ArrayList<>();
+    private ChromaDbService chroma;
+    /** Ids of every upsert call, in order. */
+    private final List<List<String>> upserts = Collections.synchronizedList(new ArrayList<>());
+
+    @TempDir
+    Path walDir;
+
+    @BeforeEach
+    void setUp() {
+        chroma = mock(ChromaDbService.class);
+        when(chroma.collectionName()).thenReturn("documents");
+        recordUpserts();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (ChromaWriteBuffer buffer : buffers) buffer.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordUpserts() {
+        doAnswer(inv -> {
+            upserts.add(List.copyOf((List<String>) inv.getArgument(1)));
+            return null;
+        }).when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+    }
+
+    private ChromaWriteBuffer buffer(int maxBatchSize, Duration linger, String wal) {
+        ChromaWriteBuffer buffer = new ChromaWriteBuffer(chroma, new ObjectMapper(), true, maxBatchSize,
+                DataSize.ofMegabytes(4), linger, 1000, Duration.ofMillis(500), wal, DataSize.ofMegabytes(1),
+                registry);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private static List<CompletableFuture<Void>> add(ChromaWriteBuffer buffer, String prefix, int count) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(buffer.add(prefix + i, "content " + i, Map.of("chunkIndex", i), new float[]{i, 1f}));
+        }
+        return futures;
+    }
+
+    private double flushes(String trigger) {
+        return registry.get("docservice.write-buffer.flushes").tag("trigger", trigger).counter().count();
+    }
+
+    @Test
+    void addsWithinLinger_areWrittenWithOneUpsert() {
+        ChromaWriteBuffer buffer = buffer(100, Duration.ofMillis(200), "");
+
+        buffer.await(add(buffer, "doc:", 10));
+
+        assertThat(upserts).hasSize(1);
+        assertThat(upserts.get(0)).hasSize(10).startsWith("doc:0");
+        assertThat(flushes("linger")).isEqualTo(1);
+        verify(chroma, never()).add(any(), any(), any(), any());
+    }
+
+    @Test
+    void fullBatch_isFlushedWithoutWaitingForLinger() {
+        ChromaWriteBuffer buffer = buffer(4, Duration.ofSeconds(30), "");
+
+        long start = System.nanoTime();
+        buffer.await(add(buffer, "doc:", 8));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(upserts).hasSize(2).allSatisfy(ids -> assertThat(ids).hasSize(4));
+        assertThat(flushes("size")).isEqualTo(2);
+    }
+
+    @Test
+    void awaitDocumentApplied_waitsForThatDocumentsChunksOnly() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> release.await(5, TimeUnit.SECONDS))
+                .when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+        ChromaWriteBuffer buffer = buffer(100, Duration.ofMillis(10), "");
+        CompletableFuture<Void> slow = buffer.add("slow:0", "content", Map.of(), new float[]{1f});
+
+        long start = System.nanoTime();
+        buffer.awaitDocumentApplied("other");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(400));
+        assertThatThrownBy(() -> buffer.awaitDocumentApplied("slow"))
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        release.countDown();
+        buffer.awaitDocumentApplied("slow");
+        slow.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failedBatch_failsEveryCaller() {
+        doThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))
+                .when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+        ChromaWriteBuffer buffer = buffer(100, Duration.ofMillis(20), "");
+
+        List<CompletableFuture<Void>> futures = add(buffer, "doc:", 3);
+
+        assertThatThrownBy(() -> buffer.await(futures)).isInstanceOf(HttpServerErrorException.class);
+        assertThat(futures).allSatisfy(f -> assertThat(f).isCompletedExceptionally());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rejectBatchesContaining(String badId) {
+        doAnswer(inv -> {
+            List<String> ids = (List<String>) inv.getArgument(1);
+            if (ids.contains(badId)) throw new HttpClientErrorException(HttpStatus.UNPROCESSABLE_ENTITY);
+            upserts.add(List.copyOf(ids));
+            return null;
+        }).when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+    }
+
+    @Test
+    void rejectedChunk_failsOnlyItsOwnCaller() throws Exception {
+        rejectBatchesContaining("bad:1");
+        ChromaWriteBuffer buffer = buffer(100, Duration.ofMillis(200), "");
+
+        // two requests whose chunks share one batch
+        CompletableFuture<List<CompletableFuture<Void>>> bad = CompletableFuture.supplyAsync(() -> add(buffer, "bad:", 2));
+        List<CompletableFuture<Void>> good = add(buffer, "good:", 3);
+
+        buffer.await(good);
+        List<CompletableFuture<Void>> badFutures = bad.get();
+        assertThat(badFutures.get(0)).succeedsWithin(Duration.ofSeconds(1));
+        assertThatThrownBy(() -> buffer.await(badFutures)).isInstanceOf(HttpClientErrorException.class);
+        assertThat(upserts.stream().flatMap(List::stream))
+                .containsExactlyInAnyOrder("bad:0", "good:0", "good:1", "good:2");
+    }
+
+    @Test
+    void withLog_rejectedChunk_isDroppedAlone() {
+        rejectBatchesContaining("bad:1");
+        ChromaWriteBuffer buffer = buffer(100, Duration.ofMillis(200), walDir.toString());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(add(buffer, "bad:", 2));
+        futures.addAll(add(buffer, "good:", 3));
+        buffer.await(futures);   // acknowledged once logged
+        buffer.awaitAllApplied();
+
+        assertThat(upserts.stream().flatMap(List::stream))
+                .containsExactlyInAnyOrder("bad:0", "good:0", "good:1", "good:2");
+        assertThat(registry.get("docservice.write-buffer.dropped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.write-buffer.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void disabled_writesEachChunkDirectly() {
+        ChromaWriteBuffer buffer = new ChromaWriteBuffer(chroma, registry);
+
+        buffer.await(add(buffer, "doc:", 2));
+
+        verify(chroma).add(eq("doc:0"), eq("content 0"), any(), any());
+        verify(chroma).add(eq("doc:1"), eq("content 1"), any(), any());
+        verify(chroma, never()).upsertAll(any(), anyList(), anyList(), anyList(), anyList());
+    }
+
+    @Test
+    void withLog_acknowledgesOnceLogged_andReplaysUnappliedWritesOnRestart() throws Exception {
+        doThrow(new ResourceAccessException("connection refused"))
+                .when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+        ChromaWriteBuffer down = buffer(100, Duration.ofMillis(20), walDir.toString());
+
+        down.await(add(down, "doc:", 3));   // durable in the log although ChromaDB is down
+        assertThat(registry.get("docservice.write-buffer.pending").gauge().value()).isEqualTo(3);
+        down.shutdown();
+        buffers.remove(down);
+
+        doNothing().when(chroma).upsertAll(eq("documents"), anyList(), anyList(), anyList(), anyList());
+        recordUpserts();
+        ChromaWriteBuffer restarted = buffer(100, Duration.ofMillis(20), walDir.toString());
+        restarted.awaitApplied(List.of("doc:0", "doc:1", "doc:2"));
+
+        assertThat(upserts).containsExactly(List.of("doc:0", "doc:1", "doc:2"));
+        assertThat(registry.get("docservice.write-buffer.replayed").counter().count()).isEqualTo(3);
+
+        // applied writes are committed in the log and not replayed again
+        restarted.await(add(restarted, "next:", 1));
+        restarted.shutdown();
+        buffers.remove(restarted);
+        upserts.clear();
+        ChromaWriteBuffer again = buffer(100, Duration.ofMillis(20), walDir.toString());
+        again.awaitAllApplied();
+        assertThat(upserts).isEmpty();
+    }
+}
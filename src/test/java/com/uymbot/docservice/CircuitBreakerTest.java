@@ -0,0 +1,97 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.resilience.CircuitBreaker;
+import com.uymbot.docservice.resilience.CircuitBreaker.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static CircuitBreaker breaker(Duration openDuration) {
+        // window 10, open once 5+ calls are recorded and half of them failed, 2 probes
+        return new CircuitBreaker("test", 10, 5, 0.5, openDuration, 2, new SimpleMeterRegistry());
+    }
+
+    private static void calls(CircuitBreaker breaker, int successes, int failures) {
+        for (int i = 0; i < successes; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess();
+        }
+        for (int i = 0; i < failures; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    void staysClosed_belowMinimumCalls() {
+        CircuitBreaker breaker = breaker(Duration.ofSeconds(10));
+        calls(breaker, 0, 4);
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void staysClosed_belowFailureRate() {
+        CircuitBreaker breaker = breaker(Duration.ofSeconds(10));
+        calls(breaker, 6, 4);
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void opens_atFailureRate_andRejectsCalls() {
+        CircuitBreaker breaker = breaker(Duration.ofSeconds(10));
+        calls(breaker, 3, 3);
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.remainingOpen()).isPositive();
+    }
+
+    @Test
+    void oldOutcomesSlideOutOfWindow() {
+        CircuitBreaker breaker = breaker(Duration.ofSeconds(10));
+        calls(breaker, 0, 4);
+        calls(breaker, 10, 0);
+        calls(breaker, 0, 4);
+
+        // window now holds 6 successes and 4 failures
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void halfOpen_closesAfterSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker breaker = breaker(Duration.ofMillis(50));
+        calls(breaker, 0, 5);
+        Thread.sleep(80);
+
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).as("only two probes are allowed").isFalse();
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        calls(breaker, 0, 4);
+        assertThat(breaker.state()).as("window was reset on close").isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void halfOpen_reopensOnProbeFailure() throws InterruptedException {
+        CircuitBreaker breaker = breaker(Duration.ofMillis(50));
+        calls(breaker, 0, 5);
+        Thread.sleep(80);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+}
@@ -1,26 +1,60 @@
 package com.uymbot.docservice;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.BatchDeleteRequest;
+import com.uymbot.docservice.dto.BatchDeleteResponse;
+import com.uymbot.docservice.dto.BatchGetRequest;
+import com.uymbot.docservice.dto.BatchGetResponse;
+import com.uymbot.docservice.dto.BatchSearchRequest;
+import com.uymbot.docservice.dto.BatchSearchResponse;
 import com.uymbot.docservice.dto.DocumentRequest;
 import com.uymbot.docservice.dto.DocumentResponse;
 import com.uymbot.docservice.dto.DocumentUpdateRequest;
+import com.uymbot.docservice.dto.DocumentUploadResponse;
+import com.uymbot.docservice.dto.EmbeddingMigrationRequest;
+import com.uymbot.docservice.dto.MigrationStatus;
 import com.uymbot.docservice.dto.RagImportRequest;
 import com.uymbot.docservice.dto.SearchRequest;
+import com.uymbot.docservice.dto.SnapshotRestoreResponse;
 import com.uymbot.docservice.exception.DocumentNotFoundException;
+import com.uymbot.docservice.exception.InvalidSnapshotException;
+import com.uymbot.docservice.exception.MigrationConflictException;
+import com.uymbot.docservice.migration.EmbeddingMigrationService;
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
+import com.uymbot.docservice.resilience.Bulkhead;
+import com.uymbot.docservice.resilience.Bulkheads;
+import com.uymbot.docservice.resilience.Lane;
+import com.uymbot.docservice.service.DocumentExportService;
 import com.uymbot.docservice.service.DocumentService;
+import com.uymbot.docservice.service.ShardRebalanceService;
+import com.uymbot.docservice.service.SnapshotService;
+import com.uymbot.docservice.sharding.ScatterGather;
+import com.uymbot.docservice.sharding.Shard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -33,6 +67,11 @@ class DocumentControllerTest {
     @Autowired ObjectMapper objectMapper;
 
     @MockBean DocumentService documentService;
+    @MockBean DocumentExportService documentExportService;
+    @MockBean SnapshotService snapshotService;
+    @MockBean ShardRebalanceService shardRebalanceService;
+    @MockBean EmbeddingMigrationService embeddingMigrationService;
+    @MockBean Bulkheads bulkheads;
 
     private static final String ID = UUID.randomUUID().toString();
 
@@ -70,6 +109,32 @@ class DocumentControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    // ─── UPLOAD ──────────────────────────────────────────────────────────────
+
+    @Test
+    void uploadFile_usesFileNameAndPartCharset_returns201() throws Exception {
+        given(documentService.upload(eq("kilavuz.txt"), eq(Map.of("team", "ops")), any(), eq(StandardCharsets.ISO_8859_1)))
+                .willReturn(DocumentUploadResponse.builder().documentId(ID).title("kilavuz.txt").chunks(3).stored(3).build());
+
+        mockMvc.perform(multipart("/documents/upload")
+                        .file(new MockMultipartFile("file", "kilavuz.txt", "text/plain;charset=ISO-8859-1",
+                                "Kurulum adimlari".getBytes(StandardCharsets.ISO_8859_1)))
+                        .file(new MockMultipartFile("metadata", "", MediaType.APPLICATION_JSON_VALUE,
+                                "{\"team\":\"ops\"}".getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.documentId").value(ID))
+                .andExpect(jsonPath("$.chunks").value(3));
+    }
+
+    @Test
+    void uploadFile_emptyOrMissingFile_returns400() throws Exception {
+        mockMvc.perform(multipart("/documents/upload")
+                        .file(new MockMultipartFile("file", "empty.txt", "text/plain", new byte[0])))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/documents/upload").param("title", "no file"))
+                .andExpect(status().isBadRequest());
+    }
+
     // ─── LIST ────────────────────────────────────────────────────────────────
 
     @Test
@@ -144,6 +209,121 @@ class DocumentControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    // ─── EXPORT ──────────────────────────────────────────────────────────────
+
+    @Test
+    void export_streamsNdjson() throws Exception {
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(0);
+            out.write("{\"id\":\"a\"}\n{\"id\":\"b\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        }).when(documentExportService).export(any(), eq(Set.of("id", "embedding")), eq(100));
+
+        MvcResult result = mockMvc.perform(get("/documents/export")
+                        .param("fields", "id,embedding")
+                        .param("pageSize", "100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":\"a\"}\n{\"id\":\"b\"}\n"));
+    }
+
+    @Test
+    void export_unknownField_returns400() throws Exception {
+        mockMvc.perform(get("/documents/export").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ─── SNAPSHOT ────────────────────────────────────────────────────────────
+
+    @Test
+    void restoreSnapshot_passesBodyToService() throws Exception {
+        given(snapshotService.restore(any(), eq("clone"), eq(500))).willReturn(SnapshotRestoreResponse.builder()
+                .collection("clone").sourceCollection("documents").restored(42).batches(1).build());
+
+        mockMvc.perform(post("/documents/snapshot/restore")
+                        .param("collection", "clone")
+                        .param("batchSize", "500")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.restored").value(42))
+                .andExpect(jsonPath("$.collection").value("clone"));
+    }
+
+    @Test
+    void restoreSnapshot_invalidSnapshot_returns400() throws Exception {
+        given(snapshotService.restore(any(), any(), anyInt()))
+                .willThrow(new InvalidSnapshotException("Not a snapshot file"));
+
+        mockMvc.perform(post("/documents/snapshot/restore")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Not a snapshot file"));
+    }
+
+    @Test
+    void snapshot_unknownEncoding_returns400() throws Exception {
+        mockMvc.perform(get("/documents/snapshot").param("encoding", "int8"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ─── BATCH ───────────────────────────────────────────────────────────────
+
+    @Test
+    void batchGet_returnsDocumentsAndNotFound() throws Exception {
+        given(documentService.batchGet(List.of(ID, "missing"))).willReturn(BatchGetResponse.builder()
+                .documents(List.of(sampleResponse()))
+                .notFound(List.of("missing"))
+                .build());
+
+        mockMvc.perform(post("/documents/batch-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchGetRequest(List.of(ID, "missing")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documents[0].id").value(ID))
+                .andExpect(jsonPath("$.notFound[0]").value("missing"));
+    }
+
+    @Test
+    void batchGet_emptyIds_returns400() throws Exception {
+        mockMvc.perform(post("/documents/batch-get")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchGetRequest(List.of()))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchDelete_byWhere_returns200() throws Exception {
+        given(documentService.batchDelete(any())).willReturn(BatchDeleteResponse.builder()
+                .deleted(List.of(ID))
+                .notFound(List.of())
+                .build());
+
+        BatchDeleteRequest req = BatchDeleteRequest.builder().where(Map.of("source", "unit-test")).build();
+        mockMvc.perform(post("/documents/batch-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted[0]").value(ID))
+                .andExpect(jsonPath("$.selectorValid").doesNotExist());
+    }
+
+    @Test
+    void batchDelete_idsAndWhere_returns400() throws Exception {
+        BatchDeleteRequest req = new BatchDeleteRequest(List.of(ID), Map.of("source", "unit-test"));
+
+        mockMvc.perform(post("/documents/batch-delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("Exactly one of ids or where must be given"));
+    }
+
     // ─── SEARCH ──────────────────────────────────────────────────────────────
 
     @Test
@@ -158,6 +338,113 @@ class DocumentControllerTest {
                 .andExpect(jsonPath("$[0].id").value(ID));
     }
 
+    @Test
+    void searchDocuments_includesServerTimingHeader() throws Exception {
+        given(documentService.search(anyString(), anyInt())).willReturn(List.of(sampleResponse()));
+
+        SearchRequest req = new SearchRequest("test query", 3);
+        mockMvc.perform(post("/documents/search")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("total;dur=")));
+    }
+
+    @Test
+    void searchDocuments_serverTimingIncludesCallsOnShardThreads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ScatterGather scatter = new ScatterGather(pool, Duration.ofSeconds(5), new SimpleMeterRegistry());
+            StageMetrics stageMetrics = new StageMetrics(new SimpleMeterRegistry());
+            List<Shard> shards = List.of(new Shard(0, "http://a:8000", "documents"),
+                    new Shard(1, "http://b:8000", "documents"));
+            given(documentService.search(anyString(), anyInt())).willAnswer(inv -> {
+                scatter.call("query", shards, shard -> stageMetrics.time(Stage.CHROMA, "query", () -> {
+                    sleep(20);
+                    return shard.index();
+                }));
+                return List.of(sampleResponse());
+            });
+
+            mockMvc.perform(post("/documents/search")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new SearchRequest("test query", 3))))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Server-Timing", containsString("desc=\"2 calls\"")))
+                    .andExpect(header().string("Server-Timing", containsString("chroma;dur=")));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void searchDocuments_bindsNResults() throws Exception {
+        given(documentService.search("test query", 3)).willReturn(List.of(sampleResponse()));
+
+        mockMvc.perform(post("/documents/search")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"test query\", \"nResults\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(ID));
+    }
+
+    @Test
+    void searchDocuments_searchLaneFull_returns503WhileIngestRuns() throws Exception {
+        Bulkhead search = new Bulkhead(Lane.SEARCH, 1, 0, Duration.ofSeconds(2), 0, Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+        given(bulkheads.get(Lane.SEARCH)).willReturn(search);
+        given(documentService.create(any())).willReturn(List.of(sampleResponse()));
+        search.acquire();   // the one search slot is taken
+
+        mockMvc.perform(post("/documents/search")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"test query\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+        mockMvc.perform(post("/documents")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new DocumentRequest("Title", "Content", null))))
+                .andExpect(status().isCreated());
+
+        search.release();
+        mockMvc.perform(post("/documents/search")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\": \"test query\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void searchBatch_returnsResultsPerQuery() throws Exception {
+        given(documentService.searchBatch(anyList(), anyInt(), anyBoolean())).willReturn(BatchSearchResponse.builder()
+                .results(List.of(List.of(sampleResponse()), List.of())).build());
+
+        BatchSearchRequest req = BatchSearchRequest.builder().queries(List.of("first", "second")).nResults(3).build();
+        mockMvc.perform(post("/documents/search/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0][0].id").value(ID))
+                .andExpect(jsonPath("$.results[1]").isEmpty())
+                .andExpect(jsonPath("$.merged").doesNotExist());
+    }
+
+    @Test
+    void searchBatch_blankQuery_returns400() throws Exception {
+        BatchSearchRequest req = BatchSearchRequest.builder().queries(List.of("first", " ")).build();
+        mockMvc.perform(post("/documents/search/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest());
+    }
+
     // ─── HEALTH ──────────────────────────────────────────────────────────────
 
     @Test
@@ -220,4 +507,39 @@ class DocumentControllerTest {
         mockMvc.perform(post("/documents/import/rag/{ragDocumentId}", "not-a-valid-uuid"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void startMigration_returns202() throws Exception {
+        given(embeddingMigrationService.start(any())).willReturn(MigrationStatus.builder()
+                .state("RUNNING").phase("COPY").target("documents-512").targetSpec("text-embedding-3-small/512")
+                .build());
+
+        mockMvc.perform(post("/migrations/embedding")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(EmbeddingMigrationRequest.builder()
+                                .target("documents-512").dimensions(512).build())))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.targetSpec").value("text-embedding-3-small/512"));
+    }
+
+    @Test
+    void startMigration_invalidTarget_returns400() throws Exception {
+        mockMvc.perform(post("/migrations/embedding")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"target\":\"no spaces allowed\",\"dimensions\":512}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void startMigration_whileRunning_returns409() throws Exception {
+        given(embeddingMigrationService.start(any()))
+                .willThrow(new MigrationConflictException("A migration into 'documents-512' is RUNNING"));
+
+        mockMvc.perform(post("/migrations/embedding")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"target\":\"documents-256\",\"dimensions\":256}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value(containsString("documents-512")));
+    }
 }
@@ -0,0 +1,162 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.DocumentExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChromaDbService chromaDbService;
+    private DocumentExportService exportService;
+
+    /** Fake collection: list(limit, offset, include) pages over {@code rows}. */
+    private final List<String> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        chromaDbService = mock(ChromaDbService.class);
+        exportService = new DocumentExportService(new CollectionScanner(chromaDbService), objectMapper);
+        when(chromaDbService.list(anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            int limit = inv.getArgument(0);
+            int offset = inv.getArgument(1);
+            List<String> ids = rows.subList(Math.min(offset, rows.size()), Math.min(offset + limit, rows.size()));
+            return page(List.copyOf(ids));
+        });
+    }
+
+    private static Map<String, Object> page(List<String> ids) {
+        return Map.of(
+                "ids", ids,
+                "documents", ids.stream().map(id -> "content of " + id).toList(),
+                "metadatas", ids.stream().map(id -> Map.of("_title", "T-" + id, "_contentHash", "h", "k", id)).toList(),
+                "embeddings", ids.stream().map(id -> List.of(0.5, 0.25)).toList());
+    }
+
+    private List<JsonNode> export(Set<String> fields, int pageSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(out, fields, pageSize);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private void fill(int n) {
+        for (int i = 0; i < n; i++) rows.add("id-" + i);
+    }
+
+    @Test
+    void exportsEveryRowOnceAcrossPages() throws Exception {
+        fill(23);
+
+        List<JsonNode> lines = export(Set.of("id", "title", "content", "metadata"), 5);
+
+        assertThat(lines).extracting(n -> n.get("id").asText()).containsExactlyElementsOf(rows);
+        JsonNode first = lines.get(0);
+        assertThat(first.get("title").asText()).isEqualTo("T-id-0");
+        assertThat(first.get("content").asText()).isEqualTo("content of id-0");
+        assertThat(first.get("metadata").has("_title")).isFalse();
+        assertThat(first.get("metadata").has("_contentHash")).isFalse();
+        assertThat(first.has("embedding")).isFalse();
+    }
+
+    @Test
+    void projection_limitsFieldsAndIncludeList() throws Exception {
+        fill(3);
+
+        List<JsonNode> lines = export(Set.of("id", "embedding"), 10);
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0).size()).isEqualTo(2);
+        assertThat(lines.get(0).get("embedding").get(1).floatValue()).isEqualTo(0.25f);
+        verify(chromaDbService).list(10, 0, List.of("embeddings"));
+        verify(chromaDbService, never()).list(anyInt(), anyInt(), eq(List.of("documents", "metadatas")));
+    }
+
+    @Test
+    void deletionsBeforeCursor_doNotSkipRows() throws Exception {
+        fill(12);
+        List<String> expected = List.copyOf(rows);
+        // delete two already-exported rows right after the first page was read
+        when(chromaDbService.list(anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            int limit = inv.getArgument(0);
+            int offset = inv.getArgument(1);
+            List<String> ids = List.copyOf(rows.subList(Math.min(offset, rows.size()),
+                    Math.min(offset + limit, rows.size())));
+            if (offset == 0 && limit == 5 && rows.size() == 12) {
+                rows.remove("id-1");
+                rows.remove("id-2");
+            }
+            return page(ids);
+        });
+
+        List<JsonNode> lines = export(Set.of("id"), 5);
+
+        assertThat(lines).extracting(n -> n.get("id").asText()).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void cursorLost_failsInsteadOfSkippingRows() {
+        fill(10);
+        when(chromaDbService.list(anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            int limit = inv.getArgument(0);
+            int offset = inv.getArgument(1);
+            List<String> ids = List.copyOf(rows.subList(Math.min(offset, rows.size()),
+                    Math.min(offset + limit, rows.size())));
+            if (offset == 0 && rows.size() == 10) rows.clear();
+            return page(ids);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> exportService.export(out, Set.of("id"), 5))
+                .isInstanceOf(CollectionScanner.CursorLostException.class);
+        // the rows already sent are followed by a line saying the file is incomplete
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(6);
+        assertThat(lines[5]).contains("\"error\":\"cursor_lost\"").contains("\"exported\":5");
+    }
+
+    @Test
+    void lastExportedRowDeleted_resumesAfterTheRowBeforeIt() throws Exception {
+        fill(12);
+        List<String> expected = List.copyOf(rows);
+        // the last row of the first page disappears before the second page is read
+        when(chromaDbService.list(anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            int limit = inv.getArgument(0);
+            int offset = inv.getArgument(1);
+            List<String> ids = List.copyOf(rows.subList(Math.min(offset, rows.size()),
+                    Math.min(offset + limit, rows.size())));
+            if (offset == 0 && limit == 5 && rows.size() == 12) rows.remove("id-4");
+            return page(ids);
+        });
+
+        List<JsonNode> lines = export(Set.of("id"), 5);
+
+        // id-4 went out with the first page, before it was deleted
+        assertThat(lines).extracting(n -> n.get("id").asText()).containsExactlyElementsOf(expected);
+        assertThat(lines).noneMatch(n -> n.has("error"));
+    }
+}
@@ -0,0 +1,580 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.dto.BatchDeleteRequest;
+import com.uymbot.docservice.dto.BatchDeleteResponse;
+import com.uymbot.docservice.dto.BatchGetResponse;
+import com.uymbot.docservice.dto.BatchSearchResponse;
+import com.uymbot.docservice.dto.DocumentRequest;
+import com.uymbot.docservice.dto.DocumentResponse;
+import com.uymbot.docservice.dto.DocumentUpdateRequest;
+import com.uymbot.docservice.dto.DocumentUploadResponse;
+import com.uymbot.docservice.dto.RankedDocument;
+import com.uymbot.docservice.exception.DocumentNotFoundException;
+import com.uymbot.docservice.exception.InvalidUploadException;
+import com.uymbot.docservice.observability.StageMetrics;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.resilience.SingleFlight;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.DocumentCache;
+import com.uymbot.docservice.service.DocumentService;
+import com.uymbot.docservice.service.EmbeddingService;
+import com.uymbot.docservice.service.NearDuplicateIndex;
+import com.uymbot.docservice.service.RagClient;
+import com.uymbot.docservice.service.SearchCache;
+import com.uymbot.docservice.service.TextChunkingService;
+import com.uymbot.docservice.writebuffer.ChromaWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceTest {
+
+    private ChromaDbService chromaDbService;
+    private EmbeddingService embeddingService;
+    private SimpleMeterRegistry registry;
+    private DocumentService service;
+
+    @BeforeEach
+    void setUp() {
+        chromaDbService = mock(ChromaDbService.class);
+        embeddingService = mock(EmbeddingService.class);
+        registry = new SimpleMeterRegistry();
+        service = service("off");
+
+        when(embeddingService.embed(anyString())).thenReturn(new float[]{0.1f, 0.2f});
+    }
+
+    private DocumentService service(String dedupMode) {
+        TextChunkingService chunking = new TextChunkingService();
+        ReflectionTestUtils.setField(chunking, "chunkSizeTokens", 1000);
+        ChromaWriteBuffer writeBuffer = new ChromaWriteBuffer(chromaDbService, registry);
+        return new DocumentService(chromaDbService, embeddingService, mock(RagClient.class), chunking,
+                new StageMetrics(registry), new SingleFlight(registry, true),
+                new DocumentCache(100, Duration.ofMinutes(10), registry),
+                writeBuffer,
+                new SearchCache(true, 100, Duration.ofMinutes(5), 0.95, 0.01, registry),
+                new NearDuplicateIndex(chromaDbService, writeBuffer, mock(CollectionScanner.class), dedupMode,
+                        0.8, 20, 100, false, registry));
+    }
+
+    private static Map<String, Object> chromaGet(String id, String title, String content) {
+        return Map.of(
+                "ids", List.of(id),
+                "documents", List.of(content),
+                "metadatas", List.of(Map.of("_title", title, "chunkIndex", 0, "totalChunks", 1)));
+    }
+
+    @Test
+    void getById_secondReadIsServedFromCache() {
+        when(chromaDbService.getById("id-1")).thenReturn(Optional.of(chromaGet("id-1", "Title", "Body")));
+
+        DocumentResponse first = service.getById("id-1");
+        DocumentResponse second = service.getById("id-1");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(second.getTitle()).isEqualTo("Title");
+        verify(chromaDbService, times(1)).getById("id-1");
+        assertThat(registry.get("cache.gets").tag("cache", "documents").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getById_missingDocumentIsNotCached() {
+        when(chromaDbService.getById("missing")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.getById("missing")).isInstanceOf(DocumentNotFoundException.class);
+        assertThatThrownBy(() -> service.getById("missing")).isInstanceOf(DocumentNotFoundException.class);
+
+        verify(chromaDbService, times(2)).getById("missing");
+    }
+
+    @Test
+    void create_populatesCache() {
+        List<DocumentResponse> created = service.create(DocumentRequest.builder()
+                .title("Title").content("Some content").build());
+
+        DocumentResponse read = service.getById(created.get(0).getId());
+
+        assertThat(read.getContent()).isEqualTo("Some content");
+        verify(chromaDbService, never()).getById(anyString());
+    }
+
+    private static final String MANUAL_V1 = "Yedekleme servisini durdurmak icin once yonetim paneline girin, "
+            + "sonra servisler sekmesinden yedekleme satirini secip durdur dugmesine basin.";
+    private static final String MANUAL_V2 = "Yedekleme servisini durdurmak icin once yonetim paneline girin, "
+            + "sonra servisler sekmesinden yedekleme satirini secip durdur dugmesine tiklayin.";
+
+    private void storedChunk(String id, String content, Map<String, Object> metadata, List<Float> embedding) {
+        doReturn(Map.of("ids", List.of(id), "documents", List.of(content), "metadatas", List.of(metadata),
+                "embeddings", List.of(embedding)))
+                .when(chromaDbService).getConsistent(any(), eq(List.of(id)), any());
+    }
+
+    @Test
+    void create_nearDuplicateChunk_isSkippedInSkipMode() {
+        DocumentService skipping = service("skip");
+        String original = skipping.create(DocumentRequest.builder().title("v1").content(MANUAL_V1).build())
+                .get(0).getId();
+        storedChunk(original, MANUAL_V1, Map.of("_title", "v1"), List.of(0.1f, 0.2f));
+
+        DocumentResponse duplicate = skipping.create(DocumentRequest.builder().title("v2").content(MANUAL_V2).build())
+                .get(0);
+
+        assertThat(duplicate.getId()).isEqualTo(original);
+        assertThat(duplicate.getTitle()).isEqualTo("v1");
+        assertThat(duplicate.getContent()).isEqualTo(MANUAL_V1);
+        assertThat(duplicate.getMetadata()).doesNotContainKey(NearDuplicateIndex.DUPLICATE_OF_KEY);
+        verify(embeddingService, times(1)).embed(anyString());
+        verify(chromaDbService, times(1)).add(anyString(), anyString(), any(), any());
+        assertThat(registry.get("docservice.dedup.chunks").tag("result", "skipped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void create_nearDuplicateChunk_isStoredWithTheOriginalsEmbeddingInLinkMode() {
+        DocumentService linking = service("link");
+        String original = linking.create(DocumentRequest.builder().title("v1").content(MANUAL_V1).build())
+                .get(0).getId();
+        storedChunk(original, MANUAL_V1, Map.of("_title", "v1"), List.of(0.5f, 0.25f));
+
+        DocumentResponse linked = linking.create(DocumentRequest.builder().title("v2").content(MANUAL_V2).build())
+                .get(0);
+
+        assertThat(linked.getId()).isNotEqualTo(original);
+        assertThat(linked.getMetadata()).containsEntry(NearDuplicateIndex.DUPLICATE_OF_KEY, original);
+        verify(embeddingService, times(1)).embed(anyString());
+        verify(chromaDbService).add(eq(linked.getId()), eq(MANUAL_V2),
+                argThat(meta -> original.equals(meta.get(NearDuplicateIndex.DUPLICATE_OF_KEY))),
+                argThat(embedding -> embedding[0] == 0.5f && embedding[1] == 0.25f));
+    }
+
+    @Test
+    void create_duplicateChunksOfTheSameDocument_areSkippedBeforeTheyAreIndexed() {
+        DocumentService skipping = service("skip");
+        String paragraph = "Satir satir okunan uzun bir belge paragrafi. ".repeat(70);   // ~3100 chars, one chunk
+
+        List<DocumentResponse> responses = skipping.create(DocumentRequest.builder()
+                .title("manual").content(paragraph + "\n\n" + paragraph).build());
+
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(1).getId()).isEqualTo(responses.get(0).getId());
+        verify(embeddingService, times(1)).embed(anyString());
+        verify(chromaDbService, times(1)).add(anyString(), anyString(), any(), any());
+        verify(chromaDbService, never()).getConsistent(any(), any(), any());
+        assertThat(registry.get("docservice.dedup.chunks").tag("result", "skipped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void create_candidateChangedSinceIndexing_isEmbedded() {
+        DocumentService skipping = service("skip");
+        String original = skipping.create(DocumentRequest.builder().title("v1").content(MANUAL_V1).build())
+                .get(0).getId();
+        storedChunk(original, "Bambaska bir metin, artik yedekleme ile ilgisi olmayan bir paragraf.",
+                Map.of("_title", "v1"), List.of(0.1f, 0.2f));
+
+        DocumentResponse created = skipping.create(DocumentRequest.builder().title("v2").content(MANUAL_V2).build())
+                .get(0);
+
+        assertThat(created.getId()).isNotEqualTo(original);
+        assertThat(created.getMetadata()).doesNotContainKey(NearDuplicateIndex.DUPLICATE_OF_KEY);
+        verify(embeddingService, times(2)).embed(anyString());
+        assertThat(registry.get("docservice.dedup.candidates.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void upload_embedsAndStoresTheFileInBatches() throws IOException {
+        ReflectionTestUtils.setField(service, "uploadBatchSize", 2);
+        when(embeddingService.embedAll(any(), eq(Priority.BULK))).thenAnswer(call ->
+                ((List<?>) call.getArgument(0)).stream().map(text -> new float[]{0.1f, 0.2f}).toList());
+        String paragraph = "Satir satir okunan uzun bir belge paragrafi. ".repeat(70);   // ~3100 chars, one chunk
+        String file = String.join("\n\n", paragraph, paragraph, paragraph, paragraph, paragraph);
+
+        DocumentUploadResponse response = service.upload("manual.txt", Map.of("team", "ops"),
+                new ByteArrayResource(file.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+
+        assertThat(response.getChunks()).isEqualTo(5);
+        assertThat(response.getStored()).isEqualTo(5);
+        assertThat(response.getBytes()).isEqualTo(file.length());
+        verify(embeddingService, times(3)).embedAll(any(), eq(Priority.BULK));
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            verify(chromaDbService).add(eq(response.getDocumentId() + ":" + i), eq(paragraph.strip()),
+                    argThat(meta -> meta.get("chunkIndex").equals(index) && meta.get("totalChunks").equals(5)
+                            && "ops".equals(meta.get("team")) && "manual.txt".equals(meta.get("_title"))),
+                    any());
+        }
+        assertThat(registry.get("docservice.ingest.chunks").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void upload_duplicateChunksInTheSameAndTheWrittenBatch_areLinkedBeforeTheyAreIndexed() throws IOException {
+        DocumentService linking = service("link");
+        ReflectionTestUtils.setField(linking, "uploadBatchSize", 2);
+        when(embeddingService.embedAll(any(), eq(Priority.BULK))).thenAnswer(call ->
+                ((List<?>) call.getArgument(0)).stream().map(text -> new float[]{0.5f, 0.25f}).toList());
+        String paragraph = "Satir satir okunan uzun bir belge paragrafi. ".repeat(70);
+        String file = String.join("\n\n", paragraph, paragraph, paragraph);
+
+        DocumentUploadResponse response = linking.upload("manual.txt", null,
+                new ByteArrayResource(file.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+
+        String original = response.getDocumentId() + ":0";
+        assertThat(response.getStored()).isEqualTo(3);
+        assertThat(response.getLinked()).isEqualTo(2);
+        verify(embeddingService).embedAll(eq(List.of(paragraph.strip())), eq(Priority.BULK));
+        verify(embeddingService).embedAll(eq(List.of()), eq(Priority.BULK));
+        for (String linked : List.of(response.getDocumentId() + ":1", response.getDocumentId() + ":2")) {
+            verify(chromaDbService).add(eq(linked), anyString(),
+                    argThat(meta -> original.equals(meta.get(NearDuplicateIndex.DUPLICATE_OF_KEY))),
+                    argThat(embedding -> embedding[0] == 0.5f && embedding[1] == 0.25f));
+        }
+        verify(chromaDbService, never()).getConsistent(any(), any(), any());
+    }
+
+    @Test
+    void upload_failingBatch_deletesTheChunksAlreadyStored() {
+        ReflectionTestUtils.setField(service, "uploadBatchSize", 2);
+        when(embeddingService.embedAll(any(), eq(Priority.BULK)))
+                .thenReturn(List.of(new float[]{0.1f}, new float[]{0.2f}))
+                .thenThrow(new IllegalStateException("embedding API down"));
+        String paragraph = "Satir satir okunan uzun bir belge paragrafi. ".repeat(70);
+        String file = String.join("\n\n", paragraph, paragraph, paragraph);
+
+        assertThatThrownBy(() -> service.upload("manual.txt", null,
+                new ByteArrayResource(file.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8))
+                .hasMessageContaining("embedding API down");
+
+        verify(chromaDbService, times(2)).add(anyString(), anyString(), any(), any());
+        verify(chromaDbService).deleteAll(argThat(ids -> ids.size() == 2
+                && ids.stream().allMatch(id -> id.endsWith(":0") || id.endsWith(":1"))));
+    }
+
+    @Test
+    void upload_fileWithoutText_isRejected() {
+        assertThatThrownBy(() -> service.upload("blank.txt", null,
+                new ByteArrayResource(" \n\n \t".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8))
+                .isInstanceOf(InvalidUploadException.class);
+        verify(chromaDbService, never()).add(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void update_cachedDocument_readsTheStoredChunkAndInvalidates() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Old content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Old content")));
+
+        service.update(id, DocumentUpdateRequest.builder().content("New content").build());
+        verify(chromaDbService).getById(id);
+        verify(chromaDbService).update(eq(id), eq("New content"), any(), any());
+
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "New content")));
+        assertThat(service.getById(id).getContent()).isEqualTo("New content");
+        verify(chromaDbService, times(2)).getById(id);
+    }
+
+    @Test
+    void update_contentReplacedByAnotherInstance_isNotTakenForUnchanged() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Content X").build()).get(0).getId();
+        // another instance has stored Y since; this one still caches X
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Content Y")));
+
+        DocumentResponse updated = service.update(id, DocumentUpdateRequest.builder().content("Content X").build());
+
+        assertThat(updated.getContent()).isEqualTo("Content X");
+        verify(chromaDbService).update(eq(id), eq("Content X"), any(), any());
+        verify(chromaDbService, never()).updateMetadata(anyString(), any());
+    }
+
+    @Test
+    void delete_cachedDocument_confirmsExistenceAndInvalidates() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Content")));
+
+        service.delete(id);
+        verify(chromaDbService).getById(id);
+        verify(chromaDbService).delete(id);
+
+        when(chromaDbService.getById(id)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> service.getById(id)).isInstanceOf(DocumentNotFoundException.class);
+    }
+
+    @Test
+    void delete_cachedDocumentDeletedElsewhere_throwsNotFoundAndInvalidates() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.delete(id)).isInstanceOf(DocumentNotFoundException.class);
+        verify(chromaDbService, never()).delete(anyString());
+        assertThatThrownBy(() -> service.getById(id)).isInstanceOf(DocumentNotFoundException.class);
+    }
+
+    @Test
+    void update_cachedDocumentDeletedElsewhere_throwsNotFoundAndInvalidates() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.update(id, DocumentUpdateRequest.builder().title("Renamed").build()))
+                .isInstanceOf(DocumentNotFoundException.class);
+        verify(chromaDbService, never()).updateMetadata(anyString(), any());
+        assertThatThrownBy(() -> service.getById(id)).isInstanceOf(DocumentNotFoundException.class);
+        verify(chromaDbService, times(2)).getById(id);
+    }
+
+    @Test
+    void listAll_doesNotFillTheCache() {
+        doReturn(chromaGet("id-1", "Title", "Listed")).when(chromaDbService).list(10, 0);
+        assertThat(service.listAll(10, 0)).extracting(DocumentResponse::getContent).containsExactly("Listed");
+
+        when(chromaDbService.getById("id-1")).thenReturn(Optional.of(chromaGet("id-1", "Title", "Updated")));
+        assertThat(service.getById("id-1").getContent()).isEqualTo("Updated");
+    }
+
+    @Test
+    void delete_uncachedMissingDocument_throwsNotFound() {
+        when(chromaDbService.getById("missing")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.delete("missing")).isInstanceOf(DocumentNotFoundException.class);
+        verify(chromaDbService, never()).delete(anyString());
+    }
+
+    @Test
+    void update_titleOnly_sendsMetadataWithoutEmbedding() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Old title").content("Content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Old title", "Content")));
+
+        DocumentResponse updated = service.update(id, DocumentUpdateRequest.builder().title("New title").build());
+
+        assertThat(updated.getTitle()).isEqualTo("New title");
+        assertThat(updated.getContent()).isEqualTo("Content");
+        verify(embeddingService, times(1)).embed(anyString());   // create only
+        verify(chromaDbService).updateMetadata(eq(id), argThat(meta ->
+                "New title".equals(meta.get("_title")) && meta.get("_contentHash") != null));
+        verify(chromaDbService, never()).update(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void update_identicalContent_isMetadataOnly() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Content").build()).get(0).getId();
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Content")));
+
+        service.update(id, DocumentUpdateRequest.builder()
+                .content("Content").metadata(Map.of("tag", "x")).build());
+
+        verify(embeddingService, times(1)).embed(anyString());
+        verify(chromaDbService).updateMetadata(eq(id), argThat(meta -> "x".equals(meta.get("tag"))));
+    }
+
+    @Test
+    void update_legacyChunkWithoutStoredHash_comparesContent() {
+        when(chromaDbService.getById("legacy")).thenReturn(Optional.of(chromaGet("legacy", "Title", "Body")));
+
+        service.update("legacy", DocumentUpdateRequest.builder().content("Body").title("Renamed").build());
+
+        verify(embeddingService, never()).embed(anyString());
+        verify(chromaDbService).updateMetadata(eq("legacy"), argThat(meta -> meta.get("_contentHash") != null));
+    }
+
+    @Test
+    void update_oversizedContent_isSplitIntoParts() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Short").build()).get(0).getId();
+        // chunk size is 1000 tokens ≈ 4000 chars
+        String longContent = "This sentence is part of a long paragraph. ".repeat(250);
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Short")));
+
+        DocumentResponse updated = service.update(id, DocumentUpdateRequest.builder().content(longContent).build());
+
+        int parts = (Integer) updated.getMetadata().get("chunkParts");
+        assertThat(parts).isGreaterThan(1);
+        assertThat(updated.getId()).isEqualTo(id);
+        assertThat(updated.getMetadata()).containsEntry("chunkPart", 0);
+        assertThat(updated.getContent().length()).isLessThanOrEqualTo(4000);
+        verify(chromaDbService).update(eq(id), anyString(), any(), any());
+        // one add from create plus one per additional part
+        verify(chromaDbService, times(parts)).add(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void update_splitAgain_replacesThePartsOfThePreviousSplit() {
+        String id = service.create(DocumentRequest.builder()
+                .title("Title").content("Short").build()).get(0).getId();
+        String longContent = "This sentence is part of a long paragraph. ".repeat(250);
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", "Short")));
+
+        DocumentResponse first = service.update(id, DocumentUpdateRequest.builder().content(longContent).build());
+        List<String> firstParts = first.getParts().stream().map(DocumentResponse::getId).toList();
+        assertThat(firstParts).hasSize((Integer) first.getMetadata().get("chunkParts") - 1);
+        assertThat(first.getParts()).allSatisfy(part -> {
+            assertThat(part.getId()).startsWith(id.substring(0, id.indexOf(':') + 1));
+            assertThat(part.getMetadata()).containsEntry("partOf", id);
+        });
+        verify(chromaDbService).deleteAll(List.of());
+
+        when(chromaDbService.getById(id)).thenReturn(Optional.of(chromaGet(id, "Title", first.getContent())));
+        when(chromaDbService.findIds(null, Map.of("partOf", id))).thenReturn(firstParts);
+        DocumentResponse second = service.update(id, DocumentUpdateRequest.builder()
+                .content(longContent.replace("long", "longer")).build());
+
+        verify(chromaDbService).deleteAll(firstParts);
+        assertThat(second.getParts()).extracting(DocumentResponse::getId).doesNotContainAnyElementsOf(firstParts);
+        assertThat(second.getMetadata()).doesNotContainKey("partOf");
+    }
+
+    @Test
+    void update_ofAPart_keepsItsLinkWhenMetadataIsReplaced() {
+        Map<String, Object> stored = Map.of("_title", "Title", "partOf", "doc:0", "chunkPart", 1, "chunkParts", 2);
+        when(chromaDbService.getById("doc:x")).thenReturn(Optional.of(Map.of(
+                "ids", List.of("doc:x"), "documents", List.of("Body"), "metadatas", List.of(stored))));
+
+        DocumentResponse updated = service.update("doc:x", DocumentUpdateRequest.builder()
+                .content("New body").metadata(Map.of("tag", "x", "partOf", "elsewhere")).build());
+
+        assertThat(updated.getMetadata()).containsEntry("partOf", "doc:0").containsEntry("tag", "x");
+        verify(chromaDbService).update(eq("doc:x"), eq("New body"),
+                argThat(meta -> "doc:0".equals(meta.get("partOf"))), any());
+    }
+
+    @Test
+    void batchGet_servesCachedIdsAndFetchesTheRestInOneCall() {
+        String cachedId = service.create(DocumentRequest.builder()
+                .title("Cached").content("Cached content").build()).get(0).getId();
+        doReturn(chromaGet("id-2", "Second", "Second content"))
+                .when(chromaDbService).getByIds(List.of("id-2", "missing"));
+
+        BatchGetResponse response = service.batchGet(List.of(cachedId, "id-2", "missing", cachedId));
+
+        assertThat(response.getDocuments()).extracting(DocumentResponse::getId).containsExactly(cachedId, "id-2");
+        assertThat(response.getNotFound()).containsExactly("missing");
+        verify(chromaDbService, times(1)).getByIds(any());
+    }
+
+    @Test
+    void batchDelete_byIds_reportsMissingIdsAndDeletesInOneCall() {
+        String cachedId = service.create(DocumentRequest.builder()
+                .title("Cached").content("Cached content").build()).get(0).getId();
+        String goneId = service.create(DocumentRequest.builder()
+                .title("Gone").content("Deleted elsewhere").build()).get(0).getId();
+        when(chromaDbService.findIds(List.of(cachedId, goneId, "id-2", "missing"), null))
+                .thenReturn(List.of(cachedId, "id-2"));
+
+        BatchDeleteResponse response = service.batchDelete(BatchDeleteRequest.builder()
+                .ids(List.of(cachedId, goneId, "id-2", "missing")).build());
+
+        assertThat(response.getDeleted()).containsExactly(cachedId, "id-2");
+        assertThat(response.getNotFound()).containsExactly(goneId, "missing");
+        verify(chromaDbService).deleteAll(List.of(cachedId, "id-2"));
+
+        when(chromaDbService.getById(cachedId)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> service.getById(cachedId)).isInstanceOf(DocumentNotFoundException.class);
+    }
+
+    private static Map<String, Object> queryAnswer(String... ids) {
+        return Map.of(
+                "ids", List.of(List.of(ids)),
+                "documents", List.of(List.of(ids).stream().map(id -> "content " + id).toList()),
+                "metadatas", List.of(List.of(ids).stream().map(id -> Map.<String, Object>of("_title", id)).toList()));
+    }
+
+    @Test
+    void search_similarQuery_isAnsweredFromTheCacheUntilAWrite() {
+        when(chromaDbService.count()).thenReturn(10);
+        when(embeddingService.embed("python dili", Priority.INTERACTIVE)).thenReturn(new float[]{1f, 0f});
+        when(embeddingService.embed("python dilini", Priority.INTERACTIVE)).thenReturn(new float[]{0.99f, 0.1f});
+        doReturn(queryAnswer("a", "b")).when(chromaDbService).query(any(), eq(2));
+
+        assertThat(service.search("python dili", 2)).extracting(DocumentResponse::getId).containsExactly("a", "b");
+        assertThat(service.search(" python  dili ", 2)).extracting(DocumentResponse::getId).containsExactly("a", "b");
+        assertThat(service.search("python dilini", 2)).extracting(DocumentResponse::getId).containsExactly("a", "b");
+        verify(embeddingService, times(1)).embed("python dili", Priority.INTERACTIVE);
+        verify(chromaDbService, times(1)).query(any(), eq(2));
+
+        when(chromaDbService.writeGeneration()).thenReturn(1L);
+        service.search("python dilini", 2);
+        verify(chromaDbService, times(2)).query(any(), eq(2));
+    }
+
+    @Test
+    void search_withAFallbackEmbedding_isNotCached() {
+        when(chromaDbService.count()).thenReturn(10);
+        when(embeddingService.embed("python", Priority.INTERACTIVE)).thenReturn(new float[]{1f, 0f});
+        when(embeddingService.fallbacks()).thenReturn(0L, 1L, 1L, 1L);
+        doReturn(queryAnswer("x")).when(chromaDbService).query(any(), eq(1));
+
+        service.search("python", 1);
+        service.search("python", 1);
+
+        verify(chromaDbService, times(2)).query(any(), eq(1));
+    }
+
+    @Test
+    void searchBatch_embedsAndQueriesOnceForAllQueries() {
+        when(embeddingService.embedAll(List.of("first", "second"), Priority.INTERACTIVE))
+                .thenReturn(List.of(new float[]{1f}, new float[]{2f}));
+        doReturn(List.of(queryAnswer("a", "b"), queryAnswer("c", "a")))
+                .when(chromaDbService).queryAll(any(), eq(3));
+
+        BatchSearchResponse response = service.searchBatch(List.of("first", "second", " first "), 3, true);
+
+        assertThat(response.getResults()).hasSize(3);
+        assertThat(response.getResults().get(0)).extracting(DocumentResponse::getId).containsExactly("a", "b");
+        assertThat(response.getResults().get(1)).extracting(DocumentResponse::getId).containsExactly("c", "a");
+        assertThat(response.getResults().get(2)).isEqualTo(response.getResults().get(0));
+        // "a" is found by both queries, so it outranks the first places of single queries
+        assertThat(response.getMerged()).extracting(RankedDocument::getId).containsExactly("a", "c", "b");
+        assertThat(response.getMerged().get(0).getMatches()).isEqualTo(2);
+        verify(embeddingService, times(1)).embedAll(any(), any());
+        verify(chromaDbService, times(1)).queryAll(any(), eq(3));
+        verify(chromaDbService, never()).count();
+    }
+
+    @Test
+    void searchBatch_withoutMerge_hasNoMergedRanking() {
+        when(embeddingService.embedAll(List.of("only"), Priority.INTERACTIVE)).thenReturn(List.of(new float[]{1f}));
+        doReturn(List.of(queryAnswer("a"))).when(chromaDbService).queryAll(any(), eq(5));
+
+        BatchSearchResponse response = service.searchBatch(List.of("only"), 5, false);
+
+        assertThat(response.getResults().get(0)).extracting(DocumentResponse::getId).containsExactly("a");
+        assertThat(response.getMerged()).isNull();
+    }
+
+    @Test
+    void batchDelete_byWhere_deletesMatchingIds() {
+        Map<String, Object> where = Map.of("ragDocumentId", "rag-1");
+        when(chromaDbService.findIds(null, where)).thenReturn(List.of("a", "b"));
+
+        BatchDeleteResponse response = service.batchDelete(BatchDeleteRequest.builder().where(where).build());
+
+        assertThat(response.getDeleted()).containsExactly("a", "b");
+        assertThat(response.getNotFound()).isEmpty();
+        verify(chromaDbService).deleteAll(List.of("a", "b"));
+    }
+}
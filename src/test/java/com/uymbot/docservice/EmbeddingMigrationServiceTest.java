@@ -0,0 +1,216 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.EmbeddingMigrationRequest;
+import com.uymbot.docservice.dto.MigrationStatus;
+import com.uymbot.docservice.exception.MigrationConflictException;
+import com.uymbot.docservice.migration.EmbeddingMigrationService;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.EmbeddingService;
+import com.uymbot.docservice.service.EmbeddingSpec;
+import com.uymbot.docservice.service.ShadowCollection;
+import com.uymbot.docservice.sharding.Shard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmbeddingMigrationServiceTest {
+
+    private static final EmbeddingSpec SOURCE_SPEC = new EmbeddingSpec("text-embedding-3-small", 0);
+    private static final EmbeddingSpec TARGET_SPEC = new EmbeddingSpec("text-embedding-3-small", 4);
+
+    private final Shard shard = new Shard(0, "http://chroma:8000", "documents");
+    private final Shard targetShard = new Shard(0, "http://chroma:8000", "documents-4");
+    /** In-memory collections: id → (document, metadata), in insertion order. */
+    private final LinkedHashMap<String, Row> source = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Row> target = new LinkedHashMap<>();
+    private final AtomicReference<ShadowCollection> shadow = new AtomicReference<>();
+
+    private ChromaDbService chromaDbService;
+    private EmbeddingService embeddingService;
+    private EmbeddingMigrationService service;
+
+    private record Row(String document, Map<String, Object> metadata) {
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        for (int i = 0; i < 250; i++) source.put("chunk-" + i, new Row("content " + i, Map.of("n", i)));
+
+        chromaDbService = mock(ChromaDbService.class);
+        embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.spec()).thenReturn(SOURCE_SPEC);
+        when(embeddingService.embed(anyString(), eq(Priority.BULK), eq(TARGET_SPEC)))
+                .thenReturn(new float[]{0.1f, 0.2f, 0.3f, 0.4f});
+
+        when(chromaDbService.shards()).thenReturn(List.of(shard));
+        when(chromaDbService.shadow()).thenAnswer(inv -> shadow.get());
+        when(chromaDbService.startShadow(anyString(), any())).thenAnswer(inv -> {
+            ShadowCollection started = new ShadowCollection(inv.getArgument(0), inv.getArgument(1),
+                    Map.of(0, targetShard), Map.of(0, "target-id"));
+            shadow.set(started);
+            return started;
+        });
+        when(chromaDbService.listConsistent(eq(shard), anyInt(), anyInt(), anyList()))
+                .thenAnswer(inv -> page(source, inv.getArgument(1), inv.getArgument(2)));
+        when(chromaDbService.listShadow(eq(shard), anyInt(), anyInt(), anyList()))
+                .thenAnswer(inv -> page(target, inv.getArgument(1), inv.getArgument(2)));
+        when(chromaDbService.getShadow(eq(shard), anyList(), anyList()))
+                .thenAnswer(inv -> rows(target, inv.getArgument(1)));
+        when(chromaDbService.getConsistent(eq(shard), anyList(), anyList()))
+                .thenAnswer(inv -> rows(source, inv.getArgument(1)));
+        when(chromaDbService.copyToShadow(eq(shard), anyLong(), anyList(), anyList(), anyList(), anyList()))
+                .thenAnswer(inv -> {
+                    List<String> ids = inv.getArgument(2);
+                    List<String> documents = inv.getArgument(3);
+                    List<Map<String, Object>> metadatas = inv.getArgument(4);
+                    for (int i = 0; i < ids.size(); i++) {
+                        target.put(ids.get(i), new Row(documents.get(i), metadatas.get(i)));
+                    }
+                    return ids.size();
+                });
+        when(chromaDbService.deleteFromShadow(eq(shard), anyLong(), anyList())).thenAnswer(inv -> {
+            List<String> ids = inv.getArgument(2);
+            ids.forEach(target::remove);
+            return ids.size();
+        });
+        doAnswer(inv -> {
+            ((Runnable) inv.getArgument(2)).run();
+            shadow.set(null);
+            return null;
+        }).when(chromaDbService).switchToShadow(any(Duration.class), anyInt(), any(Runnable.class));
+
+        service = new EmbeddingMigrationService(chromaDbService, new CollectionScanner(chromaDbService),
+                embeddingService, new ObjectMapper(), true, 100_000, 100, Duration.ofSeconds(10),
+                Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (shadow.get() != null && !service.status().getState().equals("SWITCHED")) service.abort();
+    }
+
+    private static Map<String, Object> page(LinkedHashMap<String, Row> rows, int limit, int offset) {
+        List<String> ids = new ArrayList<>(rows.keySet());
+        return columns(rows, ids.subList(Math.min(offset, ids.size()), Math.min(offset + limit, ids.size())));
+    }
+
+    private static Map<String, Object> rows(LinkedHashMap<String, Row> rows, List<String> ids) {
+        return columns(rows, ids.stream().filter(rows::containsKey).toList());
+    }
+
+    private static Map<String, Object> columns(LinkedHashMap<String, Row> rows, List<String> ids) {
+        return Map.of(
+                "ids", List.copyOf(ids),
+                "documents", ids.stream().map(id -> rows.get(id).document()).toList(),
+                "metadatas", ids.stream().map(id -> rows.get(id).metadata()).toList());
+    }
+
+    private MigrationStatus awaitState(String state) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        MigrationStatus status = service.status();
+        while (!status.getState().equals(state) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = service.status();
+        }
+        assertThat(status.getState()).as("state, error: %s", status.getError()).isEqualTo(state);
+        return status;
+    }
+
+    private static EmbeddingMigrationRequest request(boolean switchWhenDone) {
+        return EmbeddingMigrationRequest.builder()
+                .target("documents-4").dimensions(4).pageSize(40).switchWhenDone(switchWhenDone).build();
+    }
+
+    @Test
+    void copiesEveryChunkThenSwitches() throws Exception {
+        service.start(request(true));
+
+        MigrationStatus status = awaitState("SWITCHED");
+
+        assertThat(target.keySet()).containsExactlyElementsOf(source.keySet());
+        assertThat(status.getCopied()).isEqualTo(250);
+        // the verify pass finds everything up to date
+        assertThat(status.getUnchanged()).isEqualTo(250);
+        verify(embeddingService, times(250)).embed(anyString(), eq(Priority.BULK), eq(TARGET_SPEC));
+        verify(chromaDbService).switchToShadow(any(Duration.class), eq(4), any(Runnable.class));
+    }
+
+    @Test
+    void chunksAlreadyInTheTarget_areNotEmbeddedAgain() throws Exception {
+        // as left behind by an interrupted run
+        source.entrySet().stream().limit(100).forEach(e -> target.put(e.getKey(), e.getValue()));
+        target.put("chunk-5", new Row("stale content", Map.of("n", 5)));
+
+        service.start(request(true));
+        MigrationStatus status = awaitState("SWITCHED");
+
+        assertThat(status.getCopied()).isEqualTo(151);
+        assertThat(target.get("chunk-5").document()).isEqualTo("content 5");
+        verify(embeddingService, times(151)).embed(anyString(), eq(Priority.BULK), eq(TARGET_SPEC));
+    }
+
+    @Test
+    void chunksDeletedFromTheSource_areSweptFromTheTarget() throws Exception {
+        target.put("deleted-1", new Row("gone", Map.of()));
+        target.put("deleted-2", new Row("gone", Map.of()));
+
+        service.start(request(false));
+        MigrationStatus status = awaitState("READY");
+
+        assertThat(target).doesNotContainKeys("deleted-1", "deleted-2");
+        assertThat(status.getRemoved()).isEqualTo(2);
+        verify(chromaDbService, never()).switchToShadow(any(Duration.class), anyInt(), any(Runnable.class));
+
+        service.switchNow();
+        awaitState("SWITCHED");
+    }
+
+    @Test
+    void dirtyChunks_areCopiedAgainBeforeTheSwitch() throws Exception {
+        service.start(request(false));
+        awaitState("READY");
+        // a mirrored write failed after its chunk was copied
+        source.put("chunk-7", new Row("edited", Map.of("n", 7)));
+        shadow.get().markDirty(List.of("chunk-7"));
+
+        service.switchNow();
+        awaitState("SWITCHED");
+
+        assertThat(target.get("chunk-7").document()).isEqualTo("edited");
+    }
+
+    @Test
+    void start_sameSpecAsInUse_isRejected() {
+        assertThatThrownBy(() -> service.start(EmbeddingMigrationRequest.builder()
+                .target("documents-copy").build()))
+                .isInstanceOf(MigrationConflictException.class);
+        verify(chromaDbService, never()).startShadow(anyString(), any());
+    }
+}
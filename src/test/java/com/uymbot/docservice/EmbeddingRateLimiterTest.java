@@ -0,0 +1,114 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.resilience.EmbeddingRateLimiter;
+import com.uymbot.docservice.resilience.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingRateLimiterTest {
+
+    private static EmbeddingRateLimiter limiter(int rpm, int tpm, Duration maxWait) {
+        return new EmbeddingRateLimiter(rpm, tpm, maxWait,
+                Duration.ofMillis(100), Duration.ofSeconds(2), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void acquire_withinBudget_doesNotBlock() {
+        EmbeddingRateLimiter limiter = limiter(60, 10_000, Duration.ofMillis(50));
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(Priority.BULK, 100);
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(50));
+    }
+
+    @Test
+    void acquire_requestBudgetExhausted_failsAfterMaxWait() {
+        // 2 requests per minute → the third one would wait ~30 s
+        EmbeddingRateLimiter limiter = limiter(2, 10_000, Duration.ofMillis(100));
+        limiter.acquire(Priority.BULK, 1);
+        limiter.acquire(Priority.BULK, 1);
+
+        assertThatThrownBy(() -> limiter.acquire(Priority.BULK, 1))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void acquire_tokenBudgetExhausted_failsAfterMaxWait() {
+        EmbeddingRateLimiter limiter = limiter(1000, 1_000, Duration.ofMillis(100));
+        limiter.acquire(Priority.BULK, 900);
+
+        assertThatThrownBy(() -> limiter.acquire(Priority.BULK, 500))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void rateLimitedResponse_pausesCallersForRetryAfter() {
+        EmbeddingRateLimiter limiter = limiter(6000, 1_000_000, Duration.ofSeconds(5));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        Duration pause = limiter.onRateLimited(headers, 0);
+        long start = System.nanoTime();
+        limiter.acquire(Priority.INTERACTIVE, 1);
+
+        assertThat(pause).isEqualTo(Duration.ofSeconds(1));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(800));
+    }
+
+    @Test
+    void remainingHeaders_shrinkLocalBudget() {
+        EmbeddingRateLimiter limiter = limiter(6000, 1_000_000, Duration.ofMillis(50));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("x-ratelimit-remaining-requests", "0");
+        headers.set("x-ratelimit-reset-requests", "2s");
+        limiter.onSuccess(headers);
+
+        assertThatThrownBy(() -> limiter.acquire(Priority.BULK, 1))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void interactiveCallers_goBeforeWaitingBulkCallers() throws Exception {
+        // 600 rpm → one request every 100 ms once the burst is spent
+        EmbeddingRateLimiter limiter = limiter(600, 1_000_000, Duration.ofSeconds(5));
+        for (int i = 0; i < 600; i++) {
+            limiter.acquire(Priority.BULK, 1);
+        }
+
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        Thread bulk = new Thread(() -> {
+            limiter.acquire(Priority.BULK, 1);
+            order.add(Priority.BULK);
+        });
+        Thread interactive = new Thread(() -> {
+            limiter.acquire(Priority.INTERACTIVE, 1);
+            order.add(Priority.INTERACTIVE);
+        });
+        bulk.start();
+        Thread.sleep(20);
+        interactive.start();
+        bulk.join(5_000);
+        interactive.join(5_000);
+
+        assertThat(order).containsExactly(Priority.INTERACTIVE, Priority.BULK);
+    }
+
+    @Test
+    void parseResetDuration_handlesOpenAiFormats() {
+        assertThat(EmbeddingRateLimiter.parseResetDuration("20ms")).isEqualTo(Duration.ofMillis(20));
+        assertThat(EmbeddingRateLimiter.parseResetDuration("1s")).isEqualTo(Duration.ofSeconds(1));
+        assertThat(EmbeddingRateLimiter.parseResetDuration("6m0s")).isEqualTo(Duration.ofMinutes(6));
+        assertThat(EmbeddingRateLimiter.parseResetDuration("1h2m3.5s")).isEqualTo(Duration.ofMillis(3_723_500));
+        assertThat(EmbeddingRateLimiter.parseResetDuration("")).isNull();
+    }
+}
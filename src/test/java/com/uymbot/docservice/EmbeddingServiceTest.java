@@ -0,0 +1,103 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.resilience.SingleFlight;
+import com.uymbot.docservice.service.EmbeddingProvider;
+import com.uymbot.docservice.service.EmbeddingService;
+import com.uymbot.docservice.service.EmbeddingSpec;
+import com.uymbot.docservice.service.LocalEmbeddingProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class EmbeddingServiceTest {
+
+    private static final EmbeddingSpec OPENAI = new EmbeddingSpec("text-embedding-3-small", 0);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EmbeddingProvider remote = mock(EmbeddingProvider.class);
+    private final LocalEmbeddingProvider local = new LocalEmbeddingProvider();
+    private EmbeddingService service;
+
+    @BeforeEach
+    void setUp() {
+        given(remote.supports(any())).willAnswer(inv ->
+                !LocalEmbeddingProvider.MODEL.equals(inv.<EmbeddingSpec>getArgument(0).model()));
+        given(remote.remote()).willReturn(true);
+        given(remote.name()).willReturn("openai");
+        service = new EmbeddingService(List.of(remote, local), local, new SingleFlight(registry, true), registry);
+        ReflectionTestUtils.setField(service, "provider", "openai");
+        ReflectionTestUtils.setField(service, "localDimensions", 384);
+        ReflectionTestUtils.setField(service, "model", OPENAI.model());
+        ReflectionTestUtils.setField(service, "dimensions", 0);
+    }
+
+    @Test
+    void localProvider_embedsInProcess() {
+        ReflectionTestUtils.setField(service, "provider", "local");
+
+        float[] vector = service.embed("merhaba dünya", Priority.INTERACTIVE);
+
+        assertThat(service.spec()).isEqualTo(new EmbeddingSpec(LocalEmbeddingProvider.MODEL, 384));
+        assertThat(service.remote()).isFalse();
+        assertThat(vector).hasSize(384);
+        verify(remote, never()).embed(anyList(), any(), any());
+    }
+
+    @Test
+    void collectionSpec_decidesTheProvider() {
+        ReflectionTestUtils.setField(service, "provider", "local");
+        given(remote.embed(anyList(), any(), any())).willReturn(List.of(new float[1536]));
+
+        service.use(OPENAI);
+
+        assertThat(service.embed("merhaba", Priority.BULK)).hasSize(1536);
+        verify(remote).embed(List.of("merhaba"), Priority.BULK, OPENAI);
+    }
+
+    @Test
+    void fallback_embedsFailedSearchesLocally_withTheCollectionsVectorLength() {
+        ReflectionTestUtils.setField(service, "fallback", true);
+        given(remote.embed(anyList(), any(), any()))
+                .willReturn(List.of(new float[1536]))
+                .willThrow(new ServiceUnavailableException("rate limited", Duration.ofSeconds(1), null));
+        service.embed("first", Priority.INTERACTIVE);
+
+        float[] vector = service.embed("second", Priority.INTERACTIVE);
+
+        assertThat(vector).hasSize(1536);
+        assertThat(registry.get("docservice.embedding.fallback").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void fallback_neverAppliesToWrites() {
+        ReflectionTestUtils.setField(service, "fallback", true);
+        ReflectionTestUtils.setField(service, "dimensions", 256);
+        given(remote.embed(anyList(), any(), any())).willThrow(new IllegalStateException("API down"));
+
+        assertThatThrownBy(() -> service.embed("chunk", Priority.BULK)).hasMessage("API down");
+        assertThat(service.embed("query", Priority.INTERACTIVE)).hasSize(256);
+    }
+
+    @Test
+    void withoutFallback_failuresPropagate() {
+        ReflectionTestUtils.setField(service, "dimensions", 256);
+        given(remote.embed(anyList(), any(), any())).willThrow(new IllegalStateException("API down"));
+
+        assertThatThrownBy(() -> service.embed("query", Priority.INTERACTIVE)).hasMessage("API down");
+    }
+}
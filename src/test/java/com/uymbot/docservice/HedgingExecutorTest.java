@@ -0,0 +1,104 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.resilience.HedgingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgingExecutorTest {
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private HedgingExecutor executor(boolean hedging) {
+        // hedge after 20 ms, every call may hedge
+        return new HedgingExecutor(pool, hedging, 0.95, Duration.ofMillis(20), Duration.ofMillis(20), 1.0, registry);
+    }
+
+    @Test
+    void slowFirstAttempt_isOvertakenByHedge() throws Exception {
+        HedgingExecutor executor = executor(true);
+
+        long start = System.nanoTime();
+        String result = executor.execute("query", attempt -> {
+            if (attempt == 0) sleep(2_000);
+            return "attempt-" + attempt;
+        }, Duration.ofSeconds(5));
+
+        assertThat(result).isEqualTo("attempt-1");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1_000));
+        assertThat(registry.get("docservice.hedge.requests").tag("op", "query").counter().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.hedge.wins").tag("op", "query").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void fastFirstAttempt_isNotHedged() throws Exception {
+        HedgingExecutor executor = executor(true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("query", attempt -> {
+            attempts.incrementAndGet();
+            return "ok";
+        }, Duration.ofSeconds(5));
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void failingFirstAttempt_fallsBackToHedge() throws Exception {
+        HedgingExecutor executor = executor(true);
+
+        String result = executor.execute("get", attempt -> {
+            if (attempt == 0) {
+                sleep(50);
+                throw new IllegalStateException("primary down");
+            }
+            sleep(100);
+            return "hedge";
+        }, Duration.ofSeconds(5));
+
+        assertThat(result).isEqualTo("hedge");
+    }
+
+    @Test
+    void noAnswerBeforeDeadline_timesOut() {
+        HedgingExecutor executor = executor(false);
+
+        assertThatThrownBy(() -> executor.execute("count", attempt -> {
+            sleep(2_000);
+            return 1;
+        }, Duration.ofMillis(100))).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void allAttemptsFailing_propagatesFailure() {
+        HedgingExecutor executor = executor(false);
+
+        assertThatThrownBy(() -> executor.execute("count", attempt -> {
+            throw new IllegalArgumentException("bad request");
+        }, Duration.ofSeconds(1))).isInstanceOf(IllegalArgumentException.class).hasMessage("bad request");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
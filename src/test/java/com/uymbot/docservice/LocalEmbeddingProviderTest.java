@@ -0,0 +1,52 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.service.EmbeddingSpec;
+import com.uymbot.docservice.service.LocalEmbeddingProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LocalEmbeddingProviderTest {
+
+    private final LocalEmbeddingProvider provider = new LocalEmbeddingProvider();
+
+    private float[] embed(String text, int dimensions) {
+        return provider.embed(List.of(text), Priority.BULK,
+                new EmbeddingSpec(LocalEmbeddingProvider.MODEL, dimensions)).get(0);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) dot += a[i] * b[i];
+        return dot;   // both have unit length
+    }
+
+    @Test
+    void vectorsAreDeterministicUnitLength() {
+        float[] vector = embed("Python güçlü bir programlama dilidir.", 0);
+
+        assertThat(vector).hasSize(LocalEmbeddingProvider.DEFAULT_DIMENSIONS);
+        assertThat(vector).containsExactly(embed("Python güçlü bir programlama dilidir.", 0));
+        assertThat(cosine(vector, vector)).isCloseTo(1.0, within(1e-5));
+        assertThat(embed("x", 64)).hasSize(64);
+        assertThat(cosine(embed("x", 64), embed("x", 64))).isCloseTo(1.0, within(1e-5));
+    }
+
+    @Test
+    void caseAndWhitespace_doNotMatter() {
+        assertThat(embed("Programlama  Dili\n", 384)).containsExactly(embed("programlama dili", 384));
+    }
+
+    @Test
+    void sharedWords_areCloserThanUnrelatedText() {
+        float[] query = embed("python programlama dili", 384);
+        float[] related = embed("Python güçlü bir programlama dilidir.", 384);
+        float[] unrelated = embed("Bugün hava çok yağmurlu ve soğuk.", 384);
+
+        assertThat(cosine(query, related)).isGreaterThan(cosine(query, unrelated) + 0.2);
+    }
+}
@@ -0,0 +1,118 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.NearDuplicateIndex;
+import com.uymbot.docservice.writebuffer.ChromaWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class NearDuplicateIndexTest {
+
+    private static final String RELEASE_NOTES = """
+            Surum 4.2 ile birlikte yedekleme servisi artik artimli yedek alabiliyor. Ilk calistirmada tam yedek
+            alinir, sonraki calistirmalarda yalnizca degisen bloklar aktarilir. Yedekleme penceresi yonetim
+            panelindeki zamanlama sekmesinden ayarlanir ve varsayilan olarak gece ikide baslar. Geri yukleme
+            sirasinda servis once tam yedegi, ardindan artimli yedekleri sirayla uygular; bu nedenle zincirdeki
+            hicbir yedek silinmemelidir. Eski yedekler saklama suresi dolunca otomatik olarak temizlenir.""";
+
+    private static final String INSTALL_GUIDE = """
+            Kurulumdan once sunucuda en az dort gigabayt bellek ve yirmi gigabayt bos disk oldugundan emin olun.
+            Paketi indirip arsivden cikardiktan sonra yapilandirma dosyasindaki veritabani adresini ve kullanici
+            bilgilerini duzenleyin. Kurulum betigi gerekli dizinleri olusturur, servisi sisteme kaydeder ve ilk
+            yonetici hesabini ister. Guvenlik duvarinda uygulama portunun acik oldugunu kontrol etmeyi unutmayin.""";
+
+    private ChromaDbService chromaDbService;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        chromaDbService = mock(ChromaDbService.class);
+        registry = new SimpleMeterRegistry();
+    }
+
+    private NearDuplicateIndex index(String mode, int capacity) {
+        return new NearDuplicateIndex(chromaDbService, new ChromaWriteBuffer(chromaDbService, registry),
+                mock(CollectionScanner.class), mode, 0.9, 200, capacity, false, registry);
+    }
+
+    private void stored(String id, String content, Map<String, Object> metadata) {
+        doReturn(Map.of("ids", List.of(id), "documents", List.of(content), "metadatas", List.of(metadata),
+                "embeddings", List.of(List.of(0.5, 0.25))))
+                .when(chromaDbService).getConsistent(any(), eq(List.of(id)), any());
+    }
+
+    @Test
+    void editedVersion_isFoundAndConfirmed_unrelatedTextIsNot() {
+        NearDuplicateIndex index = index("skip", 100);
+        index.add("doc:0", index.signature(RELEASE_NOTES));
+        stored("doc:0", RELEASE_NOTES, Map.of());
+
+        String edited = RELEASE_NOTES.replace("gece ikide", "gece ucte");
+        NearDuplicateIndex.Match match = index.find(index.signature(edited));
+        NearDuplicateIndex.Match none = index.find(index.signature(INSTALL_GUIDE));
+
+        assertThat(match).isNotNull();
+        assertThat(match.id()).isEqualTo("doc:0");
+        assertThat(match.embedding()).isNull();
+        assertThat(none).isNull();
+        assertThat(registry.get("docservice.dedup.chunks").tag("result", "skipped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.dedup.chunks").tag("result", "unique").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void candidateDeletedSinceIndexing_isRejected() {
+        NearDuplicateIndex index = index("skip", 100);
+        index.add("doc:0", index.signature(RELEASE_NOTES));
+        doReturn(Map.of("ids", List.of(), "documents", List.of(), "metadatas", List.of()))
+                .when(chromaDbService).getConsistent(any(), eq(List.of("doc:0")), any());
+
+        assertThat(index.find(index.signature(RELEASE_NOTES))).isNull();
+        assertThat(registry.get("docservice.dedup.candidates.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void linkMode_returnsTheEmbeddingAndTheOriginalOfALinkedChunk() {
+        NearDuplicateIndex index = index("link", 100);
+        index.add("doc:3", index.signature(RELEASE_NOTES));
+        stored("doc:3", RELEASE_NOTES, Map.of(NearDuplicateIndex.DUPLICATE_OF_KEY, "doc:0"));
+
+        NearDuplicateIndex.Match match = index.find(index.signature(RELEASE_NOTES));
+
+        assertThat(match.id()).isEqualTo("doc:0");
+        assertThat(match.embedding()).containsExactly(0.5f, 0.25f);
+    }
+
+    @Test
+    void fullIndex_overwritesTheOldestChunk() {
+        NearDuplicateIndex index = index("skip", 2);
+        String other = RELEASE_NOTES.replace("yedek", "arsiv").replace("servis", "ajan");
+        String third = RELEASE_NOTES.replace("Surum", "Versiyon").replace("gece", "sabah").replace("tam", "butun");
+        index.add("old", index.signature(RELEASE_NOTES));
+        index.add("other", index.signature(other));
+        index.add("third", index.signature(third));
+        stored("old", RELEASE_NOTES, Map.of());
+
+        assertThat(index.find(index.signature(RELEASE_NOTES))).isNull();
+        verify(chromaDbService, never()).getConsistent(any(), eq(List.of("old")), any());
+        assertThat(registry.get("docservice.dedup.index.size").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void shortOrDisabled_isNotLookedUp() {
+        assertThat(index("skip", 100).signature("Kisa bir parca.")).isNull();
+        assertThat(index("off", 100).signature(RELEASE_NOTES)).isNull();
+    }
+}
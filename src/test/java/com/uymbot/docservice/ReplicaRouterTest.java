@@ -0,0 +1,142 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.resilience.ReplicaRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicaRouterTest {
+
+    private static final String PRIMARY = "http://primary";
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private ReplicaRouter router(boolean includePrimary) {
+        return new ReplicaRouter(Map.of(PRIMARY, List.of("http://r1", "http://r2")), includePrimary, 2,
+                host -> !down.contains(host), registry);
+    }
+
+    private static String route(ReplicaRouter router) {
+        return router.read(PRIMARY, host -> host);
+    }
+
+    @Test
+    void hostWithoutReplicas_isReadDirectly() {
+        ReplicaRouter router = router(false);
+
+        assertThat(router.hasReplicas("http://other")).isFalse();
+        assertThat(router.<String>read("http://other", host -> host)).isEqualTo("http://other");
+    }
+
+    @Test
+    void reads_goToTheReplicaWithFewestInFlight() throws Exception {
+        ReplicaRouter router = router(false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String[] busy = new String[1];
+
+        pool.submit(() -> router.read(PRIMARY, host -> {
+            busy[0] = host;
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return host;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < 20; i++) {
+            String host = route(router);
+            assertThat(host).isNotEqualTo(busy[0]).isNotEqualTo(PRIMARY);
+        }
+        release.countDown();
+    }
+
+    @Test
+    void idleReplicas_shareTheLoad() {
+        ReplicaRouter router = router(true);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 200; i++) seen.add(route(router));
+
+        assertThat(seen).containsExactlyInAnyOrder("http://r1", "http://r2", PRIMARY);
+    }
+
+    @Test
+    void failingReplica_isTakenOutOfRotation_andProbedBackIn() {
+        ReplicaRouter router = router(false);
+        int failures = 0;
+        for (int i = 0; i < 200 && failures < 2; i++) {
+            try {
+                router.read(PRIMARY, host -> {
+                    if (host.equals("http://r1")) throw new ResourceAccessException("refused");
+                    return host;
+                });
+            } catch (ResourceAccessException e) {
+                failures++;
+            }
+        }
+        assertThat(failures).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) assertThat(route(router)).isEqualTo("http://r2");
+        assertThat(registry.get("docservice.replica.healthy").tag("host", "http://r1").gauge().value()).isZero();
+
+        router.probe();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 100; i++) seen.add(route(router));
+        assertThat(seen).containsExactlyInAnyOrder("http://r1", "http://r2");
+    }
+
+    @Test
+    void replicaWithoutTheCollection_fallsBackToPrimary_andLeavesRotation() {
+        ReplicaRouter router = router(false);
+        Set<String> answered = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 200; i++) {
+            answered.add(router.read(PRIMARY, host -> {
+                if (host.equals("http://r1")) {
+                    throw new ReplicaRouter.ReplicaUnavailableException("collection not found on " + host, null);
+                }
+                return host;
+            }));
+        }
+
+        assertThat(answered).containsExactlyInAnyOrder("http://r2", PRIMARY);
+        assertThat(registry.get("docservice.replica.primary-fallback").counter().count()).isEqualTo(2);
+        assertThat(registry.get("docservice.replica.healthy").tag("host", "http://r1").gauge().value()).isZero();
+    }
+
+    @Test
+    void noHealthyReplica_fallsBackToPrimary() {
+        ReplicaRouter router = router(false);
+        down.addAll(List.of("http://r1", "http://r2"));
+        router.probe();
+        router.probe();
+
+        assertThat(route(router)).isEqualTo(PRIMARY);
+        assertThat(registry.get("docservice.replica.primary-fallback").counter().count()).isEqualTo(1);
+        assertThat(router.status()).containsOnlyKeys("http://r1", "http://r2");
+    }
+}
@@ -0,0 +1,100 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.dto.DocumentResponse;
+import com.uymbot.docservice.service.SearchCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SearchCache cache = new SearchCache(true, 3, Duration.ofMinutes(5), 0.95, 0.01, registry);
+
+    private static List<DocumentResponse> results(String... ids) {
+        return List.of(ids).stream().map(id -> DocumentResponse.builder().id(id).build()).toList();
+    }
+
+    private double lookups(String result) {
+        return registry.get("docservice.search.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    void sameText_isServedWithoutEmbedding() {
+        cache.put("python dili", new float[]{1f, 0f}, 5, 0, results("a", "b"));
+
+        assertThat(cache.get("python dili", 5, 0)).extracting(DocumentResponse::getId).containsExactly("a", "b");
+        assertThat(cache.get("python dili", 1, 0)).extracting(DocumentResponse::getId).containsExactly("a");
+        assertThat(cache.get("python dili", 10, 0)).isNull();
+        assertThat(cache.get("java dili", 5, 0)).isNull();
+        assertThat(lookups("text")).isEqualTo(2);
+    }
+
+    @Test
+    void similarEmbedding_isServedAboveTheThreshold() {
+        cache.put("python dili", new float[]{1f, 0f}, 5, 0, results("a"));
+
+        // cos ≈ 0.995; the cached vector's length does not matter
+        assertThat(cache.getSimilar(new float[]{10f, 1f}, 5, 0)).extracting(DocumentResponse::getId).containsExactly("a");
+        // cos ≈ 0.89
+        assertThat(cache.getSimilar(new float[]{2f, 1f}, 5, 0)).isNull();
+
+        assertThat(lookups("similar")).isEqualTo(1);
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(registry.get("docservice.search.cache.similarity").summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void thresholdOfOne_servesSameTextOnly_butStillMeasuresSimilarity() {
+        SearchCache textOnly = new SearchCache(true, 3, Duration.ofMinutes(5), 1.0, 1.0, registry);
+        textOnly.put("python dili", new float[]{1f, 0f}, 5, 0, results("a"));
+
+        assertThat(textOnly.getSimilar(new float[]{1f, 1e-4f}, 5, 0)).isNull();
+        assertThat(textOnly.get("python dili", 5, 0)).extracting(DocumentResponse::getId).containsExactly("a");
+
+        assertThat(lookups("similar")).isZero();
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(registry.get("docservice.search.cache.similarity").summary().max()).isGreaterThan(0.99);
+    }
+
+    @Test
+    void thresholdOfOne_unsampledLookup_scansNothing() {
+        SearchCache textOnly = new SearchCache(true, 3, Duration.ofMinutes(5), 1.0, 0, registry);
+        textOnly.put("python dili", new float[]{1f, 0f}, 5, 0, results("a"));
+
+        assertThat(textOnly.getSimilar(new float[]{1f, 0f}, 5, 0)).isNull();
+
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(registry.get("docservice.search.cache.similarity").summary().count()).isZero();
+    }
+
+    @Test
+    void aWrite_retiresEveryEntry() {
+        cache.put("python dili", new float[]{1f, 0f}, 5, 0, results("a"));
+
+        assertThat(cache.get("python dili", 5, 1)).isNull();
+        assertThat(cache.getSimilar(new float[]{1f, 0f}, 5, 1)).isNull();
+        assertThat(lookups("stale")).isEqualTo(1);
+
+        cache.put("python dili", new float[]{1f, 0f}, 5, 1, results("b"));
+        assertThat(cache.get("python dili", 5, 1)).extracting(DocumentResponse::getId).containsExactly("b");
+        assertThat(registry.get("docservice.search.cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void oldestEntry_isEvictedWhenFull() {
+        cache.put("q1", new float[]{1f, 0f, 0f, 0f}, 5, 0, results("1"));
+        cache.put("q2", new float[]{0f, 1f, 0f, 0f}, 5, 0, results("2"));
+        cache.put("q3", new float[]{0f, 0f, 1f, 0f}, 5, 0, results("3"));
+        cache.put("q4", new float[]{0f, 0f, 0f, 1f}, 5, 0, results("4"));
+
+        assertThat(cache.get("q1", 5, 0)).isNull();
+        assertThat(cache.getSimilar(new float[]{1f, 0f, 0f, 0f}, 5, 0)).isNull();
+        assertThat(cache.get("q4", 5, 0)).extracting(DocumentResponse::getId).containsExactly("4");
+        assertThat(registry.get("docservice.search.cache.size").gauge().value()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,119 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.dto.ShardRebalanceResponse;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.ShardRebalanceService;
+import com.uymbot.docservice.sharding.Shard;
+import com.uymbot.docservice.sharding.ShardRing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShardRebalanceServiceTest {
+
+    private final List<Shard> shards = List.of(
+            new Shard(0, "http://a:8000", "documents"),
+            new Shard(1, "http://b:8000", "documents"),
+            new Shard(2, "http://c:8000", "documents"));
+    /** Ring after the third shard was added; all data still sits on shards 0 and 1. */
+    private final ShardRing ring = new ShardRing(shards, 128);
+    private final ShardRing oldRing = new ShardRing(shards.subList(0, 2), 128);
+    /** In-memory shards: id → embedding, in insertion order. */
+    private final Map<Shard, LinkedHashMap<String, List<Double>>> data = new LinkedHashMap<>();
+
+    private ChromaDbService chromaDbService;
+    private ShardRebalanceService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        shards.forEach(s -> data.put(s, new LinkedHashMap<>()));
+        for (int i = 0; i < 300; i++) {
+            String id = ShardRing.chunkId("doc-" + i, 0);
+            data.get(oldRing.route(id)).put(id, List.of((double) i, 1.0));
+        }
+
+        chromaDbService = mock(ChromaDbService.class);
+        service = new ShardRebalanceService(chromaDbService);
+        when(chromaDbService.shards()).thenReturn(shards);
+        when(chromaDbService.home(anyString())).thenAnswer(inv -> ring.route(inv.getArgument(0)));
+        when(chromaDbService.count(any(Shard.class))).thenAnswer(inv -> data.get((Shard) inv.getArgument(0)).size());
+        when(chromaDbService.list(any(Shard.class), anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            List<Map.Entry<String, List<Double>>> rows = new ArrayList<>(data.get((Shard) inv.getArgument(0)).entrySet());
+            int limit = inv.getArgument(1);
+            int offset = inv.getArgument(2);
+            List<Map.Entry<String, List<Double>>> page =
+                    rows.subList(Math.min(offset, rows.size()), Math.min(offset + limit, rows.size()));
+            return Map.of(
+                    "ids", page.stream().map(Map.Entry::getKey).toList(),
+                    "documents", page.stream().map(e -> "content " + e.getKey()).toList(),
+                    "metadatas", page.stream().map(e -> Map.of("k", e.getKey())).toList(),
+                    "embeddings", page.stream().map(Map.Entry::getValue).toList());
+        });
+        doAnswer(inv -> {
+            Shard target = inv.getArgument(0);
+            List<String> ids = inv.getArgument(1);
+            List<float[]> embeddings = inv.getArgument(4);
+            for (int i = 0; i < ids.size(); i++) {
+                data.get(target).put(ids.get(i), List.of((double) embeddings.get(i)[0], (double) embeddings.get(i)[1]));
+            }
+            return null;
+        }).when(chromaDbService).upsert(any(Shard.class), anyList(), anyList(), anyList(), anyList());
+        doAnswer(inv -> {
+            Collection<String> ids = inv.getArgument(1);
+            ids.forEach(data.get((Shard) inv.getArgument(0))::remove);
+            return null;
+        }).when(chromaDbService).delete(any(Shard.class), any(Collection.class));
+    }
+
+    @Test
+    void rebalance_movesEveryChunkToItsHomeShardWithItsEmbedding() {
+        ShardRebalanceResponse response = service.rebalance(false, 7);
+
+        long expectedMoves = data.values().stream().flatMap(m -> m.keySet().stream())
+                .filter(id -> !ring.route(id).equals(oldRing.route(id))).count();
+        assertThat(response.getMoved()).isEqualTo(expectedMoves).isPositive();
+        // moved chunks are visited again on the shard they were moved to
+        assertThat(response.getScanned()).isEqualTo(300 + expectedMoves);
+        assertThat(response.getMoves().keySet()).allMatch(k -> k.endsWith("http://c:8000/documents"));
+
+        int total = 0;
+        for (Map.Entry<Shard, LinkedHashMap<String, List<Double>>> shard : data.entrySet()) {
+            for (Map.Entry<String, List<Double>> row : shard.getValue().entrySet()) {
+                assertThat(ring.route(row.getKey())).isEqualTo(shard.getKey());
+                int doc = Integer.parseInt(ShardRing.routingKey(row.getKey()).substring("doc-".length()));
+                assertThat(row.getValue()).containsExactly((double) doc, 1.0);
+            }
+            total += shard.getValue().size();
+        }
+        assertThat(total).isEqualTo(300);
+
+        assertThat(service.rebalance(false, 7).getMoved()).isZero();
+    }
+
+    @Test
+    void dryRun_countsWithoutMoving() {
+        ShardRebalanceResponse response = service.rebalance(true, 50);
+
+        assertThat(response.isDryRun()).isTrue();
+        assertThat(response.getMoved()).isPositive();
+        assertThat(data.get(shards.get(2))).isEmpty();
+        verify(chromaDbService, never()).upsert(any(Shard.class), anyList(), anyList(), anyList(), anyList());
+    }
+}
@@ -0,0 +1,194 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.exception.ServiceUnavailableException;
+import com.uymbot.docservice.sharding.ScatterGather;
+import com.uymbot.docservice.sharding.Shard;
+import com.uymbot.docservice.sharding.ShardRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardingTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static List<Shard> shards(int n) {
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < n; i++) shards.add(new Shard(i, "http://chroma-" + i + ":8000", "documents"));
+        return shards;
+    }
+
+    // ─── RING ────────────────────────────────────────────────────────────────
+
+    @Test
+    void ring_spreadsDocumentsEvenly() {
+        ShardRing ring = new ShardRing(shards(4), 128);
+        Map<Shard, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            counts.merge(ring.route(ShardRing.chunkId(UUID.randomUUID().toString(), 0)), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(c -> assertThat(c).isBetween(3_750, 6_250));
+    }
+
+    @Test
+    void ring_addingAShardOnlyMovesKeysToTheNewShard() {
+        ShardRing before = new ShardRing(shards(4), 128);
+        List<Shard> five = shards(5);
+        ShardRing after = new ShardRing(five, 128);
+
+        int moved = 0;
+        int n = 20_000;
+        for (int i = 0; i < n; i++) {
+            String id = ShardRing.chunkId("doc-" + i, 0);
+            Shard from = before.route(id);
+            Shard to = after.route(id);
+            if (!from.equals(to)) {
+                moved++;
+                assertThat(to).isEqualTo(five.get(4));
+            }
+        }
+        assertThat(moved).isBetween(n / 5 - n / 20, n / 5 + n / 20);
+    }
+
+    @Test
+    void ring_keepsAllChunksOfADocumentTogether() {
+        ShardRing ring = new ShardRing(shards(8), 128);
+        String documentId = UUID.randomUUID().toString();
+
+        Shard first = ring.route(ShardRing.chunkId(documentId, 0));
+        for (int i = 1; i < 50; i++) {
+            assertThat(ring.route(ShardRing.chunkId(documentId, i))).isEqualTo(first);
+        }
+        assertThat(ring.route(ShardRing.chunkId(documentId, UUID.randomUUID()))).isEqualTo(first);
+        assertThat(ring.route(documentId)).isEqualTo(first);
+    }
+
+    @Test
+    void ring_isIndependentOfShardOrder() {
+        List<Shard> shards = shards(3);
+        ShardRing ring = new ShardRing(shards, 64);
+        ShardRing reversed = new ShardRing(List.of(shards.get(2), shards.get(1), shards.get(0)), 64);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(reversed.route("doc-" + i).name()).isEqualTo(ring.route("doc-" + i).name());
+        }
+    }
+
+    @Test
+    void parse_readsHostCollectionPairs() {
+        assertThat(ShardRing.parse("", "http://localhost:8001", "documents"))
+                .containsExactly(new Shard(0, "http://localhost:8001", "documents"));
+        assertThat(ShardRing.parse("http://a:8000/docs, http://b:8000/docs", "x", "y"))
+                .containsExactly(new Shard(0, "http://a:8000", "docs"), new Shard(1, "http://b:8000", "docs"));
+        assertThatThrownBy(() -> ShardRing.parse("http://a:8000", "x", "y"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardRing.parse("http://a:8000/d,http://a:8000/d", "x", "y"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ─── SCATTER / GATHER ────────────────────────────────────────────────────
+
+    @Test
+    void scatter_skipsShardsThatMissTheDeadline() {
+        ScatterGather scatter = new ScatterGather(executor, Duration.ofMillis(200), registry);
+        List<Shard> shards = shards(3);
+
+        long start = System.nanoTime();
+        Map<Shard, String> answers = scatter.call("query", shards, shard -> {
+            if (shard.index() == 1) sleep(5_000);
+            if (shard.index() == 2) throw new IllegalStateException("boom");
+            return "ok-" + shard.index();
+        });
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(answers).containsOnlyKeys(shards.get(0));
+        assertThat(registry.get("docservice.shard.skipped").tag("reason", "timeout").counter().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.shard.skipped").tag("reason", "error").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void scatter_failsWhenNoShardAnswers() {
+        ScatterGather scatter = new ScatterGather(executor, Duration.ofMillis(100), registry);
+
+        assertThatThrownBy(() -> scatter.call("query", shards(2), shard -> {
+            sleep(2_000);
+            return "late";
+        })).isInstanceOf(ServiceUnavailableException.class);
+
+        assertThatThrownBy(() -> scatter.call("query", shards(2), shard -> {
+            throw new IllegalArgumentException("bad request");
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void callAll_rethrowsTheFirstFailure() {
+        ScatterGather scatter = new ScatterGather(executor, Duration.ofMillis(100), registry);
+
+        assertThatThrownBy(() -> scatter.callAll("get", shards(3), shard -> {
+            if (shard.index() == 2) throw new IllegalStateException("shard 2 down");
+            return shard.index();
+        })).hasMessage("shard 2 down");
+        assertThat(scatter.callAll("get", shards(3), Shard::index)).hasSize(3);
+    }
+
+    @Test
+    void nullAnswers_areKeptForOneShardAsForSeveral() {
+        ScatterGather scatter = new ScatterGather(executor, Duration.ofMillis(500), registry);
+
+        for (int n : new int[]{1, 2}) {
+            List<Shard> shards = shards(n);
+            assertThat(scatter.call("get", shards, shard -> (String) null))
+                    .containsOnlyKeys(shards).containsValue(null);
+            assertThat(scatter.callAll("get", shards, shard -> (String) null))
+                    .containsOnlyKeys(shards).containsValue(null);
+        }
+    }
+
+    @Test
+    void mergeQueries_keepsTheNearestChunksAcrossShards() {
+        Map<String, Object> a = queryAnswer(List.of("a1", "a2", "a3"), List.of(0.10, 0.40, 0.90));
+        Map<String, Object> b = queryAnswer(List.of("b1", "b2"), List.of(0.05, 0.30));
+
+        Map<String, Object> merged = ScatterGather.mergeQueries(List.of(a, b), 3);
+
+        assertThat(merged.get("ids")).isEqualTo(List.of(List.of("b1", "a1", "b2")));
+        assertThat(merged.get("documents")).isEqualTo(List.of(List.of("doc b1", "doc a1", "doc b2")));
+        assertThat(merged.get("distances")).isEqualTo(List.of(List.of(0.05, 0.10, 0.30)));
+    }
+
+    private static Map<String, Object> queryAnswer(List<String> ids, List<Double> distances) {
+        return Map.of(
+                "ids", List.of(ids),
+                "documents", List.of(ids.stream().map(id -> "doc " + id).toList()),
+                "metadatas", List.of(ids.stream().map(id -> Map.of("_title", id)).toList()),
+                "distances", List.of(distances));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.resilience.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight(registry, true);
+
+    @Test
+    void concurrentIdenticalCalls_shareOneExecution() throws Exception {
+        int callers = 8;
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> singleFlight.execute("test", "key", () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return "value";
+                })));
+            }
+            // wait until every caller has either started the call or joined it
+            while (followers() + executions.get() < callers) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(executions).hasValue(1);
+        assertThat(registry.get("docservice.coalescing.ratio").tag("flight", "test").gauge().value())
+                .isEqualTo(7.0 / 8.0);
+    }
+
+    /** Callers that joined a running call; the counter only exists once the first one has. */
+    private double followers() {
+        Counter followers = registry.find("docservice.coalescing.calls").tag("role", "follower").counter();
+        return followers == null ? 0 : followers.count();
+    }
+
+    @Test
+    void sequentialCalls_areNotCached() {
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("test", "key", executions::incrementAndGet);
+        singleFlight.execute("test", "key", executions::incrementAndGet);
+
+        assertThat(executions).hasValue(2);
+    }
+
+    @Test
+    void differentKeys_runIndependently() {
+        assertThat(singleFlight.execute("test", "a", () -> "A")).isEqualTo("A");
+        assertThat(singleFlight.execute("test", "b", () -> "B")).isEqualTo("B");
+        assertThat(singleFlight.execute("other", "a", () -> "C")).isEqualTo("C");
+    }
+
+    @Test
+    void failure_isPropagatedAndKeyReleased() {
+        assertThatThrownBy(() -> singleFlight.execute("test", "key", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        assertThat(singleFlight.execute("test", "key", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void normalize_collapsesWhitespace() {
+        assertThat(SingleFlight.normalize("  what   is\n\tJava? ")).isEqualTo("what is Java?");
+        assertThat(SingleFlight.normalize(null)).isEmpty();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
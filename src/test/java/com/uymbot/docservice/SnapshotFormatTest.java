@@ -0,0 +1,155 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.exception.InvalidSnapshotException;
+import com.uymbot.docservice.snapshot.Float16;
+import com.uymbot.docservice.snapshot.SnapshotBlock;
+import com.uymbot.docservice.snapshot.SnapshotReader;
+import com.uymbot.docservice.snapshot.SnapshotWriter;
+import com.uymbot.docservice.snapshot.VectorEncoding;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class SnapshotFormatTest {
+
+    private static final int DIMENSION = 64;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static SnapshotBlock block(int from, int size, long seed) {
+        Random random = new Random(seed);
+        List<String> ids = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        List<Map<String, Object>> metadatas = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = from; i < from + size; i++) {
+            ids.add("chunk-" + i);
+            documents.add(i == from ? null : "Paragraph " + i + " über Überweisungen. ".repeat(10));
+            Map<String, Object> meta = new HashMap<>();
+            meta.put("_title", "Title " + i);
+            meta.put("chunkIndex", i);
+            meta.put("score", 0.5);
+            meta.put("public", true);
+            metadatas.add(meta);
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) vector[d] = (float) random.nextGaussian() * 0.1f;
+            embeddings.add(vector);
+        }
+        return new SnapshotBlock(ids, documents, metadatas, embeddings);
+    }
+
+    private byte[] write(VectorEncoding encoding, SnapshotBlock... blocks) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotWriter writer = new SnapshotWriter(out, encoding, "documents", objectMapper);
+        for (SnapshotBlock block : blocks) writer.write(block);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private List<SnapshotBlock> read(byte[] bytes) throws Exception {
+        SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(bytes), objectMapper);
+        List<SnapshotBlock> blocks = new ArrayList<>();
+        for (SnapshotBlock block = reader.next(); block != null; block = reader.next()) blocks.add(block);
+        return blocks;
+    }
+
+    @Test
+    void float32_roundTripsExactly() throws Exception {
+        SnapshotBlock first = block(0, 50, 1);
+        SnapshotBlock second = block(50, 7, 2);
+
+        List<SnapshotBlock> read = read(write(VectorEncoding.FLOAT32, first, second));
+
+        assertThat(read).hasSize(2);
+        for (int b = 0; b < 2; b++) {
+            SnapshotBlock expected = b == 0 ? first : second;
+            SnapshotBlock actual = read.get(b);
+            assertThat(actual.ids()).isEqualTo(expected.ids());
+            assertThat(actual.documents()).isEqualTo(expected.documents());
+            assertThat(actual.metadatas()).isEqualTo(expected.metadatas());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.embeddings().get(i)).containsExactly(expected.embeddings().get(i));
+            }
+        }
+    }
+
+    @Test
+    void float16_halvesVectorsWithinPrecision() throws Exception {
+        SnapshotBlock block = block(0, 100, 3);
+
+        byte[] full = write(VectorEncoding.FLOAT32, block);
+        byte[] half = write(VectorEncoding.FLOAT16, block);
+        SnapshotBlock read = read(half).get(0);
+
+        assertThat(full.length - half.length).isEqualTo(100 * DIMENSION * 2);
+        for (int i = 0; i < block.size(); i++) {
+            float[] expected = block.embeddings().get(i);
+            float[] actual = read.embeddings().get(i);
+            for (int d = 0; d < DIMENSION; d++) {
+                assertThat(actual[d]).isCloseTo(expected[d], within(Math.abs(expected[d]) / 1024 + 1e-7f));
+            }
+        }
+    }
+
+    @Test
+    void text_isCompressed() throws Exception {
+        SnapshotBlock block = block(0, 100, 4);
+        long rawText = 0;
+        for (int i = 0; i < block.size(); i++) {
+            rawText += block.ids().get(i).length() + objectMapper.writeValueAsBytes(block.metadatas().get(i)).length;
+            if (block.documents().get(i) != null) rawText += block.documents().get(i).length();
+        }
+
+        byte[] bytes = write(VectorEncoding.FLOAT32, block);
+
+        assertThat(bytes.length - 100L * DIMENSION * 4).isLessThan(rawText / 4);
+    }
+
+    @Test
+    void corruptedBlock_isRejected() throws Exception {
+        byte[] bytes = write(VectorEncoding.FLOAT32, block(0, 10, 5));
+        bytes[bytes.length - 40] ^= 0x01;   // inside the vector block
+
+        assertThatThrownBy(() -> read(bytes))
+                .isInstanceOf(InvalidSnapshotException.class)
+                .hasMessageContaining("Checksum");
+    }
+
+    @Test
+    void truncatedOrForeignInput_isRejected() throws Exception {
+        byte[] bytes = write(VectorEncoding.FLOAT32, block(0, 10, 6), block(10, 10, 7));
+
+        assertThatThrownBy(() -> read(Arrays.copyOf(bytes, bytes.length - 20)))
+                .isInstanceOf(InvalidSnapshotException.class)
+                .hasMessageContaining("truncated");
+        assertThatThrownBy(() -> read("{\"id\":\"a\"}\n".getBytes()))
+                .isInstanceOf(InvalidSnapshotException.class)
+                .hasMessageContaining("Not a snapshot");
+    }
+
+    @Test
+    void float16_conversionEdgeCases() {
+        for (float v : new float[]{0f, -0f, 1f, -2.5f, 65504f, 0.1f, 6.1035156e-5f, 5.9604645e-8f}) {
+            float back = Float16.toFloat(Float16.fromFloat(v));
+            assertThat(back).isCloseTo(v, within(Math.abs(v) / 1024));
+        }
+        assertThat(Float16.toFloat(Float16.fromFloat(-0f))).isEqualTo(-0f);
+        assertThat(Float16.toFloat(Float16.fromFloat(1e6f))).isEqualTo(Float.POSITIVE_INFINITY);
+        assertThat(Float16.toFloat(Float16.fromFloat(1e-9f))).isZero();
+        assertThat(Float16.toFloat(Float16.fromFloat(Float.NaN))).isNaN();
+        // 1 + 2^-11 is halfway between 1 and the next half; ties go to even (1)
+        assertThat(Float16.toFloat(Float16.fromFloat(1f + 0x1p-11f))).isEqualTo(1f);
+        assertThat(Float16.toFloat(Float16.fromFloat(1f + 0x1p-11f + 0x1p-20f))).isEqualTo(1f + 0x1p-10f);
+    }
+}
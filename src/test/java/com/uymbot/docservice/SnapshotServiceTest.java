@@ -0,0 +1,116 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.dto.DocumentResponse;
+import com.uymbot.docservice.dto.SnapshotRestoreResponse;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.CollectionScanner;
+import com.uymbot.docservice.service.DocumentCache;
+import com.uymbot.docservice.service.SnapshotService;
+import com.uymbot.docservice.snapshot.VectorEncoding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SnapshotServiceTest {
+
+    private ChromaDbService chromaDbService;
+    private DocumentCache documentCache;
+    private SnapshotService snapshotService;
+
+    /** Rows of the fake collection, in storage order. */
+    private final List<String> rows = new ArrayList<>();
+    /** Upsert calls: collection name and ids. */
+    private final List<Map.Entry<String, List<String>>> upserts = new ArrayList<>();
+    private final List<float[]> upsertedEmbeddings = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        chromaDbService = mock(ChromaDbService.class);
+        documentCache = new DocumentCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        snapshotService = new SnapshotService(new CollectionScanner(chromaDbService), chromaDbService,
+                documentCache, new ObjectMapper());
+
+        when(chromaDbService.collectionName()).thenReturn("documents");
+        when(chromaDbService.list(anyInt(), anyInt(), anyList())).thenAnswer(inv -> {
+            int limit = inv.getArgument(0);
+            int offset = inv.getArgument(1);
+            List<String> ids = List.copyOf(rows.subList(Math.min(offset, rows.size()),
+                    Math.min(offset + limit, rows.size())));
+            return Map.of(
+                    "ids", ids,
+                    "documents", ids.stream().map(id -> "content of " + id).toList(),
+                    "metadatas", ids.stream().map(id -> Map.of("_title", "T-" + id)).toList(),
+                    "embeddings", ids.stream().map(id -> List.of(0.5, -0.25, 0.125)).toList());
+        });
+        doAnswer(inv -> {
+            upserts.add(Map.entry(inv.getArgument(0), inv.getArgument(1)));
+            upsertedEmbeddings.addAll(inv.getArgument(4));
+            return null;
+        }).when(chromaDbService).upsertAll(anyString(), anyList(), anyList(), anyList(), anyList());
+    }
+
+    private byte[] snapshot(int pageSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshotService.snapshot(out, VectorEncoding.FLOAT32, pageSize);
+        return out.toByteArray();
+    }
+
+    @Test
+    void restore_upsertsEverySnapshottedChunkInBatches() throws Exception {
+        for (int i = 0; i < 23; i++) rows.add("id-" + i);
+        byte[] bytes = snapshot(5);
+
+        SnapshotRestoreResponse response = snapshotService.restore(new ByteArrayInputStream(bytes), "clone", 10);
+
+        assertThat(response.getRestored()).isEqualTo(23);
+        assertThat(response.getBatches()).isEqualTo(3);
+        assertThat(response.getCollection()).isEqualTo("clone");
+        assertThat(response.getSourceCollection()).isEqualTo("documents");
+        assertThat(upserts).extracting(Map.Entry::getKey).containsOnly("clone");
+        assertThat(upserts).extracting(e -> e.getValue().size()).containsExactly(10, 10, 3);
+        assertThat(upserts.stream().flatMap(e -> e.getValue().stream()).toList()).isEqualTo(rows);
+        assertThat(upsertedEmbeddings.get(0)).containsExactly(0.5f, -0.25f, 0.125f);
+    }
+
+    @Test
+    void restore_intoOwnCollection_invalidatesCachedDocuments() throws Exception {
+        rows.add("id-0");
+        byte[] bytes = snapshot(5);
+        documentCache.put(DocumentResponse.builder().id("id-0").content("stale").build());
+
+        SnapshotRestoreResponse response = snapshotService.restore(new ByteArrayInputStream(bytes), null, 10);
+
+        assertThat(response.getCollection()).isEqualTo("documents");
+        assertThat(documentCache.getIfPresent("id-0")).isNull();
+    }
+
+    @Test
+    void emptyCollection_snapshotsAndRestoresNothing() throws Exception {
+        byte[] bytes = snapshot(5);
+
+        SnapshotRestoreResponse response = snapshotService.restore(new ByteArrayInputStream(bytes), "clone", 10);
+
+        assertThat(response.getRestored()).isZero();
+        assertThat(response.getBatches()).isZero();
+        assertThat(upserts).isEmpty();
+    }
+}
@@ -0,0 +1,71 @@
+package com.uymbot.docservice;
+
+import com.uymbot.docservice.observability.Stage;
+import com.uymbot.docservice.observability.StageMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StageMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StageMetrics metrics = new StageMetrics(registry);
+
+    private Timer timer(Stage stage, String op) {
+        return registry.get("docservice.stage").tag("stage", stage.tag()).tag("op", op).timer();
+    }
+
+    @Test
+    void time_recordsPerStageAndOp_andReturnsTheResult() {
+        assertThat(metrics.time(Stage.CHROMA, "query", () -> 42)).isEqualTo(42);
+        metrics.time(Stage.CHROMA, "query", () -> 43);
+        metrics.time(Stage.EMBED, "batch", () -> { });
+
+        assertThat(timer(Stage.CHROMA, "query").count()).isEqualTo(2);
+        assertThat(timer(Stage.EMBED, "batch").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failingBody_isTimedToo() {
+        assertThatThrownBy(() -> metrics.time(Stage.CHROMA, "add", () -> {
+            sleep(20);
+            throw new IllegalStateException("down");
+        })).hasMessage("down");
+
+        Timer timer = timer(Stage.CHROMA, "add");
+        assertThat(timer.count()).isEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    void recordIngest_countsChunksAndUtf8Bytes() {
+        metrics.recordIngest(3, "çay");
+        metrics.recordIngest(2, 100L);
+
+        assertThat(registry.get("docservice.ingest.chunks").counter().count()).isEqualTo(5);
+        assertThat(registry.get("docservice.ingest.bytes").counter().count()).isEqualTo(104);
+    }
+
+    @Test
+    void utf8Length_countsEncodedBytes() {
+        String text = "aç€😀" + '\uD800';   // 1 + 2 + 3 + 4 bytes, and 3 for a lone surrogate
+        assertThat(StageMetrics.utf8Length(text)).isEqualTo(13);
+        assertThat(StageMetrics.utf8Length("Türkçe metin"))
+                .isEqualTo("Türkçe metin".getBytes(StandardCharsets.UTF_8).length);
+        assertThat(StageMetrics.utf8Length(null)).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
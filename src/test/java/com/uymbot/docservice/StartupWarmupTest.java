@@ -0,0 +1,102 @@
+package com.uymbot.docservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uymbot.docservice.resilience.Priority;
+import com.uymbot.docservice.service.ChromaDbService;
+import com.uymbot.docservice.service.DocumentService;
+import com.uymbot.docservice.service.EmbeddingService;
+import com.uymbot.docservice.service.EmbeddingSpec;
+import com.uymbot.docservice.service.StartupWarmup;
+import com.uymbot.docservice.service.TextChunkingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupWarmupTest {
+
+    @TempDir
+    Path dir;
+
+    private ChromaDbService chromaDbService;
+    private EmbeddingService embeddingService;
+    private DocumentService documentService;
+    private TextChunkingService chunking;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        chromaDbService = mock(ChromaDbService.class);
+        embeddingService = mock(EmbeddingService.class);
+        documentService = mock(DocumentService.class);
+        registry = new SimpleMeterRegistry();
+        chunking = new TextChunkingService();
+        ReflectionTestUtils.setField(chunking, "chunkSizeTokens", 250);
+        when(embeddingService.spec()).thenReturn(new EmbeddingSpec("text-embedding-3-small", 0));
+        when(embeddingService.remote()).thenReturn(true);
+    }
+
+    private StartupWarmup warmup(boolean enabled, String queriesFile, int maxQueries) {
+        return new StartupWarmup(chromaDbService, embeddingService, documentService, chunking, new ObjectMapper(),
+                registry, new MockEnvironment(), enabled, Duration.ofSeconds(30), 3, 50, queriesFile, maxQueries);
+    }
+
+    @Test
+    void run_resolvesCollectionsOpensConnectionsAndPreloadsQueries() throws Exception {
+        Path queries = dir.resolve("queries.txt");
+        Files.writeString(queries, "# top queries\nfirst query\n\nsecond query\nfirst query\nthird query\n");
+
+        warmup(true, queries.toString(), 2).run(null);
+
+        verify(chromaDbService).resolveCollections();
+        verify(chromaDbService, times(3)).heartbeat();
+        verify(embeddingService, times(3)).embed(anyString(), any(Priority.class));
+        verify(documentService).search("first query", 5);
+        verify(documentService).search("second query", 5);
+        verify(documentService, times(2)).search(anyString(), anyInt());
+        assertThat(registry.get("docservice.warmup").tag("step", "code").tag("result", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void run_failingStep_doesNotStopTheOthers() {
+        doThrow(new IllegalStateException("ChromaDB down")).when(chromaDbService).resolveCollections();
+        when(chromaDbService.heartbeat()).thenThrow(new IllegalStateException("ChromaDB down"));
+
+        warmup(true, "", 10).run(null);
+
+        assertThat(registry.get("docservice.warmup").tag("step", "collections").tag("result", "failure")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.warmup").tag("step", "connections").tag("result", "failure")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("docservice.warmup").tag("step", "code").tag("result", "success")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void run_disabled_doesNothing() {
+        warmup(false, "", 10).run(null);
+
+        verify(chromaDbService, never()).resolveCollections();
+        verify(documentService, never()).search(anyString(), anyInt());
+        assertThat(registry.find("docservice.warmup").timers()).isEmpty();
+    }
+}
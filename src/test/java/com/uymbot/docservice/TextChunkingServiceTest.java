@@ -1,11 +1,22 @@
 package com.uymbot.docservice;
 
+import com.uymbot.docservice.observability.jfr.ChunkSplitEvent;
 import com.uymbot.docservice.service.TextChunkingService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -92,4 +103,75 @@ class TextChunkingServiceTest {
         assertThat(chunks).hasSizeGreaterThan(1);
         chunks.forEach(c -> assertThat(c.length()).isLessThanOrEqualTo(4000));
     }
+
+    @Test
+    void streamedSplit_matchesSplitOfTheWholeText() throws IOException {
+        String[] pieces = {"word", "Sentence.", "end!", "why?", "x", "a".repeat(45), " ", "  ", "\n", "\n\n", "\n\n\n", "\t"};
+        SplittableRandom random = new SplittableRandom(3);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(1, 60);
+            for (int i = 0; i < length; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+                if (random.nextInt(3) > 0) text.append(' ');
+            }
+            assertThat(streamed(text.toString())).as("text %s", text).isEqualTo(service.split(text.toString()));
+        }
+    }
+
+    @Test
+    void streamedSplit_readsInSmallPieces() throws IOException {
+        String text = "First paragraph text here.\n\n" + "Long sentence that definitely goes well beyond the limit. ".repeat(50);
+        // a reader returning one character per call, as a slow network stream may
+        Reader trickle = new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        List<String> chunks = new ArrayList<>();
+
+        int count = service.split(trickle, chunks::add);
+
+        assertThat(chunks).isEqualTo(service.split(text));
+        assertThat(count).isEqualTo(chunks.size());
+    }
+
+    @Test
+    void streamedSplit_shortAndBlankText() throws IOException {
+        assertThat(streamed("  Short text. ")).containsExactly("Short text.");
+        assertThat(streamed("   ")).isEmpty();
+        assertThat(streamed("")).isEmpty();
+    }
+
+    @Test
+    void split_emitsChunkSplitEvent() throws IOException {
+        String text = "Long sentence that definitely goes well beyond the limit. ".repeat(5);
+        Path dump = Files.createTempFile("chunk-split", ".jfr");
+        List<String> chunks;
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(ChunkSplitEvent.class).withoutThreshold();
+            recording.start();
+            chunks = service.split(text);
+            recording.stop();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump).stream()
+                    .filter(e -> e.getEventType().getName().equals("com.uymbot.docservice.ChunkSplit"))
+                    .toList();
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getInt("inputChars")).isEqualTo(text.length());
+        assertThat(events.get(0).getInt("maxChars")).isEqualTo(40);
+        assertThat(events.get(0).getInt("chunkCount")).isEqualTo(chunks.size()).isGreaterThan(1);
+    }
+
+    private List<String> streamed(String text) throws IOException {
+        List<String> chunks = new ArrayList<>();
+        service.split(new StringReader(text), chunks::add);
+        return chunks;
+    }
 }